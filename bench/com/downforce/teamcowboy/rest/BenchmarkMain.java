@@ -0,0 +1,29 @@
+package com.downforce.teamcowboy.rest;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so each result is reported as ops/s alongside the bytes allocated per op
+ * (<code>gc.alloc.rate.norm</code>).
+ * 
+ * <p>Takes an optional regular expression to pick benchmarks, such as <code>DecodeBenchmark.events</code>, and
+ * writes the results to <code>jmh-result.json</code> for comparing runs.</p>
+ * 
+ * @since 0.2
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : BenchmarkMain.class.getPackage().getName() + "\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,98 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.downforce.teamcowboy.rest.response.AttendanceList;
+import com.downforce.teamcowboy.rest.response.Event;
+import com.downforce.teamcowboy.rest.response.Team;
+
+/**
+ * Measures whole calls through one client shared by many threads, with an in-memory HTTP provider so only the
+ * client's own work is counted: building and signing the request, the optional features, and decoding.
+ * 
+ * @since 0.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ClientThroughputBenchmark {
+	/**
+	 * The features installed on the client: none, metrics and interceptors, or the resilience features that add
+	 * shared state to every call.
+	 */
+	@Param({ "plain", "observed", "resilient" })
+	public String features;
+
+	private RESTClient client;
+
+	/**
+	 * Answers every call from memory with the fixture for its method.
+	 */
+	private static final class FixtureHttpProvider implements IHttpProvider {
+		private final String team = Fixtures.smallEnvelope();
+		private final String events = Fixtures.events(25);
+		private final String attendanceList = Fixtures.attendanceList(40);
+
+		@Override
+		public String makeHTTPCall(String url, String body, String httpRequestMethod) {
+			if (isMethod("Team_GetEvents", url, body))
+				return events;
+			if (isMethod("Event_GetAttendanceList", url, body))
+				return attendanceList;
+			return team;
+		}
+
+		private static boolean isMethod(String method, String url, String body) {
+			String param = "method=" + method + "&";
+			return url.contains(param) || (body != null && body.contains(param));
+		}
+	}
+
+	@Setup
+	public void setUp() throws NoSuchAlgorithmException {
+		client = new RESTClient("public", "private", new FixtureHttpProvider());
+		if (features.equals("observed")) {
+			client.setMetricsRecorder(new CallMetrics());
+			client.addInterceptor(new ICallInterceptor() {
+			});
+		} else if (features.equals("resilient")) {
+			client.setCircuitBreaker(new CircuitBreaker());
+			client.setConcurrencyLimiter(new ConcurrencyLimiter());
+			client.setRetryPolicy(new RetryPolicy());
+		}
+	}
+
+	@Benchmark
+	public APIResponse<Team> teamGet() throws IOException {
+		return client.Team_Get("9f8e7d6c5b4a39281706f5e4d3c2b1a0", 4242);
+	}
+
+	@Benchmark
+	public APIResponse<Event[]> teamGetEvents() throws IOException {
+		return client.Team_GetEvents("9f8e7d6c5b4a39281706f5e4d3c2b1a0", 4242, null, true, "future", null, null, 0, 25);
+	}
+
+	@Benchmark
+	public APIResponse<AttendanceList> eventGetAttendanceList() throws IOException {
+		return client.Event_GetAttendanceList("9f8e7d6c5b4a39281706f5e4d3c2b1a0", 4242, 100042);
+	}
+}
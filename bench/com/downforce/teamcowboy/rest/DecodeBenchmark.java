@@ -0,0 +1,87 @@
+package com.downforce.teamcowboy.rest;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.downforce.teamcowboy.rest.response.AttendanceList;
+import com.downforce.teamcowboy.rest.response.Event;
+import com.downforce.teamcowboy.rest.response.Message;
+import com.downforce.teamcowboy.rest.response.Team;
+
+/**
+ * Measures decoding API responses: the envelope on its own, and large event, message and attendance list bodies,
+ * which also exercise the custom deserializers.
+ * 
+ * @since 0.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+	/** The number of events, messages, or users on the attendance list. */
+	@Param({ "10", "100", "1000" })
+	public int size;
+
+	private RESTClient client;
+	private String events;
+	private String messages;
+	private String attendanceList;
+	private String envelope;
+	private String envelopeBodyFirst;
+
+	@Setup
+	public void setUp() throws NoSuchAlgorithmException {
+		client = new RESTClient("public", "private");
+		events = Fixtures.events(size);
+		messages = Fixtures.messages(size);
+		attendanceList = Fixtures.attendanceList(size);
+		envelope = Fixtures.smallEnvelope();
+		envelopeBodyFirst = Fixtures.smallEnvelopeBodyFirst();
+	}
+
+	/**
+	 * Decodes a small response, so the cost is mostly the envelope.
+	 */
+	@Benchmark
+	public APIResponse<Team> envelope() {
+		return client.decode(envelope, Team.class);
+	}
+
+	/**
+	 * Decodes a small response that sends its body before the success flag, so the body is buffered as a tree first.
+	 */
+	@Benchmark
+	public APIResponse<Team> envelopeBodyFirst() {
+		return client.decode(envelopeBodyFirst, Team.class);
+	}
+
+	@Benchmark
+	public APIResponse<Event[]> events() {
+		return client.decode(events, Event[].class);
+	}
+
+	@Benchmark
+	public APIResponse<Message[]> messages() {
+		return client.decode(messages, Message[].class);
+	}
+
+	@Benchmark
+	public APIResponse<AttendanceList> attendanceList() {
+		return client.decode(attendanceList, AttendanceList.class);
+	}
+}
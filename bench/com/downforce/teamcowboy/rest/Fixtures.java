@@ -0,0 +1,288 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.Random;
+
+/**
+ * Generates API responses shaped like the real ones, for the benchmarks. The same size always gives the same
+ * response, so results are comparable between runs.
+ * 
+ * @since 0.2
+ */
+final class Fixtures {
+	/** The team the single-team fixtures belong to. */
+	static final int DEFAULT_TEAM_ID = 4242;
+	/** The id of the first user on the single-team fixtures' roster. */
+	static final int DEFAULT_FIRST_USER_ID = 300000;
+
+	private static final String[] STATUSES = { "yes", "maybe", "available", "no", "noresponse" };
+	private static final String[] TYPES = { "player", "sub", "coach", "fan" };
+	private static final String[] FIRST_NAMES = { "Alex", "Sam", "Jordan", "Taylor", "Casey", "Morgan", "Riley", "Jamie", "Zo\u00eb", "Ren\u00e9e" };
+	private static final String[] TEAM_NAMES = { "Ballard Bombers", "Fremont Flyers", "Wallingford Wombats", "Georgetown Goats", "Magnolia Mudhens", "Rainier Rockets" };
+	private static final String[] LAST_NAMES = { "Smith", "Nguyen", "Garc\u00eda", "O'Brien", "Kowalski", "Park", "M\u00fcller", "Rossi" };
+
+	private Fixtures() {
+	}
+
+	/**
+	 * A successful <code>Team_GetEvents</code> response with the given number of events, each with RSVPs for a roster
+	 * of 15.
+	 */
+	static String events(int count) {
+		Random random = new Random(count);
+		StringBuilder json = new StringBuilder(count * 4096);
+		json.append("{\"success\":true,\"requestSecs\":0.0734,\"body\":[");
+		for (int i = 0; i < count; ++i) {
+			if (i > 0)
+				json.append(',');
+			event(json, random, 100000 + i, DEFAULT_TEAM_ID, DEFAULT_FIRST_USER_ID, 15);
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * A successful <code>Team_GetMessages</code> response with the given number of messages, each with a few comments.
+	 */
+	static String messages(int count) {
+		Random random = new Random(count);
+		StringBuilder json = new StringBuilder(count * 4096);
+		json.append("{\"success\":true,\"requestSecs\":0.0412,\"body\":[");
+		for (int i = 0; i < count; ++i) {
+			if (i > 0)
+				json.append(',');
+			message(json, random, 200000 + i, DEFAULT_TEAM_ID, DEFAULT_FIRST_USER_ID, 15);
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * A successful <code>Event_GetAttendanceList</code> response for a roster of the given size.
+	 */
+	static String attendanceList(int users) {
+		StringBuilder json = new StringBuilder(users * 1024);
+		json.append("{\"success\":true,\"requestSecs\":0.0518,\"body\":");
+		attendanceList(json, new Random(users), DEFAULT_FIRST_USER_ID, users);
+		return json.append('}').toString();
+	}
+
+	/**
+	 * Appends the body of an attendance list for a roster of users with consecutive ids.
+	 */
+	static void attendanceList(StringBuilder json, Random random, int firstUserId, int users) {
+		String[] userStatus = new String[users];
+		for (int i = 0; i < users; ++i)
+			userStatus[i] = STATUSES[random.nextInt(STATUSES.length)];
+
+		json.append("{\"countsByStatus\":[");
+		for (int s = 0; s < STATUSES.length; ++s) {
+			if (s > 0)
+				json.append(',');
+			int total = 0;
+			int[] byType = new int[TYPES.length];
+			for (int i = 0; i < users; ++i) {
+				if (userStatus[i].equals(STATUSES[s])) {
+					++total;
+					++byType[i % TYPES.length];
+				}
+			}
+			json.append("{\"status\":\"").append(STATUSES[s]).append("\",\"counts\":{\"byGender\":{\"m\":").append(total / 2)
+					.append(",\"f\":").append(total - total / 2).append("},\"byType\":{");
+			for (int t = 0; t < TYPES.length; ++t) {
+				if (t > 0)
+					json.append(',');
+				json.append('"').append(TYPES[t]).append("\":").append(byType[t]);
+			}
+			json.append("},\"total\":").append(total).append("}}");
+		}
+		json.append("],\"meta\":{\"teamMemberTypes\":[");
+		for (int t = 0; t < TYPES.length; ++t) {
+			if (t > 0)
+				json.append(',');
+			json.append("{\"name\":\"").append(TYPES[t]).append("\",\"titleLongSingular\":\"").append(TYPES[t])
+					.append("\",\"titleLongPlural\":\"").append(TYPES[t]).append("s\",\"showTeamMembersOnRoster\":true,\"showTeamMembersOnAttList\":true,\"showTitleOnAttList\":false}");
+		}
+		json.append("],\"genders\":[{\"gender\":\"m\",\"genderDisplay\":\"Male\"},{\"gender\":\"f\",\"genderDisplay\":\"Female\"}],")
+				.append("\"rsvpStatuses\":{\"status\":\"yes\",\"statusDisplay\":\"Yes\"}},\"usersIdsByStatus\":[");
+		for (int s = 0; s < STATUSES.length; ++s) {
+			if (s > 0)
+				json.append(',');
+			json.append("{\"status\":\"").append(STATUSES[s]).append("\",\"userIds\":{\"byGender\":{\"m\":[");
+			appendIds(json, firstUserId, userStatus, STATUSES[s], 0, 2);
+			json.append("],\"f\":[");
+			appendIds(json, firstUserId, userStatus, STATUSES[s], 1, 2);
+			json.append("]},\"byType\":{");
+			for (int t = 0; t < TYPES.length; ++t) {
+				if (t > 0)
+					json.append(',');
+				json.append('"').append(TYPES[t]).append("\":[");
+				appendIds(json, firstUserId, userStatus, STATUSES[s], t, TYPES.length);
+				json.append(']');
+			}
+			json.append("},\"all\":[");
+			appendIds(json, firstUserId, userStatus, STATUSES[s], 0, 1);
+			json.append("]}}");
+		}
+		json.append("],\"users\":[");
+		for (int i = 0; i < users; ++i) {
+			if (i > 0)
+				json.append(',');
+			json.append("{\"user\":");
+			user(json, random, firstUserId + i);
+			json.append(",\"rsvpInfo\":{\"status\":\"").append(userStatus[i]).append("\",\"statusDisplay\":\"").append(userStatus[i])
+					.append("\",\"comments\":\"").append(random.nextBoolean() ? "Running late, save me a spot" : "")
+					.append("\",\"canRSVP\":true,\"hasResponded\":").append(!userStatus[i].equals("noresponse"))
+					.append(",\"addlMale\":0,\"addlFemale\":").append(random.nextInt(2))
+					.append(",\"addlDisplay\":\"\",\"dateCreatedLocal\":\"2012-04-02 18:31:07\",\"dateLastUpdatedLocal\":\"2012-04-03 09:12:44\",")
+					.append("\"dateCreatedUtc\":\"2012-04-03 01:31:07\",\"dateLastUpdatedUtc\":\"2012-04-03 16:12:44\"}}");
+		}
+		json.append("]}");
+	}
+
+	/**
+	 * A successful response with a small body, such as <code>Team_Get</code> returns.
+	 */
+	static String smallEnvelope() {
+		return "{\"success\":true,\"requestSecs\":0.0121,\"body\":{\"teamId\":42,\"name\":\"Ballard Bombers\",\"shortName\":\"Bombers\"}}";
+	}
+
+	/**
+	 * The same response as {@link #smallEnvelope()} with the body sent before the success flag, which makes the
+	 * client buffer it.
+	 */
+	static String smallEnvelopeBodyFirst() {
+		return "{\"body\":{\"teamId\":42,\"name\":\"Ballard Bombers\",\"shortName\":\"Bombers\"},\"requestSecs\":0.0121,\"success\":true}";
+	}
+
+	private static void appendIds(StringBuilder json, int firstUserId, String[] userStatus, String status, int offset, int stride) {
+		boolean first = true;
+		for (int i = offset; i < userStatus.length; i += stride) {
+			if (!userStatus[i].equals(status))
+				continue;
+			if (!first)
+				json.append(',');
+			json.append(firstUserId + i);
+			first = false;
+		}
+	}
+
+	/**
+	 * Appends an event of a team, with an RSVP from each member of a roster of users with consecutive ids.
+	 */
+	static void event(StringBuilder json, Random random, int eventId, int teamId, int firstUserId, int rosterSize) {
+		int day = 1 + random.nextInt(28);
+		int hour = 9 + random.nextInt(12);
+		json.append("{\"eventId\":").append(eventId)
+				.append(",\"team\":{\"teamId\":").append(teamId).append(",\"name\":\"").append(teamName(teamId)).append("\"},\"seasonId\":").append(seasonId(teamId)).append(",\"seasonName\":\"Spring 2012\",")
+				.append("\"eventType\":\"game\",\"eventTypeDisplay\":\"Game\",\"status\":\"active\",\"statusDisplay\":\"Active\",")
+				.append("\"personNounSingular\":\"player\",\"personNounPlural\":\"players\",\"title\":\"vs. Fremont Flyers\",")
+				.append("\"titleFull\":\"Game vs. Fremont Flyers\",\"titleLabel\":\"Opponent\",\"homeAway\":\"home\",")
+				.append("\"result\":{\"scoreEntered\":").append(random.nextBoolean()).append(",\"outcome\":\"W\",\"dhScoreEntered\":false,")
+				.append("\"score1\":").append(random.nextInt(15)).append(",\"score2\":").append(random.nextInt(15))
+				.append(",\"isWin\":true,\"isTie\":false,\"isLoss\":false,\"scoreDisplay\":\"W 7-3\"},\"rsvpInstances\":[");
+		for (int u = 0; u < rosterSize; ++u) {
+			if (u > 0)
+				json.append(',');
+			int userId = firstUserId + u;
+			String status = STATUSES[random.nextInt(STATUSES.length)];
+			json.append("{\"userId\":").append(userId).append(",\"displayName\":\"").append(FIRST_NAMES[userId % FIRST_NAMES.length])
+					.append(' ').append(LAST_NAMES[userId % LAST_NAMES.length]).append("\",\"teamMemberType\":{\"name\":\"player\",\"titleLongSingular\":\"Player\"},")
+					.append("\"rsvpDetails\":{\"allowRSVP\":true,\"allowRsvpRemoval\":true,\"allowExtraPlayers\":false,")
+					.append("\"allowedStatuses\":[\"yes\",\"maybe\",\"available\",\"no\"],\"status\":\"").append(status)
+					.append("\",\"statusDisplay\":\"").append(status).append("\",\"statusDisplayShort\":\"").append(status.charAt(0))
+					.append("\",\"addlMale\":0,\"addlFemale\":0,\"comments\":\"\"}}");
+		}
+		json.append("],\"comments\":\"Bring both jerseys. Warm-up starts 30 minutes before game time.\",")
+				.append("\"oneLineDisplay\":\"Sat, Apr ").append(day).append(" vs. Fremont Flyers @ Lower Woodland Field #").append(1 + random.nextInt(7))
+				.append("\",\"oneLineDisplayShort\":\"vs. Fremont Flyers\",\"maleGenderDisplay\":\"Men\",\"femaleGenderDisplay\":\"Women\",")
+				.append("\"dateTimeInfo\":{\"timezoneId\":\"America/Los_Angeles\",\"startDateLocal\":\"2012-04-").append(pad(day))
+				.append("\",\"startTimeLocal\":\"").append(pad(hour)).append(":00:00\",\"startDateTimeLocal\":\"2012-04-").append(pad(day))
+				.append(' ').append(pad(hour)).append(":00:00\",\"startDateTimeUtc\":\"2012-04-").append(pad(day)).append(' ')
+				.append(pad((hour + 7) % 24)).append(":00:00\",\"startTimeTBD\":false,\"endTimeTBD\":false,\"inPast\":false,\"inFuture\":true},")
+				.append("\"location\":{\"locationId\":").append(700 + random.nextInt(20))
+				.append(",\"name\":\"Lower Woodland Field\",\"surface\":{\"type\":\"turf\",\"typeDisplay\":\"Turf\",\"showType\":true},")
+				.append("\"lights\":{\"lights\":\"yes\",\"lightsDisplay\":\"Yes\",\"hasLights\":\"1\"},\"address\":{\"addressLine1\":\"5851 W Green Lake Way N\",")
+				.append("\"city\":\"Seattle\",\"stateProvince\":\"WA\",\"postalCode\":\"98103\",\"partOfTown\":\"Green Lake\",")
+				.append("\"displaySingleLine\":\"5851 W Green Lake Way N, Seattle, WA 98103\",\"googleMapsUrl\":\"http://maps.google.com/?q=5851+W+Green+Lake+Way+N\"},")
+				.append("\"visibility\":\"public\",\"visibilityDisplay\":\"Public\",\"comments\":\"Park in the north lot\"},")
+				.append("\"userMetaInfo\":{\"isTeamAdmin\":false,\"showOnDashboard\":true},")
+				.append("\"dateCreatedUtc\":\"2012-01-15 20:04:11\",\"dateLastUpdatedUtc\":\"2012-03-30 17:45:02\"}");
+	}
+
+	/**
+	 * Appends a message posted to a team by a member of its roster, with a few comments from other members.
+	 */
+	static void message(StringBuilder json, Random random, int messageId, int teamId, int firstUserId, int rosterSize) {
+		int comments = random.nextInt(5);
+		json.append("{\"messageId\":").append(messageId).append(",\"title\":\"Schedule change for week ").append(1 + random.nextInt(12))
+				.append("\",\"bodyHtml\":\"<p>Hi all,</p><p>The league moved our game to the late slot. Please RSVP again so we know who can make it.</p>\",")
+				.append("\"bodyText\":\"Hi all,\\n\\nThe league moved our game to the late slot. Please RSVP again so we know who can make it.\",")
+				.append("\"isPinned\":").append(random.nextInt(10) == 0).append(",\"allowComments\":true,\"commentCount\":").append(comments)
+				.append(",\"team\":{\"teamId\":").append(teamId).append(",\"name\":\"").append(teamName(teamId)).append("\"},\"postedBy\":");
+		user(json, random, firstUserId + random.nextInt(rosterSize));
+		json.append(",\"comments\":[");
+		for (int c = 0; c < comments; ++c) {
+			if (c > 0)
+				json.append(',');
+			json.append("{\"commentId\":").append(messageId * 10 + c).append(",\"messageId\":").append(messageId)
+					.append(",\"teamId\":").append(teamId).append(",\"timezoneId\":\"America/Los_Angeles\",\"postedBy\":");
+			user(json, random, firstUserId + random.nextInt(rosterSize));
+			json.append(",\"dateCreatedLocal\":\"2012-04-02 18:31:07\",\"dateCreatedUtc\":\"2012-04-03 01:31:07\"}");
+		}
+		json.append("],\"userMetaInfo\":{},\"dateCreatedLocal\":\"2012-04-01 10:00:00\",\"dateLastUpdatedLocal\":\"2012-04-01 10:00:00\",")
+				.append("\"dateCreatedUtc\":\"2012-04-01 17:00:00\",\"dateLastUpdatedUtc\":\"2012-04-01 17:00:00\"}");
+	}
+
+	/**
+	 * Appends a user's profile.
+	 */
+	static void user(StringBuilder json, Random random, int userId) {
+		String first = FIRST_NAMES[userId % FIRST_NAMES.length];
+		String last = LAST_NAMES[userId % LAST_NAMES.length];
+		boolean male = userId % 2 == 0;
+		json.append("{\"userId\":").append(userId).append(",\"firstName\":\"").append(first).append("\",\"lastName\":\"").append(last)
+				.append("\",\"fullName\":\"").append(first).append(' ').append(last).append("\",\"displayName\":\"").append(first).append(' ')
+				.append(last.charAt(0)).append(".\",\"emailAddress1\":\"user").append(userId).append("@example.com\",\"phone1\":\"206-555-")
+				.append(1000 + random.nextInt(9000)).append("\",\"gender\":\"").append(male ? 'm' : 'f').append("\",\"genderDisplay\":\"")
+				.append(male ? "Male" : "Female").append("\",\"shirtNumber\":\"").append(random.nextInt(100)).append("\",\"shirtSize\":\"L\",")
+				.append("\"profilePhoto\":{\"fullUrl\":\"https://example.com/p/").append(userId).append(".jpg\",\"thumbUrl\":\"https://example.com/p/")
+				.append(userId).append("_t.jpg\"},\"dateCreatedUtc\":\"2011-02-11 04:17:55\",\"dateLastSignInUtc\":\"2012-04-01 22:08:13\"}");
+	}
+
+	/**
+	 * Appends a team, managed by the first user on its roster.
+	 */
+	static void team(StringBuilder json, int teamId, int managerUserId) {
+		String name = teamName(teamId);
+		json.append("{\"teamId\":").append(teamId).append(",\"name\":\"").append(name).append("\",\"shortName\":\"")
+				.append(name.substring(name.indexOf(' ') + 1)).append("\",\"type\":{\"name\":\"adult\",\"title\":\"Adult\"},")
+				.append("\"activity\":{\"activityId\":12,\"name\":\"Softball\"},\"timezoneId\":\"America/Los_Angeles\",")
+				.append("\"city\":\"Seattle\",\"stateProvince\":\"Washington\",\"stateProvinceAbbrev\":\"WA\",\"country\":\"United States\",")
+				.append("\"countryIso3\":\"USA\",\"postalCode\":\"98107\",\"locationDisplayShort\":\"Seattle, WA\",")
+				.append("\"locationDisplayLong\":\"Seattle, Washington, United States\",\"managerUser\":{\"userId\":").append(managerUserId)
+				.append(",\"firstName\":\"").append(FIRST_NAMES[managerUserId % FIRST_NAMES.length]).append("\",\"lastName\":\"")
+				.append(LAST_NAMES[managerUserId % LAST_NAMES.length]).append("\",\"emailAddress\":\"user").append(managerUserId)
+				.append("@example.com\"},\"meta\":{\"teamMemberType\":{\"name\":\"player\",\"titleLongSingular\":\"Player\"},")
+				.append("\"isTeamAdmin\":false,\"isHiddenByUser\":false,\"showOnDashboard\":true},")
+				.append("\"dateCreatedUtc\":\"2011-02-11 04:17:55\",\"dateLastUpdatedUtc\":\"2012-03-30 17:45:02\"}");
+	}
+
+	/**
+	 * Appends a team's current season.
+	 */
+	static void season(StringBuilder json, int teamId) {
+		json.append("{\"seasonId\":").append(seasonId(teamId)).append(",\"teamId\":").append(teamId)
+				.append(",\"name\":\"Spring 2012\",\"startDateLocal\":\"2012-04-01\",\"startDateUtc\":\"2012-04-01 07:00:00\",")
+				.append("\"startDateInFuture\":false,\"activity\":{\"activityId\":12,\"name\":\"Softball\"},\"leagueDivision\":\"C\"}");
+	}
+
+	private static String teamName(int teamId) {
+		return TEAM_NAMES[teamId % TEAM_NAMES.length];
+	}
+
+	private static int seasonId(int teamId) {
+		return teamId * 10 + 1;
+	}
+
+	private static String pad(int value) {
+		return value < 10 ? "0" + value : Integer.toString(value);
+	}
+}
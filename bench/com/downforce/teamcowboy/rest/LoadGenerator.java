@@ -0,0 +1,217 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.downforce.teamcowboy.rest.response.UserInfo;
+
+/**
+ * Drives a {@link RESTClient} from many threads at once with a mix of calls like a team site's, and reports the
+ * throughput and latency percentiles of each kind of call. Calls go to the teams and events of a {@link StubServer}.
+ *
+ * <p>Run from the command line, it starts a stub server, loads it through a client with the default
+ * {@link PooledHttpProviderImpl}, and prints a report. The arguments, all optional, are the number of threads, the
+ * number of seconds to run for, the server's mean latency in milliseconds, and its error and 429 rates.</p>
+ *
+ * @since 0.2
+ */
+public class LoadGenerator {
+	public static final int DEFAULT_THREADS = 16;
+	public static final int DEFAULT_SECONDS = 30;
+	public static final int DEFAULT_LATENCY_MILLIS = 20;
+
+	private static final String PUBLIC_API_KEY = "stub-public-key";
+	private static final String PRIVATE_API_KEY = "stub-private-key";
+
+	/**
+	 * One kind of call in the mix, with what was measured of it.
+	 */
+	private abstract class Call {
+		final String method;
+		final int weight;
+		final Histogram latency = new Histogram();
+		final LongAdder errors = new LongAdder();
+		final LongAdder failed = new LongAdder();
+
+		Call(String method, int weight) {
+			this.method = method;
+			this.weight = weight;
+		}
+
+		abstract APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException;
+
+		void run(ThreadLocalRandom random) {
+			int teamId = teamIds[random.nextInt(teamIds.length)];
+			long startedAt = System.nanoTime();
+			try {
+				if (!make(random, teamId).getSuccess())
+					errors.increment();
+			} catch (IOException ioe) {
+				failed.increment();
+			} catch (RuntimeException re) {
+				failed.increment();
+			}
+			long elapsed = System.nanoTime() - startedAt;
+			latency.record(elapsed);
+			allLatency.record(elapsed);
+		}
+	}
+
+	private final RESTClient client;
+	private final StubServer server;
+	private final int[] teamIds;
+	private final List<Call> calls = new ArrayList<Call>();
+	private final Histogram allLatency = new Histogram();
+	private String userToken;
+	private long elapsedNanos;
+
+	/**
+	 * @param client the client to load, which must send its calls to the server
+	 * @param server the server whose teams and events to call for
+	 */
+	public LoadGenerator(RESTClient client, StubServer server) {
+		this.client = client;
+		this.server = server;
+		this.teamIds = server.getTeamIds();
+
+		calls.add(new Call("Team_GetEvents", 30) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.Team_GetEvents(userToken, teamId, null, true, "future", null, null, 0, 10);
+			}
+		});
+		calls.add(new Call("Event_GetAttendanceList", 20) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.Event_GetAttendanceList(userToken, teamId, randomEvent(random, teamId));
+			}
+		});
+		calls.add(new Call("Team_GetMessages", 20) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.Team_GetMessages(userToken, teamId, 0, 10, null, null, null);
+			}
+		});
+		calls.add(new Call("Team_GetRoster", 10) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.Team_GetRoster(userToken, teamId, null, null, null, null);
+			}
+		});
+		calls.add(new Call("User_GetTeams", 10) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.User_GetTeams(userToken, null);
+			}
+		});
+		calls.add(new Call("Event_SaveRSVP", 10) {
+			@Override
+			APIResponse<?> make(ThreadLocalRandom random, int teamId) throws IOException {
+				return client.Event_SaveRSVP(userToken, teamId, randomEvent(random, teamId), random.nextBoolean() ? "yes" : "no", null, null, null, null);
+			}
+		});
+	}
+
+	/**
+	 * Runs the mix from several threads for a while, blocking until it is done. Results add up over runs.
+	 */
+	public void run(int threads, long duration, TimeUnit unit) throws IOException, InterruptedException {
+		if (userToken == null) {
+			APIResponse<UserInfo> auth = client.Auth_GetUserToken("loadtest", "password");
+			if (!auth.getSuccess())
+				throw new IOException("Could not sign in to the stub server: " + auth.getError().getMessage());
+			userToken = auth.getBody().token;
+		}
+
+		int totalWeight = 0;
+		for (Call call : calls)
+			totalWeight += call.weight;
+		final Call[] mix = new Call[totalWeight];
+		int next = 0;
+		for (Call call : calls)
+			for (int i = 0; i < call.weight; ++i)
+				mix[next++] = call;
+
+		final long startedAt = System.nanoTime();
+		final long endAt = startedAt + unit.toNanos(duration);
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i) {
+			workers[i] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.nanoTime() < endAt)
+					mix[random.nextInt(mix.length)].run(random);
+			}, "LoadGenerator-" + i);
+			workers[i].start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		elapsedNanos += System.nanoTime() - startedAt;
+	}
+
+	/**
+	 * Prints the throughput and latency of each kind of call, and of all calls together.
+	 */
+	public void report(PrintStream out) {
+		double seconds = elapsedNanos / 1e9;
+		out.println(String.format(Locale.ROOT, "%-24s %9s %9s %7s %7s %9s %8s %8s %8s %8s %8s", "method", "calls", "ops/s", "errors",
+				"failed", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+		long allCalls = 0;
+		long allErrors = 0;
+		long allFailed = 0;
+		for (Call call : calls) {
+			long count = call.latency.getCount();
+			long errors = call.errors.sum();
+			long failed = call.failed.sum();
+			print(out, call.method, count, seconds, errors, failed, call.latency);
+			allCalls += count;
+			allErrors += errors;
+			allFailed += failed;
+		}
+		print(out, "all", allCalls, seconds, allErrors, allFailed, allLatency);
+		out.println(String.format(Locale.ROOT, "server: %d requests, %d rejected, %d errors and %d throttled injected",
+				server.getRequestCount(), server.getRejectedCount(), server.getErrorCount(), server.getThrottledCount()));
+	}
+
+	private static void print(PrintStream out, String method, long count, double seconds, long errors, long failed, Histogram latency) {
+		out.println(String.format(Locale.ROOT, "%-24s %9d %9.1f %7d %7d %9.2f %8.2f %8.2f %8.2f %8.2f %8.2f", method, count, count / seconds,
+				errors, failed, latency.getMean() / 1e6, latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(90) / 1e6,
+				latency.getValueAtPercentile(99) / 1e6, latency.getValueAtPercentile(99.9) / 1e6, latency.getMax() / 1e6));
+	}
+
+	private int randomEvent(ThreadLocalRandom random, int teamId) {
+		int[] eventIds = server.getEventIds(teamId);
+		return eventIds[random.nextInt(eventIds.length)];
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		int latencyMillis = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LATENCY_MILLIS;
+		double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+		double throttleRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+
+		StubServer server = new StubServer(PUBLIC_API_KEY, PRIVATE_API_KEY);
+		server.setThreads(Math.max(StubServer.DEFAULT_THREADS, threads * 2));
+		server.setLatency(latencyMillis / 2, latencyMillis * 3 / 2, TimeUnit.MILLISECONDS);
+		server.setFailureRates(errorRate, throttleRate);
+		server.start();
+		try {
+			IStreamingHttpProvider transport = new PooledHttpProviderImpl(threads, PooledHttpProviderImpl.DEFAULT_CONNECT_TIMEOUT_MILLIS,
+					PooledHttpProviderImpl.DEFAULT_READ_TIMEOUT_MILLIS);
+			RESTClient client = new RESTClient(PUBLIC_API_KEY, PRIVATE_API_KEY, server.httpProvider(transport));
+			LoadGenerator load = new LoadGenerator(client, server);
+			System.out.println(String.format(Locale.ROOT, "%d threads for %ds against %s, %dms mean latency", threads, seconds,
+					server.getBaseUrl(), latencyMillis));
+			load.run(threads, seconds, TimeUnit.SECONDS);
+			load.report(System.out);
+		} finally {
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.downforce.teamcowboy.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the signed parameter string for a call, and percent-encoding single values.
+ * 
+ * @since 0.2
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SigningBenchmark {
+	private static final String PUBLIC_API_KEY = "a1b2c3d4e5f6a7b8c9d0e1f2a3b4c5d6e7f8a9b0";
+	private static final byte[] PRIVATE_API_KEY = "0f9e8d7c6b5a4f3e2d1c0b9a8f7e6d5c4b3a2f1e".getBytes(StandardCharsets.UTF_8);
+
+	private RequestSigner signer;
+	private RequestParams getEvents;
+	private RequestParams saveMessage;
+	private NonceGenerator nonces;
+	private final StringBuilder out = new StringBuilder(256);
+
+	@Setup
+	public void setUp() throws NoSuchAlgorithmException {
+		signer = new RequestSigner(MessageDigest.getInstance("SHA-1"));
+		nonces = NonceGenerator.forKey(PUBLIC_API_KEY);
+
+		getEvents = new RequestParams(RequestTemplate.TEAM_GET_EVENTS);
+		getEvents.put("userToken", "9f8e7d6c5b4a39281706f5e4d3c2b1a0");
+		getEvents.put("teamId", "4242");
+		getEvents.put("includeRSVPInfo", "true");
+		getEvents.put("filter", "future");
+		getEvents.put("offset", "0");
+		getEvents.put("qty", "25");
+
+		saveMessage = new RequestParams(RequestTemplate.MESSAGE_SAVE);
+		saveMessage.put("userToken", "9f8e7d6c5b4a39281706f5e4d3c2b1a0");
+		saveMessage.put("teamId", "4242");
+		saveMessage.put("title", "Schedule change for Saturday's game");
+		saveMessage.put("body", "Hi all,\n\nThe league moved our game to the 7:30 slot at Lower Woodland #3. Please RSVP again so we know who can make it. Merci, Zo\u00eb");
+		saveMessage.put("isPinned", "false");
+		saveMessage.put("sendNotifications", "true");
+	}
+
+	/**
+	 * Signs a typical GET with short, plain values.
+	 */
+	@Benchmark
+	public String signGet() {
+		return signer.sign(getEvents, PUBLIC_API_KEY, PRIVATE_API_KEY, "1333238400", "8a7b6c5d4e3f2a1b");
+	}
+
+	/**
+	 * Signs a POST whose body has spaces, punctuation and non-ASCII text to encode.
+	 */
+	@Benchmark
+	public String signPost() {
+		return signer.sign(saveMessage, PUBLIC_API_KEY, PRIVATE_API_KEY, "1333238400", "8a7b6c5d4e3f2a1b");
+	}
+
+	/**
+	 * Signs a GET with a fresh nonce, as the client does for each call.
+	 */
+	@Benchmark
+	public String signGetWithNonce() {
+		return signer.sign(getEvents, PUBLIC_API_KEY, PRIVATE_API_KEY, "1333238400", nonces.next());
+	}
+
+	@Benchmark
+	public int encodePlain() {
+		out.setLength(0);
+		RequestSigner.encode("9f8e7d6c5b4a39281706f5e4d3c2b1a0", out);
+		return out.length();
+	}
+
+	@Benchmark
+	public int encodeText() {
+		out.setLength(0);
+		RequestSigner.encode("Running late, save me a spot! Back by 7:30 & bringing the caf\u00e9's coffee", out);
+		return out.length();
+	}
+}
@@ -0,0 +1,704 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the Team Cowboy API, for load testing code built on {@link RESTClient} without touching the
+ * real service. It serves the methods the client calls over plain HTTP on the loopback interface, checks each
+ * request's API key, timestamp, nonce and signature the way the API does, and answers from a generated set of teams,
+ * each with a roster, a season, events and messages.
+ *
+ * <p>Point a client at it with a provider from {@link #httpProvider()}, which sends requests for
+ * {@link RESTClient#ENDPOINT} here instead:</p>
+ *
+ * <pre>
+ * StubServer server = new StubServer("public", "private");
+ * server.start();
+ * RESTClient client = new RESTClient("public", "private", server.httpProvider());
+ * </pre>
+ *
+ * <p>Latency, server errors and throttling can be injected with {@link #setLatency(long, long, TimeUnit)} and
+ * {@link #setFailureRates(double, double)}. Like the API, the server sends errors with an HTTP 200 and describes them
+ * in the envelope, with their HTTP status in <code>httpResponse</code>.</p>
+ *
+ * <p>Data is generated the first time a team is asked for and kept until the server is closed. The same scale always
+ * gives the same data.</p>
+ *
+ * @since 0.2
+ */
+public class StubServer implements Closeable {
+	public static final int DEFAULT_TEAMS = 10;
+	public static final int DEFAULT_ROSTER_SIZE = 20;
+	public static final int DEFAULT_EVENTS_PER_TEAM = 50;
+	public static final int DEFAULT_MESSAGES_PER_TEAM = 50;
+	public static final int DEFAULT_THREADS = 64;
+	public static final long DEFAULT_MAX_CLOCK_SKEW_SECONDS = 300;
+
+	/** The id of the first generated team; the others follow on. */
+	public static final int FIRST_TEAM_ID = 1000;
+	/** The id of the first team's first member; each team's roster follows on from the last. */
+	public static final int FIRST_USER_ID = 300000;
+
+	/** Event and message ids are the team id times this, plus their index within the team. */
+	private static final int IDS_PER_TEAM = 10000;
+	private static final int MAX_TEAMS = 10000;
+	/** How many nonces are remembered before the ones too old to be replayed are forgotten. */
+	private static final int NONCE_PURGE_THRESHOLD = 100000;
+
+	static {
+		//Without this the JDK's server lets Nagle's algorithm hold back small responses for a delayed ACK, which adds
+		//about 40ms to every call. It is read once, when the server is first used.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final String publicApiKey;
+	private final String privateApiKey;
+	private final ConcurrentHashMap<Integer, TeamData> teams = new ConcurrentHashMap<Integer, TeamData>();
+	private final ConcurrentHashMap<String, Long> nonces = new ConcurrentHashMap<String, Long>();
+	private final ThreadLocal<MessageDigest> digest;
+
+	private int teamCount = DEFAULT_TEAMS;
+	private int rosterSize = DEFAULT_ROSTER_SIZE;
+	private int eventsPerTeam = DEFAULT_EVENTS_PER_TEAM;
+	private int messagesPerTeam = DEFAULT_MESSAGES_PER_TEAM;
+	private int threads = DEFAULT_THREADS;
+	private volatile long maxClockSkewSeconds = DEFAULT_MAX_CLOCK_SKEW_SECONDS;
+	private volatile long minLatencyNanos;
+	private volatile long maxLatencyNanos;
+	private volatile double errorRate;
+	private volatile double throttleRate;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * The pre-rendered JSON of one team and everything that belongs to it.
+	 */
+	private static final class TeamData {
+		final int teamId;
+		final int firstUserId;
+		final String team;
+		final String season;
+		final String[] users;
+		final String[] events;
+		final String[] messages;
+
+		TeamData(int teamId, int firstUserId, int rosterSize, int eventCount, int messageCount) {
+			this.teamId = teamId;
+			this.firstUserId = firstUserId;
+			Random random = new Random(teamId);
+			StringBuilder json = new StringBuilder(4096);
+
+			Fixtures.team(json, teamId, firstUserId);
+			team = take(json);
+			Fixtures.season(json, teamId);
+			season = take(json);
+			users = new String[rosterSize];
+			for (int i = 0; i < rosterSize; ++i) {
+				Fixtures.user(json, random, firstUserId + i);
+				users[i] = take(json);
+			}
+			events = new String[eventCount];
+			for (int i = 0; i < eventCount; ++i) {
+				Fixtures.event(json, random, teamId * IDS_PER_TEAM + i, teamId, firstUserId, rosterSize);
+				events[i] = take(json);
+			}
+			messages = new String[messageCount];
+			for (int i = 0; i < messageCount; ++i) {
+				Fixtures.message(json, random, teamId * IDS_PER_TEAM + i, teamId, firstUserId, rosterSize);
+				messages[i] = take(json);
+			}
+		}
+
+		private static String take(StringBuilder json) {
+			String value = json.toString();
+			json.setLength(0);
+			return value;
+		}
+	}
+
+	/**
+	 * Thrown while answering a request to send an API error instead.
+	 */
+	private static final class ErrorResponse extends Exception {
+		private static final long serialVersionUID = 1L;
+		final String errorCode;
+		final int httpResponse;
+
+		ErrorResponse(String errorCode, int httpResponse, String message) {
+			super(message, null, false, false);
+			this.errorCode = errorCode;
+			this.httpResponse = httpResponse;
+		}
+	}
+
+	/**
+	 * @param publicApiKey the public API key clients must call with
+	 * @param privateApiKey the private API key clients must sign with
+	 */
+	public StubServer(String publicApiKey, String privateApiKey) throws NoSuchAlgorithmException {
+		this.publicApiKey = publicApiKey;
+		this.privateApiKey = privateApiKey;
+		final MessageDigest prototype = MessageDigest.getInstance("SHA-1");
+		this.digest = ThreadLocal.withInitial(() -> {
+			try {
+				return (MessageDigest) prototype.clone();
+			} catch (CloneNotSupportedException cnse) {
+				throw new IllegalStateException(cnse);
+			}
+		});
+	}
+
+	/**
+	 * Sets how much data to serve. Must be called before {@link #start()}.
+	 *
+	 * @param teams the number of teams; <code>User_GetTeams</code> answers with all of them, whoever asks
+	 * @param rosterSize the number of members on each team
+	 * @param eventsPerTeam the number of events on each team's schedule
+	 * @param messagesPerTeam the number of messages posted to each team
+	 */
+	public void setScale(int teams, int rosterSize, int eventsPerTeam, int messagesPerTeam) {
+		if (teams < 1 || teams > MAX_TEAMS)
+			throw new IllegalArgumentException("teams must be between 1 and " + MAX_TEAMS);
+		if (rosterSize < 1)
+			throw new IllegalArgumentException("rosterSize must be at least 1");
+		if (eventsPerTeam < 1 || eventsPerTeam > IDS_PER_TEAM || messagesPerTeam < 1 || messagesPerTeam > IDS_PER_TEAM)
+			throw new IllegalArgumentException("eventsPerTeam and messagesPerTeam must be between 1 and " + IDS_PER_TEAM);
+		checkNotStarted();
+		this.teamCount = teams;
+		this.rosterSize = rosterSize;
+		this.eventsPerTeam = eventsPerTeam;
+		this.messagesPerTeam = messagesPerTeam;
+	}
+
+	/**
+	 * Sets the number of threads answering requests. Must be called before {@link #start()}.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		checkNotStarted();
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets how far a request's timestamp may be from the server's clock before it is turned away.
+	 */
+	public void setMaxClockSkew(long skew, TimeUnit unit) {
+		this.maxClockSkewSeconds = unit.toSeconds(skew);
+	}
+
+	/**
+	 * Sets how long the server takes to answer each request, drawn evenly between the two bounds.
+	 */
+	public void setLatency(long min, long max, TimeUnit unit) {
+		if (min < 0 || max < min)
+			throw new IllegalArgumentException("Latency must satisfy 0 <= min <= max");
+		this.minLatencyNanos = unit.toNanos(min);
+		this.maxLatencyNanos = unit.toNanos(max);
+	}
+
+	/**
+	 * Sets the share of correctly signed requests answered with an HTTP 500 error, and the share answered with an HTTP
+	 * 429 as if the caller had been throttled.
+	 */
+	public void setFailureRates(double errorRate, double throttleRate) {
+		if (!(errorRate >= 0 && throttleRate >= 0 && errorRate + throttleRate <= 1))
+			throw new IllegalArgumentException("Failure rates must not be negative and must add up to at most 1");
+		this.errorRate = errorRate;
+		this.throttleRate = throttleRate;
+	}
+
+	/**
+	 * Starts serving on a free port of the loopback interface.
+	 */
+	public synchronized void start() throws IOException {
+		checkNotStarted();
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "StubServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		server.createContext("/v1/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops serving and forgets the generated data.
+	 */
+	@Override
+	public synchronized void close() {
+		if (server == null)
+			return;
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+		teams.clear();
+		nonces.clear();
+	}
+
+	/**
+	 * The port the server is listening on.
+	 */
+	public synchronized int getPort() {
+		if (server == null)
+			throw new IllegalStateException("The server has not been started");
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * The URL that takes the place of <code>http://</code>{@link RESTClient#ENDPOINT}.
+	 */
+	public String getBaseUrl() {
+		return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + getPort() + "/v1/";
+	}
+
+	/**
+	 * The ids of the generated teams, which run on from {@link #FIRST_TEAM_ID}.
+	 */
+	public int[] getTeamIds() {
+		int[] ids = new int[teamCount];
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = FIRST_TEAM_ID + i;
+		return ids;
+	}
+
+	/**
+	 * The ids of a team's events, in date order.
+	 */
+	public int[] getEventIds(int teamId) {
+		int[] ids = new int[eventsPerTeam];
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = teamId * IDS_PER_TEAM + i;
+		return ids;
+	}
+
+	/**
+	 * The number of requests received.
+	 */
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * The number of requests turned away for a bad API key, user token, timestamp, nonce or signature.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * The number of injected HTTP 500 errors.
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * The number of injected HTTP 429 errors.
+	 */
+	public long getThrottledCount() {
+		return throttled.get();
+	}
+
+	/**
+	 * Returns a provider that sends calls to this server over a new {@link PooledHttpProviderImpl}.
+	 */
+	public IStreamingHttpProvider httpProvider() {
+		return httpProvider(new PooledHttpProviderImpl());
+	}
+
+	/**
+	 * Returns a provider that sends calls to this server through another provider.
+	 *
+	 * @param transport the provider to make the HTTP calls with
+	 */
+	public IStreamingHttpProvider httpProvider(final IStreamingHttpProvider transport) {
+		final String baseUrl = getBaseUrl();
+		return new IStreamingHttpProvider() {
+			@Override
+			public String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+				return transport.makeHTTPCall(rewrite(url), body, httpRequestMethod);
+			}
+
+			@Override
+			public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+				return transport.makeHTTPCall(rewrite(url), body, httpRequestMethod, timeoutMillis);
+			}
+
+			@Override
+			public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+				return transport.openHTTPStream(rewrite(url), body, httpRequestMethod);
+			}
+
+			@Override
+			public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+				return transport.openHTTPStream(rewrite(url), body, httpRequestMethod, timeoutMillis);
+			}
+
+			private String rewrite(String url) throws MalformedURLException {
+				int start = url.indexOf(RESTClient.ENDPOINT);
+				if (start < 0)
+					throw new MalformedURLException("Not a Team Cowboy API URL: " + url);
+				return baseUrl + url.substring(start + RESTClient.ENDPOINT.length());
+			}
+		};
+	}
+
+	private void checkNotStarted() {
+		if (server != null)
+			throw new IllegalStateException("The server has already been started");
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		long startedAt = System.nanoTime();
+		requests.incrementAndGet();
+		String body;
+		ErrorResponse error = null;
+		try {
+			String httpMethod = exchange.getRequestMethod();
+			String paramString = "POST".equals(httpMethod) ? read(exchange.getRequestBody()) : exchange.getRequestURI().getRawQuery();
+			TreeMap<String, String> params = parse(paramString);
+			try {
+				verify(httpMethod, params);
+				injectFailure();
+				body = respond(params);
+			} catch (ErrorResponse er) {
+				body = null;
+				error = er;
+			}
+			long latency = minLatencyNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxLatencyNanos - minLatencyNanos));
+			long remaining = latency - (System.nanoTime() - startedAt);
+			if (remaining > 0)
+				TimeUnit.NANOSECONDS.sleep(remaining);
+		} catch (InterruptedException ie) {
+			exchange.close();
+			return;
+		}
+
+		StringBuilder json = new StringBuilder(body != null ? body.length() + 64 : 256);
+		json.append("{\"success\":").append(error == null).append(",\"requestSecs\":")
+				.append(String.format(Locale.ROOT, "%.4f", (System.nanoTime() - startedAt) / 1e9)).append(",\"body\":");
+		if (error == null) {
+			json.append(body);
+		} else {
+			json.append("{\"errorCode\":\"").append(error.errorCode).append("\",\"httpResponse\":").append(error.httpResponse).append(",\"message\":");
+			quote(json, error.getMessage());
+			json.append('}');
+		}
+		byte[] bytes = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(200, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Checks a request's API key, timestamp, signature and nonce, in that order.
+	 */
+	private void verify(String httpMethod, TreeMap<String, String> params) throws ErrorResponse {
+		String method = params.get(RequestTemplate.METHOD);
+		String timestamp = params.get(RequestTemplate.TIMESTAMP);
+		String nonce = params.get(RequestTemplate.NONCE);
+		String sig = params.get("sig");
+		if (method == null || timestamp == null || nonce == null || sig == null)
+			throw rejected("Request.MissingParameter", 400, "The method, timestamp, nonce and sig parameters are required");
+		if (!publicApiKey.equals(params.get(RequestTemplate.API_KEY)))
+			throw rejected("Authentication.InvalidApiKey", 401, "Unknown API key");
+		if (!"json".equals(params.get(RequestTemplate.RESPONSE_TYPE)))
+			throw rejected("Request.InvalidResponseType", 400, "Only the json response type is supported");
+
+		long seconds;
+		try {
+			seconds = Long.parseLong(timestamp);
+		} catch (NumberFormatException nfe) {
+			throw rejected("Request.InvalidTimestamp", 400, "The timestamp is not a number");
+		}
+		long now = System.currentTimeMillis() / 1000;
+		if (Math.abs(now - seconds) > maxClockSkewSeconds)
+			throw rejected("Request.InvalidTimestamp", 401, "The timestamp is too far from the server's clock");
+
+		if (!sig.equals(signature(httpMethod, method, timestamp, nonce, params)))
+			throw rejected("Request.InvalidSignature", 401, "The signature does not match the request");
+
+		if (nonces.putIfAbsent(nonce, seconds) != null)
+			throw rejected("Request.NonceReused", 401, "The nonce has already been used");
+		if (nonces.size() > NONCE_PURGE_THRESHOLD)
+			nonces.values().removeIf(seen -> seen < now - maxClockSkewSeconds);
+	}
+
+	/**
+	 * Computes a request's signature the way the API does: the SHA-1 of the private key, HTTP method, API method,
+	 * timestamp, nonce and the lowercased, sorted and encoded parameters, joined by <code>|</code>. It is worked out
+	 * with the JDK's own encoder and hex formatting rather than the client's, so a mistake there is not mirrored here.
+	 */
+	private String signature(String httpMethod, String method, String timestamp, String nonce, TreeMap<String, String> params) {
+		StringBuilder input = new StringBuilder(256);
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			if ("sig".equals(param.getKey()))
+				continue;
+			if (input.length() > 0)
+				input.append('&');
+			input.append(param.getKey()).append('=').append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8).replace("+", "%20"));
+		}
+		String signed = privateApiKey + "|" + httpMethod + "|" + method + "|" + timestamp + "|" + nonce + "|" + input.toString().toLowerCase(Locale.ROOT);
+		return new BigInteger(1, digest.get().digest(signed.getBytes(StandardCharsets.UTF_8))).toString(16);
+	}
+
+	private ErrorResponse rejected(String errorCode, int httpResponse, String message) {
+		rejected.incrementAndGet();
+		return new ErrorResponse(errorCode, httpResponse, message);
+	}
+
+	private void injectFailure() throws ErrorResponse {
+		double roll = ThreadLocalRandom.current().nextDouble();
+		if (roll < throttleRate) {
+			throttled.incrementAndGet();
+			throw new ErrorResponse("Request.RateLimited", 429, "Too many requests; slow down");
+		}
+		if (roll < throttleRate + errorRate) {
+			errors.incrementAndGet();
+			throw new ErrorResponse("Server.Error", 500, "An unexpected error occurred");
+		}
+	}
+
+	/**
+	 * Answers a verified request.
+	 *
+	 * @return the JSON body of the response
+	 */
+	private String respond(TreeMap<String, String> params) throws ErrorResponse {
+		String method = params.get(RequestTemplate.METHOD);
+		StringBuilder json = new StringBuilder(4096);
+
+		if ("Test_GetRequest".equals(method) || "Test_PostRequest".equals(method)) {
+			quote(json, "Received testParam: " + params.get("testParam"));
+		} else if ("Auth_GetUserToken".equals(method)) {
+			String username = required(params, "username");
+			required(params, "password");
+			int userId = FIRST_USER_ID + Math.floorMod(username.hashCode(), teamCount * rosterSize);
+			json.append("{\"userId\":").append(userId).append(",\"token\":\"stub-").append(userId).append("\"}");
+		} else {
+			int userId = userOf(required(params, "userToken"));
+			respond(method, params, userId, json);
+		}
+		return json.toString();
+	}
+
+	private void respond(String method, TreeMap<String, String> params, int userId, StringBuilder json) throws ErrorResponse {
+		if ("User_Get".equals(method)) {
+			TeamData team = team(FIRST_TEAM_ID + (userId - FIRST_USER_ID) / rosterSize);
+			json.append(team.users[(userId - FIRST_USER_ID) % rosterSize]);
+		} else if ("User_GetTeams".equals(method)) {
+			json.append('[');
+			for (int i = 0; i < teamCount; ++i) {
+				if (i > 0)
+					json.append(',');
+				json.append(team(FIRST_TEAM_ID + i).team);
+			}
+			json.append(']');
+		} else if ("User_GetNextTeamEvent".equals(method)) {
+			json.append(team(optionalInt(params, "teamId", FIRST_TEAM_ID)).events[0]);
+		} else if ("User_GetTeamEvents".equals(method)) {
+			json.append('[');
+			int teamId = optionalInt(params, "teamId", 0);
+			for (int i = 0; i < teamCount; ++i) {
+				if (teamId != 0 && teamId != FIRST_TEAM_ID + i)
+					continue;
+				appendSlice(json, team(FIRST_TEAM_ID + i).events, 0, eventsPerTeam);
+			}
+			json.append(']');
+		} else if ("User_GetTeamMessages".equals(method)) {
+			TeamData team = team(optionalInt(params, "teamId", FIRST_TEAM_ID));
+			json.append('[');
+			appendSlice(json, team.messages, optionalInt(params, "offset", 0), optionalInt(params, "qty", 10));
+			json.append(']');
+		} else if ("Team_Get".equals(method)) {
+			json.append(team(requiredInt(params, "teamId")).team);
+		} else if ("Team_GetSeasons".equals(method)) {
+			json.append('[').append(team(requiredInt(params, "teamId")).season).append(']');
+		} else if ("Team_GetRoster".equals(method)) {
+			//The client decodes the roster as a single user, so answer with the one asked for or the first member.
+			TeamData team = team(requiredInt(params, "teamId"));
+			int member = optionalInt(params, "userId", team.firstUserId) - team.firstUserId;
+			if (member < 0 || member >= rosterSize)
+				throw new ErrorResponse("User.NotFound", 404, "No such user on the team");
+			json.append(team.users[member]);
+		} else if ("Team_GetEvents".equals(method)) {
+			TeamData team = team(requiredInt(params, "teamId"));
+			json.append('[');
+			appendSlice(json, team.events, optionalInt(params, "offset", 0), optionalInt(params, "qty", 10));
+			json.append(']');
+		} else if ("Team_GetMessages".equals(method)) {
+			TeamData team = team(requiredInt(params, "teamId"));
+			json.append('[');
+			appendSlice(json, team.messages, optionalInt(params, "offset", 0), optionalInt(params, "qty", 10));
+			json.append(']');
+		} else if ("Event_Get".equals(method)) {
+			json.append(event(params));
+		} else if ("Event_GetAttendanceList".equals(method)) {
+			event(params);
+			int eventId = requiredInt(params, "eventId");
+			Fixtures.attendanceList(json, new Random(eventId), team(requiredInt(params, "teamId")).firstUserId, rosterSize);
+		} else if ("Event_SaveRSVP".equals(method)) {
+			event(params);
+			required(params, "status");
+			json.append("{\"rsvpSaved\":true,\"statusCode\":\"rsvpSaved\"}");
+		} else if ("Message_Get".equals(method)) {
+			json.append(message(params));
+		} else if ("Message_Save".equals(method)) {
+			TeamData team = team(requiredInt(params, "teamId"));
+			if (params.containsKey("messageId"))
+				json.append(message(params));
+			else
+				Fixtures.message(json, new Random(), team.teamId * IDS_PER_TEAM + messagesPerTeam, team.teamId, team.firstUserId, rosterSize);
+		} else if ("Message_Delete".equals(method) || "MessageComment_Add".equals(method) || "MessageComment_Delete".equals(method)) {
+			message(params);
+			json.append("true");
+		} else {
+			throw new ErrorResponse("Request.InvalidMethod", 404, "Unknown method " + method);
+		}
+	}
+
+	private TeamData team(int teamId) throws ErrorResponse {
+		final int index = teamId - FIRST_TEAM_ID;
+		if (index < 0 || index >= teamCount)
+			throw new ErrorResponse("Team.NotFound", 404, "No such team");
+		TeamData team = teams.get(teamId);
+		if (team == null)
+			team = teams.computeIfAbsent(teamId, id -> new TeamData(id, FIRST_USER_ID + index * rosterSize, rosterSize, eventsPerTeam, messagesPerTeam));
+		return team;
+	}
+
+	private String event(TreeMap<String, String> params) throws ErrorResponse {
+		TeamData team = team(requiredInt(params, "teamId"));
+		int index = requiredInt(params, "eventId") - team.teamId * IDS_PER_TEAM;
+		if (index < 0 || index >= team.events.length)
+			throw new ErrorResponse("Event.NotFound", 404, "No such event on the team");
+		return team.events[index];
+	}
+
+	private String message(TreeMap<String, String> params) throws ErrorResponse {
+		TeamData team = team(requiredInt(params, "teamId"));
+		int index = requiredInt(params, "messageId") - team.teamId * IDS_PER_TEAM;
+		if (index < 0 || index >= team.messages.length)
+			throw new ErrorResponse("Message.NotFound", 404, "No such message on the team");
+		return team.messages[index];
+	}
+
+	private int userOf(String userToken) throws ErrorResponse {
+		if (userToken.startsWith("stub-")) {
+			try {
+				int userId = Integer.parseInt(userToken.substring(5));
+				if (userId >= FIRST_USER_ID && userId < FIRST_USER_ID + teamCount * rosterSize)
+					return userId;
+			} catch (NumberFormatException nfe) {
+				//Falls through to the error below.
+			}
+		}
+		rejected.incrementAndGet();
+		throw new ErrorResponse("Authentication.InvalidUserToken", 401, "Invalid user token");
+	}
+
+	private static void appendSlice(StringBuilder json, String[] items, int offset, int qty) {
+		int end = Math.min(items.length, offset + Math.max(qty, 0));
+		for (int i = Math.max(offset, 0); i < end; ++i) {
+			if (json.charAt(json.length() - 1) != '[')
+				json.append(',');
+			json.append(items[i]);
+		}
+	}
+
+	private static String required(TreeMap<String, String> params, String name) throws ErrorResponse {
+		String value = params.get(name);
+		if (value == null || value.isEmpty())
+			throw new ErrorResponse("Request.MissingParameter", 400, "The " + name + " parameter is required");
+		return value;
+	}
+
+	private static int requiredInt(TreeMap<String, String> params, String name) throws ErrorResponse {
+		try {
+			return Integer.parseInt(required(params, name));
+		} catch (NumberFormatException nfe) {
+			throw new ErrorResponse("Request.InvalidParameter", 400, "The " + name + " parameter must be a number");
+		}
+	}
+
+	private static int optionalInt(TreeMap<String, String> params, String name, int defaultValue) throws ErrorResponse {
+		return params.containsKey(name) ? requiredInt(params, name) : defaultValue;
+	}
+
+	private static void quote(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		json.append('"');
+	}
+
+	private static TreeMap<String, String> parse(String paramString) throws UnsupportedEncodingException {
+		TreeMap<String, String> params = new TreeMap<String, String>();
+		if (paramString == null)
+			return params;
+		for (String pair : paramString.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0)
+				params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+		}
+		return params;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = in.read(buffer)) > 0)
+			out.write(buffer, 0, length);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
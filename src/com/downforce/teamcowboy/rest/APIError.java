@@ -1,5 +1,8 @@
 package com.downforce.teamcowboy.rest;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Represents an error result from an API call.
  * 
@@ -7,6 +10,15 @@ package com.downforce.teamcowboy.rest;
  * @since 0.1
  */
 public class APIError {
+	/** The error code used when a call missed its deadline on the client. */
+	public static final String CLIENT_TIMEOUT_ERROR_CODE = "Client.Timeout";
+	/** The error code used when a call failed on the client before the API answered. */
+	public static final String CLIENT_TRANSPORT_ERROR_CODE = "Client.Transport";
+	/** The error code used when a call was turned away by a client-side limit without being sent. */
+	public static final String CLIENT_THROTTLED_ERROR_CODE = "Client.Throttled";
+	/** The error code used when a call was failed fast by an open circuit breaker without being sent. */
+	public static final String CLIENT_CIRCUIT_OPEN_ERROR_CODE = "Client.CircuitOpen";
+
 	private String errorCode;
 	private int httpResponse;
 	private String message;
@@ -37,4 +49,21 @@ public class APIError {
 	public String getMessage() {
 		return message;
 	}
+
+	/**
+	 * Describes a failure that happened on the client, such as a timeout or an {@link java.io.IOException}, as an error
+	 * with an HTTP response of 0. Errors carried by an {@link APIException} are returned as they are.
+	 */
+	static APIError fromClientFailure(Throwable failure) {
+		Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+		if (cause instanceof TimeoutException || cause instanceof DeadlineExceededException)
+			return new APIError(CLIENT_TIMEOUT_ERROR_CODE, 0, "The call did not complete in time");
+		if (cause instanceof CircuitOpenException)
+			return new APIError(CLIENT_CIRCUIT_OPEN_ERROR_CODE, 0, cause.getMessage());
+		if (cause instanceof LimitExceededException)
+			return new APIError(CLIENT_THROTTLED_ERROR_CODE, 0, cause.getMessage());
+		if (cause instanceof APIException && ((APIException) cause).getError() != null)
+			return ((APIException) cause).getError();
+		return new APIError(CLIENT_TRANSPORT_ERROR_CODE, 0, String.valueOf(cause));
+	}
 }
@@ -0,0 +1,27 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the higher-level helpers built on the clients when the API answers a call with an error rather than a
+ * result. The plain client methods report these through {@link APIResponse#getError()} instead.
+ * 
+ * @since 0.2
+ */
+public class APIException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final APIError error;
+
+	public APIException(APIError error) {
+		super(error == null ? "API call failed" : error.getErrorCode() + " (" + error.getHttpResponse() + "): " + error.getMessage());
+		this.error = error;
+	}
+
+	/**
+	 * The error returned by the API.
+	 */
+	public APIError getError() {
+		return error;
+	}
+}
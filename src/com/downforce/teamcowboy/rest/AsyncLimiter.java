@@ -0,0 +1,77 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many asynchronous tasks run at once without parking any thread: tasks over the limit are queued and
+ * started as earlier ones complete.
+ * 
+ * @since 0.2
+ */
+final class AsyncLimiter {
+	private final Semaphore permits;
+	private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+	/** Requests to run {@link #dispatch()}, so only one thread drains the queue and a drain never recurses. */
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+	AsyncLimiter(int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("limit must be at least 1");
+		this.permits = new Semaphore(limit);
+	}
+
+	/**
+	 * Starts a task once there is room for it.
+	 * 
+	 * @param task starts the task and returns a future for its result
+	 * @return a future for the task's result
+	 */
+	<T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> task) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		waiting.add(() -> {
+			CompletableFuture<T> started;
+			try {
+				started = task.get();
+			} catch (RuntimeException re) {
+				started = new CompletableFuture<T>();
+				started.completeExceptionally(re);
+			}
+			started.whenComplete((value, failure) -> {
+				permits.release();
+				if (failure != null)
+					result.completeExceptionally(failure);
+				else
+					result.complete(value);
+				dispatch();
+			});
+		});
+		dispatch();
+		return result;
+	}
+
+	/**
+	 * Starts queued tasks for as long as there is room. A task that completes as soon as it is started, such as a call
+	 * failing fast or served from the cache, asks for another dispatch from within this one; that request is picked up by
+	 * the loop already running rather than by a nested one.
+	 */
+	private void dispatch() {
+		if (dispatchRequests.getAndIncrement() != 0)
+			return;
+		int requests = 1;
+		do {
+			while (!waiting.isEmpty() && permits.tryAcquire()) {
+				Runnable next = waiting.poll();
+				if (next == null) {
+					permits.release();
+					continue;
+				}
+				next.run();
+			}
+			requests = dispatchRequests.addAndGet(-requests);
+		} while (requests != 0);
+	}
+}
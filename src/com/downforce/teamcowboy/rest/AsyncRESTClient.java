@@ -0,0 +1,418 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.downforce.teamcowboy.rest.response.*;
+
+/**
+ * A non-blocking REST Client to communicate with Team Cowboy. Every method of {@link RESTClient} has a counterpart here
+ * that returns a {@link CompletableFuture} instead of blocking the calling thread. Failures, including transport
+ * {@link IOException}s, complete the future exceptionally.
+ * 
+ * <p>Requests are sent through an {@link IAsyncHttpProvider}. Each is signed just before it is sent, once any
+ * {@link PriorityScheduler} and {@link ConcurrencyLimiter} have let it through: on the calling thread if they do so at
+ * once, otherwise on the thread that freed its place. Responses are decoded, and a {@link RetryPolicy}'s retries and
+ * hedges sent, on the executor given to the constructor, which may be a virtual-thread executor. Cancelling a returned
+ * future aborts the request if the provider supports it.</p>
+ * 
+ * @since 0.2
+ */
+public class AsyncRESTClient {
+    private final RESTClient _client;
+    private final IAsyncHttpProvider _httpProvider;
+    private final Executor _executor;
+
+    /**
+     * @param publicApiKey your Team Cowboy public API key
+     * @param privateApiKey your Team Cowboy private API key
+     * @throws NoSuchAlgorithmException if SHA-1 is not supported by the runtime
+     * @throws IllegalArgumentException if the public API key is null
+     */
+    public AsyncRESTClient(String publicApiKey, String privateApiKey) throws NoSuchAlgorithmException {
+        this(publicApiKey, privateApiKey, new PooledHttpProviderImpl(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor that allows for a custom HTTP provider and executor.
+     * 
+     * @param publicApiKey your Team Cowboy public API key
+     * @param privateApiKey your Team Cowboy private API key
+     * @param httpProvider the IAsyncHttpProvider for the client to use
+     * @param executor the executor to decode responses on
+     * @throws NoSuchAlgorithmException if SHA-1 is not supported by the runtime
+     * @throws IllegalArgumentException if the public API key is null
+     */
+    public AsyncRESTClient(String publicApiKey, String privateApiKey, IAsyncHttpProvider httpProvider, Executor executor) throws NoSuchAlgorithmException {
+        this(new RESTClient(publicApiKey, privateApiKey, blockingProvider(httpProvider)), httpProvider, executor);
+    }
+
+    /**
+     * Constructor that shares the keys and configuration of an existing blocking client.
+     * 
+     * @param client the blocking client to share configuration with
+     * @param httpProvider the IAsyncHttpProvider for the client to use
+     * @param executor the executor to decode responses on
+     */
+    public AsyncRESTClient(RESTClient client, IAsyncHttpProvider httpProvider, Executor executor) {
+        _client = client;
+        _httpProvider = httpProvider;
+        _executor = executor;
+    }
+
+    /**
+     * Returns a client whose calls must complete by the given deadline. See {@link RESTClient#withDeadline(Deadline)}.
+     * A future that misses the deadline fails with a {@link java.util.concurrent.TimeoutException}, and the request in
+     * flight is aborted, as it is when the future is cancelled.
+     * 
+     * @param deadline the deadline for the calls, or null for none
+     * @return a client bound to the deadline
+     */
+    public AsyncRESTClient withDeadline(Deadline deadline) {
+        return new AsyncRESTClient(_client.withDeadline(deadline), _httpProvider, _executor);
+    }
+
+    /**
+     * Returns a client whose calls are scheduled in the given lane. See
+     * {@link RESTClient#withPriority(PriorityScheduler.Lane)}.
+     * 
+     * @param lane the lane for the calls
+     * @return a client bound to the lane
+     */
+    public AsyncRESTClient withPriority(PriorityScheduler.Lane lane) {
+        return new AsyncRESTClient(_client.withPriority(lane), _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Auth_GetUserToken(String, String)}.
+     */
+    public CompletableFuture<APIResponse<UserInfo>> Auth_GetUserToken(String username, String password) {
+        RequestParams params = RequestTemplate.AUTH_GET_USER_TOKEN.newParams();
+        params.put("username", username);
+        params.put("password", password);
+        return _client.callAsync(params, UserInfo.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Event_Get(String, int, int, boolean)}.
+     */
+    public CompletableFuture<APIResponse<Event>> Event_Get(String userToken, int teamId, int eventId, boolean includeRSVPInfo) {
+        RequestParams params = RequestTemplate.EVENT_GET.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("eventId", eventId+"");
+        params.put("includeRSVPInfo", includeRSVPInfo+"");
+        return _client.callAsync(params, Event.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Event_GetAttendanceList(String, int, int)}.
+     */
+    public CompletableFuture<APIResponse<AttendanceList>> Event_GetAttendanceList(String userToken, int teamId, int eventId) {
+        RequestParams params = RequestTemplate.EVENT_GET_ATTENDANCE_LIST.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("eventId", eventId+"");
+        return _client.callAsync(params, AttendanceList.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Event_SaveRSVP(String, int, int, String, Integer, Integer, String, Integer)}.
+     */
+    public CompletableFuture<APIResponse<SaveRSVPResponse>> Event_SaveRSVP(String userToken, int teamId, int eventId, String status, Integer addlMale, Integer addlFemale, String comments, Integer rsvpAsUserId) {
+        RequestParams params = RequestTemplate.EVENT_SAVE_RSVP.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("eventId", eventId+"");
+        params.put("status", status);
+        if (addlMale != null) params.put("addlMale", addlMale.toString());
+        if (addlFemale != null) params.put("addlFemale", addlFemale.toString());
+        if (comments != null) params.put("comments", comments);
+        if (rsvpAsUserId != null) params.put("rsvpAsUserId", rsvpAsUserId.toString());
+        return _client.callAsync(params, SaveRSVPResponse.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Message_Get(String, int, int, Boolean)}.
+     */
+    public CompletableFuture<APIResponse<Message>> Message_Get(String userToken, int teamId, int messageId, Boolean loadComments) {
+        RequestParams params = RequestTemplate.MESSAGE_GET.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("messageId", messageId+"");
+        if (loadComments != null) params.put("loadComments", loadComments.toString()); 
+        return _client.callAsync(params, Message.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Message_Delete(String, int, int)}.
+     */
+    public CompletableFuture<APIResponse<Boolean>> Message_Delete(String userToken, int teamId, int messageId) {
+        RequestParams params = RequestTemplate.MESSAGE_DELETE.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("messageId", messageId+"");
+        return _client.callAsync(params, Boolean.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Message_Save(String, int, Integer, String, String, Boolean, Boolean, Boolean, Boolean)}.
+     */
+    public CompletableFuture<APIResponse<Message>> Message_Save(String userToken, int teamId, Integer messageId, String title, String body, Boolean isPinned, Boolean sendNotifications, Boolean isHidden, Boolean allowComments) {
+        RequestParams params = RequestTemplate.MESSAGE_SAVE.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        if (messageId != null) params.put("messageId", messageId.toString());
+        params.put("title", title);
+        params.put("body", body);
+        if (isPinned != null) params.put("isPinned", isPinned.toString());
+        if (sendNotifications != null) params.put("sendNotifications", sendNotifications.toString());
+        if (isHidden != null) params.put("isHidden", isHidden.toString());
+        if (allowComments != null) params.put("allowComments", allowComments.toString());
+        return _client.callAsync(params, Message.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#MessageComment_Delete(String, int, int, int)}.
+     */
+    public CompletableFuture<APIResponse<Boolean>> MessageComment_Delete(String userToken, int teamId, int messageId, int commentId) {
+        RequestParams params = RequestTemplate.MESSAGE_COMMENT_DELETE.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("messageId", messageId+"");
+        params.put("commentId", commentId+"");
+        return _client.callAsync(params, Boolean.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#MessageComment_Add(String, int, int, String)}.
+     */
+    public CompletableFuture<APIResponse<Boolean>> MessageComment_Add(String userToken, int teamId, int messageId, String comment) {
+        RequestParams params = RequestTemplate.MESSAGE_COMMENT_ADD.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        params.put("messageId", messageId+"");
+        params.put("comment", comment);
+        return _client.callAsync(params, Boolean.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Team_Get(String, int)}.
+     */
+    public CompletableFuture<APIResponse<Team>> Team_Get(String userToken, int teamId) {
+        RequestParams params = RequestTemplate.TEAM_GET.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        return _client.callAsync(params, Team.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Team_GetEvents(String, int, Integer, Boolean, String, Date, Date, Integer, Integer)}.
+     */
+    public CompletableFuture<APIResponse<Event[]>> Team_GetEvents(String userToken, int teamId, Integer seasonId, Boolean includeRSVPInfo, String filter, Date startDateTime, Date endDateTime, Integer offset, Integer qty) {
+        return Team_GetEvents(userToken, teamId, seasonId, includeRSVPInfo, filter, startDateTime, endDateTime, offset, qty, null);
+    }
+
+    /**
+     * Makes the call, also recording its measurements in the given sample, or in none if it is null.
+     */
+    CompletableFuture<APIResponse<Event[]>> Team_GetEvents(String userToken, int teamId, Integer seasonId, Boolean includeRSVPInfo, String filter, Date startDateTime, Date endDateTime, Integer offset, Integer qty, CallSample sample) {
+        RequestParams params = RequestTemplate.TEAM_GET_EVENTS.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        if (seasonId != null) params.put("seasonId", seasonId.toString());
+        if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
+        if (filter != null) params.put("filter", filter);
+        if (startDateTime != null) params.put("startDateTime", _client.formatDate(startDateTime));
+        if (endDateTime != null) params.put("endDateTime", _client.formatDate(endDateTime));
+        if (offset != null) params.put("offset", offset.toString());
+        if (qty != null) params.put("qty", qty.toString());
+        params.sample = sample;
+        return _client.callAsync(params, Event[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Team_GetMessages(String, int, Integer, Integer, String, String, Integer)}.
+     */
+    public CompletableFuture<APIResponse<Message[]>> Team_GetMessages(String userToken, int teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId) {
+        return Team_GetMessages(userToken, teamId, offset, qty, sortBy, sortDirection, messageId, null);
+    }
+
+    /**
+     * Makes the call, also recording its measurements in the given sample, or in none if it is null.
+     */
+    CompletableFuture<APIResponse<Message[]>> Team_GetMessages(String userToken, int teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId, CallSample sample) {
+        RequestParams params = RequestTemplate.TEAM_GET_MESSAGES.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        if (offset != null) params.put("offset", offset.toString());
+        if (qty != null) params.put("qty", qty.toString());
+        if (sortBy != null) params.put("sortBy", sortBy);
+        if (sortDirection != null) params.put("sortDirection", sortDirection);
+        if (messageId != null) params.put("messageId", messageId.toString());
+        params.sample = sample;
+        return _client.callAsync(params, Message[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Team_GetRoster(String, int, Integer, Boolean, String, String)}.
+     */
+    public CompletableFuture<APIResponse<User>> Team_GetRoster(String userToken, int teamId, Integer userId, Boolean includeInactive, String sortBy, String sortDirection) {
+        RequestParams params = RequestTemplate.TEAM_GET_ROSTER.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        if (userId != null) params.put("userId", userId.toString());
+        if (includeInactive != null) params.put("includeInactive", includeInactive.toString());
+        if (sortBy != null) params.put("sortBy", sortBy);
+        if (sortDirection != null) params.put("sortDirection", sortDirection);
+        return _client.callAsync(params, User.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Team_GetSeasons(String, int)}.
+     */
+    public CompletableFuture<APIResponse<Season[]>> Team_GetSeasons(String userToken, int teamId) {
+        RequestParams params = RequestTemplate.TEAM_GET_SEASONS.newParams();
+        params.put("userToken", userToken);
+        params.put("teamId", teamId+"");
+        return _client.callAsync(params, Season[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Test_GetRequest(String)}.
+     */
+    public CompletableFuture<APIResponse<String>> Test_GetRequest(String testParam) {
+        RequestParams params = RequestTemplate.TEST_GET_REQUEST.newParams();
+        if (testParam != null) params.put("testParam", testParam);
+        return _client.callAsync(params, String.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#Test_PostRequest(String)}.
+     */
+    public CompletableFuture<APIResponse<String>> Test_PostRequest(String testParam) {
+        RequestParams params = RequestTemplate.TEST_POST_REQUEST.newParams();
+        if (testParam != null) params.put("testParam", testParam);
+        return _client.callAsync(params, String.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#User_Get(String)}.
+     */
+    public CompletableFuture<APIResponse<User>> User_Get(String userToken) {
+        RequestParams params = RequestTemplate.USER_GET.newParams();
+        params.put("userToken", userToken);
+        return _client.callAsync(params, User.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#User_GetNextTeamEvent(String, Integer, Boolean, Boolean)}.
+     */
+    public CompletableFuture<APIResponse<Event>> User_GetNextTeamEvent(String userToken, Integer teamId, Boolean dashboardTeamsOnly, Boolean includeRSVPInfo) {
+        RequestParams params = RequestTemplate.USER_GET_NEXT_TEAM_EVENT.newParams();
+        params.put("userToken", userToken);
+        if (teamId != null) params.put("teamId", teamId.toString());
+        if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
+        if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
+        return _client.callAsync(params, Event.class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#User_GetTeamEvents(String, Date, Date, Integer, Boolean, Boolean)}.
+     */
+    public CompletableFuture<APIResponse<Event[]>> User_GetTeamEvents(String userToken, Date startDateTime, Date endDateTime, Integer teamId, Boolean dashboardTeamsOnly, Boolean includeRSVPInfo) {
+        RequestParams params = RequestTemplate.USER_GET_TEAM_EVENTS.newParams();
+        params.put("userToken", userToken);
+        if (startDateTime != null) params.put("startDateTime", _client.formatDate(startDateTime));
+        if (endDateTime != null) params.put("endDateTime", _client.formatDate(endDateTime));
+        if (teamId != null) params.put("teamId", teamId.toString());
+        if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
+        if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
+        return _client.callAsync(params, Event[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#User_GetTeamMessages(String, Integer, Integer, Integer, String, String, Integer)}.
+     */
+    public CompletableFuture<APIResponse<Message[]>> User_GetTeamMessages(String userToken, Integer teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId) {
+        return User_GetTeamMessages(userToken, teamId, offset, qty, sortBy, sortDirection, messageId, null);
+    }
+
+    /**
+     * Makes the call, also recording its measurements in the given sample, or in none if it is null.
+     */
+    CompletableFuture<APIResponse<Message[]>> User_GetTeamMessages(String userToken, Integer teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId, CallSample sample) {
+        RequestParams params = RequestTemplate.USER_GET_TEAM_MESSAGES.newParams();
+        params.put("userToken", userToken);
+        if (teamId != null) params.put("teamId", teamId.toString());
+        if (offset != null) params.put("offset", offset.toString());
+        if (qty != null) params.put("qty", qty.toString());
+        if (sortBy != null) params.put("sortBy", sortBy);
+        if (sortDirection != null) params.put("sortDirection", sortDirection);
+        if (messageId != null) params.put("messageId", messageId.toString());
+        params.sample = sample;
+        return _client.callAsync(params, Message[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Asynchronous version of {@link RESTClient#User_GetTeams(String, Boolean)}.
+     */
+    public CompletableFuture<APIResponse<Team[]>> User_GetTeams(String userToken, Boolean dashboardTeamsOnly) {
+        RequestParams params = RequestTemplate.USER_GET_TEAMS.newParams();
+        params.put("userToken", userToken);
+        if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
+        return _client.callAsync(params, Team[].class, _httpProvider, _executor);
+    }
+
+    /**
+     * Lazily iterates over every event returned by {@link #Team_GetEvents(String, int, Integer, Boolean, String, Date, Date, Integer, Integer)},
+     * fetching the following pages in the background. See {@link PagedIterator}.
+     */
+    public PagedIterator<Event> Team_GetEventsPaged(final String userToken, final int teamId, final Integer seasonId, final Boolean includeRSVPInfo, final String filter, final Date startDateTime, final Date endDateTime) {
+        return new PagedIterator<Event>(RequestTemplate.TEAM_GET_EVENTS, (offset, qty, sample) -> Team_GetEvents(userToken, teamId, seasonId, includeRSVPInfo, filter, startDateTime, endDateTime, offset, qty, sample));
+    }
+
+    /**
+     * Lazily iterates over every message returned by {@link #Team_GetMessages(String, int, Integer, Integer, String, String, Integer)},
+     * fetching the following pages in the background. See {@link PagedIterator}.
+     */
+    public PagedIterator<Message> Team_GetMessagesPaged(final String userToken, final int teamId, final String sortBy, final String sortDirection) {
+        return new PagedIterator<Message>(RequestTemplate.TEAM_GET_MESSAGES, (offset, qty, sample) -> Team_GetMessages(userToken, teamId, offset, qty, sortBy, sortDirection, null, sample));
+    }
+
+    /**
+     * Lazily iterates over every message returned by {@link #User_GetTeamMessages(String, Integer, Integer, Integer, String, String, Integer)},
+     * fetching the following pages in the background. See {@link PagedIterator}.
+     */
+    public PagedIterator<Message> User_GetTeamMessagesPaged(final String userToken, final Integer teamId, final String sortBy, final String sortDirection) {
+        return new PagedIterator<Message>(RequestTemplate.USER_GET_TEAM_MESSAGES, (offset, qty, sample) -> User_GetTeamMessages(userToken, teamId, offset, qty, sortBy, sortDirection, null, sample));
+    }
+
+    /**
+     * Returns a blocking view of an asynchronous provider for the underlying {@link RESTClient}.
+     */
+    private static IHttpProvider blockingProvider(final IAsyncHttpProvider httpProvider) {
+        if (httpProvider instanceof IHttpProvider)
+            return (IHttpProvider) httpProvider;
+
+        return new IHttpProvider() {
+            public String makeHTTPCall(String url, String body, String httpRequestMethod) throws IOException {
+                try {
+                    return httpProvider.makeHTTPCallAsync(url, body, httpRequestMethod).get();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ie);
+                } catch (ExecutionException ee) {
+                    if (ee.getCause() instanceof IOException)
+                        throw (IOException) ee.getCause();
+                    throw new IOException(ee.getCause());
+                }
+            }
+        };
+    }
+}
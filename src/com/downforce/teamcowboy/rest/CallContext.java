@@ -0,0 +1,56 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+/**
+ * Per-call state for an asynchronous call: its deadline, if any, and the transport requests sent for it, so that
+ * cancelling the call or letting its deadline pass aborts whatever is still in flight.
+ * 
+ * @since 0.2
+ */
+final class CallContext {
+	final Deadline deadline;
+	/** The context of the whole call, if this is one of several attempts at it, or null. */
+	private final CallContext call;
+	private final ConcurrentLinkedQueue<Future<?>> inFlight = new ConcurrentLinkedQueue<Future<?>>();
+	private volatile boolean cancelled;
+
+	CallContext(Deadline deadline) {
+		this(deadline, null);
+	}
+
+	private CallContext(Deadline deadline, CallContext call) {
+		this.deadline = deadline;
+		this.call = call;
+	}
+
+	/**
+	 * Returns the context for one of several attempts at the call sent side by side, which can be cancelled without
+	 * the others and is cancelled along with the call.
+	 */
+	CallContext forAttempt() {
+		return new CallContext(deadline, this);
+	}
+
+	/**
+	 * Tracks a transport request, cancelling it straight away if the call already has been.
+	 */
+	void register(Future<?> request) {
+		if (call != null)
+			call.register(request);
+		inFlight.add(request);
+		if (cancelled)
+			request.cancel(true);
+	}
+
+	/**
+	 * Cancels every transport request sent for the call, or for the attempt.
+	 */
+	void cancel() {
+		cancelled = true;
+		Future<?> request;
+		while ((request = inFlight.poll()) != null)
+			request.cancel(true);
+	}
+}
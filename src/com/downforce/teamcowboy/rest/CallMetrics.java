@@ -0,0 +1,176 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The built-in {@link IMetricsRecorder}: keeps latency histograms and counters for each API method. Install it with
+ * {@link RESTClient#setMetricsRecorder(IMetricsRecorder)}, then read the figures for a method with
+ * {@link #getMethodMetrics(String)}, or poll {@link #getAllMethodMetrics()} to export them.
+ * 
+ * <pre>
+ * CallMetrics metrics = new CallMetrics();
+ * client.setMetricsRecorder(metrics);
+ * ...
+ * Histogram wall = metrics.getMethodMetrics("Team_GetEvents").getWallTime();
+ * long p99 = wall.getValueAtPercentile(99);
+ * </pre>
+ * 
+ * @since 0.2
+ */
+public class CallMetrics implements IMetricsRecorder {
+	/**
+	 * The figures for one API method. Latencies are in nanoseconds.
+	 */
+	public static final class MethodMetrics {
+		private final Histogram wallTime = new Histogram();
+		private final Histogram signTime = new Histogram();
+		private final Histogram timeToFirstByte = new Histogram();
+		private final Histogram transportTime = new Histogram();
+		private final Histogram parseTime = new Histogram();
+		private final LongAdder requestBytes = new LongAdder();
+		private final LongAdder responseBytes = new LongAdder();
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder successes = new LongAdder();
+		private final LongAdder attempts = new LongAdder();
+		private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+		void record(CallSample sample) {
+			calls.increment();
+			attempts.add(sample.getAttempts());
+			wallTime.record(sample.getWallNanos());
+			signTime.record(sample.getSignNanos());
+			timeToFirstByte.record(sample.getTimeToFirstByteNanos());
+			transportTime.record(sample.getTransportNanos());
+			parseTime.record(sample.getParseNanos());
+			if (sample.getRequestBytes() > 0)
+				requestBytes.add(sample.getRequestBytes());
+			if (sample.getResponseBytes() > 0)
+				responseBytes.add(sample.getResponseBytes());
+			if (sample.isSuccess()) {
+				successes.increment();
+			} else {
+				String code = sample.getErrorCode() != null ? sample.getErrorCode() : "";
+				LongAdder count = errors.get(code);
+				if (count == null)
+					count = errors.computeIfAbsent(code, key -> new LongAdder());
+				count.increment();
+			}
+		}
+
+		/**
+		 * Time from a call being made to it completing.
+		 */
+		public Histogram getWallTime() {
+			return wallTime;
+		}
+
+		/**
+		 * Time taken to sign requests.
+		 */
+		public Histogram getSignTime() {
+			return signTime;
+		}
+
+		/**
+		 * Time from sending a request to the response starting to arrive, for providers that stream responses.
+		 */
+		public Histogram getTimeToFirstByte() {
+			return timeToFirstByte;
+		}
+
+		/**
+		 * Time from sending a request to the whole response having arrived.
+		 */
+		public Histogram getTransportTime() {
+			return transportTime;
+		}
+
+		/**
+		 * Time taken to decode responses.
+		 */
+		public Histogram getParseTime() {
+			return parseTime;
+		}
+
+		/**
+		 * The total length of the requests sent.
+		 */
+		public long getRequestBytes() {
+			return requestBytes.sum();
+		}
+
+		/**
+		 * The total length of the responses received.
+		 */
+		public long getResponseBytes() {
+			return responseBytes.sum();
+		}
+
+		/**
+		 * The number of calls made.
+		 */
+		public long getCallCount() {
+			return calls.sum();
+		}
+
+		/**
+		 * The number of requests sent, counting retries and hedges but not calls answered from the cache.
+		 */
+		public long getAttemptCount() {
+			return attempts.sum();
+		}
+
+		/**
+		 * The number of calls that completed with a successful response.
+		 */
+		public long getSuccessCount() {
+			return successes.sum();
+		}
+
+		/**
+		 * The number of failed calls by error code. Calls that failed on the client are counted under the
+		 * <code>APIError.CLIENT_*</code> codes, and failed responses without an error code under the empty string.
+		 */
+		public Map<String, Long> getErrorCounts() {
+			TreeMap<String, Long> counts = new TreeMap<String, Long>();
+			for (Map.Entry<String, LongAdder> entry : errors.entrySet())
+				counts.put(entry.getKey(), entry.getValue().sum());
+			return counts;
+		}
+	}
+
+	private final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+
+	@Override
+	public void record(CallSample sample) {
+		MethodMetrics metrics = methods.get(sample.getMethod());
+		if (metrics == null)
+			metrics = methods.computeIfAbsent(sample.getMethod(), method -> new MethodMetrics());
+		metrics.record(sample);
+	}
+
+	/**
+	 * The figures for a method, or null if it has not been called.
+	 */
+	public MethodMetrics getMethodMetrics(String method) {
+		return methods.get(method);
+	}
+
+	/**
+	 * The figures for every method called so far, by method name.
+	 */
+	public Map<String, MethodMetrics> getAllMethodMetrics() {
+		return Collections.unmodifiableMap(new TreeMap<String, MethodMetrics>(methods));
+	}
+
+	/**
+	 * Forgets every figure recorded so far.
+	 */
+	public void reset() {
+		methods.clear();
+	}
+}
@@ -0,0 +1,261 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The measurements of one call, passed to an {@link IMetricsRecorder} once the call completes. Durations are in
+ * nanoseconds. The signing, transport and parse measurements are those of the last attempt, or of the attempt that
+ * answered a hedged call; any that were not taken, such as for a call answered from the {@link ResponseCache}, are -1.
+ * 
+ * <p>When the provider streams the response, time to first byte runs until the response headers have arrived, and the
+ * transport time runs until the body has been read. The body is read as it is parsed, so the two overlap. When the
+ * provider hands back the whole body at once, time to first byte is not known.</p>
+ * 
+ * @since 0.2
+ */
+public final class CallSample {
+	private final String method;
+	private final HttpVerb httpVerb;
+	private final long startedAt = System.nanoTime();
+	private long mark;
+	private long sentAt;
+	private long parseStartedAt;
+
+	/** Shared with the records of the call's hedged attempts, which may be sent at the same time. */
+	private final AtomicInteger attempts;
+	private long wallNanos = -1;
+	private long signNanos = -1;
+	private long timeToFirstByteNanos = -1;
+	private long transportNanos = -1;
+	private long parseNanos = -1;
+	private long requestBytes = -1;
+	private long responseBytes = -1;
+	private boolean success;
+	private int httpStatus;
+	private String errorCode;
+
+	CallSample(RequestTemplate template) {
+		this.method = template.method;
+		this.httpVerb = template.httpVerb;
+		this.attempts = new AtomicInteger();
+	}
+
+	private CallSample(CallSample call) {
+		this.method = call.method;
+		this.httpVerb = call.httpVerb;
+		this.attempts = call.attempts;
+	}
+
+	/**
+	 * Returns a record of its own for one of several attempts at a call sent side by side, whose requests still count
+	 * towards the call's attempts.
+	 *
+	 * @param call the call's sample, or null if it is not being measured
+	 */
+	static CallSample forAttempt(CallSample call) {
+		return call != null ? new CallSample(call) : null;
+	}
+
+	/**
+	 * The name of the API method.
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * The HTTP verb the method is called with, for recorders that tag their metrics by it.
+	 */
+	public HttpVerb getHttpVerb() {
+		return httpVerb;
+	}
+
+	/**
+	 * The time from the call being made to it completing, including any time spent in interceptors, waiting for the
+	 * limiters and retrying.
+	 */
+	public long getWallNanos() {
+		return wallNanos;
+	}
+
+	/**
+	 * The time taken to sign the request.
+	 */
+	public long getSignNanos() {
+		return signNanos;
+	}
+
+	/**
+	 * The time from sending the request to the response starting to arrive.
+	 */
+	public long getTimeToFirstByteNanos() {
+		return timeToFirstByteNanos;
+	}
+
+	/**
+	 * The time from sending the request to the whole response having arrived.
+	 */
+	public long getTransportNanos() {
+		return transportNanos;
+	}
+
+	/**
+	 * The time taken to decode the response.
+	 */
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	/**
+	 * The length of the request URL and body.
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * The length of the response body, UTF-8 encoded.
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * The number of requests sent for the call, counting retries and hedges. Zero if the call was answered without
+	 * sending one.
+	 */
+	public int getAttempts() {
+		return attempts.get();
+	}
+
+	/**
+	 * Whether the call completed with a successful response.
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * The HTTP status of the error response the call failed with, or 0 if it succeeded or failed on the client.
+	 */
+	public int getHttpStatus() {
+		return httpStatus;
+	}
+
+	/**
+	 * The error code the call failed with: the API's, or one of the <code>APIError.CLIENT_*</code> codes if it failed on
+	 * the client. Null if the call succeeded.
+	 */
+	public String getErrorCode() {
+		return errorCode;
+	}
+
+	void signing() {
+		attempts.incrementAndGet();
+		mark = System.nanoTime();
+	}
+
+	void sent(String url, String body) {
+		sentAt = System.nanoTime();
+		signNanos = sentAt - mark;
+		requestBytes = url.length() + (body != null ? body.length() : 0);
+	}
+
+	void firstByte() {
+		timeToFirstByteNanos = System.nanoTime() - sentAt;
+	}
+
+	void received(String response) {
+		transportNanos = System.nanoTime() - sentAt;
+		responseBytes = utf8Length(response);
+	}
+
+	void parsing() {
+		parseStartedAt = System.nanoTime();
+	}
+
+	void parsed() {
+		parseNanos = System.nanoTime() - parseStartedAt;
+	}
+
+	void complete(APIResponse<?> response, Throwable failure) {
+		wallNanos = System.nanoTime() - startedAt;
+		success = response != null && response.getSuccess();
+		APIError error = failure != null ? APIError.fromClientFailure(failure) : response != null && !success ? response.getError() : null;
+		if (error != null) {
+			errorCode = error.getErrorCode();
+			httpStatus = error.getHttpResponse();
+		}
+	}
+
+	/**
+	 * Takes the measurements of the attempt whose answer the call returns.
+	 */
+	void merge(CallSample attempt) {
+		signNanos = attempt.signNanos;
+		timeToFirstByteNanos = attempt.timeToFirstByteNanos;
+		transportNanos = attempt.transportNanos;
+		parseNanos = attempt.parseNanos;
+		requestBytes = attempt.requestBytes;
+		responseBytes = attempt.responseBytes;
+	}
+
+	/**
+	 * Wraps a streamed response body so that its length and the time it finishes arriving are recorded.
+	 */
+	InputStream counting(InputStream in) {
+		return new FilterInputStream(in) {
+			private long count;
+			private boolean done;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b < 0)
+					finished();
+				else
+					++count;
+				return b;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int n = super.read(buffer, offset, length);
+				if (n < 0)
+					finished();
+				else
+					count += n;
+				return n;
+			}
+
+			@Override
+			public void close() throws IOException {
+				finished();
+				super.close();
+			}
+
+			private void finished() {
+				if (done)
+					return;
+				done = true;
+				transportNanos = System.nanoTime() - sentAt;
+				responseBytes = count;
+			}
+		};
+	}
+
+	private static long utf8Length(String s) {
+		long length = s.length();
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c >= 0x800 && !Character.isSurrogate(c))
+				length += 2;
+			else if (c >= 0x80)
+				++length;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,408 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.downforce.teamcowboy.rest.response.EventTeam;
+import com.downforce.teamcowboy.rest.response.Location;
+import com.downforce.teamcowboy.rest.response.Season;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Saves heap when many responses are kept in memory, by sharing the values that repeat from one event or message to
+ * the next instead of holding a copy of each. Install it with {@link RESTClient#setCanonicalizer(Canonicalizer)}; it
+ * then applies to every response decoded by that client and any {@link AsyncRESTClient} built on it.
+ *
+ * <p>Short strings, such as display names, status codes and time zones, are looked up in a bounded pool and the
+ * pooled copy is kept instead of the one just read. {@link EventTeam}, {@link Location} and {@link Season} objects
+ * whose fields, and the fields of the objects they hold, all equal those of one already seen are replaced by that
+ * one. Each pool is a fixed-size table where a new value takes the place of whatever was in its slot, so values that
+ * keep coming back stay pooled while one-off values pass through without growing it.</p>
+ *
+ * <p>With {@link Scope#CLIENT} values are shared across every response, and with {@link Scope#RESPONSE} only within
+ * one. Either way, a shared object is the same instance wherever it appears, so changing a field of one changes them
+ * all.</p>
+ *
+ * <p>{@link #getBytesSaved()} estimates the memory saved, counting the size of each copy that was dropped for a pooled
+ * one on a 64-bit JVM with compressed references and compact strings. A string that the dropped copy shared with the
+ * pooled one is counted once, by the string pool.</p>
+ *
+ * @since 0.2
+ */
+public class Canonicalizer {
+	public static final int DEFAULT_MAX_STRING_LENGTH = 32;
+	public static final int DEFAULT_STRING_POOL_SIZE = 4096;
+	public static final int DEFAULT_VALUE_POOL_SIZE = 1024;
+
+	public enum Scope {
+		/** Values are shared within a response. */
+		RESPONSE,
+		/** Values are shared across all the responses decoded by the client. */
+		CLIENT
+	}
+
+	private static final Class<?>[] VALUE_TYPES = { EventTeam.class, Location.class, Season.class };
+
+	/**
+	 * The instance fields of a response class and the size of one of its objects, not counting what they refer to.
+	 * Worked out once per class.
+	 */
+	private static final class Shape {
+		final Field[] fields;
+		final long bytes;
+
+		Shape(Class<?> type) {
+			List<Field> fields = new ArrayList<Field>();
+			long bytes = 12;
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers()))
+						continue;
+					field.setAccessible(true);
+					fields.add(field);
+					bytes += fieldBytes(field.getType());
+				}
+			}
+			this.fields = fields.toArray(new Field[fields.size()]);
+			this.bytes = align(bytes);
+		}
+	}
+
+	private static final ClassValue<Shape> SHAPES = new ClassValue<Shape>() {
+		protected Shape computeValue(Class<?> type) {
+			return new Shape(type);
+		}
+	};
+
+	/**
+	 * A pooled object, with the hash of its fields.
+	 */
+	private static final class Value {
+		final Class<?> type;
+		final Object value;
+		final int hash;
+
+		Value(Class<?> type, Object value, int hash) {
+			this.type = type;
+			this.value = value;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The pooled strings and values. Slots are read and written without locking; a lost update only costs a missed
+	 * share.
+	 */
+	private static final class Pool {
+		final String[] strings;
+		final Value[] values;
+
+		Pool(int stringPoolSize, int valuePoolSize) {
+			strings = new String[stringPoolSize];
+			values = new Value[valuePoolSize];
+		}
+
+		void clear() {
+			Arrays.fill(strings, null);
+			Arrays.fill(values, null);
+		}
+	}
+
+	private final Scope scope;
+	private final int maxStringLength;
+	private final int stringPoolSize;
+	private final int valuePoolSize;
+	private final Pool shared;
+	private final ThreadLocal<Pool> perResponse;
+
+	private final LongAdder stringsShared = new LongAdder();
+	private final LongAdder valuesShared = new LongAdder();
+	private final LongAdder bytesSaved = new LongAdder();
+
+	/**
+	 * Creates a canonicalizer that shares values across responses, with the default pool sizes.
+	 */
+	public Canonicalizer() {
+		this(Scope.CLIENT, DEFAULT_MAX_STRING_LENGTH, DEFAULT_STRING_POOL_SIZE, DEFAULT_VALUE_POOL_SIZE);
+	}
+
+	/**
+	 * @param scope whether values are shared within each response or across them
+	 * @param maxStringLength the longest string to pool; longer ones are rarely repeated
+	 * @param stringPoolSize the number of strings the pool holds, rounded up to a power of two
+	 * @param valuePoolSize the number of objects the pool holds, rounded up to a power of two
+	 */
+	public Canonicalizer(Scope scope, int maxStringLength, int stringPoolSize, int valuePoolSize) {
+		if (maxStringLength < 0 || stringPoolSize < 1 || valuePoolSize < 1)
+			throw new IllegalArgumentException("Pool sizes must be at least 1 and maxStringLength must not be negative");
+		this.scope = scope;
+		this.maxStringLength = maxStringLength;
+		this.stringPoolSize = powerOfTwo(stringPoolSize);
+		this.valuePoolSize = powerOfTwo(valuePoolSize);
+		this.shared = scope == Scope.CLIENT ? new Pool(this.stringPoolSize, this.valuePoolSize) : null;
+		this.perResponse = scope == Scope.RESPONSE ? ThreadLocal.withInitial(() -> new Pool(this.stringPoolSize, this.valuePoolSize)) : null;
+	}
+
+	public Scope getScope() {
+		return scope;
+	}
+
+	/**
+	 * The number of strings read that were replaced by a pooled copy.
+	 */
+	public long getStringsShared() {
+		return stringsShared.sum();
+	}
+
+	/**
+	 * The number of objects read that were replaced by a pooled one.
+	 */
+	public long getValuesShared() {
+		return valuesShared.sum();
+	}
+
+	/**
+	 * The estimated number of bytes of the strings and objects that were replaced by pooled ones. Each dropped object
+	 * counts its own size and that of the objects it holds, plus any strings it did not already share with the pooled
+	 * one.
+	 */
+	public long getBytesSaved() {
+		return bytesSaved.sum();
+	}
+
+	/**
+	 * Empties the pools and resets the counts.
+	 */
+	public void reset() {
+		if (shared != null)
+			shared.clear();
+		stringsShared.reset();
+		valuesShared.reset();
+		bytesSaved.reset();
+	}
+
+	/**
+	 * Marks the start of decoding a response on the current thread. With {@link Scope#RESPONSE}, this empties the
+	 * thread's pools.
+	 */
+	void beginResponse() {
+		if (perResponse != null)
+			perResponse.get().clear();
+	}
+
+	private Pool pool() {
+		return shared != null ? shared : perResponse.get();
+	}
+
+	String canonical(String value) {
+		if (value == null || value.length() > maxStringLength)
+			return value;
+		String[] strings = pool().strings;
+		int slot = spread(value.hashCode()) & (strings.length - 1);
+		String pooled = strings[slot];
+		if (pooled != null && pooled.equals(value)) {
+			stringsShared.increment();
+			bytesSaved.add(stringBytes(value));
+			return pooled;
+		}
+		strings[slot] = value;
+		return value;
+	}
+
+	/**
+	 * Returns the pooled object whose fields equal those of the one just read, or pools that one.
+	 */
+	<T> T canonical(Class<T> type, T value) {
+		if (value == null)
+			return null;
+		Value[] values = pool().values;
+		int hash = hash(value);
+		int slot = spread(hash * 31 + type.hashCode()) & (values.length - 1);
+		Value pooled = values[slot];
+		if (pooled != null && pooled.type == type && pooled.hash == hash) {
+			long bytes = bytesIfEqual(pooled.value, value);
+			if (bytes >= 0) {
+				valuesShared.increment();
+				bytesSaved.add(bytes);
+				return type.cast(pooled.value);
+			}
+		}
+		values[slot] = new Value(type, value, hash);
+		return value;
+	}
+
+	/**
+	 * Returns a factory for the adapters that canonicalize values as they are read. It is only registered with a client's
+	 * Gson while a canonicalizer is installed, so decoding without one goes straight to the default adapters.
+	 */
+	static TypeAdapterFactory adapterFactory(final Canonicalizer canonicalizer) {
+		return new TypeAdapterFactory() {
+			@SuppressWarnings("unchecked")
+			public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+				Class<? super T> raw = typeToken.getRawType();
+				if (raw == String.class)
+					return (TypeAdapter<T>) stringAdapter((TypeAdapter<String>) gson.getDelegateAdapter(this, typeToken), canonicalizer);
+				for (Class<?> valueType : VALUE_TYPES) {
+					if (raw == valueType)
+						return valueAdapter((Class<T>) raw, gson.getDelegateAdapter(this, typeToken), canonicalizer);
+				}
+				return null;
+			}
+		};
+	}
+
+	private static TypeAdapter<String> stringAdapter(final TypeAdapter<String> delegate, final Canonicalizer canonicalizer) {
+		return new TypeAdapter<String>() {
+			public String read(JsonReader in) throws IOException {
+				return canonicalizer.canonical(delegate.read(in));
+			}
+
+			public void write(JsonWriter out, String value) throws IOException {
+				delegate.write(out, value);
+			}
+		};
+	}
+
+	private static <T> TypeAdapter<T> valueAdapter(final Class<T> type, final TypeAdapter<T> delegate, final Canonicalizer canonicalizer) {
+		return new TypeAdapter<T>() {
+			public T read(JsonReader in) throws IOException {
+				return canonicalizer.canonical(type, delegate.read(in));
+			}
+
+			public void write(JsonWriter out, T value) throws IOException {
+				delegate.write(out, value);
+			}
+		};
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int powerOfTwo(int size) {
+		return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * Estimates a string's size: the String object and its byte array, one byte per character if every character fits
+	 * in Latin-1 and two otherwise.
+	 */
+	private static long stringBytes(String value) {
+		int bytesPerChar = 1;
+		for (int i = 0; i < value.length(); ++i) {
+			if (value.charAt(i) > 0xFF) {
+				bytesPerChar = 2;
+				break;
+			}
+		}
+		return 24 + align(16 + (long) value.length() * bytesPerChar);
+	}
+
+	/**
+	 * Whether a value is compared as a whole rather than field by field: strings, boxed primitives, enums and anything
+	 * else from the JDK. Response objects hold nothing but these and other response objects.
+	 */
+	private static boolean isLeaf(Class<?> type) {
+		return type.isEnum() || type.isArray() || type.getName().startsWith("java.");
+	}
+
+	/**
+	 * Hashes an object's fields, and those of the response objects it holds.
+	 */
+	private static int hash(Object value) {
+		if (value == null)
+			return 0;
+		if (isLeaf(value.getClass()))
+			return value.hashCode();
+		int hash = 1;
+		try {
+			for (Field field : SHAPES.get(value.getClass()).fields) {
+				Class<?> type = field.getType();
+				long bits;
+				if (type == boolean.class)
+					bits = field.getBoolean(value) ? 1 : 0;
+				else if (type == float.class || type == double.class)
+					bits = Double.doubleToLongBits(field.getDouble(value));
+				else if (type.isPrimitive())
+					bits = field.getLong(value);
+				else
+					bits = hash(field.get(value));
+				hash = hash * 31 + (int) (bits ^ (bits >>> 32));
+			}
+		} catch (IllegalAccessException iae) {
+			throw new IllegalStateException(iae);
+		}
+		return hash;
+	}
+
+	/**
+	 * Compares two objects of the same class field by field. If they are equal, returns the estimated size of the second
+	 * and the objects it holds, leaving out the strings it shares with the first; otherwise returns -1.
+	 */
+	private static long bytesIfEqual(Object pooled, Object value) {
+		Shape shape = SHAPES.get(value.getClass());
+		long bytes = shape.bytes;
+		try {
+			for (Field field : shape.fields) {
+				Class<?> type = field.getType();
+				if (type == boolean.class) {
+					if (field.getBoolean(pooled) != field.getBoolean(value))
+						return -1;
+				} else if (type == float.class || type == double.class) {
+					if (Double.doubleToLongBits(field.getDouble(pooled)) != Double.doubleToLongBits(field.getDouble(value)))
+						return -1;
+				} else if (type.isPrimitive()) {
+					if (field.getLong(pooled) != field.getLong(value))
+						return -1;
+				} else {
+					long referenced = referencedBytesIfEqual(field.get(pooled), field.get(value));
+					if (referenced < 0)
+						return -1;
+					bytes += referenced;
+				}
+			}
+		} catch (IllegalAccessException iae) {
+			throw new IllegalStateException(iae);
+		}
+		return bytes;
+	}
+
+	private static long referencedBytesIfEqual(Object pooled, Object value) {
+		if (pooled == value)
+			return 0;
+		if (pooled == null || value == null || pooled.getClass() != value.getClass())
+			return -1;
+		if (!isLeaf(value.getClass()))
+			return bytesIfEqual(pooled, value);
+		if (!pooled.equals(value))
+			return -1;
+		if (value instanceof String)
+			return stringBytes((String) value);
+		//Boxed primitives are small, and usually cached by the runtime anyway.
+		return 0;
+	}
+
+	private static int fieldBytes(Class<?> type) {
+		if (type == long.class || type == double.class)
+			return 8;
+		if (type == int.class || type == float.class || !type.isPrimitive())
+			return 4;
+		if (type == short.class || type == char.class)
+			return 2;
+		return 1;
+	}
+}
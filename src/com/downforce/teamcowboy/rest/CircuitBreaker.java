@@ -0,0 +1,340 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the client from waiting on an API that is failing. Install it with
+ * {@link RESTClient#setCircuitBreaker(CircuitBreaker)}; it then watches every call made through that client and any
+ * {@link AsyncRESTClient} built on it.
+ *
+ * <p>Each API method has its own circuit, which tracks the outcome of its most recent calls. A call counts as failed
+ * if the transport throws an {@link IOException} or the API answers with an HTTP 429 or 5xx error, and as slow if it
+ * takes longer than the slow call threshold. Once enough calls have been seen and either the failure rate or the slow
+ * call rate reaches its threshold, the circuit opens: calls to the method fail straight away with a
+ * {@link CircuitOpenException}, or are answered from the {@link ResponseCache} if it still holds an expired response
+ * and {@link #setServeStale(boolean)} is on. After the open duration, a few trial calls are let through. If they all
+ * succeed the circuit closes again, and if any fails it opens for another period.</p>
+ *
+ * <p>State changes are reported to {@link Listener}s on the thread whose call caused them.</p>
+ *
+ * @since 0.2
+ */
+public class CircuitBreaker {
+	public static final int DEFAULT_WINDOW_SIZE = 50;
+	public static final int DEFAULT_MIN_CALLS = 20;
+	public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+	public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8;
+	public static final long DEFAULT_SLOW_CALL_MILLIS = 5000;
+	public static final long DEFAULT_OPEN_MILLIS = 30000;
+	public static final int DEFAULT_TRIAL_CALLS = 3;
+
+	public enum State {
+		/** Calls are sent normally. */
+		CLOSED,
+		/** Calls fail fast. */
+		OPEN,
+		/** A few trial calls are sent to see whether the API has recovered. */
+		HALF_OPEN
+	}
+
+	/**
+	 * Told when a method's circuit changes state.
+	 */
+	public interface Listener {
+		void onStateChange(String method, State from, State to);
+	}
+
+	/**
+	 * Leave for one call to go through a circuit.
+	 */
+	static final class Ticket {
+		final Circuit circuit;
+		final long generation;
+		volatile long sentAt = System.nanoTime();
+
+		Ticket(Circuit circuit, long generation) {
+			this.circuit = circuit;
+			this.generation = generation;
+		}
+
+		/**
+		 * Marks the call as sent, once any other client-side limits have let it through, so time spent queueing does not
+		 * make it slow.
+		 */
+		void sent() {
+			sentAt = System.nanoTime();
+		}
+	}
+
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	private final ConcurrentHashMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+	private volatile int minCalls = DEFAULT_MIN_CALLS;
+	private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+	private volatile long slowCallNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_MILLIS);
+	private volatile long openNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_MILLIS);
+	private volatile int trialCalls = DEFAULT_TRIAL_CALLS;
+	private volatile boolean serveStale = true;
+
+	/**
+	 * Sets how many recent calls each circuit tracks, and how many it must have seen before it can open. Only applies to
+	 * methods not yet called.
+	 */
+	public void setWindow(int windowSize, int minCalls) {
+		if (windowSize < 1 || minCalls < 1 || minCalls > windowSize)
+			throw new IllegalArgumentException("Window must satisfy 1 <= minCalls <= windowSize");
+		this.windowSize = windowSize;
+		this.minCalls = minCalls;
+	}
+
+	/**
+	 * Sets the share of failed calls at which a circuit opens.
+	 */
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		this.failureRateThreshold = checkRate(failureRateThreshold);
+	}
+
+	/**
+	 * Sets how long a call may take before it counts as slow, and the share of slow calls at which a circuit opens.
+	 */
+	public void setSlowCallThreshold(long duration, TimeUnit unit, double slowCallRateThreshold) {
+		this.slowCallNanos = unit.toNanos(duration);
+		this.slowCallRateThreshold = checkRate(slowCallRateThreshold);
+	}
+
+	/**
+	 * Sets how long a circuit stays open before trial calls are let through, and how many must succeed for it to close.
+	 */
+	public void setOpenDuration(long duration, TimeUnit unit, int trialCalls) {
+		if (trialCalls < 1)
+			throw new IllegalArgumentException("trialCalls must be at least 1");
+		this.openNanos = unit.toNanos(duration);
+		this.trialCalls = trialCalls;
+	}
+
+	/**
+	 * Sets whether calls to an open circuit are answered from the {@link ResponseCache} when it holds a response for
+	 * them, however old. Defaults to true.
+	 */
+	public void setServeStale(boolean serveStale) {
+		this.serveStale = serveStale;
+	}
+
+	/**
+	 * Whether calls to an open circuit are answered from the cache where possible.
+	 */
+	public boolean isServeStale() {
+		return serveStale;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * The state of a method's circuit.
+	 */
+	public State getState(String method) {
+		Circuit circuit = circuits.get(method);
+		if (circuit == null)
+			return State.CLOSED;
+		synchronized (circuit) {
+			return circuit.state;
+		}
+	}
+
+	/**
+	 * Closes every circuit and forgets the calls seen so far.
+	 */
+	public void reset() {
+		for (Circuit circuit : circuits.values()) {
+			State from;
+			synchronized (circuit) {
+				from = circuit.state;
+				circuit.transition(State.CLOSED, System.nanoTime());
+			}
+			if (from != State.CLOSED)
+				notifyListeners(circuit.method, from, State.CLOSED);
+		}
+	}
+
+	/**
+	 * Asks to make a call.
+	 *
+	 * @throws CircuitOpenException if the method's circuit is open, or half open with all its trial calls in flight
+	 */
+	Ticket acquire(String method) throws CircuitOpenException {
+		Circuit circuit = circuits.get(method);
+		if (circuit == null)
+			circuit = circuits.computeIfAbsent(method, name -> new Circuit(name, windowSize));
+
+		State from = null;
+		Ticket ticket = null;
+		synchronized (circuit) {
+			long now = System.nanoTime();
+			if (circuit.state == State.OPEN && now - circuit.openedAt >= openNanos) {
+				from = State.OPEN;
+				circuit.transition(State.HALF_OPEN, now);
+			}
+			if (circuit.state == State.CLOSED) {
+				ticket = new Ticket(circuit, circuit.generation);
+			} else if (circuit.state == State.HALF_OPEN && circuit.trialsStarted < trialCalls) {
+				++circuit.trialsStarted;
+				ticket = new Ticket(circuit, circuit.generation);
+			}
+		}
+		if (from != null)
+			notifyListeners(method, from, State.HALF_OPEN);
+		if (ticket == null)
+			throw new CircuitOpenException("Circuit open for " + method);
+		return ticket;
+	}
+
+	/**
+	 * Records the outcome of a call. Outcomes of calls started before the circuit last changed state are ignored.
+	 *
+	 * A timeout cut short to fit the call's deadline is not counted either: a burst of callers with tight deadlines would
+	 * otherwise open the circuit on a healthy API.
+	 *
+	 * @param ticket the ticket the call was made with
+	 * @param response the decoded response, or null if there is none
+	 * @param failure what the call failed with, or null if it did not
+	 * @param deadline the call's deadline, or null if it had none
+	 */
+	void record(Ticket ticket, APIResponse<?> response, Throwable failure, Deadline deadline) {
+		Circuit circuit = ticket.circuit;
+		long now = System.nanoTime();
+		boolean counted = response != null || (failure != null && !isClientSide(failure) && !Deadline.isCutShort(deadline, failure));
+		byte outcome = isFailure(response, failure) ? FAILED : 0;
+		if (now - ticket.sentAt > slowCallNanos)
+			outcome |= SLOW;
+
+		State from;
+		State to;
+		synchronized (circuit) {
+			if (ticket.generation != circuit.generation)
+				return;
+			from = circuit.state;
+			if (circuit.state == State.HALF_OPEN) {
+				if (!counted)
+					--circuit.trialsStarted;
+				else if (outcome != 0)
+					circuit.transition(State.OPEN, now);
+				else if (++circuit.trialsSucceeded >= trialCalls)
+					circuit.transition(State.CLOSED, now);
+			} else if (circuit.state == State.CLOSED && counted) {
+				circuit.add(outcome);
+				if (circuit.calls >= minCalls && (circuit.failed >= failureRateThreshold * circuit.calls || circuit.slow >= slowCallRateThreshold * circuit.calls))
+					circuit.transition(State.OPEN, now);
+			}
+			to = circuit.state;
+		}
+		if (from != to)
+			notifyListeners(circuit.method, from, to);
+	}
+
+	private void notifyListeners(String method, State from, State to) {
+		for (Listener listener : listeners)
+			listener.onStateChange(method, from, to);
+	}
+
+	/**
+	 * Whether a call failed on the client without reaching the API, or was cancelled or interrupted before it could
+	 * finish, so its outcome says nothing about the API's health.
+	 */
+	private static boolean isClientSide(Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+		return failure instanceof LimitExceededException || failure instanceof CircuitOpenException || failure instanceof CancellationException
+				|| (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException));
+	}
+
+	private static boolean isFailure(APIResponse<?> response, Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+		if (failure != null)
+			return !isClientSide(failure) && failure instanceof IOException;
+		if (response == null || response.getSuccess() || response.getError() == null)
+			return false;
+		int status = response.getError().getHttpResponse();
+		return status == 429 || status >= 500;
+	}
+
+	private static double checkRate(double rate) {
+		if (!(rate > 0 && rate <= 1))
+			throw new IllegalArgumentException("Rate thresholds must be greater than 0 and at most 1");
+		return rate;
+	}
+
+	/**
+	 * The state of one method's circuit and the outcomes of its most recent calls, kept as a ring of flags with running
+	 * totals.
+	 */
+	private static final class Circuit {
+		final String method;
+		final byte[] outcomes;
+		int next;
+		int calls;
+		int failed;
+		int slow;
+
+		State state = State.CLOSED;
+		/** Bumped on every state change, so late outcomes from an earlier state are ignored. */
+		long generation;
+		long openedAt;
+		int trialsStarted;
+		int trialsSucceeded;
+
+		Circuit(String method, int windowSize) {
+			this.method = method;
+			this.outcomes = new byte[windowSize];
+		}
+
+		void add(byte outcome) {
+			if (calls == outcomes.length) {
+				byte evicted = outcomes[next];
+				if ((evicted & FAILED) != 0)
+					--failed;
+				if ((evicted & SLOW) != 0)
+					--slow;
+			} else {
+				++calls;
+			}
+			outcomes[next] = outcome;
+			next = (next + 1) % outcomes.length;
+			if ((outcome & FAILED) != 0)
+				++failed;
+			if ((outcome & SLOW) != 0)
+				++slow;
+		}
+
+		void transition(State to, long now) {
+			state = to;
+			++generation;
+			openedAt = now;
+			trialsStarted = 0;
+			trialsSucceeded = 0;
+			if (to == State.CLOSED) {
+				next = 0;
+				calls = 0;
+				failed = 0;
+				slow = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link CircuitBreaker} fails a call fast, without sending it, because recent calls to the method have
+ * been failing or slow.
+ * 
+ * @since 0.2
+ */
+public class CircuitOpenException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+}
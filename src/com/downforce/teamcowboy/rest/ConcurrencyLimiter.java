@@ -0,0 +1,369 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the client from overloading the API. Install it with {@link RESTClient#setConcurrencyLimiter(ConcurrencyLimiter)};
+ * it then governs every call made through that client and any {@link AsyncRESTClient} built on it.
+ *
+ * <p>Each API method has its own limit on the number of calls in flight, adjusted AIMD-style as responses come back.
+ * The limit grows by about one for every limit's worth of calls that complete normally, and is cut by
+ * {@link #setBackoffRatio(double)} when a call is answered with an HTTP 429 or 5xx error, times out, or takes more than
+ * {@link #setLatencyTolerance(double)} times the method's baseline latency. The limit is cut at most once per round of
+ * calls, so a burst of slow responses to calls sent at the same time only counts once.</p>
+ *
+ * <p>Optionally, calls for an API key can also be capped to a steady rate with
+ * {@link #setRateLimit(String, double, int)}. Calls over either limit wait in a per-method queue instead of going to
+ * the API. If the queue is full, or a call waits longer than the queue timeout, it fails with a
+ * {@link LimitExceededException} without being sent.</p>
+ *
+ * @since 0.2
+ */
+public class ConcurrencyLimiter {
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	public static final int DEFAULT_INITIAL_LIMIT = 4;
+	public static final int DEFAULT_MAX_LIMIT = 64;
+	public static final double DEFAULT_BACKOFF_RATIO = 0.75;
+	public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+	public static final int DEFAULT_MAX_QUEUE_LENGTH = 100;
+	public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 10000;
+
+	/** How far the baseline latency moves towards a slower sample, so it can follow a lasting change in the network. */
+	private static final double BASELINE_DRIFT = 0.01;
+
+	/**
+	 * A slot in a method's limit, held for the duration of one call.
+	 */
+	static final class Permit {
+		final MethodLimit limit;
+		/** When the call could be sent: once it had its slot and, under a rate cap, had waited for its turn. */
+		volatile long startedAt = System.nanoTime();
+
+		Permit(MethodLimit limit) {
+			this.limit = limit;
+		}
+	}
+
+	private static final class MethodLimit {
+		final ArrayDeque<CompletableFuture<Permit>> queue = new ArrayDeque<CompletableFuture<Permit>>();
+		double limit;
+		int inFlight;
+		long baselineNanos;
+		long lastDecreaseAt;
+
+		MethodLimit(int initialLimit) {
+			this.limit = initialLimit;
+			this.lastDecreaseAt = System.nanoTime();
+		}
+	}
+
+	private final ConcurrentHashMap<String, MethodLimit> methods = new ConcurrentHashMap<String, MethodLimit>();
+	private final ConcurrentHashMap<String, TokenBucket> rateLimits = new ConcurrentHashMap<String, TokenBucket>();
+	private volatile int minLimit = DEFAULT_MIN_LIMIT;
+	private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+	private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+	private volatile double backoffRatio = DEFAULT_BACKOFF_RATIO;
+	private volatile double latencyTolerance = DEFAULT_LATENCY_TOLERANCE;
+	private volatile int maxQueueLength = DEFAULT_MAX_QUEUE_LENGTH;
+	private volatile long queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUEUE_TIMEOUT_MILLIS);
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Sets the bounds each method's limit adapts within, and the limit a method starts with. Methods that have already
+	 * been called keep their current limit, clamped to the new bounds as it next changes.
+	 */
+	public void setLimits(int minLimit, int initialLimit, int maxLimit) {
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit)
+			throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+		this.minLimit = minLimit;
+		this.initialLimit = initialLimit;
+		this.maxLimit = maxLimit;
+	}
+
+	/**
+	 * Sets the factor a method's limit is multiplied by when the API shows signs of overload.
+	 */
+	public void setBackoffRatio(double backoffRatio) {
+		if (!(backoffRatio > 0 && backoffRatio < 1))
+			throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+		this.backoffRatio = backoffRatio;
+	}
+
+	/**
+	 * Sets how many times slower than a method's baseline latency a call may be before it counts as a sign of overload.
+	 */
+	public void setLatencyTolerance(double latencyTolerance) {
+		if (!(latencyTolerance > 1))
+			throw new IllegalArgumentException("latencyTolerance must be greater than 1");
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	/**
+	 * Sets how many calls may wait for each method, and how long each may wait before it fails.
+	 */
+	public void setQueue(int maxQueueLength, long timeout, TimeUnit unit) {
+		if (maxQueueLength < 0)
+			throw new IllegalArgumentException("maxQueueLength must not be negative");
+		this.maxQueueLength = maxQueueLength;
+		this.queueTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Caps the rate of calls made with an API key, across all methods.
+	 *
+	 * @param publicApiKey the public API key to cap
+	 * @param callsPerSecond the steady rate, or zero to remove the cap
+	 * @param burst how many calls may be sent at once after a quiet period
+	 */
+	public void setRateLimit(String publicApiKey, double callsPerSecond, int burst) {
+		if (callsPerSecond == 0)
+			rateLimits.remove(publicApiKey);
+		else
+			rateLimits.put(publicApiKey, new TokenBucket(callsPerSecond, burst));
+	}
+
+	/**
+	 * The current limit on calls in flight for a method.
+	 */
+	public int getLimit(String method) {
+		MethodLimit limit = methods.get(method);
+		if (limit == null)
+			return initialLimit;
+		synchronized (limit) {
+			return (int) limit.limit;
+		}
+	}
+
+	/**
+	 * The number of calls in flight for a method.
+	 */
+	public int getInFlightCount(String method) {
+		MethodLimit limit = methods.get(method);
+		if (limit == null)
+			return 0;
+		synchronized (limit) {
+			return limit.inFlight;
+		}
+	}
+
+	/**
+	 * The number of calls waiting for a method.
+	 */
+	public int getQueueLength(String method) {
+		MethodLimit limit = methods.get(method);
+		if (limit == null)
+			return 0;
+		synchronized (limit) {
+			return limit.queue.size();
+		}
+	}
+
+	/**
+	 * The number of calls turned away because the queue was full or they waited too long.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Waits for room to make a call.
+	 *
+	 * @param maxWaitNanos the longest the caller can wait, if shorter than the queue timeout
+	 * @throws LimitExceededException if the call was turned away
+	 */
+	Permit acquire(String publicApiKey, String method, long maxWaitNanos) throws IOException {
+		CompletableFuture<Permit> permit = acquireAsync(publicApiKey, method, maxWaitNanos);
+		try {
+			return permit.get();
+		} catch (InterruptedException ie) {
+			permit.thenAccept(granted -> release(granted, null, null, null));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to call " + method);
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Waits for room to make a call without blocking.
+	 *
+	 * @param maxWaitNanos the longest the caller can wait, if shorter than the queue timeout
+	 * @return a future for the permit, which fails with a {@link LimitExceededException} if the call was turned away
+	 */
+	CompletableFuture<Permit> acquireAsync(String publicApiKey, final String method, long maxWaitNanos) {
+		final long timeoutNanos = Math.min(queueTimeoutNanos, maxWaitNanos);
+		final long deadline = System.nanoTime() + timeoutNanos;
+		final MethodLimit limit = methods.computeIfAbsent(method, name -> new MethodLimit(initialLimit));
+		final CompletableFuture<Permit> waiter = new CompletableFuture<Permit>();
+		boolean granted = false;
+		synchronized (limit) {
+			if (limit.queue.isEmpty() && limit.inFlight < (int) limit.limit) {
+				++limit.inFlight;
+				granted = true;
+			} else if (limit.queue.size() < maxQueueLength) {
+				limit.queue.add(waiter);
+			} else {
+				rejected.incrementAndGet();
+				waiter.completeExceptionally(new LimitExceededException("Too many calls waiting for " + method));
+				return waiter;
+			}
+		}
+
+		CompletableFuture<Permit> permit;
+		if (granted) {
+			permit = CompletableFuture.completedFuture(new Permit(limit));
+		} else {
+			permit = new CompletableFuture<Permit>();
+			final CompletableFuture<Permit> result = permit;
+			waiter.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS).whenComplete((value, failure) -> {
+				if (failure == null) {
+					result.complete(value);
+					return;
+				}
+				synchronized (limit) {
+					limit.queue.remove(waiter);
+				}
+				rejected.incrementAndGet();
+				result.completeExceptionally(failure instanceof TimeoutException
+						? new LimitExceededException("Timed out waiting to call " + method) : failure);
+			});
+		}
+
+		final TokenBucket rateLimit = rateLimits.get(publicApiKey);
+		if (rateLimit == null)
+			return permit;
+		return permit.thenCompose(held -> {
+			long wait = rateLimit.reserve(deadline - System.nanoTime());
+			if (wait == 0)
+				return CompletableFuture.completedFuture(held);
+			if (wait < 0) {
+				release(held, null, null, null);
+				rejected.incrementAndGet();
+				CompletableFuture<Permit> failed = new CompletableFuture<Permit>();
+				failed.completeExceptionally(new LimitExceededException("Rate limit exceeded calling " + method));
+				return failed;
+			}
+			return CompletableFuture.supplyAsync(() -> {
+				//The rate wait is not the API's latency, so it must not make the call look slow.
+				held.startedAt = System.nanoTime();
+				return held;
+			}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+		});
+	}
+
+	/**
+	 * Gives a permit back once its call has completed, adjusting the method's limit from the outcome and starting
+	 * waiting calls that now fit.
+	 *
+	 * @param permit the permit the call was made with
+	 * @param response the decoded response, or null if there is none
+	 * @param failure what the call failed with, or null if it did not
+	 * @param deadline the call's deadline, or null if it had none; a timeout cut short to fit it is not taken as overload
+	 */
+	void release(Permit permit, APIResponse<?> response, Throwable failure, Deadline deadline) {
+		long now = System.nanoTime();
+		long latency = now - permit.startedAt;
+		MethodLimit limit = permit.limit;
+		List<CompletableFuture<Permit>> started;
+		synchronized (limit) {
+			--limit.inFlight;
+			if (response != null || (failure != null && !isAbandoned(failure) && !Deadline.isCutShort(deadline, failure)))
+				adjust(limit, permit, latency, isOverload(response, failure), response != null && response.getSuccess(), now);
+			started = startWaiting(limit);
+		}
+		grant(limit, started);
+	}
+
+	private void adjust(MethodLimit limit, Permit permit, long latency, boolean overload, boolean success, long now) {
+		boolean slow = limit.baselineNanos > 0 && latency > latencyTolerance * limit.baselineNanos;
+		if (success && !slow) {
+			if (limit.baselineNanos == 0 || latency < limit.baselineNanos)
+				limit.baselineNanos = latency;
+			else
+				limit.baselineNanos += (long) ((latency - limit.baselineNanos) * BASELINE_DRIFT);
+		}
+
+		if (overload || slow) {
+			// Only the first sign of overload from calls sent since the last cut counts
+			if (permit.startedAt - limit.lastDecreaseAt > 0) {
+				limit.limit = Math.max(minLimit, limit.limit * backoffRatio);
+				limit.lastDecreaseAt = now;
+			}
+		} else if (limit.inFlight + 1 >= limit.limit / 2) {
+			// Only grow while the limit is actually in use
+			limit.limit = Math.min(maxLimit, limit.limit + 1 / limit.limit);
+		}
+		limit.limit = Math.max(minLimit, Math.min(maxLimit, limit.limit));
+	}
+
+	private static boolean isOverload(APIResponse<?> response, Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+		if (failure != null)
+			return failure instanceof SocketTimeoutException || failure instanceof HttpTimeoutException;
+		if (response.getSuccess() || response.getError() == null)
+			return false;
+		int status = response.getError().getHttpResponse();
+		return status == 429 || status >= 500;
+	}
+
+	/**
+	 * Whether a call was cancelled or interrupted before it could finish, so how long it took says nothing about the API.
+	 */
+	private static boolean isAbandoned(Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+		return failure instanceof CancellationException || (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException));
+	}
+
+	private static List<CompletableFuture<Permit>> startWaiting(MethodLimit limit) {
+		List<CompletableFuture<Permit>> started = null;
+		while (!limit.queue.isEmpty() && limit.inFlight < (int) limit.limit) {
+			if (started == null)
+				started = new ArrayList<CompletableFuture<Permit>>();
+			started.add(limit.queue.poll());
+			++limit.inFlight;
+		}
+		return started;
+	}
+
+	/**
+	 * Completes the waiters that were given slots, outside the lock. A waiter that timed out in the meantime hands its
+	 * slot on.
+	 */
+	private void grant(MethodLimit limit, List<CompletableFuture<Permit>> started) {
+		while (started != null) {
+			int unused = 0;
+			for (CompletableFuture<Permit> waiter : started) {
+				if (!waiter.complete(new Permit(limit)))
+					++unused;
+			}
+			if (unused == 0)
+				return;
+			synchronized (limit) {
+				limit.inFlight -= unused;
+				started = startWaiting(limit);
+			}
+		}
+	}
+}
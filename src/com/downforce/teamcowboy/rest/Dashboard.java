@@ -0,0 +1,49 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.List;
+
+import com.downforce.teamcowboy.rest.response.Team;
+
+/**
+ * Everything a user's landing page needs, assembled by {@link DashboardAggregator}. Each part keeps its own
+ * {@link APIResponse}, so a part that failed or timed out is marked by its error while the rest of the dashboard is
+ * still available.
+ * 
+ * @since 0.2
+ */
+public class Dashboard {
+	private final APIResponse<Team[]> teams;
+	private final List<TeamDashboard> teamDashboards;
+
+	Dashboard(APIResponse<Team[]> teams, List<TeamDashboard> teamDashboards) {
+		this.teams = teams;
+		this.teamDashboards = teamDashboards;
+	}
+
+	/**
+	 * The response to the <code>User_GetTeams</code> call the dashboard was built from.
+	 */
+	public APIResponse<Team[]> getTeams() {
+		return teams;
+	}
+
+	/**
+	 * The details for each of the user's teams, in the order the teams were returned.
+	 */
+	public List<TeamDashboard> getTeamDashboards() {
+		return teamDashboards;
+	}
+
+	/**
+	 * Whether every part of the dashboard loaded successfully.
+	 */
+	public boolean isComplete() {
+		if (!teams.getSuccess())
+			return false;
+		for (TeamDashboard team : teamDashboards) {
+			if (!team.isComplete())
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,113 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.downforce.teamcowboy.rest.response.Event;
+import com.downforce.teamcowboy.rest.response.Message;
+import com.downforce.teamcowboy.rest.response.Team;
+import com.downforce.teamcowboy.rest.response.User;
+
+/**
+ * Builds a {@link Dashboard} for a user: their teams from <code>User_GetTeams</code>, then the upcoming events, roster
+ * and latest messages of every team. The per-team calls are made concurrently, with at most <code>parallelism</code>
+ * in flight at once, so the page takes about as long as its slowest calls rather than all of them added together.
+ *
+ * <p>Each call has its own deadline, counted from when it is sent. A call that fails or misses its deadline does not
+ * fail the dashboard; its part carries an {@link APIError} instead, with {@link #TIMEOUT_ERROR_CODE} or
+ * {@link #TRANSPORT_ERROR_CODE} as the error code and an HTTP response of 0 when the failure happened on the client.</p>
+ *
+ * @since 0.2
+ */
+public class DashboardAggregator {
+	/** The error code for a part whose call missed its deadline. */
+	public static final String TIMEOUT_ERROR_CODE = APIError.CLIENT_TIMEOUT_ERROR_CODE;
+	/** The error code for a part whose call failed before the API answered. */
+	public static final String TRANSPORT_ERROR_CODE = APIError.CLIENT_TRANSPORT_ERROR_CODE;
+
+	public static final int DEFAULT_EVENT_COUNT = 10;
+	public static final int DEFAULT_MESSAGE_COUNT = 10;
+
+	private final AsyncRESTClient client;
+	private final AsyncLimiter limiter;
+	private final long callTimeoutNanos;
+	private int eventCount = DEFAULT_EVENT_COUNT;
+	private int messageCount = DEFAULT_MESSAGE_COUNT;
+
+	/**
+	 * @param client the client to make the calls with
+	 * @param parallelism the maximum number of calls in flight at once
+	 * @param callTimeout how long each call may take
+	 * @param unit the unit of the timeout
+	 */
+	public DashboardAggregator(AsyncRESTClient client, int parallelism, long callTimeout, TimeUnit unit) {
+		this.client = client;
+		this.limiter = new AsyncLimiter(parallelism);
+		this.callTimeoutNanos = unit.toNanos(callTimeout);
+	}
+
+	/**
+	 * Sets how many upcoming events and latest messages to load for each team.
+	 */
+	public void setCounts(int eventCount, int messageCount) {
+		this.eventCount = eventCount;
+		this.messageCount = messageCount;
+	}
+
+	/**
+	 * Loads a dashboard, blocking until every part has loaded, failed or missed its deadline.
+	 *
+	 * @param userToken API account/user token. See {@link RESTClient#Auth_GetUserToken(String, String)}.
+	 * @param dashboardTeamsOnly optional. Whether to only include the teams on the user's Team Cowboy Dashboard.
+	 */
+	public Dashboard load(String userToken, Boolean dashboardTeamsOnly) {
+		return loadAsync(userToken, dashboardTeamsOnly).join();
+	}
+
+	/**
+	 * Loads a dashboard without blocking. The future always completes normally; failures are reported per part.
+	 *
+	 * @param userToken API account/user token. See {@link RESTClient#Auth_GetUserToken(String, String)}.
+	 * @param dashboardTeamsOnly optional. Whether to only include the teams on the user's Team Cowboy Dashboard.
+	 */
+	public CompletableFuture<Dashboard> loadAsync(final String userToken, final Boolean dashboardTeamsOnly) {
+		final int events = eventCount;
+		final int messages = messageCount;
+		return submit(() -> client.User_GetTeams(userToken, dashboardTeamsOnly)).thenCompose(teams -> {
+			if (!teams.getSuccess() || teams.getBody() == null)
+				return CompletableFuture.completedFuture(new Dashboard(teams, new ArrayList<TeamDashboard>()));
+
+			final List<CompletableFuture<TeamDashboard>> teamFutures = new ArrayList<CompletableFuture<TeamDashboard>>();
+			for (final Team team : teams.getBody())
+				teamFutures.add(loadTeam(userToken, team, events, messages));
+
+			return CompletableFuture.allOf(teamFutures.toArray(new CompletableFuture<?>[teamFutures.size()])).thenApply(done -> {
+				List<TeamDashboard> teamDashboards = new ArrayList<TeamDashboard>(teamFutures.size());
+				for (CompletableFuture<TeamDashboard> future : teamFutures)
+					teamDashboards.add(future.join());
+				return new Dashboard(teams, teamDashboards);
+			});
+		});
+	}
+
+	private CompletableFuture<TeamDashboard> loadTeam(final String userToken, final Team team, final int events, final int messages) {
+		final CompletableFuture<APIResponse<Event[]>> eventsFuture = submit(() -> client.Team_GetEvents(userToken, team.teamId, null, null, "future", null, null, 0, events));
+		final CompletableFuture<APIResponse<User>> rosterFuture = submit(() -> client.Team_GetRoster(userToken, team.teamId, null, null, null, null));
+		final CompletableFuture<APIResponse<Message[]>> messagesFuture = submit(() -> client.Team_GetMessages(userToken, team.teamId, 0, messages, null, null, null));
+
+		return CompletableFuture.allOf(eventsFuture, rosterFuture, messagesFuture)
+				.thenApply(done -> new TeamDashboard(team, eventsFuture.join(), rosterFuture.join(), messagesFuture.join()));
+	}
+
+	/**
+	 * Sends a call through the parallelism limit, with its deadline starting once it is sent. The returned future always
+	 * completes normally, with client-side failures turned into error responses.
+	 */
+	private <T> CompletableFuture<APIResponse<T>> submit(final Supplier<CompletableFuture<APIResponse<T>>> call) {
+		return limiter.submit(() -> call.get().orTimeout(callTimeoutNanos, TimeUnit.NANOSECONDS))
+				.exceptionally(failure -> new APIResponse<T>(false, null, null, APIError.fromClientFailure(failure)));
+	}
+}
@@ -0,0 +1,67 @@
+package com.downforce.teamcowboy.rest;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A point in time by which a call, or a group of calls, must complete. Pass one to
+ * {@link RESTClient#withDeadline(Deadline)} or {@link AsyncRESTClient#withDeadline(Deadline)}; the same deadline can
+ * be shared by every call made on behalf of one incoming request, so they all draw on the same time budget.
+ * 
+ * @since 0.2
+ */
+public final class Deadline {
+	private final long expiresAt;
+
+	/**
+	 * Creates a deadline the given time from now.
+	 */
+	public Deadline(long duration, TimeUnit unit) {
+		this.expiresAt = System.nanoTime() + unit.toNanos(duration);
+	}
+
+	/**
+	 * The time left before the deadline, or zero if it has passed.
+	 */
+	public long remaining(TimeUnit unit) {
+		return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Whether the deadline has passed.
+	 */
+	public boolean isExpired() {
+		return remainingNanos() == 0;
+	}
+
+	long remainingNanos() {
+		return Math.max(0, expiresAt - System.nanoTime());
+	}
+
+	/**
+	 * Whether a call timed out because its transport timeout was cut short to fit a deadline, rather than because the
+	 * transport's own timeout ran out. Such a timeout is the caller's doing and says nothing about the API.
+	 *
+	 * @param deadline the call's deadline, or null if it had none
+	 * @param failure what the call failed with
+	 */
+	static boolean isCutShort(Deadline deadline, Throwable failure) {
+		if (deadline == null || !deadline.isExpired())
+			return false;
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+		return failure instanceof SocketTimeoutException || failure instanceof HttpTimeoutException || failure instanceof TimeoutException;
+	}
+
+	/**
+	 * The time left as a transport timeout: whole milliseconds, rounded up so a live deadline never becomes the
+	 * "no limit" value of zero.
+	 */
+	int remainingTimeoutMillis() {
+		long nanos = remainingNanos();
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, (nanos + 999999) / 1000000));
+	}
+}
@@ -0,0 +1,16 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when a call's {@link Deadline} passes before it could be sent or retried.
+ * 
+ * @since 0.2
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+}
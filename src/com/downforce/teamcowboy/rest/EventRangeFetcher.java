@@ -0,0 +1,218 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.downforce.teamcowboy.rest.response.Event;
+
+/**
+ * Fetches events for a large date window by splitting it into day-aligned sub-ranges and fetching them concurrently.
+ * The results are merged, de-duplicated by <code>eventId</code> and sorted by start time, so the caller sees the same
+ * shape of result as a single {@link RESTClient#Team_GetEvents(String, int, Integer, Boolean, String, Date, Date, Integer, Integer)}
+ * or {@link RESTClient#User_GetTeamEvents(String, Date, Date, Integer, Boolean, Boolean)} call.
+ *
+ * <p>Dates are sent to the API at day granularity, so the window is split on whole days in the default time zone.
+ * Neighbouring sub-ranges overlap by a day so that events which start in one sub-range and end in the next are not
+ * lost. At most <code>parallelism</code> sub-ranges are fetched at once. Team events are requested a page at a time
+ * within each sub-range until a short page comes back, so no sub-range is cut off at the server's default page
+ * size.</p>
+ *
+ * @since 0.2
+ */
+public class EventRangeFetcher {
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	private static final Comparator<Event> BY_START = new Comparator<Event>() {
+		public int compare(Event a, Event b) {
+			String aStart = a.dateTimeInfo != null ? a.dateTimeInfo.startDateTimeUtc : null;
+			String bStart = b.dateTimeInfo != null ? b.dateTimeInfo.startDateTimeUtc : null;
+			if (aStart != null && bStart != null && !aStart.equals(bStart))
+				return aStart.compareTo(bStart);
+			if (aStart == null && bStart != null)
+				return 1;
+			if (aStart != null && bStart == null)
+				return -1;
+			return Integer.compare(a.eventId, b.eventId);
+		}
+	};
+
+	/**
+	 * Fetches a page of the events for one sub-range, or all of them if the method is not paged.
+	 */
+	private interface RangeCall {
+		APIResponse<Event[]> call(Date startDateTime, Date endDateTime, int offset) throws IOException;
+	}
+
+	private final RESTClient client;
+	private final Executor executor;
+	private final int parallelism;
+
+	/**
+	 * @param client the client to make the calls with
+	 * @param executor the executor to make the blocking calls on
+	 * @param parallelism the maximum number of sub-ranges to fetch at once
+	 */
+	public EventRangeFetcher(RESTClient client, Executor executor, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.client = client;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Range-partitioned version of
+	 * {@link RESTClient#Team_GetEvents(String, int, Integer, Boolean, String, Date, Date, Integer, Integer)} with the
+	 * specificDates filter.
+	 *
+	 * @param qty optional. The number of events to request per page within each sub-range, {@link #DEFAULT_PAGE_SIZE}
+	 *            if null. Every page is fetched, so this only trades the number of calls against their size.
+	 */
+	public APIResponse<Event[]> Team_GetEvents(final String userToken, final int teamId, final Integer seasonId, final Boolean includeRSVPInfo, Date startDateTime, Date endDateTime, Integer qty) throws IOException {
+		final int pageSize = qty != null ? qty : DEFAULT_PAGE_SIZE;
+		if (pageSize < 1)
+			throw new IllegalArgumentException("qty must be at least 1");
+		return fetch(startDateTime, endDateTime, pageSize, (start, end, offset) -> client.Team_GetEvents(userToken, teamId, seasonId, includeRSVPInfo, "specificDates", start, end, offset, pageSize));
+	}
+
+	/**
+	 * Range-partitioned version of {@link RESTClient#User_GetTeamEvents(String, Date, Date, Integer, Boolean, Boolean)}.
+	 */
+	public APIResponse<Event[]> User_GetTeamEvents(final String userToken, Date startDateTime, Date endDateTime, final Integer teamId, final Boolean dashboardTeamsOnly, final Boolean includeRSVPInfo) throws IOException {
+		return fetch(startDateTime, endDateTime, 0, (start, end, offset) -> client.User_GetTeamEvents(userToken, start, end, teamId, dashboardTeamsOnly, includeRSVPInfo));
+	}
+
+	/**
+	 * Splits the window into at most <code>parallelism</code> day ranges, each running to the first day of the next.
+	 */
+	List<Date[]> split(Date startDateTime, Date endDateTime) {
+		ZoneId zone = ZoneId.systemDefault();
+		LocalDate first = startDateTime.toInstant().atZone(zone).toLocalDate();
+		LocalDate last = endDateTime.toInstant().atZone(zone).toLocalDate();
+		long days = ChronoUnit.DAYS.between(first, last) + 1;
+		if (days < 1)
+			throw new IllegalArgumentException("endDateTime is before startDateTime");
+
+		int ranges = (int) Math.min(days, parallelism);
+		List<Date[]> result = new ArrayList<Date[]>(ranges);
+		LocalDate rangeStart = first;
+		for (int i = 0; i < ranges; ++i) {
+			long rangeDays = days / ranges + (i < days % ranges ? 1 : 0);
+			LocalDate nextStart = rangeStart.plusDays(rangeDays);
+			LocalDate rangeEnd = i == ranges - 1 ? last : nextStart;
+			result.add(new Date[] { toDate(rangeStart, zone), toDate(rangeEnd, zone) });
+			rangeStart = nextStart;
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches every sub-range concurrently and merges the results.
+	 *
+	 * @param pageSize the size of the pages to request within each sub-range, or 0 if the method is not paged
+	 */
+	private APIResponse<Event[]> fetch(Date startDateTime, Date endDateTime, final int pageSize, final RangeCall call) throws IOException {
+		final AtomicBoolean abandoned = new AtomicBoolean();
+		List<CompletableFuture<APIResponse<Event[]>>> futures = new ArrayList<CompletableFuture<APIResponse<Event[]>>>();
+		for (final Date[] range : split(startDateTime, endDateTime)) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return fetchRange(range[0], range[1], pageSize, call, abandoned);
+				} catch (IOException ioe) {
+					throw new CompletionException(ioe);
+				}
+			}, executor));
+		}
+
+		Map<Integer, Event> events = new LinkedHashMap<Integer, Event>();
+		double requestSecs = 0;
+		try {
+			for (CompletableFuture<APIResponse<Event[]>> future : futures) {
+				APIResponse<Event[]> response = await(future);
+				if (!response.getSuccess()) {
+					abandon(futures, abandoned);
+					return response;
+				}
+				if (response.getRequestSecs() != null)
+					requestSecs = Math.max(requestSecs, response.getRequestSecs().doubleValue());
+				if (response.getBody() != null) {
+					for (Event event : response.getBody())
+						events.put(event.eventId, event);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			abandon(futures, abandoned);
+			throw e;
+		}
+
+		Event[] merged = events.values().toArray(new Event[events.size()]);
+		Arrays.sort(merged, BY_START);
+		return new APIResponse<Event[]>(true, requestSecs, merged, null);
+	}
+
+	/**
+	 * Fetches one sub-range, a page at a time until a short page comes back. Stops early, with what it has, once the
+	 * fetch has been abandoned.
+	 */
+	private static APIResponse<Event[]> fetchRange(Date start, Date end, int pageSize, RangeCall call, AtomicBoolean abandoned) throws IOException {
+		APIResponse<Event[]> response = call.call(start, end, 0);
+		if (pageSize == 0 || !response.getSuccess() || response.getBody() == null || response.getBody().length < pageSize)
+			return response;
+
+		List<Event> events = new ArrayList<Event>(Arrays.asList(response.getBody()));
+		double requestSecs = response.getRequestSecs() != null ? response.getRequestSecs().doubleValue() : 0;
+		while (!abandoned.get()) {
+			response = call.call(start, end, events.size());
+			if (!response.getSuccess())
+				return response;
+			if (response.getRequestSecs() != null)
+				requestSecs += response.getRequestSecs().doubleValue();
+			Event[] page = response.getBody() != null ? response.getBody() : new Event[0];
+			events.addAll(Arrays.asList(page));
+			if (page.length < pageSize)
+				break;
+		}
+		return new APIResponse<Event[]>(true, requestSecs, events.toArray(new Event[events.size()]), null);
+	}
+
+	private static void abandon(List<CompletableFuture<APIResponse<Event[]>>> futures, AtomicBoolean abandoned) {
+		abandoned.set(true);
+		for (CompletableFuture<APIResponse<Event[]>> future : futures)
+			future.cancel(true);
+	}
+
+	private static Date toDate(LocalDate day, ZoneId zone) {
+		return Date.from(day.atStartOfDay(zone).toInstant());
+	}
+
+	private static <R> R await(CompletableFuture<R> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for events");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * The outcome of sending one signed request: the decoded response and, when it was buffered for caching or sharing,
+ * the raw body it was decoded from.
+ * 
+ * @since 0.2
+ */
+final class Exchange<T> {
+	final APIResponse<T> response;
+	final String raw;
+
+	Exchange(APIResponse<T> response, String raw) {
+		this.response = response;
+		this.raw = raw;
+	}
+}
@@ -0,0 +1,45 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapts a blocking {@link IHttpProvider} to {@link IAsyncHttpProvider} by running each call on an executor. Paired with
+ * a virtual-thread executor (<code>Executors.newVirtualThreadPerTaskExecutor()</code>) this gives a cheap asynchronous
+ * transport on top of {@link HttpProviderImpl} or a test provider.
+ * 
+ * @since 0.2
+ */
+public class ExecutorHttpProvider implements IAsyncHttpProvider {
+	private final IHttpProvider httpProvider;
+	private final Executor executor;
+
+	/**
+	 * @param httpProvider the blocking provider to delegate to
+	 * @param executor the executor to make the blocking calls on
+	 */
+	public ExecutorHttpProvider(IHttpProvider httpProvider, Executor executor) {
+		this.httpProvider = httpProvider;
+		this.executor = executor;
+	}
+
+	public CompletableFuture<String> makeHTTPCallAsync(String url, String body, String httpRequestMethod) {
+		return makeHTTPCallAsync(url, body, httpRequestMethod, 0);
+	}
+
+	/**
+	 * Runs the call with the time limit passed on to the blocking provider. A blocking call cannot be aborted, so
+	 * cancelling the future only stops the call from starting if it is still queued.
+	 */
+	public CompletableFuture<String> makeHTTPCallAsync(final String url, final String body, final String httpRequestMethod, final int timeoutMillis) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return httpProvider.makeHTTPCall(url, body, httpRequestMethod, timeoutMillis);
+			} catch (IOException ioe) {
+				throw new CompletionException(ioe);
+			}
+		}, executor);
+	}
+}
@@ -0,0 +1,223 @@
+package com.downforce.teamcowboy.rest;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the client's activity, so that recordings show API calls rather than anonymous
+ * socket reads. They are registered with JFR like any other event and can be switched on and off, or given
+ * thresholds, in a recording's settings under the "Team Cowboy" category.
+ * 
+ * <p>Each helper creates its event, checks whether it is enabled and returns straight away if not, so while nothing
+ * is recording the cost is a flag check and an allocation the JIT can remove. The call and wait events span threads
+ * when made asynchronously; they are committed on the thread that completes them.</p>
+ * 
+ * @since 0.2
+ */
+final class FlightEvents {
+	private static final String CATEGORY = "Team Cowboy";
+
+	@Name("com.downforce.teamcowboy.ApiCall")
+	@Label("API Call")
+	@Category(CATEGORY)
+	@Description("A call to a Team Cowboy API method, from being made to completing")
+	@StackTrace(false)
+	static final class CallEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("HTTP Verb")
+		String httpVerb;
+		@Label("Success")
+		boolean success;
+		@Label("Error HTTP Status")
+		@Description("The HTTP status of the error response, or 0")
+		int httpStatus;
+		@Label("Error Code")
+		String errorCode;
+		@Label("Attempts")
+		int attempts;
+		@Label("Request Size")
+		@DataAmount
+		long requestBytes;
+		@Label("Response Size")
+		@DataAmount
+		long responseBytes;
+		@Label("Sign Time")
+		@Timespan
+		long signTime;
+		@Label("Time To First Byte")
+		@Timespan
+		long timeToFirstByte;
+		@Label("Transport Time")
+		@Timespan
+		long transportTime;
+		@Label("Parse Time")
+		@Timespan
+		long parseTime;
+	}
+
+	@Name("com.downforce.teamcowboy.Retry")
+	@Label("API Retry")
+	@Category(CATEGORY)
+	@Description("A call sent again, either as a retry after a failure or as a hedge against a slow response")
+	@StackTrace(false)
+	static final class RetryEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("Attempt")
+		int attempt;
+		@Label("Hedge")
+		boolean hedge;
+		@Label("Reason")
+		@Description("The error code of the failed attempt, or empty for a hedge")
+		String reason;
+		@Label("Delay")
+		@Timespan
+		long delay;
+	}
+
+	@Name("com.downforce.teamcowboy.CacheHit")
+	@Label("API Cache Hit")
+	@Category(CATEGORY)
+	@Description("A call answered from the response cache without being sent")
+	@StackTrace(false)
+	static final class CacheHitEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("Stale")
+		@Description("Whether the response had expired and was served because the circuit was open")
+		boolean stale;
+	}
+
+	@Name("com.downforce.teamcowboy.CoalescedCall")
+	@Label("API Coalesced Call")
+	@Category(CATEGORY)
+	@Description("A call answered by an identical call already in flight")
+	@StackTrace(false)
+	static final class CoalescedCallEvent extends Event {
+		@Label("Method")
+		String method;
+	}
+
+	@Name("com.downforce.teamcowboy.ThrottleWait")
+	@Label("API Throttle Wait")
+	@Category(CATEGORY)
+	@Description("Time a call spent waiting for the priority scheduler or concurrency limiter to let it through")
+	@StackTrace(false)
+	static final class ThrottleWaitEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("Throttle")
+		String throttle;
+		@Label("Granted")
+		@Description("Whether the call was let through, rather than turned away")
+		boolean granted;
+	}
+
+	private FlightEvents() {
+	}
+
+	/**
+	 * Starts an event for a call, or returns null if the event is disabled.
+	 */
+	static CallEvent beginCall() {
+		CallEvent event = new CallEvent();
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends and commits a call's event with its measurements.
+	 */
+	static void endCall(CallEvent event, CallSample sample) {
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.method = sample.getMethod();
+		event.httpVerb = sample.getHttpVerb().name();
+		event.success = sample.isSuccess();
+		event.httpStatus = sample.getHttpStatus();
+		event.errorCode = sample.getErrorCode();
+		event.attempts = sample.getAttempts();
+		event.requestBytes = sample.getRequestBytes();
+		event.responseBytes = sample.getResponseBytes();
+		event.signTime = sample.getSignNanos();
+		event.timeToFirstByte = sample.getTimeToFirstByteNanos();
+		event.transportTime = sample.getTransportNanos();
+		event.parseTime = sample.getParseNanos();
+		event.commit();
+	}
+
+	static void retry(String method, int attempt, String reason, long backoffNanos) {
+		RetryEvent event = new RetryEvent();
+		if (!event.shouldCommit())
+			return;
+		event.method = method;
+		event.attempt = attempt;
+		event.reason = reason;
+		event.delay = backoffNanos;
+		event.commit();
+	}
+
+	static void hedge(String method, long delayNanos) {
+		RetryEvent event = new RetryEvent();
+		if (!event.shouldCommit())
+			return;
+		event.method = method;
+		event.hedge = true;
+		event.reason = "";
+		event.delay = delayNanos;
+		event.commit();
+	}
+
+	static void cacheHit(String method, boolean stale) {
+		CacheHitEvent event = new CacheHitEvent();
+		if (!event.shouldCommit())
+			return;
+		event.method = method;
+		event.stale = stale;
+		event.commit();
+	}
+
+	static void coalesced(String method) {
+		CoalescedCallEvent event = new CoalescedCallEvent();
+		if (!event.shouldCommit())
+			return;
+		event.method = method;
+		event.commit();
+	}
+
+	/**
+	 * Starts an event for a wait at a throttle, or returns null if the event is disabled.
+	 */
+	static ThrottleWaitEvent beginWait(String method, String throttle) {
+		ThrottleWaitEvent event = new ThrottleWaitEvent();
+		if (!event.isEnabled())
+			return null;
+		event.method = method;
+		event.throttle = throttle;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends and commits a wait's event, if there is one.
+	 */
+	static void endWait(ThrottleWaitEvent event, boolean granted) {
+		if (event == null)
+			return;
+		event.end();
+		if (!event.shouldCommit())
+			return;
+		event.granted = granted;
+		event.commit();
+	}
+}
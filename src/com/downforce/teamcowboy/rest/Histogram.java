@@ -0,0 +1,125 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values, such as latencies in nanoseconds or sizes in bytes. Values are counted
+ * in log-linear buckets in the style of HdrHistogram: every power of two is split into 16 equal buckets, so any
+ * value read back is within about 6% of one that was recorded, while a histogram covering nanoseconds to hours still
+ * fits in a few kilobytes. Recording a value is a handful of arithmetic operations and an atomic increment.
+ * 
+ * @since 0.2
+ */
+public final class Histogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+	/** Values are clamped to below 2^44: over four hours in nanoseconds, or 16 terabytes. */
+	private static final int MAX_BITS = 44;
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are ignored.
+	 */
+	public void record(long value) {
+		if (value < 0)
+			return;
+		long clamped = Math.min(value, MAX_VALUE);
+		counts.incrementAndGet(indexOf(clamped));
+		count.increment();
+		total.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value))
+			current = max.get();
+	}
+
+	/**
+	 * The number of values recorded.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * The sum of the values recorded.
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+
+	/**
+	 * The largest value recorded, exactly.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * The mean of the values recorded, or zero if there are none.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of recorded values fall, to the precision of the buckets.
+	 * 
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the value, or zero if nothing has been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		long n = 0;
+		for (int i = 0; i < counts.length(); ++i)
+			n += counts.get(i);
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); ++i) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(highestValueAt(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded while the histogram is being reset may or may not be kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); ++i)
+			counts.set(i, 0);
+		count.reset();
+		total.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Returns the bucket for a value: values below {@link #SUB_BUCKETS} have one each, and each power of two above
+	 * that is split into {@link #HALF_SUB_BUCKETS}.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	private static long highestValueAt(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		long subBucket = index - shift * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
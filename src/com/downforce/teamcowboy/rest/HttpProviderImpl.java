@@ -1,8 +1,10 @@
 package com.downforce.teamcowboy.rest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Real implementation for making HTTP calls to the Team Cowboy REST API. 
@@ -10,26 +12,43 @@ import java.net.*;
  * @author Joe Downs
  * @since 0.1
  */
-public class HttpProviderImpl implements IHttpProvider {
+public class HttpProviderImpl implements IStreamingHttpProvider {
 	public String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return makeHTTPCall(url, body, httpRequestMethod, 0);
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[1024];
+		int len;
+		InputStreamReader reader = new InputStreamReader(openHTTPStream(url, body, httpRequestMethod, timeoutMillis), StandardCharsets.UTF_8);
+		try {
+			while ((len = reader.read(buffer, 0, buffer.length)) > 0) {
+				builder.append(buffer, 0, len);
+			}
+		} finally {
+			reader.close();
+		}
+		return builder.toString();
+	}
+
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return openHTTPStream(url, body, httpRequestMethod, 0);
+	}
+
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
 		URL realUrl = new URL(url);
 		URLConnection conn = realUrl.openConnection();
+		conn.setConnectTimeout(timeoutMillis);
+		conn.setReadTimeout(timeoutMillis);
 		conn.setRequestProperty("method", httpRequestMethod);
 		conn.setDoInput(true);
 		if (body != null && body != "") {
 			conn.setDoOutput(true);
-			conn.getOutputStream().write(body.getBytes());
+			conn.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
 		} else {
 			conn.connect();
 		}
-		
-		StringBuilder builder = new StringBuilder();
-		char[] buffer = new char[1024];
-		int len;
-		InputStreamReader reader = new InputStreamReader(conn.getInputStream());
-		while ((len = reader.read(buffer, 0, buffer.length)) > 0) {
-			builder.append(buffer, 0, len);
-		}
-		return builder.toString();
+		return conn.getInputStream();
 	}
 }
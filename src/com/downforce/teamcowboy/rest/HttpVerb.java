@@ -0,0 +1,10 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * The HTTP verb an API method is called with. Read-only methods use GET and everything else POST.
+ * 
+ * @since 0.2
+ */
+public enum HttpVerb {
+	POST, GET
+}
@@ -0,0 +1,37 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link IHttpProvider}, used by {@link AsyncRESTClient}. Implementations should not park a
+ * thread for the duration of a request.
+ * 
+ * @since 0.2
+ */
+public interface IAsyncHttpProvider {
+	/**
+	 * Start a call to a URL over HTTP.
+	 * 
+	 * @param url the URL to use
+	 * @param body the body of the request, if any
+	 * @param httpRequestMethod the HTTP request method to use (i.e. "POST", "GET")
+	 * @return a future for the response from the HTTP call, completed exceptionally with an {@link java.io.IOException} if
+	 *         the call fails
+	 */
+	CompletableFuture<String> makeHTTPCallAsync(String url, String body, String httpRequestMethod);
+
+	/**
+	 * Start a call to a URL over HTTP with a time limit. Cancelling the returned future should abort the request.
+	 * Providers that cannot bound a call inherit this default, which ignores the limit.
+	 * 
+	 * @param url the URL to use
+	 * @param body the body of the request, if any
+	 * @param httpRequestMethod the HTTP request method to use (i.e. "POST", "GET")
+	 * @param timeoutMillis the time the call may take, or 0 for no limit
+	 * @return a future for the response from the HTTP call, completed exceptionally with an {@link java.io.IOException} if
+	 *         the call fails
+	 */
+	default CompletableFuture<String> makeHTTPCallAsync(String url, String body, String httpRequestMethod, int timeoutMillis) {
+		return makeHTTPCallAsync(url, body, httpRequestMethod);
+	}
+}
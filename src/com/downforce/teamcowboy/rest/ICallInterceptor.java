@@ -0,0 +1,48 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * A hook around every call made through a {@link RESTClient} or {@link AsyncRESTClient}, for concerns such as
+ * caching, metrics and tracing that need to see calls as API methods rather than raw URLs. Install interceptors with
+ * {@link RESTClient#addInterceptor(ICallInterceptor)}.
+ * 
+ * <p>Interceptors run in the order they were added on the way out, and in the reverse order on the way back, so the
+ * first one added wraps all the others. Any of them can answer a call itself from {@link #beforeCall}; the call is
+ * then not sent, the interceptors after it are skipped, and the ones before it see the answer in {@link #afterCall}.
+ * For asynchronous calls, {@link #beforeCall} runs on the calling thread and the other hooks on whichever thread
+ * completes the call, so implementations must be thread safe.</p>
+ * 
+ * @since 0.2
+ */
+public interface ICallInterceptor {
+	/**
+	 * Called before the call is signed and sent.
+	 * 
+	 * @param call the call about to be made
+	 * @param clazz the type the response body will be decoded to
+	 * @return a response to answer the call with instead of sending it, or null to carry on
+	 */
+	default <T> APIResponse<T> beforeCall(InterceptedCall call, Class<T> clazz) {
+		return null;
+	}
+
+	/**
+	 * Called with the response to a call. {@link InterceptedCall#getRawResponse()} holds the body it was decoded from,
+	 * unless an interceptor answered the call.
+	 * 
+	 * @param call the call that was made
+	 * @param response the decoded response
+	 * @return the response to pass on, usually the one given
+	 */
+	default <T> APIResponse<T> afterCall(InterceptedCall call, APIResponse<T> response) {
+		return response;
+	}
+
+	/**
+	 * Called when a call fails with an exception instead of a response.
+	 * 
+	 * @param call the call that was made
+	 * @param failure what the call failed with
+	 */
+	default void onFailure(InterceptedCall call, Throwable failure) {
+	}
+}
@@ -19,4 +19,19 @@ public interface IHttpProvider {
 	 * @return the response from the HTTP call
 	 */
 	String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException;
+
+	/**
+	 * Make a call to a URL over HTTP within a time limit and return the result. Providers that cannot bound a call
+	 * inherit this default, which ignores the limit.
+	 * 
+	 * @param url the URL to use
+	 * @param body the body of the request, if any
+	 * @param httpRequestMethod the HTTP request method to use (i.e. "POST", "GET")
+	 * @param timeoutMillis the time the call may take, used as the connect and read timeouts, or 0 for no limit
+	 * @return the response from the HTTP call
+	 * @since 0.2
+	 */
+	default String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		return makeHTTPCall(url, body, httpRequestMethod);
+	}
 }
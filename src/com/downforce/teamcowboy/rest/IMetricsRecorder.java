@@ -0,0 +1,21 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * Receives a {@link CallSample} for every call made through a {@link RESTClient} or {@link AsyncRESTClient}. Install
+ * one with {@link RESTClient#setMetricsRecorder(IMetricsRecorder)}. {@link CallMetrics} keeps per-method histograms
+ * and counters; implement this interface to feed the samples to another metrics library instead, tagging them with
+ * {@link CallSample#getMethod()} and {@link CallSample#getHttpVerb()} as it needs.
+ * 
+ * <p>Samples are recorded on the thread that completes the call, so implementations must be thread safe and should
+ * return quickly.</p>
+ * 
+ * @since 0.2
+ */
+public interface IMetricsRecorder {
+	/**
+	 * Records the measurements of a completed call.
+	 * 
+	 * @param sample the measurements
+	 */
+	void record(CallSample sample);
+}
@@ -0,0 +1,38 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+
+/**
+ * An {@link IHttpProvider} that can hand back the response body as a stream, so that {@link RESTClient} can decode it as
+ * it arrives instead of buffering the whole response first.
+ * 
+ * @since 0.2
+ */
+public interface IStreamingHttpProvider extends IHttpProvider {
+	/**
+	 * Make a call to a URL over HTTP and return a stream over the UTF-8 encoded response body. The caller must close the
+	 * stream.
+	 * 
+	 * @param url the URL to use
+	 * @param body the body of the request, if any
+	 * @param httpRequestMethod the HTTP request method to use (i.e. "POST", "GET")
+	 * @return a stream over the response from the HTTP call
+	 */
+	InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException;
+
+	/**
+	 * Make a call to a URL over HTTP within a time limit and return a stream over the UTF-8 encoded response body.
+	 * Providers that cannot bound a call inherit this default, which ignores the limit.
+	 * 
+	 * @param url the URL to use
+	 * @param body the body of the request, if any
+	 * @param httpRequestMethod the HTTP request method to use (i.e. "POST", "GET")
+	 * @param timeoutMillis the time the call may take, used as the connect and read timeouts, or 0 for no limit
+	 * @return a stream over the response from the HTTP call
+	 */
+	default InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		return openHTTPStream(url, body, httpRequestMethod);
+	}
+}
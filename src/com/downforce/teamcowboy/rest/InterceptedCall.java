@@ -0,0 +1,101 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A call as seen by an {@link ICallInterceptor}: the API method, its HTTP verb and its parameters before signing,
+ * and the raw response once there is one. One instance is shared by every interceptor for the same call.
+ * 
+ * @since 0.2
+ */
+public final class InterceptedCall {
+	private final RequestParams params;
+	private SortedMap<String, String> parameters;
+	private volatile String rawResponse;
+	/** How many interceptors have run {@link ICallInterceptor#beforeCall}. */
+	private int entered;
+	/** Whether the last interceptor entered answered the call itself. */
+	private boolean answered;
+
+	InterceptedCall(RequestParams params) {
+		this.params = params;
+	}
+
+	/**
+	 * The name of the API method, such as <code>Team_GetEvents</code>.
+	 */
+	public String getMethod() {
+		return params.template.method;
+	}
+
+	/**
+	 * The HTTP verb the method is called with.
+	 */
+	public HttpVerb getHttpVerb() {
+		return params.template.httpVerb;
+	}
+
+	/**
+	 * The parameters set for the call, sorted by name as they are signed. The api_key, method, nonce, timestamp and
+	 * response_type parameters are added when the call is signed, so they are not included.
+	 */
+	public synchronized SortedMap<String, String> getParameters() {
+		if (parameters == null) {
+			TreeMap<String, String> sorted = new TreeMap<String, String>();
+			for (int i = 0; i < params.values.length; ++i) {
+				if (params.values[i] != null)
+					sorted.put(params.template.names[i], params.values[i]);
+			}
+			parameters = Collections.unmodifiableSortedMap(sorted);
+		}
+		return parameters;
+	}
+
+	/**
+	 * The body of the response the call was answered with, whether it came from the API or the response cache, or
+	 * null if there is none yet or an interceptor answered the call.
+	 */
+	public String getRawResponse() {
+		return rawResponse;
+	}
+
+	void setRawResponse(String rawResponse) {
+		this.rawResponse = rawResponse;
+	}
+
+	/**
+	 * Runs each interceptor's {@link ICallInterceptor#beforeCall} in order, stopping at the first that answers.
+	 * 
+	 * @return the answer, or null if the call should be sent
+	 */
+	<T> APIResponse<T> before(ICallInterceptor[] interceptors, Class<T> clazz) {
+		while (entered < interceptors.length) {
+			APIResponse<T> answer = interceptors[entered++].beforeCall(this, clazz);
+			if (answer != null) {
+				answered = true;
+				return answer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Runs {@link ICallInterceptor#afterCall} in reverse order for every interceptor entered, except one that answered
+	 * the call itself.
+	 */
+	<T> APIResponse<T> after(ICallInterceptor[] interceptors, APIResponse<T> response) {
+		for (int i = answered ? entered - 2 : entered - 1; i >= 0; --i)
+			response = interceptors[i].afterCall(this, response);
+		return response;
+	}
+
+	/**
+	 * Runs {@link ICallInterceptor#onFailure} in reverse order for every interceptor entered.
+	 */
+	void failed(ICallInterceptor[] interceptors, Throwable failure) {
+		for (int i = entered - 1; i >= 0; --i)
+			interceptors[i].onFailure(this, failure);
+	}
+}
@@ -0,0 +1,17 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a {@link ConcurrencyLimiter} turns a call away without sending it, because its queue is full or the
+ * call waited longer than the queue timeout.
+ * 
+ * @since 0.2
+ */
+public class LimitExceededException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public LimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,47 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out request nonces that are never repeated for an API key within the JVM, however many threads and
+ * {@link RESTClient}s use the key. Nonces are decimal numbers that start from the current time in microseconds and
+ * strictly increase, so a restarted process does not repeat the nonces it sent before unless it averaged more than a
+ * million calls per second.
+ *
+ * @since 0.2
+ */
+final class NonceGenerator {
+	private static final ConcurrentHashMap<String, NonceGenerator> BY_KEY = new ConcurrentHashMap<String, NonceGenerator>();
+
+	private final AtomicLong last = new AtomicLong();
+
+	private NonceGenerator() {
+	}
+
+	/**
+	 * Returns the generator shared by every client using an API key.
+	 *
+	 * @throws IllegalArgumentException if the key is null
+	 */
+	static NonceGenerator forKey(String publicApiKey) {
+		if (publicApiKey == null)
+			throw new IllegalArgumentException("publicApiKey must not be null");
+		NonceGenerator generator = BY_KEY.get(publicApiKey);
+		return generator != null ? generator : BY_KEY.computeIfAbsent(publicApiKey, key -> new NonceGenerator());
+	}
+
+	/**
+	 * Returns the next nonce.
+	 */
+	String next() {
+		long now = System.currentTimeMillis() * 1000;
+		long previous;
+		long next;
+		do {
+			previous = last.get();
+			next = Math.max(previous + 1, now);
+		} while (!last.compareAndSet(previous, next));
+		return Long.toString(next);
+	}
+}
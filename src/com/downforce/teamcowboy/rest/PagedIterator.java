@@ -0,0 +1,261 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily walks every result of an <code>offset</code>/<code>qty</code> paged API method, such as
+ * {@link AsyncRESTClient#Team_GetEventsPaged(String, int, Integer, Boolean, String, java.util.Date, java.util.Date)}.
+ *
+ * <p>Nothing is fetched until the first call to {@link #hasNext()}. From then on the following pages are requested in
+ * the background while the current one is consumed, with at most {@link #setMaxPagesInFlight(int)} pages requested
+ * ahead, so memory stays bounded however long the history is. The page size adapts as results arrive: it grows while
+ * pages come back quickly and shrinks when large pages are slow, aiming for each page to take about
+ * {@link #setTargetPageLatency(long, TimeUnit)}. It is also kept small enough for a page of results the size of the
+ * last ones to fit in {@link #setMaxPageBytes(long)}, so pages of large results, such as events with RSVP information,
+ * do not grow into multi-megabyte responses just because the API sends them quickly.</p>
+ *
+ * <p>The iteration ends at the first page that comes back short. Transport failures are thrown as
+ * {@link UncheckedIOException}s, and errors returned by the API as an {@link UncheckedIOException} wrapping an
+ * {@link APIException}. An iterator is meant to be consumed by one thread.</p>
+ *
+ * @since 0.2
+ */
+public class PagedIterator<T> implements Iterator<T>, AutoCloseable {
+	public static final int DEFAULT_MIN_PAGE_SIZE = 5;
+	public static final int DEFAULT_INITIAL_PAGE_SIZE = 10;
+	public static final int DEFAULT_MAX_PAGE_SIZE = 100;
+	public static final int DEFAULT_MAX_PAGES_IN_FLIGHT = 2;
+	public static final long DEFAULT_TARGET_PAGE_LATENCY_MILLIS = 500;
+	public static final long DEFAULT_MAX_PAGE_BYTES = 256 * 1024;
+
+	/**
+	 * Requests one page of results.
+	 */
+	interface PageFetcher<T> {
+		/**
+		 * @param sample where to record the call's measurements, which the size of the response is read from
+		 */
+		CompletableFuture<APIResponse<T[]>> fetch(int offset, int qty, CallSample sample);
+	}
+
+	private static class Page<T> {
+		final int qty;
+		final CallSample sample;
+		final long startedAt = System.nanoTime();
+		volatile long completedAt;
+		/** The request itself, which closing the iterator cancels. */
+		CompletableFuture<APIResponse<T[]>> request;
+		/** The request once its completion time has been noted, which is what is waited on. */
+		CompletableFuture<APIResponse<T[]>> response;
+
+		Page(int qty, CallSample sample) {
+			this.qty = qty;
+			this.sample = sample;
+		}
+	}
+
+	private final RequestTemplate template;
+	private final PageFetcher<T> fetcher;
+	private final ArrayDeque<Page<T>> pending = new ArrayDeque<Page<T>>();
+	private int minPageSize = DEFAULT_MIN_PAGE_SIZE;
+	private int maxPageSize = DEFAULT_MAX_PAGE_SIZE;
+	private int pageSize = DEFAULT_INITIAL_PAGE_SIZE;
+	private int maxPagesInFlight = DEFAULT_MAX_PAGES_IN_FLIGHT;
+	private long targetPageLatencyNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TARGET_PAGE_LATENCY_MILLIS);
+	private long maxPageBytes = DEFAULT_MAX_PAGE_BYTES;
+
+	private T[] current;
+	private int index;
+	private int nextOffset;
+	private boolean started;
+	private boolean exhausted;
+	private int pagesFetched;
+	/** The response bytes per result of the last page whose size is known, or 0 before there is one. */
+	private long bytesPerResult;
+
+	/**
+	 * @param template the paged API method
+	 * @param fetcher requests the pages
+	 */
+	PagedIterator(RequestTemplate template, PageFetcher<T> fetcher) {
+		this.template = template;
+		this.fetcher = fetcher;
+	}
+
+	/**
+	 * Sets the page sizes to use: the size of the first page, and the bounds the size can adapt within.
+	 */
+	public void setPageSizes(int minPageSize, int initialPageSize, int maxPageSize) {
+		checkNotStarted();
+		if (minPageSize < 1 || initialPageSize < minPageSize || maxPageSize < initialPageSize)
+			throw new IllegalArgumentException("Page sizes must satisfy 1 <= min <= initial <= max");
+		this.minPageSize = minPageSize;
+		this.pageSize = initialPageSize;
+		this.maxPageSize = maxPageSize;
+	}
+
+	/**
+	 * Sets how many pages may be requested ahead of the one being consumed.
+	 */
+	public void setMaxPagesInFlight(int maxPagesInFlight) {
+		checkNotStarted();
+		if (maxPagesInFlight < 1)
+			throw new IllegalArgumentException("maxPagesInFlight must be at least 1");
+		this.maxPagesInFlight = maxPagesInFlight;
+	}
+
+	/**
+	 * Sets how long each page should take to fetch; the page size is adjusted towards it.
+	 */
+	public void setTargetPageLatency(long duration, TimeUnit unit) {
+		checkNotStarted();
+		this.targetPageLatencyNanos = unit.toNanos(duration);
+	}
+
+	/**
+	 * Sets the most response bytes a page should take; the page size is capped to what fits, going by the size of the
+	 * results on the last page. A page always holds at least the minimum page size.
+	 */
+	public void setMaxPageBytes(long maxPageBytes) {
+		checkNotStarted();
+		if (maxPageBytes < 1)
+			throw new IllegalArgumentException("maxPageBytes must be at least 1");
+		this.maxPageBytes = maxPageBytes;
+	}
+
+	public boolean hasNext() {
+		while (current == null || index >= current.length) {
+			if (!started) {
+				started = true;
+				requestPages();
+			}
+			Page<T> page = pending.poll();
+			if (page == null)
+				return false;
+
+			APIResponse<T[]> response;
+			try {
+				response = await(page.response);
+			} catch (RuntimeException re) {
+				close();
+				throw re;
+			}
+			if (!response.getSuccess()) {
+				close();
+				throw new UncheckedIOException(new APIException(response.getError()));
+			}
+			T[] results = response.getBody();
+			int count = results == null ? 0 : results.length;
+			++pagesFetched;
+			adaptPageSize(page, count);
+			if (count < page.qty)
+				close();
+
+			current = results;
+			index = 0;
+			requestPages();
+		}
+		return true;
+	}
+
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current[index++];
+	}
+
+	/**
+	 * Returns a sequential stream over the remaining results. Closing the stream closes this iterator.
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(this::close);
+	}
+
+	/**
+	 * Stops requesting pages and abandons any that are in flight. Results already received can still be consumed.
+	 */
+	public void close() {
+		started = true;
+		exhausted = true;
+		Page<T> page;
+		while ((page = pending.poll()) != null)
+			page.request.cancel(true);
+	}
+
+	/**
+	 * The page size the next request will use.
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * The number of pages received so far.
+	 */
+	public int getPagesFetched() {
+		return pagesFetched;
+	}
+
+	private void requestPages() {
+		while (!exhausted && pending.size() < maxPagesInFlight) {
+			final Page<T> page = new Page<T>(pageSize, new CallSample(template));
+			page.request = fetcher.fetch(nextOffset, pageSize, page.sample);
+			page.response = page.request.whenComplete((response, failure) -> page.completedAt = System.nanoTime());
+			pending.add(page);
+			nextOffset += pageSize;
+		}
+	}
+
+	/**
+	 * Moves the page size towards the size that would take the target latency, given the time per result the last page
+	 * took, changing it by at most a factor of two per page. The size is then capped by the number of results of the
+	 * last page's size per result that fit in the byte budget; the size of a response that was not read from the
+	 * transport, such as one answered from the cache, is not known and leaves the cap as it is.
+	 */
+	private void adaptPageSize(Page<T> page, int count) {
+		if (count == 0)
+			return;
+		long bytes = page.sample.getResponseBytes();
+		if (bytes > 0)
+			bytesPerResult = Math.max(1, bytes / count);
+
+		long desired = pageSize;
+		long latency = page.completedAt - page.startedAt;
+		if (latency > 0) {
+			desired = targetPageLatencyNanos * count / latency;
+			desired = Math.max(pageSize / 2, Math.min((long) pageSize * 2, desired));
+		}
+		if (bytesPerResult > 0)
+			desired = Math.min(desired, maxPageBytes / bytesPerResult);
+		pageSize = (int) Math.max(minPageSize, Math.min(maxPageSize, desired));
+	}
+
+	private void checkNotStarted() {
+		if (started)
+			throw new IllegalStateException("Iteration has already started");
+	}
+
+	private static <R> R await(CompletableFuture<R> future) {
+		try {
+			return future.join();
+		} catch (CompletionException ce) {
+			Throwable cause = ce.getCause();
+			if (cause instanceof IOException)
+				throw new UncheckedIOException((IOException) cause);
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw ce;
+		}
+	}
+}
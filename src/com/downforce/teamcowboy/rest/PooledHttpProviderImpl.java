@@ -0,0 +1,505 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP provider backed by a shared {@link HttpClient}. Connections are kept alive and reused between calls, HTTP/2 is
+ * negotiated where the server supports it, and request and response bodies are always encoded as UTF-8.
+ *
+ * <p>A single instance is safe to share between any number of threads and {@link RESTClient}s. It also implements
+ * {@link IAsyncHttpProvider}; asynchronous calls share the same connection limit but never park a thread while they wait
+ * for a connection or a response.</p>
+ *
+ * <p>The read timeout bounds each wait for data, for the response headers and then for every part of the body, so a
+ * server that stalls part way through a response cannot hold a thread or connection for good. A call's own time limit
+ * bounds the whole call, body included.</p>
+ *
+ * @since 0.2
+ */
+public class PooledHttpProviderImpl implements IStreamingHttpProvider, IAsyncHttpProvider {
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+	public static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+
+	private final HttpClient client;
+	private final Semaphore permits;
+	/** Aborts responses whose bodies stop arriving. Its thread only closes streams and cancels requests. */
+	private static final ScheduledThreadPoolExecutor BODY_TIMERS = newBodyTimers();
+
+	private final ConcurrentLinkedQueue<Runnable> waiting = new ConcurrentLinkedQueue<Runnable>();
+	/** Requests to run {@link #dispatch()}, so only one thread drains the queue and a drain never recurses. */
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+	private final Duration readTimeout;
+
+	/**
+	 * Creates a provider with the default pool size and timeouts.
+	 */
+	public PooledHttpProviderImpl() {
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param maxConnections the maximum number of requests in flight at once, which bounds the number of pooled connections
+	 * @param connectTimeoutMillis how long to wait for a connection to be established
+	 * @param readTimeoutMillis how long to wait for the server to respond once the request has been sent
+	 */
+	public PooledHttpProviderImpl(int maxConnections, int connectTimeoutMillis, int readTimeoutMillis) {
+		this(maxConnections, connectTimeoutMillis, readTimeoutMillis, null);
+	}
+
+	/**
+	 * @param maxConnections the maximum number of requests in flight at once, which bounds the number of pooled connections
+	 * @param connectTimeoutMillis how long to wait for a connection to be established
+	 * @param readTimeoutMillis how long to wait for the server to respond once the request has been sent
+	 * @param executor the executor used to complete asynchronous calls, or null for the client's default
+	 */
+	public PooledHttpProviderImpl(int maxConnections, int connectTimeoutMillis, int readTimeoutMillis, Executor executor) {
+		if (maxConnections < 1)
+			throw new IllegalArgumentException("maxConnections must be at least 1");
+
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+		if (executor != null)
+			builder.executor(executor);
+		this.client = builder.build();
+		this.permits = new Semaphore(maxConnections, true);
+		this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return makeHTTPCall(url, body, httpRequestMethod, 0);
+	}
+
+	/**
+	 * Makes a call within a time limit, which bounds the wait for a connection permit as well as the request itself.
+	 */
+	public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		//Read through the timed stream, since the client's own timeout stops once the headers are in.
+		InputStream in = openHTTPStream(url, body, httpRequestMethod, timeoutMillis);
+		try {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Streams the response body. The connection permit is held until the returned stream is closed.
+	 */
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return openHTTPStream(url, body, httpRequestMethod, 0);
+	}
+
+	/**
+	 * Streams the response body of a call made within a time limit. The limit covers waiting for a connection permit,
+	 * for the response headers and for the rest of the body.
+	 */
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		long startedAt = System.nanoTime();
+		HttpRequest request = buildRequest(url, body, httpRequestMethod, timeoutMillis);
+
+		acquire(timeoutMillis);
+		boolean streaming = false;
+		try {
+			HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+			if (response.statusCode() >= 400) {
+				//Error bodies are small; read them up front so they can be checked like any other response.
+				InputStream in = new TimedInputStream(response.body(), new BodyTimer(startedAt, timeoutMillis));
+				String errorBody;
+				try {
+					errorBody = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+				} finally {
+					in.close();
+				}
+				checkResponse(url, response.statusCode(), errorBody);
+				return new ByteArrayInputStream(errorBody.getBytes(StandardCharsets.UTF_8));
+			}
+			streaming = true;
+			return new TimedInputStream(response.body(), new BodyTimer(startedAt, timeoutMillis)) {
+				private final AtomicBoolean closed = new AtomicBoolean();
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if (closed.compareAndSet(false, true))
+							release();
+					}
+				}
+			};
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a response");
+		} finally {
+			if (!streaming)
+				release();
+		}
+	}
+
+	public CompletableFuture<String> makeHTTPCallAsync(String url, String body, String httpRequestMethod) {
+		return makeHTTPCallAsync(url, body, httpRequestMethod, 0);
+	}
+
+	/**
+	 * Starts a call with a time limit on the request. Cancelling the returned future aborts the request, or drops it if it
+	 * is still waiting for a connection permit.
+	 */
+	public CompletableFuture<String> makeHTTPCallAsync(final String url, String body, String httpRequestMethod, int timeoutMillis) {
+		final CompletableFuture<String> result = new CompletableFuture<String>();
+		final BodyTimer timer = new BodyTimer(System.nanoTime(), timeoutMillis);
+		final HttpRequest request;
+		try {
+			request = buildRequest(url, body, httpRequestMethod, timeoutMillis);
+		} catch (MalformedURLException mue) {
+			result.completeExceptionally(mue);
+			return result;
+		}
+
+		waiting.add(() -> {
+			if (result.isDone()) {
+				release();
+				return;
+			}
+			final CompletableFuture<HttpResponse<String>> sent = client.sendAsync(request,
+					info -> new TimedSubscriber<String>(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), timer,
+							() -> result.completeExceptionally(timedOut(null))));
+			result.whenComplete((value, failure) -> {
+				timer.stop();
+				//Aborts the request if the call was cancelled or its body timed out.
+				if (failure != null)
+					sent.cancel(true);
+			});
+			sent.whenComplete((response, failure) -> {
+				release();
+				if (failure != null) {
+					result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+					return;
+				}
+				try {
+					result.complete(checkResponse(url, response));
+				} catch (IOException ioe) {
+					result.completeExceptionally(ioe);
+				}
+			});
+		});
+		dispatch();
+		return result;
+	}
+
+	/**
+	 * Waits for a connection permit, for at most the given time if it is not zero.
+	 */
+	private void acquire(int timeoutMillis) throws IOException {
+		try {
+			if (timeoutMillis == 0)
+				permits.acquire();
+			else if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+				throw new HttpTimeoutException("Timed out waiting for a connection");
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection");
+		}
+	}
+
+	/**
+	 * Starts queued asynchronous calls for as long as connection permits are available. A call started here may release
+	 * its permit straight away, when it was cancelled while queued or fails synchronously, and so ask for another
+	 * dispatch; that request is picked up by the loop already running rather than by a nested one.
+	 */
+	private void dispatch() {
+		if (dispatchRequests.getAndIncrement() != 0)
+			return;
+		int requests = 1;
+		do {
+			while (!waiting.isEmpty() && permits.tryAcquire()) {
+				Runnable next = waiting.poll();
+				if (next == null) {
+					permits.release();
+					continue;
+				}
+				next.run();
+			}
+			requests = dispatchRequests.addAndGet(-requests);
+		} while (requests != 0);
+	}
+
+	private void release() {
+		permits.release();
+		dispatch();
+	}
+
+	private static ScheduledThreadPoolExecutor newBodyTimers() {
+		ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, task -> {
+			Thread thread = new Thread(task, "PooledHttpProviderImpl body timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timers.setRemoveOnCancelPolicy(true);
+		return timers;
+	}
+
+	private static HttpTimeoutException timedOut(Throwable cause) {
+		HttpTimeoutException hte = new HttpTimeoutException("Timed out reading the response");
+		if (cause != null)
+			hte.initCause(cause);
+		return hte;
+	}
+
+	/**
+	 * Bounds how long a response body may take once its headers are in: no wait for more of it may last longer than the
+	 * read timeout, and the whole body must arrive within the call's own time limit, if it has one. When either runs out
+	 * the response is aborted. Only one check per response is scheduled at a time.
+	 */
+	private final class BodyTimer implements Runnable {
+		private final long deadline;
+		private final boolean limited;
+		private Runnable abort;
+		/** When the current wait for data started, or 0 if nothing is waiting. */
+		private volatile long waitingSince;
+		private volatile boolean expired;
+		private volatile boolean stopped;
+		private ScheduledFuture<?> check;
+
+		/**
+		 * @param startedAt when the call started, as {@link System#nanoTime()}
+		 * @param timeoutMillis the call's own time limit, or 0 for none
+		 */
+		BodyTimer(long startedAt, int timeoutMillis) {
+			this.deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			this.limited = timeoutMillis > 0;
+		}
+
+		/**
+		 * Starts timing once the headers are in, running the given action if the body times out.
+		 */
+		synchronized void start(Runnable abort) {
+			this.abort = abort;
+			schedule(System.nanoTime());
+		}
+
+		void waitStarted() {
+			waitingSince = System.nanoTime();
+		}
+
+		void waitEnded() {
+			waitingSince = 0;
+		}
+
+		boolean isExpired() {
+			return expired;
+		}
+
+		synchronized void stop() {
+			stopped = true;
+			if (check != null)
+				check.cancel(false);
+		}
+
+		public void run() {
+			if (stopped)
+				return;
+			long now = System.nanoTime();
+			long since = waitingSince;
+			long readTimeoutNanos = readTimeout.toNanos();
+			if ((limited && now - deadline >= 0) || (since != 0 && now - since >= readTimeoutNanos)) {
+				expired = true;
+				abort.run();
+				return;
+			}
+			schedule(now);
+		}
+
+		private synchronized void schedule(long now) {
+			if (stopped)
+				return;
+			long since = waitingSince;
+			long delay = (since != 0 ? since : now) + readTimeout.toNanos() - now;
+			if (limited)
+				delay = Math.min(delay, deadline - now);
+			check = BODY_TIMERS.schedule(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * A streamed response body whose reads are bounded by a {@link BodyTimer}. A read cut short by the timer fails with
+	 * an {@link HttpTimeoutException} rather than ending the body early.
+	 */
+	private class TimedInputStream extends FilterInputStream {
+		private final BodyTimer timer;
+
+		TimedInputStream(InputStream in, BodyTimer timer) {
+			super(in);
+			this.timer = timer;
+			timer.start(() -> {
+				try {
+					in.close();
+				} catch (IOException ioe) {
+					//The read it wakes up reports the timeout.
+				}
+			});
+		}
+
+		@Override
+		public int read() throws IOException {
+			timer.waitStarted();
+			try {
+				return checkEnd(super.read());
+			} catch (IOException ioe) {
+				throw timer.isExpired() ? timedOut(ioe) : ioe;
+			} finally {
+				timer.waitEnded();
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			timer.waitStarted();
+			try {
+				return checkEnd(super.read(b, off, len));
+			} catch (IOException ioe) {
+				throw timer.isExpired() ? timedOut(ioe) : ioe;
+			} finally {
+				timer.waitEnded();
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			timer.waitStarted();
+			try {
+				return super.skip(n);
+			} catch (IOException ioe) {
+				throw timer.isExpired() ? timedOut(ioe) : ioe;
+			} finally {
+				timer.waitEnded();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			timer.stop();
+			super.close();
+		}
+
+		private int checkEnd(int read) throws HttpTimeoutException {
+			if (read < 0 && timer.isExpired())
+				throw timedOut(null);
+			if (read < 0)
+				timer.stop();
+			return read;
+		}
+	}
+
+	/**
+	 * Passes a response body on to another subscriber, timing the waits between its parts with a {@link BodyTimer}.
+	 */
+	private static final class TimedSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+		private final HttpResponse.BodySubscriber<T> delegate;
+		private final BodyTimer timer;
+		private final Runnable abort;
+
+		TimedSubscriber(HttpResponse.BodySubscriber<T> delegate, BodyTimer timer, Runnable abort) {
+			this.delegate = delegate;
+			this.timer = timer;
+			this.abort = abort;
+		}
+
+		public CompletionStage<T> getBody() {
+			return delegate.getBody();
+		}
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			timer.waitStarted();
+			timer.start(abort);
+			delegate.onSubscribe(subscription);
+		}
+
+		public void onNext(List<ByteBuffer> item) {
+			timer.waitStarted();
+			delegate.onNext(item);
+		}
+
+		public void onError(Throwable throwable) {
+			timer.stop();
+			delegate.onError(throwable);
+		}
+
+		public void onComplete() {
+			timer.stop();
+			delegate.onComplete();
+		}
+	}
+
+	/**
+	 * Builds the request for a call. A non-empty body is sent as a form-encoded POST. The request times out after the
+	 * read timeout, or the call's own time limit if that is shorter.
+	 */
+	HttpRequest buildRequest(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException {
+		HttpRequest.Builder builder;
+		try {
+			builder = HttpRequest.newBuilder(new URI(url));
+		} catch (URISyntaxException use) {
+			MalformedURLException mue = new MalformedURLException(use.getMessage());
+			mue.initCause(use);
+			throw mue;
+		} catch (IllegalArgumentException iae) {
+			MalformedURLException mue = new MalformedURLException(iae.getMessage());
+			mue.initCause(iae);
+			throw mue;
+		}
+		builder.timeout(timeoutMillis > 0 && timeoutMillis < readTimeout.toMillis() ? Duration.ofMillis(timeoutMillis) : readTimeout);
+		builder.header("Accept-Charset", "UTF-8");
+
+		if (body != null && body.length() > 0) {
+			builder.header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+			builder.method(httpRequestMethod, HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+		} else {
+			builder.method(httpRequestMethod, HttpRequest.BodyPublishers.noBody());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * The API reports errors as a JSON envelope, so any response carrying one is handed back to be decoded. Anything
+	 * else with a failing status is raised the same way {@link HttpProviderImpl} would.
+	 */
+	static String checkResponse(String url, HttpResponse<String> response) throws IOException {
+		return checkResponse(url, response.statusCode(), response.body());
+	}
+
+	static String checkResponse(String url, int status, String body) throws IOException {
+		if (status >= 400 && (body == null || !body.trim().startsWith("{")))
+			throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
+		return body;
+	}
+}
@@ -0,0 +1,346 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps background traffic from starving calls a user is waiting on. Install it with
+ * {@link RESTClient#setPriorityScheduler(PriorityScheduler)}, and make background calls through a client returned by
+ * {@link RESTClient#withPriority(Lane)}; other calls go in the {@link Lane#INTERACTIVE} lane.
+ *
+ * <p>The scheduler caps the number of calls in flight across all methods. Each lane may hold up to its share of that
+ * capacity; by default interactive calls may use all of it, so they can take the slots background calls leave idle,
+ * while background calls are held to half. When calls are waiting in more than one lane, freed slots are handed out by
+ * weighted fair queuing: over time each lane gets slots in proportion to its weight, and an interactive call never
+ * waits behind a long backlog of background calls.</p>
+ *
+ * <p>A call that waits longer than the queue timeout, or arrives when its lane's queue is full, fails with a
+ * {@link LimitExceededException} without being sent.</p>
+ *
+ * @since 0.2
+ */
+public class PriorityScheduler {
+	public static final int DEFAULT_MAX_CONCURRENCY = 16;
+	public static final int DEFAULT_INTERACTIVE_WEIGHT = 4;
+	public static final int DEFAULT_BACKGROUND_WEIGHT = 1;
+	public static final double DEFAULT_INTERACTIVE_SHARE = 1.0;
+	public static final double DEFAULT_BACKGROUND_SHARE = 0.5;
+	public static final int DEFAULT_MAX_QUEUE_LENGTH = 1000;
+	public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 60000;
+
+	public enum Lane {
+		/** Calls a user is waiting on. */
+		INTERACTIVE,
+		/** Bulk work such as crawls and backfills, which can wait. */
+		BACKGROUND
+	}
+
+	/**
+	 * A slot in the scheduler's capacity, held for the duration of one call.
+	 */
+	static final class Slot {
+		final LaneState lane;
+
+		Slot(LaneState lane) {
+			this.lane = lane;
+		}
+	}
+
+	private static final class Waiter {
+		final LaneState lane;
+		final CompletableFuture<Slot> future = new CompletableFuture<Slot>();
+		final long enqueuedAt = System.nanoTime();
+
+		Waiter(LaneState lane) {
+			this.lane = lane;
+		}
+	}
+
+	private static final class LaneState {
+		final ArrayDeque<Waiter> queue = new ArrayDeque<Waiter>();
+		int weight;
+		double share;
+		int inFlight;
+		/** The virtual time at which the lane's most recent call finished its turn. */
+		double finishTag;
+
+		long granted;
+		long rejected;
+		long totalWaitNanos;
+		long maxWaitNanos;
+
+		LaneState(int weight, double share) {
+			this.weight = weight;
+			this.share = share;
+		}
+	}
+
+	private final EnumMap<Lane, LaneState> lanes = new EnumMap<Lane, LaneState>(Lane.class);
+	private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+	private int inFlight;
+	/** The start tag of the call most recently given a slot, which new arrivals start from. */
+	private double virtualTime;
+	private volatile int maxQueueLength = DEFAULT_MAX_QUEUE_LENGTH;
+	private volatile long queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUEUE_TIMEOUT_MILLIS);
+
+	public PriorityScheduler() {
+		lanes.put(Lane.INTERACTIVE, new LaneState(DEFAULT_INTERACTIVE_WEIGHT, DEFAULT_INTERACTIVE_SHARE));
+		lanes.put(Lane.BACKGROUND, new LaneState(DEFAULT_BACKGROUND_WEIGHT, DEFAULT_BACKGROUND_SHARE));
+	}
+
+	/**
+	 * Sets the number of calls that may be in flight at once, across all lanes.
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		List<Waiter> started;
+		synchronized (lanes) {
+			this.maxConcurrency = maxConcurrency;
+			started = startWaiting();
+		}
+		grant(started);
+	}
+
+	/**
+	 * Sets a lane's weight in fair queuing, and the share of the total capacity it may hold. A lane may always hold at
+	 * least one slot.
+	 *
+	 * @param lane the lane to configure
+	 * @param weight how many slots the lane gets, relative to the other lanes, while calls are waiting in both
+	 * @param share the largest fraction of {@link #setMaxConcurrency(int)} the lane may use
+	 */
+	public void setLane(Lane lane, int weight, double share) {
+		if (weight < 1)
+			throw new IllegalArgumentException("weight must be at least 1");
+		if (!(share > 0 && share <= 1))
+			throw new IllegalArgumentException("share must be greater than 0 and at most 1");
+		List<Waiter> started;
+		synchronized (lanes) {
+			LaneState state = lanes.get(lane);
+			state.weight = weight;
+			state.share = share;
+			started = startWaiting();
+		}
+		grant(started);
+	}
+
+	/**
+	 * Sets how many calls may wait in each lane, and how long each may wait before it fails.
+	 */
+	public void setQueue(int maxQueueLength, long timeout, TimeUnit unit) {
+		if (maxQueueLength < 0)
+			throw new IllegalArgumentException("maxQueueLength must not be negative");
+		this.maxQueueLength = maxQueueLength;
+		this.queueTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * The number of calls waiting in a lane.
+	 */
+	public int getQueueLength(Lane lane) {
+		synchronized (lanes) {
+			return lanes.get(lane).queue.size();
+		}
+	}
+
+	/**
+	 * The number of calls in flight from a lane.
+	 */
+	public int getInFlightCount(Lane lane) {
+		synchronized (lanes) {
+			return lanes.get(lane).inFlight;
+		}
+	}
+
+	/**
+	 * The number of calls from a lane that have been given a slot.
+	 */
+	public long getGrantedCount(Lane lane) {
+		synchronized (lanes) {
+			return lanes.get(lane).granted;
+		}
+	}
+
+	/**
+	 * The number of calls from a lane turned away because its queue was full or they waited too long.
+	 */
+	public long getRejectedCount(Lane lane) {
+		synchronized (lanes) {
+			return lanes.get(lane).rejected;
+		}
+	}
+
+	/**
+	 * The mean time calls from a lane waited for a slot, including those that did not have to wait.
+	 */
+	public long getMeanWaitNanos(Lane lane) {
+		synchronized (lanes) {
+			LaneState state = lanes.get(lane);
+			return state.granted == 0 ? 0 : state.totalWaitNanos / state.granted;
+		}
+	}
+
+	/**
+	 * The longest time a call from a lane has waited for a slot.
+	 */
+	public long getMaxWaitNanos(Lane lane) {
+		synchronized (lanes) {
+			return lanes.get(lane).maxWaitNanos;
+		}
+	}
+
+	/**
+	 * Waits for a slot to make a call.
+	 *
+	 * @param maxWaitNanos the longest the caller can wait, if shorter than the queue timeout
+	 * @throws LimitExceededException if the call was turned away
+	 */
+	Slot acquire(Lane lane, long maxWaitNanos) throws IOException {
+		CompletableFuture<Slot> slot = acquireAsync(lane, maxWaitNanos);
+		try {
+			return slot.get();
+		} catch (InterruptedException ie) {
+			slot.cancel(false);
+			slot.thenAccept(this::release);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting in the " + lane + " lane");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Waits for a slot to make a call without blocking. Cancelling the returned future takes the call out of the queue.
+	 *
+	 * @param maxWaitNanos the longest the caller can wait, if shorter than the queue timeout
+	 * @return a future for the slot, which fails with a {@link LimitExceededException} if the call was turned away
+	 */
+	CompletableFuture<Slot> acquireAsync(final Lane lane, long maxWaitNanos) {
+		final LaneState state = lanes.get(lane);
+		final Waiter waiter = new Waiter(state);
+		synchronized (lanes) {
+			if (state.queue.isEmpty() && eligible(state)) {
+				start(waiter);
+				return CompletableFuture.completedFuture(new Slot(state));
+			}
+			if (state.queue.size() >= maxQueueLength) {
+				++state.rejected;
+				waiter.future.completeExceptionally(new LimitExceededException("Too many calls waiting in the " + lane + " lane"));
+				return waiter.future;
+			}
+			state.queue.add(waiter);
+		}
+
+		final CompletableFuture<Slot> result = new CompletableFuture<Slot>();
+		waiter.future.orTimeout(Math.min(queueTimeoutNanos, maxWaitNanos), TimeUnit.NANOSECONDS).whenComplete((value, failure) -> {
+			if (failure == null) {
+				if (!result.complete(value))
+					release(value);
+				return;
+			}
+			boolean timedOut = failure instanceof TimeoutException;
+			synchronized (lanes) {
+				state.queue.remove(waiter);
+				if (timedOut)
+					++state.rejected;
+			}
+			result.completeExceptionally(timedOut ? new LimitExceededException("Timed out waiting in the " + lane + " lane") : failure);
+		});
+		result.whenComplete((value, failure) -> {
+			if (failure instanceof CancellationException)
+				waiter.future.cancel(false);
+		});
+		return result;
+	}
+
+	/**
+	 * Gives a slot back once its call has completed, and hands it to the next waiting call in fair queuing order.
+	 */
+	void release(Slot slot) {
+		List<Waiter> started;
+		synchronized (lanes) {
+			--slot.lane.inFlight;
+			--inFlight;
+			started = startWaiting();
+		}
+		grant(started);
+	}
+
+	private boolean eligible(LaneState state) {
+		return inFlight < maxConcurrency && state.inFlight < Math.max(1, (int) (state.share * maxConcurrency));
+	}
+
+	/**
+	 * Gives a lane's call a slot and moves the lane on by one turn, so lanes with more weight take shorter turns.
+	 */
+	private void start(Waiter waiter) {
+		LaneState state = waiter.lane;
+		double startTag = Math.max(state.finishTag, virtualTime);
+		state.finishTag = startTag + 1.0 / state.weight;
+		virtualTime = startTag;
+		++state.inFlight;
+		++inFlight;
+
+		long wait = System.nanoTime() - waiter.enqueuedAt;
+		++state.granted;
+		state.totalWaitNanos += wait;
+		state.maxWaitNanos = Math.max(state.maxWaitNanos, wait);
+	}
+
+	/**
+	 * Takes waiting calls off the queues while there is room, each time from the eligible lane whose turn starts
+	 * earliest.
+	 */
+	private List<Waiter> startWaiting() {
+		List<Waiter> started = null;
+		while (true) {
+			LaneState next = null;
+			double nextTag = 0;
+			for (LaneState state : lanes.values()) {
+				if (state.queue.isEmpty() || !eligible(state))
+					continue;
+				double tag = Math.max(state.finishTag, virtualTime);
+				if (next == null || tag < nextTag) {
+					next = state;
+					nextTag = tag;
+				}
+			}
+			if (next == null)
+				return started;
+			if (started == null)
+				started = new ArrayList<Waiter>();
+			Waiter waiter = next.queue.poll();
+			start(waiter);
+			started.add(waiter);
+		}
+	}
+
+	/**
+	 * Completes the waiters that were given slots, outside the lock. A waiter that timed out or was cancelled in the
+	 * meantime hands its slot on.
+	 */
+	private void grant(List<Waiter> started) {
+		if (started == null)
+			return;
+		for (Waiter waiter : started) {
+			Slot slot = new Slot(waiter.lane);
+			if (!waiter.future.complete(slot))
+				release(slot);
+		}
+	}
+}
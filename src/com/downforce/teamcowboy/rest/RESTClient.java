@@ -1,49 +1,78 @@
 package com.downforce.teamcowboy.rest;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
-import java.net.URLEncoder;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Map.Entry;
-import java.util.Random;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.downforce.teamcowboy.rest.response.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
 /**
  * A REST Client to communicate with Team Cowboy. Please see http://api.teamcowboy.com/v1/docs/ 
  * for current documentation.
  * 
+ * <p>A single client is safe to share between threads. Signing uses a per-thread digest, dates are formatted with an
+ * immutable formatter and deserialization takes no locks.</p>
+ * 
  * @author Joe Downs
  * @since 0.1
  */
 public class RESTClient {
-    private enum HttpVerb {
-        POST, GET
-    }
-
     public static final String ENDPOINT = "api.teamcowboy.com/v1/";
 
+    private static final ICallInterceptor[] NO_INTERCEPTORS = new ICallInterceptor[0];
+
     private final IHttpProvider _httpProvider;
-    private final MessageDigest sha1;
-    private final Random _random = new Random(System.currentTimeMillis());
+    private final ThreadLocal<RequestSigner> _signer;
     private final String _publicApiKey;
-    private final String _privateApiKey;
-    private final SimpleDateFormat _dateFormatter = new SimpleDateFormat("yyyy-MM-dd");
+    private final byte[] _privateApiKey;
+    private final NonceGenerator _nonces;
+    private final DateTimeFormatter _dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
     private final Gson _gson;
+    private final RESTClient _root;
+    private final Deadline _deadline;
+    private final PriorityScheduler.Lane _lane;
+    private volatile ResponseCache _responseCache;
+    private volatile RequestCoalescer _requestCoalescer;
+    private volatile ConcurrencyLimiter _concurrencyLimiter;
+    private volatile RetryPolicy _retryPolicy;
+    private volatile CircuitBreaker _circuitBreaker;
+    private volatile PriorityScheduler _priorityScheduler;
+    private volatile ICallInterceptor[] _interceptors = NO_INTERCEPTORS;
+    private volatile IMetricsRecorder _metricsRecorder;
+    private volatile Canonicalizer _canonicalizer;
+    /** The Gson that responses are decoded with: _gson, or a copy of it that also canonicalizes while a canonicalizer is installed. */
+    private volatile Gson _decodingGson;
 
     /**
      * @param publicApiKey your Team Cowboy public API key
      * @param privateApiKey your Team Cowboy private API key
      * @throws NoSuchAlgorithmException if SHA-1 is not supported by the runtime
+     * @throws IllegalArgumentException if the public API key is null
      */
     public RESTClient(String publicApiKey, String privateApiKey) throws NoSuchAlgorithmException {
         this(publicApiKey, privateApiKey, new HttpProviderImpl());
@@ -56,17 +85,191 @@ public class RESTClient {
      * @param privateApiKey your Team Cowboy private API key
      * @param httpProvider the IHttpProvider for the client to use
      * @throws NoSuchAlgorithmException if SHA-1 is not supported by the runtime
+     * @throws IllegalArgumentException if the public API key is null
      */
     public RESTClient(String publicApiKey, String privateApiKey, IHttpProvider httpProvider) throws NoSuchAlgorithmException {
         _publicApiKey = publicApiKey;
-        _privateApiKey = privateApiKey;
-        sha1 = MessageDigest.getInstance("SHA-1");
+        _privateApiKey = privateApiKey.getBytes(StandardCharsets.UTF_8);
+        _nonces = NonceGenerator.forKey(publicApiKey);
+        final MessageDigest prototype = MessageDigest.getInstance("SHA-1");
+        _signer = ThreadLocal.withInitial(() -> new RequestSigner(newDigest(prototype)));
         _httpProvider = httpProvider;
 
         GsonBuilder builder = new GsonBuilder();
-        builder.registerTypeAdapter(CountByType.class, new CountByTypeDeserializer());
-        builder.registerTypeAdapter(UserIdsByType.class, new UserIdsByTypeDeserializer());
+        builder.registerTypeAdapter(CountByType.class, new CountByTypeAdapter().nullSafe());
+        builder.registerTypeAdapter(UserIdsByType.class, new UserIdsByTypeAdapter().nullSafe());
+        builder.registerTypeAdapter(CountByGender.class, new CountByGenderAdapter().nullSafe());
+        builder.registerTypeAdapter(UserIdsByGender.class, new UserIdsByGenderAdapter().nullSafe());
         _gson = builder.create();
+        _decodingGson = _gson;
+        _root = this;
+        _deadline = null;
+        _lane = PriorityScheduler.Lane.INTERACTIVE;
+    }
+
+    /**
+     * Creates a view of a client whose calls have a deadline and a priority of their own.
+     */
+    private RESTClient(RESTClient client, Deadline deadline, PriorityScheduler.Lane lane) {
+        _publicApiKey = client._publicApiKey;
+        _privateApiKey = client._privateApiKey;
+        _nonces = client._nonces;
+        _signer = client._signer;
+        _httpProvider = client._httpProvider;
+        _gson = client._gson;
+        _root = client._root;
+        _deadline = deadline;
+        _lane = lane;
+    }
+
+    /**
+     * Returns a client that shares this one's keys, transport and configuration, but whose calls must complete by the
+     * given deadline. The time left becomes the connect and read timeouts of each request, and bounds any time spent
+     * queueing or backing off before a retry. A call whose deadline has already passed fails straight away with a
+     * {@link DeadlineExceededException}, without being sent.
+     * 
+     * <pre>
+     * Deadline deadline = new Deadline(2, TimeUnit.SECONDS);
+     * APIResponse&lt;Event[]&gt; events = client.withDeadline(deadline).Team_GetEvents(...);
+     * </pre>
+     * 
+     * @param deadline the deadline for the calls, or null for none
+     * @return a client bound to the deadline
+     */
+    public RESTClient withDeadline(Deadline deadline) {
+        return new RESTClient(this, deadline, _lane);
+    }
+
+    /**
+     * Returns a client that shares this one's keys, transport and configuration, but whose calls are scheduled in the
+     * given lane of the {@link PriorityScheduler}. Calls made on this client go in the
+     * {@link PriorityScheduler.Lane#INTERACTIVE} lane.
+     * 
+     * <pre>
+     * RESTClient crawler = client.withPriority(PriorityScheduler.Lane.BACKGROUND);
+     * </pre>
+     * 
+     * @param lane the lane for the calls
+     * @return a client bound to the lane
+     */
+    public RESTClient withPriority(PriorityScheduler.Lane lane) {
+        if (lane == null)
+            throw new IllegalArgumentException("lane must not be null");
+        return new RESTClient(this, _deadline, lane);
+    }
+
+    /**
+     * Installs a cache for the responses of read-only methods, shared by any {@link AsyncRESTClient} built on this
+     * client. POST methods are never cached.
+     * 
+     * @param responseCache the cache to use, or null to stop caching
+     */
+    public void setResponseCache(ResponseCache responseCache) {
+        _root._responseCache = responseCache;
+    }
+
+    /**
+     * Installs a coalescer so that identical read-only calls in flight at the same time share one request to the API,
+     * including calls made through any {@link AsyncRESTClient} built on this client.
+     * 
+     * @param requestCoalescer the coalescer to use, or null to send every call
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        _root._requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Installs a limiter on the number and rate of calls sent to the API, including calls made through any
+     * {@link AsyncRESTClient} built on this client. Calls over the limit wait in a bounded queue.
+     * 
+     * @param concurrencyLimiter the limiter to use, or null to send every call straight away
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        _root._concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Installs a policy for retrying failed calls and hedging slow ones, including calls made through any
+     * {@link AsyncRESTClient} built on this client. Every attempt is signed afresh.
+     * 
+     * @param retryPolicy the policy to use, or null to send every call once
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        _root._retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Installs a circuit breaker that fails calls to a method fast, or answers them from the response cache, while
+     * recent calls to it are failing or slow. Applies to calls made through any {@link AsyncRESTClient} built on this
+     * client too.
+     * 
+     * @param circuitBreaker the circuit breaker to use, or null to always send calls
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        _root._circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Installs a scheduler that shares the capacity for calls in flight between interactive and background calls,
+     * including calls made through any {@link AsyncRESTClient} built on this client. See
+     * {@link #withPriority(PriorityScheduler.Lane)}.
+     * 
+     * @param priorityScheduler the scheduler to use, or null to send calls in the order they are made
+     */
+    public void setPriorityScheduler(PriorityScheduler priorityScheduler) {
+        _root._priorityScheduler = priorityScheduler;
+    }
+
+    /**
+     * Adds an interceptor to the end of the chain run around every call, including calls made through any
+     * {@link AsyncRESTClient} built on this client.
+     * 
+     * @param interceptor the interceptor to add
+     */
+    public void addInterceptor(ICallInterceptor interceptor) {
+        if (interceptor == null)
+            throw new IllegalArgumentException("interceptor must not be null");
+        synchronized (_root) {
+            ICallInterceptor[] interceptors = Arrays.copyOf(_root._interceptors, _root._interceptors.length + 1);
+            interceptors[interceptors.length - 1] = interceptor;
+            _root._interceptors = interceptors;
+        }
+    }
+
+    /**
+     * Installs a recorder for the latency, size and outcome of every call, including calls made through any
+     * {@link AsyncRESTClient} built on this client. See {@link CallMetrics} for the built-in one.
+     * 
+     * @param metricsRecorder the recorder to use, or null to stop measuring calls
+     */
+    public void setMetricsRecorder(IMetricsRecorder metricsRecorder) {
+        _root._metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * Installs a canonicalizer that shares repeated strings and teams, locations and seasons between the responses
+     * decoded by this client, including calls made through any {@link AsyncRESTClient} built on this client. Worth it
+     * when many responses are kept in memory; see {@link Canonicalizer}.
+     * 
+     * @param canonicalizer the canonicalizer to use, or null to give every response its own copies
+     */
+    public void setCanonicalizer(Canonicalizer canonicalizer) {
+        _root._canonicalizer = canonicalizer;
+        _root._decodingGson = canonicalizer == null ? _gson
+                : _gson.newBuilder().registerTypeAdapterFactory(Canonicalizer.adapterFactory(canonicalizer)).create();
+    }
+
+    /**
+     * Removes an interceptor from the chain.
+     * 
+     * @param interceptor the interceptor to remove
+     */
+    public void removeInterceptor(ICallInterceptor interceptor) {
+        synchronized (_root) {
+            List<ICallInterceptor> interceptors = new ArrayList<ICallInterceptor>(Arrays.asList(_root._interceptors));
+            if (interceptors.remove(interceptor))
+                _root._interceptors = interceptors.isEmpty() ? NO_INTERCEPTORS : interceptors.toArray(new ICallInterceptor[interceptors.size()]);
+        }
     }
 
     /**
@@ -80,10 +283,10 @@ public class RESTClient {
      * @see APIResponse
      */
     public APIResponse<UserInfo> Auth_GetUserToken(String username, String password) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.AUTH_GET_USER_TOKEN.newParams();
         params.put("username", username);
         params.put("password", password);
-        return call("Auth_GetUserToken", HttpVerb.POST, true, params, UserInfo.class);
+        return call(params, UserInfo.class);
     }
 
     /**
@@ -96,12 +299,12 @@ public class RESTClient {
      * @param includeRSVPInfo whether or not to include RSVP information for the user (if null, server default value is used).
      */
     public APIResponse<Event> Event_Get(String userToken, int teamId, int eventId, boolean includeRSVPInfo) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.EVENT_GET.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("eventId", eventId+"");
         params.put("includeRSVPInfo", includeRSVPInfo+"");
-        return call("Event_Get", HttpVerb.GET, false, params, Event.class);
+        return call(params, Event.class);
     }
 
     /**
@@ -113,11 +316,11 @@ public class RESTClient {
      * @param eventId id of the event for the attendance list to retrieve.
      */
     public APIResponse<AttendanceList> Event_GetAttendanceList(String userToken, int teamId, int eventId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.EVENT_GET_ATTENDANCE_LIST.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("eventId", eventId+"");
-        return call("Event_GetAttendanceList", HttpVerb.GET, false, params, AttendanceList.class);
+        return call(params, AttendanceList.class);
     }
 
     /**
@@ -138,7 +341,7 @@ public class RESTClient {
      * @param rsvpAsUserId optional. The user to RSVP for. This is used to allow a user to RSVP as a user that is in their list of linked users. If not provided, the RSVP will be saved for the user associated with the userToken parameter value.
      */
     public APIResponse<SaveRSVPResponse> Event_SaveRSVP(String userToken, int teamId, int eventId, String status, Integer addlMale, Integer addlFemale, String comments, Integer rsvpAsUserId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.EVENT_SAVE_RSVP.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("eventId", eventId+"");
@@ -147,7 +350,7 @@ public class RESTClient {
         if (addlFemale != null) params.put("addlFemale", addlFemale.toString());
         if (comments != null) params.put("comments", comments);
         if (rsvpAsUserId != null) params.put("rsvpAsUserId", rsvpAsUserId.toString());
-        return call("Event_SaveRSVP", HttpVerb.POST, false, params, SaveRSVPResponse.class);
+        return call(params, SaveRSVPResponse.class);
     }
 
     /**
@@ -159,12 +362,12 @@ public class RESTClient {
      * @param loadComments optional. Whether or not to load comments for the message. Default value: false
      */
     public APIResponse<Message> Message_Get(String userToken, int teamId, int messageId, Boolean loadComments) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.MESSAGE_GET.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("messageId", messageId+"");
         if (loadComments != null) params.put("loadComments", loadComments.toString()); 
-        return call("Message_Get", HttpVerb.GET, false, params, Message.class);
+        return call(params, Message.class);
     }
 
     /**
@@ -176,11 +379,11 @@ public class RESTClient {
      * @param messageId id of the message to delete.
      */
     public APIResponse<Boolean> Message_Delete(String userToken, int teamId, int messageId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.MESSAGE_DELETE.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("messageId", messageId+"");
-        return call("Message_Delete", HttpVerb.POST, false, params, Boolean.class);
+        return call(params, Boolean.class);
     }
 
     /**
@@ -197,7 +400,7 @@ public class RESTClient {
      * @param allowComments optional. Whether or not comments can be posted for the message. Default value: true.
      */
     public APIResponse<Message> Message_Save(String userToken, int teamId, Integer messageId, String title, String body, Boolean isPinned, Boolean sendNotifications, Boolean isHidden, Boolean allowComments) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.MESSAGE_SAVE.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         if (messageId != null) params.put("messageId", messageId.toString());
@@ -207,7 +410,7 @@ public class RESTClient {
         if (sendNotifications != null) params.put("sendNotifications", sendNotifications.toString());
         if (isHidden != null) params.put("isHidden", isHidden.toString());
         if (allowComments != null) params.put("allowComments", allowComments.toString());
-        return call("Message_Save", HttpVerb.POST, false, params, Message.class);
+        return call(params, Message.class);
     }
 
     /**
@@ -220,12 +423,12 @@ public class RESTClient {
      * @param commentId id of the comment to delete.
      */
     public APIResponse<Boolean> MessageComment_Delete(String userToken, int teamId, int messageId, int commentId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.MESSAGE_COMMENT_DELETE.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("messageId", messageId+"");
         params.put("commentId", commentId+"");
-        return call("MessageComment_Delete", HttpVerb.POST, false, params, Boolean.class);
+        return call(params, Boolean.class);
     }
 
     /**
@@ -237,12 +440,12 @@ public class RESTClient {
      * @param comment the text of the comment being added.
      */
     public APIResponse<Boolean> MessageComment_Add(String userToken, int teamId, int messageId, String comment) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.MESSAGE_COMMENT_ADD.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         params.put("messageId", messageId+"");
         params.put("comment", comment);
-        return call("MessageComment_Add", HttpVerb.POST, false, params, Boolean.class);
+        return call(params, Boolean.class);
     }
 
     /**
@@ -253,10 +456,10 @@ public class RESTClient {
      * @param teamId id of the team to retrieve.
      */
     public APIResponse<Team> Team_Get(String userToken, int teamId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.TEAM_GET.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
-        return call("Team_Get", HttpVerb.GET, false, params, Team.class);
+        return call(params, Team.class);
     }
 
     /**
@@ -275,17 +478,17 @@ public class RESTClient {
      * @param qty optional. The number of events to retrieve. Again, if using pagination in your application, this would typically be the page size, or you just want to reduce the response size (i.e., less events). Default value: 10
      */
     public APIResponse<Event[]> Team_GetEvents(String userToken, int teamId, Integer seasonId, Boolean includeRSVPInfo, String filter, Date startDateTime, Date endDateTime, Integer offset, Integer qty) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.TEAM_GET_EVENTS.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         if (seasonId != null) params.put("seasonId", seasonId.toString());
         if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
         if (filter != null) params.put("filter", filter);
-        if (startDateTime != null) params.put("startDateTime", _dateFormatter.format(startDateTime));
-        if (endDateTime != null) params.put("endDateTime", _dateFormatter.format(endDateTime));
+        if (startDateTime != null) params.put("startDateTime", formatDate(startDateTime));
+        if (endDateTime != null) params.put("endDateTime", formatDate(endDateTime));
         if (offset != null) params.put("offset", offset.toString());
         if (qty != null) params.put("qty", qty.toString());
-        return call("Team_GetEvents", HttpVerb.GET, false, params, Event[].class);
+        return call(params, Event[].class);
     }
 
     /**
@@ -300,7 +503,7 @@ public class RESTClient {
      * @param messageId optional. Used to retrieve a specific message. If not provided, all messages are retrieved.
      */
     public APIResponse<Message[]> Team_GetMessages(String userToken, int teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.TEAM_GET_MESSAGES.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         if (offset != null) params.put("offset", offset.toString());
@@ -308,7 +511,7 @@ public class RESTClient {
         if (sortBy != null) params.put("sortBy", sortBy);
         if (sortDirection != null) params.put("sortDirection", sortDirection);
         if (messageId != null) params.put("messageId", messageId.toString());
-        return call("Team_GetMessages", HttpVerb.GET, false, params, Message[].class);
+        return call(params, Message[].class);
     }
 
     /**
@@ -322,14 +525,14 @@ public class RESTClient {
      * @param sortDirection Optional. The sort direction for the team members returned. Valid values: ASC, DESC. Default value: ASC
      */
     public APIResponse<User> Team_GetRoster(String userToken, int teamId, Integer userId, Boolean includeInactive, String sortBy, String sortDirection) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.TEAM_GET_ROSTER.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
         if (userId != null) params.put("userId", userId.toString());
         if (includeInactive != null) params.put("includeInactive", includeInactive.toString());
         if (sortBy != null) params.put("sortBy", sortBy);
         if (sortDirection != null) params.put("sortDirection", sortDirection);
-        return call("Team_GetRoster", HttpVerb.GET, false, params, User.class);
+        return call(params, User.class);
     }
 
     /**
@@ -340,24 +543,24 @@ public class RESTClient {
      * @param teamId id of the team to retrieve seasons for.
      */
     public APIResponse<Season[]> Team_GetSeasons(String userToken, int teamId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.TEAM_GET_SEASONS.newParams();
         params.put("userToken", userToken);
         params.put("teamId", teamId+"");
-        return call("Team_GetSeasons", HttpVerb.GET, false, params, Season[].class);
+        return call(params, Season[].class);
     }
 
     public APIResponse<String> Test_GetRequest(String testParam) throws IOException {
-        return Test_Request(testParam, HttpVerb.GET);
+        return Test_Request(testParam, RequestTemplate.TEST_GET_REQUEST);
     }
 
     public APIResponse<String> Test_PostRequest(String testParam) throws IOException {
-        return Test_Request(testParam, HttpVerb.POST);
+        return Test_Request(testParam, RequestTemplate.TEST_POST_REQUEST);
     }
 
-    private APIResponse<String> Test_Request(String testParam, HttpVerb verb) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+    private APIResponse<String> Test_Request(String testParam, RequestTemplate template) throws IOException {
+        RequestParams params = template.newParams();
         if (testParam != null) params.put("testParam", testParam);
-        return call("Test_PostRequest", verb, false, params, String.class);
+        return call(params, String.class);
     }
 
     /**
@@ -366,9 +569,9 @@ public class RESTClient {
      * @param userToken API account/user token for the user to retrieve information for.
      */
     public APIResponse<User> User_Get(String userToken) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.USER_GET.newParams();
         params.put("userToken", userToken);
-        return call("User_Get", HttpVerb.GET, false, params, User.class);
+        return call(params, User.class);
     }
 
     /**
@@ -382,12 +585,12 @@ public class RESTClient {
      * @param includeRSVPInfo optional. Whether or not to include RSVP information for the user. NOTE: Please use this parameter sparingly! Passing a value of 'true' here requires additional work on the Team Cowboy server to retrieve RSVP information for the user. RSVP information should only be retrieved for events if your application will actually be using it! Default value: false
      */
     public APIResponse<Event> User_GetNextTeamEvent(String userToken, Integer teamId, Boolean dashboardTeamsOnly, Boolean includeRSVPInfo) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.USER_GET_NEXT_TEAM_EVENT.newParams();
         params.put("userToken", userToken);
         if (teamId != null) params.put("teamId", teamId.toString());
         if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
         if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
-        return call("User_GetNextTeamEvent", HttpVerb.GET, false, params, Event.class);
+        return call(params, Event.class);
     }
 
     /**
@@ -402,14 +605,14 @@ public class RESTClient {
      * @param includeRSVPInfo optional. Whether or not to include RSVP information for the user. NOTE: Please use this parameter sparingly! Passing a value of 'true' here requires additional work on the Team Cowboy server to retrieve RSVP information for the user. RSVP information should only be retrieved for events if your application will actually be using it! Default value: false
      */
     public APIResponse<Event[]> User_GetTeamEvents(String userToken, Date startDateTime, Date endDateTime, Integer teamId, Boolean dashboardTeamsOnly, Boolean includeRSVPInfo) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.USER_GET_TEAM_EVENTS.newParams();
         params.put("userToken", userToken);
-        if (startDateTime != null) params.put("startDateTime", _dateFormatter.format(startDateTime));
-        if (endDateTime != null) params.put("endDateTime", _dateFormatter.format(endDateTime));
+        if (startDateTime != null) params.put("startDateTime", formatDate(startDateTime));
+        if (endDateTime != null) params.put("endDateTime", formatDate(endDateTime));
         if (teamId != null) params.put("teamId", teamId.toString());
         if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
         if (includeRSVPInfo != null) params.put("includeRSVPInfo", includeRSVPInfo.toString());
-        return call("User_GetTeamEvents", HttpVerb.GET, false, params, Event[].class);
+        return call(params, Event[].class);
     }
     
     /**
@@ -425,7 +628,7 @@ public class RESTClient {
      * @param messageId optional. Used to retrieve a specific message. If not provided, all messages are retrieved.
      */
     public APIResponse<Message[]> User_GetTeamMessages(String userToken, Integer teamId, Integer offset, Integer qty, String sortBy, String sortDirection, Integer messageId) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.USER_GET_TEAM_MESSAGES.newParams();
         params.put("userToken", userToken);
         if (teamId != null) params.put("teamId", teamId.toString());
         if (offset != null) params.put("offset", offset.toString());
@@ -433,7 +636,7 @@ public class RESTClient {
         if (sortBy != null) params.put("sortBy", sortBy);
         if (sortDirection != null) params.put("sortDirection", sortDirection);
         if (messageId != null) params.put("messageId", messageId.toString());
-        return call("User_GetTeamMessages", HttpVerb.GET, false, params, Message[].class);
+        return call(params, Message[].class);
     }
 
     /**
@@ -443,130 +646,706 @@ public class RESTClient {
      * @param dashboardTeamsOnly optional. Whether or not to restrict the teams retrieved only to those on the user's Dashboard. Default value: false
      */
     public APIResponse<Team[]> User_GetTeams(String userToken, Boolean dashboardTeamsOnly) throws IOException {
-        TreeMap<String, String> params = new TreeMap<String, String>();
+        RequestParams params = RequestTemplate.USER_GET_TEAMS.newParams();
         params.put("userToken", userToken);
         if (dashboardTeamsOnly != null) params.put("dashboardTeamsOnly", dashboardTeamsOnly.toString());
-        return call("User_GetTeams", HttpVerb.GET, false, params, Team[].class);
+        return call(params, Team[].class);
     }
 
     /**
      * Private helper method to in
      * 
-     * @param method the method to call
-     * @param httpVerb the HTTP verb to use in the request
-     * @param secure whether the request should be done over HTTPS
-     * @param params the list of parameters to the method
+     * @param params the parameters to the method, which also identify the method, HTTP verb and whether the request
+     *        should be done over HTTPS
      * @param clazz the expected return type for the request 
-     * @return the wrapped response to the request
+     * @return the wrapped response to the request, as passed back through the installed interceptors
      */
-    private <T> APIResponse<T> call(String method, HttpVerb httpVerb, boolean secure, TreeMap<String, String> params, Class<T> clazz) throws IOException {
-        String response = invoke(method, httpVerb, secure, params);
-        
-        JsonParser parser = new JsonParser();
-        JsonObject result = parser.parse(response).getAsJsonObject();
-        boolean success = result.get("success").getAsBoolean();
-        Number requestSecs = result.get("requestSecs").getAsNumber();
-        
-        synchronized (_gson) {
-            return new APIResponse<T>(success, requestSecs,
-                    success ? _gson.fromJson(result.get("body"), clazz) : null,
-                    success ? null : _gson.fromJson(result.get("body"), APIError.class));
+    private <T> APIResponse<T> call(final RequestParams params, final Class<T> clazz) throws IOException {
+        IMetricsRecorder recorder = _root._metricsRecorder;
+        FlightEvents.CallEvent event = FlightEvents.beginCall();
+        if (recorder == null && event == null)
+            return intercept(params, clazz);
+
+        CallSample sample = new CallSample(params.template);
+        params.sample = sample;
+        APIResponse<T> response = null;
+        Throwable failure = null;
+        try {
+            response = intercept(params, clazz);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            sample.complete(response, failure);
+            if (recorder != null)
+                recorder.record(sample);
+            if (event != null)
+                FlightEvents.endCall(event, sample);
         }
     }
-    
+
     /**
-     * Invokes a Team Cowboy REST method.
+     * Makes a call through the installed interceptors.
+     */
+    private <T> APIResponse<T> intercept(final RequestParams params, final Class<T> clazz) throws IOException {
+        ICallInterceptor[] interceptors = _root._interceptors;
+        if (interceptors.length == 0)
+            return dispatch(params, clazz, null);
+
+        InterceptedCall call = new InterceptedCall(params);
+        try {
+            APIResponse<T> response = call.before(interceptors, clazz);
+            if (response == null)
+                response = dispatch(params, clazz, call);
+            return call.after(interceptors, response);
+        } catch (IOException | RuntimeException e) {
+            call.failed(interceptors, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a call through the response cache and request coalescer, if they are installed.
      * 
-     * @param method the method to call
-     * @param httpVerb the HTTP verb to use in the request
-     * @param secure whether the request should be done over HTTPS
-     * @param params the list of parameters to the method
-     * @return the body of the HTTP response
+     * @param call the call as seen by the interceptors, to be given the raw response, or null if there are none
      */
-    private String invoke(String method, HttpVerb httpVerb, boolean secure, TreeMap<String, String> params) throws IOException {
-        String paramString = makeHttpParamString(httpVerb, method, params);
-        
-        switch (httpVerb) {
-        case GET:
-            return _httpProvider.makeHTTPCall((secure ? "https://" : "http://") + ENDPOINT + "?" + paramString, "", httpVerb.toString());
-        case POST:
-            return _httpProvider.makeHTTPCall((secure ? "https://" : "http://") + ENDPOINT, paramString, httpVerb.toString());
-        default:
-            return null;
+    private <T> APIResponse<T> dispatch(final RequestParams params, final Class<T> clazz, InterceptedCall call) throws IOException {
+        ResponseCache cache = _root._responseCache;
+        RequestCoalescer coalescer = _root._requestCoalescer;
+        long timeToLive = cache != null && params.template.httpVerb == HttpVerb.GET ? cache.getTimeToLiveNanos(params.template.method) : 0;
+        if (timeToLive > 0 || (coalescer != null && params.template.httpVerb == HttpVerb.GET)) {
+            String key = params.canonicalKey(_publicApiKey);
+            if (timeToLive > 0) {
+                String cached = cache.get(key);
+                if (cached != null) {
+                    FlightEvents.cacheHit(params.template.method, false);
+                    if (call != null)
+                        call.setRawResponse(cached);
+                    return decode(cached, clazz, params.sample);
+                }
+            }
+
+            String fetched;
+            APIResponse<T> result;
+            try {
+                if (coalescer != null) {
+                    final AtomicReference<APIResponse<T>> mine = new AtomicReference<APIResponse<T>>();
+                    fetched = coalescer.execute(params.template.method, key, _deadline, () -> {
+                        Exchange<T> exchange = send(params, clazz, true);
+                        mine.set(exchange.response);
+                        return exchange.raw;
+                    });
+                    result = mine.get() != null ? mine.get() : decode(fetched, clazz, params.sample);
+                } else {
+                    Exchange<T> exchange = send(params, clazz, true);
+                    fetched = exchange.raw;
+                    result = exchange.response;
+                }
+            } catch (CircuitOpenException coe) {
+                String stale = timeToLive > 0 ? staleResponse(cache, key) : null;
+                if (stale == null)
+                    throw coe;
+                FlightEvents.cacheHit(params.template.method, true);
+                if (call != null)
+                    call.setRawResponse(stale);
+                return decode(stale, clazz, params.sample);
+            }
+            if (timeToLive > 0 && result.getSuccess())
+                cache.put(key, fetched, timeToLive);
+            if (call != null)
+                call.setRawResponse(fetched);
+            return result;
         }
+
+        if (call == null)
+            return send(params, clazz, false).response;
+        Exchange<T> exchange = send(params, clazz, true);
+        call.setRawResponse(exchange.raw);
+        return exchange.response;
     }
 
     /**
-     * Returns the parameter string for a given method call and set of parameters.
-     *  
-     * @param httpVerb the HTTP verb to use
-     * @param method
-     * @param params
+     * Asynchronous counterpart of {@link #call(RequestParams, Class)} used by {@link AsyncRESTClient}. The request is
+     * signed as it is sent and the response is decoded on the given executor.
+     *
+     * @param params the parameters to the method, with the sample to record the call's measurements in already set if
+     *        the caller wants them
+     * @param clazz the expected return type for the request
+     * @param httpProvider the asynchronous transport to send the request with
+     * @param executor the executor to decode the response on
+     * @return a future for the wrapped response to the request, which aborts the request in flight if it is cancelled
+     *         or the deadline passes
      */
-    private String makeHttpParamString(HttpVerb httpVerb, String method, TreeMap<String, String> params) {
-        StringBuffer buffer = new StringBuffer();
-        String timestamp = (System.currentTimeMillis()/1000)+"";
-        String nonce = timestamp + _random.nextInt(99);
-        StringBuffer paramsBuffer = new StringBuffer();
-        
-        //If you're interested in debugging the nonce:
-        //System.out.println("Method: " + method + ", Nonce: " + nonce);
+    <T> CompletableFuture<APIResponse<T>> callAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor) {
+        final IMetricsRecorder recorder = _root._metricsRecorder;
+        final FlightEvents.CallEvent event = FlightEvents.beginCall();
+        if (recorder == null && event == null && params.sample == null)
+            return interceptAsync(params, clazz, httpProvider, executor);
 
-        params.put("api_key", _publicApiKey);
-        params.put("method", method);
-        params.put("timestamp", timestamp);
-        params.put("nonce", nonce);
-        params.put("response_type", "json");
+        if (params.sample == null)
+            params.sample = new CallSample(params.template);
+        final CallSample sample = params.sample;
+        CompletableFuture<APIResponse<T>> result = interceptAsync(params, clazz, httpProvider, executor);
+        result.whenComplete((response, failure) -> {
+            sample.complete(response, failure);
+            if (recorder != null)
+                recorder.record(sample);
+            if (event != null)
+                FlightEvents.endCall(event, sample);
+        });
+        return result;
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #intercept(RequestParams, Class)}.
+     */
+    private <T> CompletableFuture<APIResponse<T>> interceptAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor) {
+        final ICallInterceptor[] interceptors = _root._interceptors;
+        if (interceptors.length == 0)
+            return dispatchAsync(params, clazz, httpProvider, executor, null);
 
-        appendParams(paramsBuffer, params, true, false);
-        buffer.append(paramsBuffer.toString());
-        
-        String sigInput = _privateApiKey + "|" + httpVerb.toString() + "|" + method + "|" + timestamp + "|" + nonce + "|" + paramsBuffer.toString().toLowerCase(); 
-        sha1.update(sigInput.getBytes());
-        appendParam(buffer, "sig", new BigInteger(1, sha1.digest()).toString(16).toLowerCase(), false, true);
-        sha1.reset();
-        
-        return buffer.toString();
+        final InterceptedCall call = new InterceptedCall(params);
+        CompletableFuture<APIResponse<T>> response;
+        try {
+            APIResponse<T> answer = call.before(interceptors, clazz);
+            response = answer != null ? CompletableFuture.completedFuture(answer) : dispatchAsync(params, clazz, httpProvider, executor, call);
+        } catch (RuntimeException re) {
+            call.failed(interceptors, re);
+            throw re;
+        }
+        final CompletableFuture<APIResponse<T>> sent = response;
+        CompletableFuture<APIResponse<T>> result = sent.handle((value, failure) -> {
+            if (failure != null) {
+                call.failed(interceptors, failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+                throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+            }
+            return call.after(interceptors, value);
+        });
+        result.whenComplete((value, failure) -> {
+            if (failure instanceof CancellationException)
+                sent.cancel(true);
+        });
+        return result;
     }
 
     /**
-     * Appends a sorted map of name/value pairs in HTTP parameter format to a string buffer.
-     * 
-     * @param buffer the StringBuffer to append to
-     * @param params the map of name value pairs to append
-     * @param urlEncoded whether to URL encode the value or not
-     * @param ampersandPrefix whether to prepend an ampersand before the name/value pair
+     * Asynchronous counterpart of {@link #dispatch(RequestParams, Class, InterceptedCall)}.
+     */
+    private <T> CompletableFuture<APIResponse<T>> dispatchAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor, final InterceptedCall call) {
+        final CallContext context = new CallContext(_deadline);
+        if (_deadline != null && _deadline.isExpired()) {
+            CompletableFuture<APIResponse<T>> failed = new CompletableFuture<APIResponse<T>>();
+            failed.completeExceptionally(new DeadlineExceededException("Deadline passed before calling " + params.template.method));
+            return failed;
+        }
+
+        boolean get = params.template.httpVerb == HttpVerb.GET;
+        final ResponseCache cache = _root._responseCache;
+        RequestCoalescer coalescer = _root._requestCoalescer;
+        final long timeToLive = cache != null && get ? cache.getTimeToLiveNanos(params.template.method) : 0;
+        final String key = timeToLive > 0 || (coalescer != null && get) ? params.canonicalKey(_publicApiKey) : null;
+        if (timeToLive > 0) {
+            String cached = cache.get(key);
+            if (cached != null) {
+                FlightEvents.cacheHit(params.template.method, false);
+                if (call != null)
+                    call.setRawResponse(cached);
+                return CompletableFuture.completedFuture(decode(cached, clazz, params.sample));
+            }
+        }
+
+        CompletableFuture<Exchange<T>> response;
+        if (coalescer != null && get) {
+            final AtomicReference<APIResponse<T>> mine = new AtomicReference<APIResponse<T>>();
+            response = coalescer.executeAsync(params.template.method, key, context.deadline, () -> sendAsync(params, clazz, httpProvider, executor, true, context).thenApply(exchange -> {
+                mine.set(exchange.response);
+                return exchange.raw;
+            })).thenApplyAsync(fetched -> new Exchange<T>(mine.get() != null ? mine.get() : decode(fetched, clazz, params.sample), fetched), executor);
+        } else {
+            response = sendAsync(params, clazz, httpProvider, executor, key != null || call != null, context);
+        }
+
+        CompletableFuture<APIResponse<T>> result = response.handle((exchange, failure) -> {
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                String stale = cause instanceof CircuitOpenException && timeToLive > 0 ? staleResponse(cache, key) : null;
+                if (stale == null)
+                    throw failure instanceof CompletionException ? (CompletionException) failure : new CompletionException(failure);
+                FlightEvents.cacheHit(params.template.method, true);
+                if (call != null)
+                    call.setRawResponse(stale);
+                return decode(stale, clazz, params.sample);
+            }
+            if (timeToLive > 0 && exchange.response.getSuccess())
+                cache.put(key, exchange.raw, timeToLive);
+            if (call != null)
+                call.setRawResponse(exchange.raw);
+            return exchange.response;
+        });
+        if (_deadline != null)
+            result.orTimeout(_deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, failure) -> {
+            if (failure instanceof CancellationException || failure instanceof TimeoutException)
+                context.cancel();
+        });
+        return result;
+    }
+
+    /**
+     * Returns a cached response for a call failed fast by an open circuit, however old, if the circuit breaker allows
+     * serving stale responses.
+     */
+    private String staleResponse(ResponseCache cache, String key) {
+        CircuitBreaker breaker = _root._circuitBreaker;
+        return breaker != null && breaker.isServeStale() ? cache.getStale(key) : null;
+    }
+
+    /**
+     * Sends a call, retrying or hedging it as the installed {@link RetryPolicy} allows.
+     *
+     * @param params the parameters to the method
+     * @param clazz the expected return type for the request
+     * @param buffer whether to keep the raw response for caching or sharing; otherwise it is streamed where the
+     *        provider allows it
+     * @return the decoded response
+     */
+    private <T> Exchange<T> send(final RequestParams params, final Class<T> clazz, final boolean buffer) throws IOException {
+        RetryPolicy retryPolicy = _root._retryPolicy;
+        if (retryPolicy == null)
+            return attempt(params, clazz, buffer);
+        return retryPolicy.execute(params.template, params.sample, _deadline, sample -> attempt(params.forAttempt(sample), clazz, buffer));
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #send(RequestParams, Class, boolean)}.
+     *
+     * @param context tracks the call's deadline and the requests sent for it
+     */
+    private <T> CompletableFuture<Exchange<T>> sendAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor, final boolean buffer, final CallContext context) {
+        RetryPolicy retryPolicy = _root._retryPolicy;
+        if (retryPolicy == null)
+            return attemptAsync(params, clazz, httpProvider, executor, buffer, context);
+        return retryPolicy.executeAsync(params.template, params.sample, context, executor,
+                (sample, attemptContext) -> attemptAsync(params.forAttempt(sample), clazz, httpProvider, executor, buffer, attemptContext));
+    }
+
+    /**
+     * Sends one freshly signed request and decodes its response, through the circuit breaker and within the
+     * concurrency limit if they are installed.
+     */
+    private <T> Exchange<T> attempt(RequestParams params, Class<T> clazz, boolean buffer) throws IOException {
+        if (_deadline != null && _deadline.isExpired())
+            throw new DeadlineExceededException("Deadline passed before calling " + params.template.method);
+        CircuitBreaker breaker = _root._circuitBreaker;
+        CircuitBreaker.Ticket ticket = breaker != null ? breaker.acquire(params.template.method) : null;
+        PriorityScheduler scheduler = _root._priorityScheduler;
+        PriorityScheduler.Slot slot = null;
+        ConcurrencyLimiter limiter = _root._concurrencyLimiter;
+        ConcurrencyLimiter.Permit permit = null;
+        APIResponse<T> result = null;
+        Throwable failure = null;
+        try {
+            if (scheduler != null) {
+                FlightEvents.ThrottleWaitEvent wait = FlightEvents.beginWait(params.template.method, "PriorityScheduler");
+                try {
+                    slot = scheduler.acquire(_lane, maxWaitNanos(_deadline));
+                } finally {
+                    FlightEvents.endWait(wait, slot != null);
+                }
+            }
+            if (limiter != null) {
+                FlightEvents.ThrottleWaitEvent wait = FlightEvents.beginWait(params.template.method, "ConcurrencyLimiter");
+                try {
+                    permit = limiter.acquire(_publicApiKey, params.template.method, maxWaitNanos(_deadline));
+                } finally {
+                    FlightEvents.endWait(wait, permit != null);
+                }
+            }
+            if (ticket != null)
+                ticket.sent();
+
+            int timeoutMillis = timeoutMillis(_deadline, params.template.method);
+            if (buffer) {
+                String raw = invokeForString(params, timeoutMillis);
+                result = decode(raw, clazz, params.sample);
+                return new Exchange<T>(result, raw);
+            }
+
+            Reader response = invoke(params, timeoutMillis);
+            try {
+                result = decode(response, clazz, params.sample);
+            } finally {
+                response.close();
+            }
+            return new Exchange<T>(result, null);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (permit != null)
+                limiter.release(permit, result, failure, _deadline);
+            if (slot != null)
+                scheduler.release(slot);
+            if (ticket != null)
+                breaker.record(ticket, result, failure, _deadline);
+        }
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #attempt(RequestParams, Class, boolean)}. The request is signed once the call
+     * is let through the priority scheduler and concurrency limit, and fails fast if the deadline has passed by then.
      */
-    private void appendParams(StringBuffer buffer, TreeMap<String, String> params, boolean urlEncode, boolean ampersandPrefix) {
-        if (params == null || params.size() == 0)
+    private <T> CompletableFuture<Exchange<T>> attemptAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor, final boolean buffer, final CallContext context) {
+        final CircuitBreaker breaker = _root._circuitBreaker;
+        final CircuitBreaker.Ticket ticket;
+        try {
+            if (context.deadline != null && context.deadline.isExpired())
+                throw new DeadlineExceededException("Deadline passed before calling " + params.template.method);
+            ticket = breaker != null ? breaker.acquire(params.template.method) : null;
+        } catch (IOException ioe) {
+            CompletableFuture<Exchange<T>> failed = new CompletableFuture<Exchange<T>>();
+            failed.completeExceptionally(ioe);
+            return failed;
+        }
+
+        final PriorityScheduler scheduler = _root._priorityScheduler;
+        CompletableFuture<Exchange<T>> response;
+        if (scheduler == null) {
+            response = limitedAsync(params, clazz, httpProvider, executor, buffer, context, ticket);
+        } else {
+            CompletableFuture<PriorityScheduler.Slot> waiting = scheduler.acquireAsync(_lane, maxWaitNanos(context.deadline));
+            context.register(waiting);
+            timeWait(waiting, params.template.method, "PriorityScheduler");
+            response = waiting.thenCompose(slot -> {
+                CompletableFuture<Exchange<T>> sent;
+                try {
+                    sent = limitedAsync(params, clazz, httpProvider, executor, buffer, context, ticket);
+                } catch (RuntimeException re) {
+                    scheduler.release(slot);
+                    throw re;
+                }
+                return sent.whenComplete((exchange, failure) -> scheduler.release(slot));
+            });
+        }
+        if (ticket == null)
+            return response;
+        return response.whenComplete((exchange, failure) -> breaker.record(ticket, exchange != null ? exchange.response : null, failure, context.deadline));
+    }
+
+    /**
+     * Sends a call through the concurrency limit, if there is one, once the scheduler has let it through.
+     */
+    private <T> CompletableFuture<Exchange<T>> limitedAsync(final RequestParams params, final Class<T> clazz, final IAsyncHttpProvider httpProvider, final Executor executor, final boolean buffer, final CallContext context, final CircuitBreaker.Ticket ticket) {
+        final ConcurrencyLimiter limiter = _root._concurrencyLimiter;
+        CompletableFuture<Exchange<T>> response;
+        if (limiter == null) {
+            if (ticket != null)
+                ticket.sent();
+            response = exchangeAsync(params, clazz, httpProvider, executor, buffer, context);
+        } else {
+            CompletableFuture<ConcurrencyLimiter.Permit> waiting = limiter.acquireAsync(_publicApiKey, params.template.method, maxWaitNanos(context.deadline));
+            timeWait(waiting, params.template.method, "ConcurrencyLimiter");
+            response = waiting.thenCompose(permit -> {
+                if (ticket != null)
+                    ticket.sent();
+                CompletableFuture<Exchange<T>> sent;
+                try {
+                    sent = exchangeAsync(params, clazz, httpProvider, executor, buffer, context);
+                } catch (RuntimeException re) {
+                    limiter.release(permit, null, re, context.deadline);
+                    throw re;
+                }
+                return sent.whenComplete((exchange, failure) -> limiter.release(permit, exchange != null ? exchange.response : null, failure, context.deadline));
+            });
+        }
+        return response;
+    }
+
+    /**
+     * Sends one signed request through an asynchronous transport and decodes the response on the given executor.
+     */
+    private <T> CompletableFuture<Exchange<T>> exchangeAsync(RequestParams params, final Class<T> clazz, IAsyncHttpProvider httpProvider, Executor executor, final boolean buffer, CallContext context) {
+        CompletableFuture<String> sent;
+        try {
+            sent = invokeAsync(params, httpProvider, timeoutMillis(context.deadline, params.template.method));
+        } catch (DeadlineExceededException dee) {
+            sent = new CompletableFuture<String>();
+            sent.completeExceptionally(dee);
+        }
+        context.register(sent);
+        final CallSample sample = params.sample;
+        if (sample != null) {
+            sent = sent.thenApply(fetched -> {
+                sample.received(fetched);
+                return fetched;
+            });
+        }
+        return sent.thenApplyAsync(fetched -> new Exchange<T>(decode(fetched, clazz, sample), buffer ? fetched : null), executor);
+    }
+
+    /**
+     * Records the time a call waits at a throttle as a flight recorder event, if it is enabled and the call has to wait.
+     */
+    private static void timeWait(CompletableFuture<?> waiting, String method, String throttle) {
+        if (waiting.isDone())
             return;
+        final FlightEvents.ThrottleWaitEvent wait = FlightEvents.beginWait(method, throttle);
+        if (wait != null)
+            waiting.whenComplete((granted, failure) -> FlightEvents.endWait(wait, failure == null));
+    }
+
+    /**
+     * Returns the longest a call may wait for the concurrency limit before its deadline.
+     */
+    private static long maxWaitNanos(Deadline deadline) {
+        return deadline != null ? deadline.remainingNanos() : Long.MAX_VALUE;
+    }
 
-        boolean isFirst = true;
-        for (Entry<String, String> key : params.entrySet()) {
-            appendParam(buffer, key.getKey(), key.getValue(), urlEncode, !isFirst || ampersandPrefix);
-            isFirst = false;
+    /**
+     * Returns the transport timeout for a request: the time left before the deadline, or 0 for no limit.
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    private static int timeoutMillis(Deadline deadline, String method) throws DeadlineExceededException {
+        if (deadline == null)
+            return 0;
+        if (deadline.isExpired())
+            throw new DeadlineExceededException("Deadline passed before calling " + method);
+        return deadline.remainingTimeoutMillis();
+    }
+
+    /**
+     * Decodes the JSON envelope returned by the API, timing it if the call is being measured.
+     */
+    private <T> APIResponse<T> decode(String response, Class<T> clazz, CallSample sample) {
+        if (sample == null)
+            return decode(response, clazz);
+        sample.parsing();
+        try {
+            return decode(response, clazz);
+        } finally {
+            sample.parsed();
+        }
+    }
+
+    /**
+     * Decodes a streamed JSON envelope, timing it if the call is being measured.
+     */
+    private <T> APIResponse<T> decode(Reader response, Class<T> clazz, CallSample sample) throws IOException {
+        if (sample == null)
+            return decode(response, clazz);
+        sample.parsing();
+        try {
+            return decode(response, clazz);
+        } finally {
+            sample.parsed();
         }
     }
 
     /**
-     * Appends a parameter in HTTP parameter format to string buffer.
+     * Decodes the JSON envelope returned by the API.
+     *
+     * @param response the body of the HTTP response
+     * @param clazz the expected return type for the request
+     * @return the wrapped response to the request
+     */
+    <T> APIResponse<T> decode(String response, Class<T> clazz) {
+        try {
+            return decode(new StringReader(response), clazz);
+        } catch (IOException ioe) {
+            //Only malformed JSON can fail here, and that is already reported as a JsonSyntaxException.
+            throw new JsonIOException(ioe);
+        }
+    }
+
+    /**
+     * Decodes the JSON envelope returned by the API in a single pass. The body is bound straight to the expected type
+     * from the reader; it is only buffered as a tree if the server sends it before the success flag.
+     *
+     * @param response the body of the HTTP response
+     * @param clazz the expected return type for the request
+     * @return the wrapped response to the request
+     */
+    <T> APIResponse<T> decode(Reader response, Class<T> clazz) throws IOException {
+        Canonicalizer canonicalizer = _root._canonicalizer;
+        if (canonicalizer != null)
+            canonicalizer.beginResponse();
+        Gson gson = _root._decodingGson;
+        JsonReader reader = new JsonReader(response);
+        Boolean success = null;
+        Number requestSecs = null;
+        T body = null;
+        APIError error = null;
+        JsonElement pendingBody = null;
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("success".equals(name)) {
+                    success = reader.nextBoolean();
+                } else if ("requestSecs".equals(name)) {
+                    requestSecs = gson.getAdapter(Number.class).read(reader);
+                } else if ("body".equals(name) && success == null) {
+                    pendingBody = gson.getAdapter(JsonElement.class).read(reader);
+                } else if ("body".equals(name) && success) {
+                    body = gson.getAdapter(clazz).read(reader);
+                } else if ("body".equals(name)) {
+                    error = gson.getAdapter(APIError.class).read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (MalformedJsonException mje) {
+            throw new JsonSyntaxException(mje);
+        } catch (IllegalStateException ise) {
+            throw new JsonSyntaxException(ise);
+        }
+
+        if (success == null)
+            throw new JsonSyntaxException("Response is missing the success flag");
+        if (pendingBody != null) {
+            body = success ? gson.fromJson(pendingBody, clazz) : null;
+            error = success ? null : gson.fromJson(pendingBody, APIError.class);
+        }
+        return new APIResponse<T>(success, requestSecs, body, error);
+    }
+
+
+    /**
+     * Invokes a Team Cowboy REST method.
+     * 
+     * @param params the parameters to the method
+     * @param timeoutMillis the connect and read timeout, or 0 for none
+     * @return a reader over the body of the HTTP response, streamed from the connection if the provider supports it
+     */
+    private Reader invoke(RequestParams params, int timeoutMillis) throws IOException {
+        CallSample sample = params.sample;
+        if (sample != null)
+            sample.signing();
+        HttpVerb httpVerb = params.template.httpVerb;
+        String paramString = makeHttpParamString(params);
+        String url = makeUrl(httpVerb, params.template.secure, paramString);
+        String body = httpVerb == HttpVerb.POST ? paramString : "";
+        if (sample != null)
+            sample.sent(url, body);
+
+        if (_httpProvider instanceof IStreamingHttpProvider) {
+            IStreamingHttpProvider streaming = (IStreamingHttpProvider) _httpProvider;
+            InputStream stream = timeoutMillis > 0 ? streaming.openHTTPStream(url, body, httpVerb.toString(), timeoutMillis) : streaming.openHTTPStream(url, body, httpVerb.toString());
+            if (sample != null) {
+                sample.firstByte();
+                stream = sample.counting(stream);
+            }
+            return new InputStreamReader(stream, StandardCharsets.UTF_8);
+        }
+        return new StringReader(invokeProvider(url, body, httpVerb, timeoutMillis, sample));
+    }
+
+    /**
+     * Invokes a Team Cowboy REST method through an asynchronous transport.
+     * 
+     * @param params the parameters to the method
+     * @param httpProvider the transport to send the request with
+     * @param timeoutMillis the request timeout, or 0 for none
+     * @return a future for the body of the HTTP response
+     */
+    private CompletableFuture<String> invokeAsync(RequestParams params, IAsyncHttpProvider httpProvider, int timeoutMillis) {
+        CallSample sample = params.sample;
+        if (sample != null)
+            sample.signing();
+        HttpVerb httpVerb = params.template.httpVerb;
+        String paramString = makeHttpParamString(params);
+        String url = makeUrl(httpVerb, params.template.secure, paramString);
+        String body = httpVerb == HttpVerb.POST ? paramString : "";
+        if (sample != null)
+            sample.sent(url, body);
+
+        return timeoutMillis > 0 ? httpProvider.makeHTTPCallAsync(url, body, httpVerb.toString(), timeoutMillis) : httpProvider.makeHTTPCallAsync(url, body, httpVerb.toString());
+    }
+
+    /**
+     * Invokes a Team Cowboy REST method, buffering the whole response.
      * 
-     * @param buffer the StringBuffer to append to
-     * @param name the name of the parameter
-     * @param value the value for the parameter
-     * @param urlEncode whether to URL encode the value or not
-     * @param ampersandPrefix whether to prepend an ampersand before the name/value pair
+     * @param params the parameters to the method
+     * @param timeoutMillis the connect and read timeout, or 0 for none
+     * @return the body of the HTTP response
+     */
+    private String invokeForString(RequestParams params, int timeoutMillis) throws IOException {
+        CallSample sample = params.sample;
+        if (sample != null)
+            sample.signing();
+        HttpVerb httpVerb = params.template.httpVerb;
+        String paramString = makeHttpParamString(params);
+        String url = makeUrl(httpVerb, params.template.secure, paramString);
+        String body = httpVerb == HttpVerb.POST ? paramString : "";
+        if (sample != null)
+            sample.sent(url, body);
+
+        return invokeProvider(url, body, httpVerb, timeoutMillis, sample);
+    }
+
+    /**
+     * Makes a blocking call through the provider, passing the timeout on only when there is one so that providers
+     * written before timeouts existed see the calls they always have.
      */
-    private void appendParam(StringBuffer buffer, String name, String value, boolean urlEncode, boolean ampersandPrefix) {
-        if (ampersandPrefix) buffer.append("&");
-        if (urlEncode) {
+    private String invokeProvider(String url, String body, HttpVerb httpVerb, int timeoutMillis, CallSample sample) throws IOException {
+        String response = timeoutMillis > 0 ? _httpProvider.makeHTTPCall(url, body, httpVerb.toString(), timeoutMillis) : _httpProvider.makeHTTPCall(url, body, httpVerb.toString());
+        if (sample != null)
+            sample.received(response);
+        return response;
+    }
+
+    /**
+     * Returns the URL to send a request to. GET requests carry their parameters in the query string.
+     *
+     * @param httpVerb the HTTP verb to use in the request
+     * @param secure whether the request should be done over HTTPS
+     * @param paramString the signed parameter string
+     */
+    private static String makeUrl(HttpVerb httpVerb, boolean secure, String paramString) {
+        String url = (secure ? "https://" : "http://") + ENDPOINT;
+        return httpVerb == HttpVerb.GET ? url + "?" + paramString : url;
+    }
+
+    /**
+     * Formats a date the way the API expects it in request parameters.
+     */
+    String formatDate(Date date) {
+        return _dateFormatter.format(date.toInstant());
+    }
+
+    /**
+     * Returns a fresh SHA-1 digest for a signing thread, cloning the one created by the constructor where the provider
+     * allows it.
+     */
+    private static MessageDigest newDigest(MessageDigest prototype) {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException cnse) {
             try {
-                value = URLEncoder.encode(value, "UTF-8").replace("+", "%20");
-            } catch (UnsupportedEncodingException uee) {
-                //Should never happen as UTF-8 should always be supported.
-                throw new RuntimeException(uee);
+                return MessageDigest.getInstance(prototype.getAlgorithm());
+            } catch (NoSuchAlgorithmException nsae) {
+                //Should never happen as the algorithm was available when the client was created.
+                throw new RuntimeException(nsae);
             }
         }
-        buffer.append(name).append("=").append(value);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the signed parameter string for a given method call and set of parameters.
+     *  
+     * @param params the parameters to the method
+     */
+    private String makeHttpParamString(RequestParams params) {
+        String timestamp = (System.currentTimeMillis()/1000)+"";
+        String nonce = _nonces.next();
+
+        //If you're interested in debugging the nonce:
+        //System.out.println("Method: " + params.template.method + ", Nonce: " + nonce);
+
+        return _signer.get().sign(params, _publicApiKey, _privateApiKey, timestamp, nonce);
+    }
+}
@@ -0,0 +1,104 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.downforce.teamcowboy.rest.response.SaveRSVPResponse;
+
+/**
+ * Saves many RSVPs with <code>Event_SaveRSVP</code>, keeping several calls in flight at once instead of waiting for each
+ * to finish before sending the next. Calls are limited both in how many are in flight and in how many are started per
+ * second, so a large batch does not trip the API's rate limits.
+ *
+ * <p>When a batch holds more than one entry for the same event and user, only the last one is sent; the earlier ones
+ * are reported as superseded and share its response. Every entry gets exactly one {@link RSVPResult}, in the order
+ * the entries were given. A failed call does not fail the batch: its result carries an {@link APIError}, with
+ * {@link APIError#CLIENT_TRANSPORT_ERROR_CODE} and an HTTP response of 0 when the failure happened on the client.</p>
+ *
+ * @since 0.2
+ */
+public class RSVPBatchSubmitter {
+	public static final int DEFAULT_MAX_CONCURRENCY = 4;
+	public static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+
+	private final AsyncRESTClient client;
+	private final AsyncLimiter limiter;
+	private final TokenBucket rateLimit;
+
+	/**
+	 * Creates a submitter with {@link #DEFAULT_MAX_CONCURRENCY} and {@link #DEFAULT_REQUESTS_PER_SECOND}.
+	 */
+	public RSVPBatchSubmitter(AsyncRESTClient client) {
+		this(client, DEFAULT_MAX_CONCURRENCY, DEFAULT_REQUESTS_PER_SECOND);
+	}
+
+	/**
+	 * @param client the client to make the calls with
+	 * @param maxConcurrency the maximum number of calls in flight at once
+	 * @param requestsPerSecond the maximum rate at which calls are started
+	 */
+	public RSVPBatchSubmitter(AsyncRESTClient client, int maxConcurrency, double requestsPerSecond) {
+		this.client = client;
+		this.limiter = new AsyncLimiter(maxConcurrency);
+		this.rateLimit = new TokenBucket(requestsPerSecond, maxConcurrency);
+	}
+
+	/**
+	 * Saves a batch of RSVPs, blocking until every call has completed.
+	 *
+	 * @param userToken API account/user token. See {@link RESTClient#Auth_GetUserToken(String, String)}.
+	 * @param entries the RSVPs to save
+	 * @return one result per entry, in the same order
+	 */
+	public List<RSVPResult> submit(String userToken, List<RSVPEntry> entries) {
+		return submitAsync(userToken, entries).join();
+	}
+
+	/**
+	 * Saves a batch of RSVPs without blocking. The future always completes normally; failures are reported per entry.
+	 *
+	 * @param userToken API account/user token. See {@link RESTClient#Auth_GetUserToken(String, String)}.
+	 * @param entries the RSVPs to save
+	 * @return a future for one result per entry, in the same order
+	 */
+	public CompletableFuture<List<RSVPResult>> submitAsync(final String userToken, final List<RSVPEntry> entries) {
+		final int size = entries.size();
+		// For each entry, the index of the last entry for the same event and user
+		final int[] winner = new int[size];
+		Map<String, Integer> lastIndex = new HashMap<String, Integer>();
+		for (int i = 0; i < size; ++i) {
+			RSVPEntry entry = entries.get(i);
+			lastIndex.put(entry.getEventId() + ":" + entry.getUserId(), i);
+		}
+		for (int i = 0; i < size; ++i) {
+			RSVPEntry entry = entries.get(i);
+			winner[i] = lastIndex.get(entry.getEventId() + ":" + entry.getUserId());
+		}
+
+		final List<CompletableFuture<APIResponse<SaveRSVPResponse>>> calls = new ArrayList<CompletableFuture<APIResponse<SaveRSVPResponse>>>(size);
+		for (int i = 0; i < size; ++i)
+			calls.add(winner[i] == i ? send(userToken, entries.get(i)) : null);
+
+		return CompletableFuture.allOf(calls.stream().filter(call -> call != null).toArray(CompletableFuture<?>[]::new)).thenApply(done -> {
+			List<RSVPResult> results = new ArrayList<RSVPResult>(size);
+			for (int i = 0; i < size; ++i)
+				results.add(new RSVPResult(entries.get(i), calls.get(winner[i]).join(), winner[i] != i));
+			return results;
+		});
+	}
+
+	private CompletableFuture<APIResponse<SaveRSVPResponse>> send(final String userToken, final RSVPEntry entry) {
+		return limiter.submit(() -> {
+			long wait = rateLimit.reserve();
+			CompletableFuture<Void> ready = wait > 0
+					? CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS))
+					: CompletableFuture.completedFuture(null);
+			return ready.thenCompose(go -> client.Event_SaveRSVP(userToken, entry.getTeamId(), entry.getEventId(), entry.getStatus(),
+					entry.getAddlMale(), entry.getAddlFemale(), entry.getComments(), entry.getUserId()));
+		}).exceptionally(failure -> new APIResponse<SaveRSVPResponse>(false, null, null, APIError.fromClientFailure(failure)));
+	}
+}
@@ -0,0 +1,64 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * One RSVP to save as part of a batch. See {@link RSVPBatchSubmitter}.
+ * 
+ * @since 0.2
+ */
+public class RSVPEntry {
+	private final int teamId;
+	private final int eventId;
+	private final Integer userId;
+	private final String status;
+	private final Integer addlMale;
+	private final Integer addlFemale;
+	private final String comments;
+
+	/**
+	 * The parameters are those of
+	 * {@link RESTClient#Event_SaveRSVP(String, int, int, String, Integer, Integer, String, Integer)}, with
+	 * <code>userId</code> sent as <code>rsvpAsUserId</code>.
+	 * 
+	 * @param userId optional. The user to RSVP for; if null, the user associated with the userToken.
+	 */
+	public RSVPEntry(int teamId, int eventId, Integer userId, String status, Integer addlMale, Integer addlFemale, String comments) {
+		this.teamId = teamId;
+		this.eventId = eventId;
+		this.userId = userId;
+		this.status = status;
+		this.addlMale = addlMale;
+		this.addlFemale = addlFemale;
+		this.comments = comments;
+	}
+
+	public int getTeamId() {
+		return teamId;
+	}
+
+	public int getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * The user to RSVP for, or null for the user associated with the userToken.
+	 */
+	public Integer getUserId() {
+		return userId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public Integer getAddlMale() {
+		return addlMale;
+	}
+
+	public Integer getAddlFemale() {
+		return addlFemale;
+	}
+
+	public String getComments() {
+		return comments;
+	}
+}
@@ -0,0 +1,42 @@
+package com.downforce.teamcowboy.rest;
+
+import com.downforce.teamcowboy.rest.response.SaveRSVPResponse;
+
+/**
+ * The outcome of one {@link RSVPEntry} in a batch. See {@link RSVPBatchSubmitter}.
+ * 
+ * @since 0.2
+ */
+public class RSVPResult {
+	private final RSVPEntry entry;
+	private final APIResponse<SaveRSVPResponse> response;
+	private final boolean superseded;
+
+	RSVPResult(RSVPEntry entry, APIResponse<SaveRSVPResponse> response, boolean superseded) {
+		this.entry = entry;
+		this.response = response;
+		this.superseded = superseded;
+	}
+
+	/**
+	 * The entry this is the result of.
+	 */
+	public RSVPEntry getEntry() {
+		return entry;
+	}
+
+	/**
+	 * The response to the call that saved this entry's RSVP: the {@link SaveRSVPResponse} on success, or the
+	 * {@link APIError} otherwise. A superseded entry shares the response of the entry that replaced it.
+	 */
+	public APIResponse<SaveRSVPResponse> getResponse() {
+		return response;
+	}
+
+	/**
+	 * Whether a later entry in the batch was for the same event and user, so this one was never sent.
+	 */
+	public boolean isSuperseded() {
+		return superseded;
+	}
+}
@@ -0,0 +1,217 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the calls made through another provider to a journal, for {@link ReplayHttpProvider} to serve back later.
+ * Each call's response is written along with how long the server took to send it, under a key made of the HTTP method
+ * and request parameters without the ones that change on every call: <code>api_key</code>, <code>timestamp</code>,
+ * <code>nonce</code> and <code>sig</code>.
+ *
+ * <pre>
+ * RecordingHttpProvider recorder = new RecordingHttpProvider(new PooledHttpProviderImpl(), Paths.get("calls.journal"));
+ * RESTClient client = new RESTClient(publicApiKey, privateApiKey, recorder);
+ * ...
+ * recorder.close();
+ * </pre>
+ *
+ * <p>If the provider is an {@link IStreamingHttpProvider}, responses are still streamed to the client: each is copied
+ * to the journal as it is read, and recorded when the stream is closed, along with the time until the last byte was
+ * read. Whatever the client left unread is read through first, so the record holds the whole response.</p>
+ *
+ * <p>Calls that fail with an {@link IOException} are not recorded, and neither are responses of 64MB or more. The
+ * journal holds user tokens and everything the API sent back, so keep it as safe as the account it was recorded
+ * with.</p>
+ *
+ * @since 0.2
+ */
+public class RecordingHttpProvider implements IStreamingHttpProvider, Closeable {
+	/**
+	 * Passes a streamed response through, keeping a copy of each byte read, and records it when closed.
+	 */
+	private final class RecordingStream extends FilterInputStream {
+		private final String key;
+		private final long start;
+		private ByteArrayOutputStream copy = new ByteArrayOutputStream(8 * 1024);
+		private long end;
+		private boolean failed;
+		private boolean done;
+
+		RecordingStream(InputStream in, String key, long start) {
+			super(in);
+			this.key = key;
+			this.start = start;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count;
+			try {
+				count = in.read(b, off, len);
+			} catch (IOException ioe) {
+				failed = true;
+				throw ioe;
+			}
+			if (count < 0) {
+				if (end == 0)
+					end = System.nanoTime();
+			} else if (copy != null) {
+				if (copy.size() + count > HttpJournal.MAX_RECORD_BYTES)
+					copy = null;
+				else
+					copy.write(b, off, count);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			if (n <= 0)
+				return 0;
+			//Skipped bytes are read, so they reach the copy.
+			byte[] skipped = new byte[(int) Math.min(n, 8 * 1024)];
+			int count = read(skipped, 0, skipped.length);
+			return Math.max(0, count);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (done)
+				return;
+			done = true;
+			try {
+				byte[] rest = new byte[8 * 1024];
+				while (!failed && read(rest, 0, rest.length) >= 0)
+					;
+			} catch (IOException ioe) {
+				//The response was cut short, so it is left out of the journal.
+			} finally {
+				in.close();
+			}
+			if (!failed && copy != null)
+				record(key, TimeUnit.NANOSECONDS.toMicros(end - start), copy.toByteArray());
+		}
+	}
+
+	private final IHttpProvider httpProvider;
+	private final OutputStream out;
+	private final AtomicLong recorded = new AtomicLong();
+	private boolean closed;
+
+	/**
+	 * Starts a new journal, replacing any file already at the path.
+	 *
+	 * @param httpProvider the provider to make the calls with
+	 * @param journal the file to record to
+	 */
+	public RecordingHttpProvider(IHttpProvider httpProvider, Path journal) throws IOException {
+		this.httpProvider = httpProvider;
+		this.out = new BufferedOutputStream(Files.newOutputStream(journal), 64 * 1024);
+		out.write(HttpJournal.MAGIC);
+		out.write(HttpJournal.VERSION);
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		long start = System.nanoTime();
+		String response = httpProvider.makeHTTPCall(url, body, httpRequestMethod);
+		record(HttpJournal.key(url, body, httpRequestMethod), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), response.getBytes(StandardCharsets.UTF_8));
+		return response;
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		long start = System.nanoTime();
+		String response = httpProvider.makeHTTPCall(url, body, httpRequestMethod, timeoutMillis);
+		record(HttpJournal.key(url, body, httpRequestMethod), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), response.getBytes(StandardCharsets.UTF_8));
+		return response;
+	}
+
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		if (!(httpProvider instanceof IStreamingHttpProvider))
+			return new ByteArrayInputStream(makeHTTPCall(url, body, httpRequestMethod).getBytes(StandardCharsets.UTF_8));
+		long start = System.nanoTime();
+		InputStream stream = ((IStreamingHttpProvider) httpProvider).openHTTPStream(url, body, httpRequestMethod);
+		return new RecordingStream(stream, HttpJournal.key(url, body, httpRequestMethod), start);
+	}
+
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		if (!(httpProvider instanceof IStreamingHttpProvider))
+			return new ByteArrayInputStream(makeHTTPCall(url, body, httpRequestMethod, timeoutMillis).getBytes(StandardCharsets.UTF_8));
+		long start = System.nanoTime();
+		InputStream stream = ((IStreamingHttpProvider) httpProvider).openHTTPStream(url, body, httpRequestMethod, timeoutMillis);
+		return new RecordingStream(stream, HttpJournal.key(url, body, httpRequestMethod), start);
+	}
+
+	/**
+	 * Writes a call's record to the journal, unless it is too large to replay.
+	 */
+	private void record(String key, long latencyMicros, byte[] responseBytes) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		if ((long) keyBytes.length + responseBytes.length + HttpJournal.MAX_VARINT_BYTES > HttpJournal.MAX_RECORD_BYTES)
+			return;
+		ByteArrayOutputStream record = new ByteArrayOutputStream(keyBytes.length + responseBytes.length + 16);
+		HttpJournal.writeVarint(keyBytes.length, record);
+		record.write(keyBytes, 0, keyBytes.length);
+		HttpJournal.writeVarint(latencyMicros, record);
+		HttpJournal.writeVarint(responseBytes.length, record);
+		record.write(responseBytes, 0, responseBytes.length);
+
+		synchronized (out) {
+			if (closed)
+				throw new IOException("Recording has been closed");
+			record.writeTo(out);
+		}
+		recorded.incrementAndGet();
+	}
+
+	/**
+	 * The number of calls recorded so far.
+	 */
+	public long getRecordedCount() {
+		return recorded.get();
+	}
+
+	/**
+	 * Writes out any buffered records.
+	 */
+	public void flush() throws IOException {
+		synchronized (out) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Writes out any buffered records and closes the journal. Calls made after this fail.
+	 */
+	public void close() throws IOException {
+		synchronized (out) {
+			if (closed)
+				return;
+			closed = true;
+			out.close();
+		}
+	}
+}
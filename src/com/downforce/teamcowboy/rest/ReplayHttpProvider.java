@@ -0,0 +1,245 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers calls from a journal written by {@link RecordingHttpProvider}, without a network. Calls are matched on their
+ * HTTP method and request parameters, ignoring the API key, timestamp, nonce and signature, so a client can replay a
+ * recording with any key. When a call was recorded more than once, its responses are served in the order they were
+ * recorded, starting over after the last.
+ *
+ * <p>By default responses are served as fast as possible. With {@link #setRecordedLatency(boolean)} each is held back
+ * for as long as the server took to send it, and a call whose recorded latency is longer than its timeout fails with
+ * a {@link SocketTimeoutException} once the timeout has passed.</p>
+ *
+ * <p>The journal is memory mapped rather than read in, and only the request keys are kept on the heap, so a recording
+ * of millions of calls opens quickly and streams responses straight from the page cache. A final record cut short,
+ * as when a recording was not closed, is ignored.</p>
+ *
+ * @since 0.2
+ */
+public class ReplayHttpProvider implements IStreamingHttpProvider {
+	/** How much of the journal each mapping starts; each also covers the largest record starting in it. */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	/**
+	 * The records of one request key.
+	 */
+	private static final class Recording {
+		long[] offsets = new long[1];
+		int count;
+		final AtomicInteger next = new AtomicInteger();
+
+		void add(long offset) {
+			if (count == offsets.length)
+				offsets = Arrays.copyOf(offsets, count * 2);
+			offsets[count++] = offset;
+		}
+
+		long nextOffset() {
+			return offsets[Math.floorMod(next.getAndIncrement(), count)];
+		}
+	}
+
+	private final MappedByteBuffer[] segments;
+	private final HashMap<String, Recording> recordings = new HashMap<String, Recording>();
+	private final long recordCount;
+	private volatile boolean recordedLatency;
+
+	/**
+	 * Maps a journal and indexes its records.
+	 *
+	 * @param journal the file written by a {@link RecordingHttpProvider}
+	 * @throws IOException if the file cannot be read or is not a journal
+	 */
+	public ReplayHttpProvider(Path journal) throws IOException {
+		FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			segments = new MappedByteBuffer[(int) Math.max(1, (size + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+			for (int i = 0; i < segments.length; ++i) {
+				long start = i * SEGMENT_BYTES;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, SEGMENT_BYTES + HttpJournal.MAX_RECORD_BYTES));
+			}
+			recordCount = index(size);
+		} finally {
+			//The mappings stay valid once the channel is closed.
+			channel.close();
+		}
+	}
+
+	/**
+	 * Sets whether each response is held back for as long as the server took to send it when it was recorded. Defaults
+	 * to false.
+	 */
+	public void setRecordedLatency(boolean recordedLatency) {
+		this.recordedLatency = recordedLatency;
+	}
+
+	/**
+	 * The number of calls in the journal.
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * The number of different calls in the journal.
+	 */
+	public int getKeyCount() {
+		return recordings.size();
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return makeHTTPCall(url, body, httpRequestMethod, 0);
+	}
+
+	public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		return StandardCharsets.UTF_8.decode(response(url, body, httpRequestMethod, timeoutMillis)).toString();
+	}
+
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws MalformedURLException, IOException {
+		return openHTTPStream(url, body, httpRequestMethod, 0);
+	}
+
+	/**
+	 * Streams the recorded response straight from the mapped journal.
+	 */
+	public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws MalformedURLException, IOException {
+		final ByteBuffer response = response(url, body, httpRequestMethod, timeoutMillis);
+		return new InputStream() {
+			@Override
+			public int read() {
+				return response.hasRemaining() ? response.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (len == 0)
+					return 0;
+				if (!response.hasRemaining())
+					return -1;
+				int count = Math.min(len, response.remaining());
+				response.get(b, off, count);
+				return count;
+			}
+
+			@Override
+			public int available() {
+				return response.remaining();
+			}
+		};
+	}
+
+	/**
+	 * Finds the next recorded response to a call, waiting out its recorded latency if asked to.
+	 *
+	 * @return a buffer over the response's bytes
+	 */
+	private ByteBuffer response(String url, String body, String httpRequestMethod, int timeoutMillis) throws IOException {
+		long start = System.nanoTime();
+		String key = HttpJournal.key(url, body, httpRequestMethod);
+		Recording recording = recordings.get(key);
+		if (recording == null)
+			throw new IOException("No recorded response for " + key);
+
+		ByteBuffer record = at(recording.nextOffset());
+		long latencyNanos = TimeUnit.MICROSECONDS.toNanos(HttpJournal.readVarint(record));
+		int length = (int) HttpJournal.readVarint(record);
+		record.limit(record.position() + length);
+
+		if (recordedLatency) {
+			long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			boolean timesOut = timeoutMillis > 0 && latencyNanos > timeoutNanos;
+			long wait = (timesOut ? timeoutNanos : latencyNanos) - (System.nanoTime() - start);
+			try {
+				if (wait > 0)
+					TimeUnit.NANOSECONDS.sleep(wait);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while replaying " + key);
+			}
+			if (timesOut)
+				throw new SocketTimeoutException("Recorded response took longer than " + timeoutMillis + "ms");
+		}
+		return record.slice();
+	}
+
+	/**
+	 * Returns a buffer positioned at an offset in the journal, running to the end of the mapping the offset falls in.
+	 */
+	private ByteBuffer at(long offset) {
+		int segment = (int) (offset / SEGMENT_BYTES);
+		ByteBuffer buffer = segments[segment].duplicate();
+		buffer.position((int) (offset - segment * SEGMENT_BYTES));
+		return buffer;
+	}
+
+	/**
+	 * Reads the journal's request keys and notes where each record's response starts.
+	 *
+	 * @return the number of records
+	 */
+	private long index(long size) throws IOException {
+		ByteBuffer header = at(0);
+		byte[] magic = new byte[HttpJournal.MAGIC.length];
+		if (size < HttpJournal.HEADER_LENGTH || !Arrays.equals(get(header, magic), HttpJournal.MAGIC))
+			throw new IOException("Not a journal");
+		if (header.get() != HttpJournal.VERSION)
+			throw new IOException("Unsupported journal version");
+
+		long count = 0;
+		long offset = HttpJournal.HEADER_LENGTH;
+		while (offset < size) {
+			ByteBuffer record = at(offset);
+			int recordStart = record.position();
+			String key;
+			long responseOffset;
+			try {
+				long keyLength = HttpJournal.readVarint(record);
+				if (keyLength > record.remaining())
+					break;
+				key = new String(get(record, new byte[(int) keyLength]), StandardCharsets.UTF_8);
+				responseOffset = offset + record.position() - recordStart;
+				HttpJournal.readVarint(record);
+				long length = HttpJournal.readVarint(record);
+				if (length > record.remaining())
+					break;
+				record.position(record.position() + (int) length);
+			} catch (BufferUnderflowException bue) {
+				//The recording was cut short in the middle of this record.
+				break;
+			}
+
+			Recording recording = recordings.get(key);
+			if (recording == null) {
+				recording = new Recording();
+				recordings.put(key, recording);
+			}
+			recording.add(responseOffset);
+			++count;
+			offset += record.position() - recordStart;
+		}
+		return count;
+	}
+
+	private static byte[] get(ByteBuffer buffer, byte[] bytes) {
+		buffer.get(bytes);
+		return bytes;
+	}
+}
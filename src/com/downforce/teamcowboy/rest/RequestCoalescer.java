@@ -0,0 +1,194 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical read-only (GET) calls that are in flight at the same time. Install it with
+ * {@link RESTClient#setRequestCoalescer(RequestCoalescer)}: while one call for a given API key, method and parameter set
+ * is waiting on the API, every other caller asking for the same thing waits for that call instead of sending its own.
+ *
+ * <p>Callers share the raw response, and each decodes its own copy, so no caller can see another's changes to the
+ * returned objects. Calls are only identical if they carry the same user token, so data is never shared between
+ * users. Works for both {@link RESTClient} and {@link AsyncRESTClient} calls.</p>
+ *
+ * <p>A caller waiting on another's call still gives up when its own {@link Deadline} passes. If the call it waits on
+ * fails only because that call was cancelled or ran out of time, the caller sends its own call, or joins one started
+ * since, rather than failing with it.</p>
+ *
+ * @since 0.2
+ */
+public class RequestCoalescer {
+	/**
+	 * A call to the API that produces the raw response.
+	 */
+	interface Fetch {
+		String fetch() throws IOException;
+	}
+
+	private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<String, CompletableFuture<String>>();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Runs a blocking call, or waits for an identical one that is already in flight.
+	 *
+	 * @param method the API method being called
+	 * @param key the canonical key of the call
+	 * @param deadline the caller's deadline, or null if it has none
+	 * @param fetch the call to make if none is in flight
+	 * @return the raw response
+	 */
+	String execute(String method, String key, Deadline deadline, Fetch fetch) throws IOException {
+		while (true) {
+			CompletableFuture<String> mine = new CompletableFuture<String>();
+			CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+			if (existing == null)
+				return lead(key, mine, deadline, fetch);
+
+			coalesced.incrementAndGet();
+			FlightEvents.coalesced(method);
+			Throwable failure;
+			try {
+				return await(method, existing, deadline);
+			} catch (ExecutionException ee) {
+				failure = ee.getCause();
+			} catch (CancellationException ce) {
+				failure = ce;
+			}
+			if (!isCallerFailure(failure))
+				throw rethrow(failure);
+			inFlight.remove(key, existing);
+		}
+	}
+
+	private String lead(String key, CompletableFuture<String> mine, Deadline deadline, Fetch fetch) throws IOException {
+		try {
+			String response = fetch.fetch();
+			mine.complete(response);
+			return response;
+		} catch (IOException ioe) {
+			mine.completeExceptionally(forJoiners(ioe, deadline));
+			throw ioe;
+		} catch (RuntimeException re) {
+			mine.completeExceptionally(re);
+			throw re;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Starts an asynchronous call, or joins an identical one that is already in flight.
+	 *
+	 * @param method the API method being called
+	 * @param key the canonical key of the call
+	 * @param deadline the caller's deadline, or null if it has none
+	 * @param fetch starts the call if none is in flight
+	 * @return a future for the raw response
+	 */
+	CompletableFuture<String> executeAsync(final String method, final String key, final Deadline deadline, final Supplier<CompletableFuture<String>> fetch) {
+		final CompletableFuture<String> mine = new CompletableFuture<String>();
+		final CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			FlightEvents.coalesced(method);
+			return existing.handle((response, failure) -> {
+				Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+				if (cause == null)
+					return CompletableFuture.completedFuture(response);
+				if (!isCallerFailure(cause)) {
+					CompletableFuture<String> failed = new CompletableFuture<String>();
+					failed.completeExceptionally(cause);
+					return failed;
+				}
+				inFlight.remove(key, existing);
+				return executeAsync(method, key, deadline, fetch);
+			}).thenCompose(next -> next);
+		}
+
+		try {
+			fetch.get().whenComplete((response, failure) -> {
+				inFlight.remove(key, mine);
+				if (failure != null)
+					mine.completeExceptionally(forJoiners(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure, deadline));
+				else
+					mine.complete(response);
+			});
+		} catch (RuntimeException re) {
+			inFlight.remove(key, mine);
+			mine.completeExceptionally(re);
+		}
+		return mine;
+	}
+
+	/**
+	 * The number of calls that were answered by waiting on an identical call instead of going to the API.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * The number of distinct calls currently in flight.
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Waits for another caller's call, for no longer than this caller's deadline allows.
+	 */
+	private static String await(String method, CompletableFuture<String> future, Deadline deadline) throws IOException, ExecutionException {
+		try {
+			if (deadline == null)
+				return future.get();
+			return future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException te) {
+			throw new DeadlineExceededException("Deadline passed while waiting for a coalesced " + method + " call");
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a coalesced call");
+		}
+	}
+
+	/**
+	 * Whether a call failed because of something about the caller that made it, such as its being cancelled or its
+	 * deadline passing, rather than because of the API. A socket timeout is the API being slow, so it is not one.
+	 */
+	private static boolean isCallerFailure(Throwable failure) {
+		return failure instanceof CancellationException || failure instanceof TimeoutException
+				|| (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException));
+	}
+
+	/**
+	 * Returns the failure to hand to the callers waiting on a call. Any failure once the calling caller's deadline has
+	 * passed, such as a transport timeout cut short to fit it, is reported as that deadline passing.
+	 */
+	private static Throwable forJoiners(Throwable failure, Deadline deadline) {
+		if (deadline == null || !deadline.isExpired() || isCallerFailure(failure))
+			return failure;
+		DeadlineExceededException dee = new DeadlineExceededException("Deadline of the coalesced call passed");
+		dee.initCause(failure);
+		return dee;
+	}
+
+	private static IOException rethrow(Throwable failure) {
+		if (failure instanceof IOException)
+			return (IOException) failure;
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if (failure instanceof Error)
+			throw (Error) failure;
+		return new IOException(failure);
+	}
+}
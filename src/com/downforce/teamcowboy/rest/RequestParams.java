@@ -0,0 +1,73 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * The parameter values for a single call, stored in the signing order of the call's {@link RequestTemplate}. Unset
+ * parameters are left out of the request.
+ * 
+ * @since 0.2
+ */
+final class RequestParams {
+	final RequestTemplate template;
+	final String[] values;
+	/** Where the call's measurements are recorded, or null if the call is not being measured. */
+	CallSample sample;
+
+	RequestParams(RequestTemplate template) {
+		this.template = template;
+		this.values = new String[template.names.length];
+	}
+
+	private RequestParams(RequestParams call, CallSample sample) {
+		this.template = call.template;
+		this.values = call.values;
+		this.sample = sample;
+	}
+
+	/**
+	 * Returns the parameters for one attempt at the call, which records its measurements in the given sample.
+	 */
+	RequestParams forAttempt(CallSample attemptSample) {
+		return attemptSample == sample ? this : new RequestParams(this, attemptSample);
+	}
+
+	/**
+	 * Sets a parameter value. A null value leaves the parameter out of the request.
+	 * 
+	 * @param name the name of the parameter
+	 * @param value the value for the parameter
+	 * @throws IllegalArgumentException if the method does not take the parameter
+	 */
+	void put(String name, String value) {
+		int index = template.indexOf(name);
+		if (index < 0)
+			throw new IllegalArgumentException(template.method + " does not take a " + name + " parameter");
+		values[index] = value;
+	}
+
+	/**
+	 * Returns a parameter value, or null if it is not set.
+	 */
+	String get(String name) {
+		int index = template.indexOf(name);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * Returns a key that identifies the call independently of when it is signed: the API key, the method and every
+	 * set parameter except the timestamp and nonce.
+	 *
+	 * @param publicApiKey the public API key the call is made with
+	 */
+	String canonicalKey(String publicApiKey) {
+		RequestTemplate t = template;
+		StringBuilder key = new StringBuilder(64);
+		key.append(publicApiKey).append('|').append(t.httpVerb.name()).append('|').append(t.method);
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] == null || i == t.apiKeyIndex || i == t.methodIndex || i == t.nonceIndex || i == t.timestampIndex || i == t.responseTypeIndex)
+				continue;
+			key.append('&').append(t.names[i]).append('=');
+			RequestSigner.encode(values[i], key);
+		}
+		return key.toString();
+	}
+}
@@ -0,0 +1,180 @@
+package com.downforce.teamcowboy.rest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Encodes and signs the parameters of a call. A signer keeps its buffers and digest between calls, so it must only be
+ * used by one thread at a time; {@link RESTClient} keeps one per thread.
+ *
+ * <p>The output is identical to URL encoding each value with {@link java.net.URLEncoder} (spaces as <code>%20</code>)
+ * and hex encoding the SHA-1 of the signature input through {@link java.math.BigInteger}, which drops leading zeros.</p>
+ *
+ * @since 0.2
+ */
+final class RequestSigner {
+	private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+	private static final char[] LOWER_HEX = "0123456789abcdef".toCharArray();
+	private static final int SHA1_LENGTH = 20;
+
+	private final MessageDigest digest;
+	private final StringBuilder buffer = new StringBuilder(256);
+	private final byte[] sha = new byte[SHA1_LENGTH];
+	private byte[] sigInput = new byte[256];
+
+	RequestSigner(MessageDigest digest) {
+		this.digest = digest;
+	}
+
+	/**
+	 * Returns the encoded parameter string, with the signing parameters filled in and ending with the signature. The
+	 * parameters themselves are left untouched, so the same call can be signed again, even concurrently, for a retry.
+	 *
+	 * @param params the parameters of the call; any api_key, method, timestamp, nonce and response_type values are ignored
+	 * @param publicApiKey the public API key
+	 * @param privateApiKey the private API key, UTF-8 encoded
+	 * @param timestamp the request timestamp, in seconds
+	 * @param nonce the request nonce
+	 */
+	String sign(RequestParams params, String publicApiKey, byte[] privateApiKey, String timestamp, String nonce) {
+		RequestTemplate template = params.template;
+		String[] values = params.values;
+
+		buffer.setLength(0);
+		for (int i = 0; i < values.length; ++i) {
+			String value;
+			if (i == template.apiKeyIndex)
+				value = publicApiKey;
+			else if (i == template.methodIndex)
+				value = template.method;
+			else if (i == template.timestampIndex)
+				value = timestamp;
+			else if (i == template.nonceIndex)
+				value = nonce;
+			else if (i == template.responseTypeIndex)
+				value = "json";
+			else
+				value = values[i];
+			if (value == null)
+				continue;
+			if (buffer.length() > 0)
+				buffer.append('&');
+			buffer.append(template.names[i]).append('=');
+			encode(value, buffer);
+		}
+		int paramsLength = buffer.length();
+
+		int length = 0;
+		length = append(privateApiKey, length);
+		length = appendAscii("|", length, false);
+		length = appendAscii(template.httpVerb.name(), length, false);
+		length = appendAscii("|", length, false);
+		length = appendAscii(template.method, length, false);
+		length = appendAscii("|", length, false);
+		length = appendAscii(timestamp, length, false);
+		length = appendAscii("|", length, false);
+		length = appendAscii(nonce, length, false);
+		length = appendAscii("|", length, false);
+		length = appendAscii(buffer, length, true);
+
+		digest.update(sigInput, 0, length);
+		try {
+			digest.digest(sha, 0, SHA1_LENGTH);
+		} catch (DigestException de) {
+			//Should never happen as the buffer is sized for SHA-1.
+			throw new IllegalStateException(de);
+		}
+
+		buffer.append("&sig=");
+		appendHex(sha, buffer);
+		String result = buffer.toString();
+		buffer.setLength(paramsLength);
+		return result;
+	}
+
+	/**
+	 * Appends a value percent-encoded as UTF-8, leaving only letters, digits and <code>.-*_</code> as they are.
+	 */
+	static void encode(String value, StringBuilder out) {
+		int length = value.length();
+		for (int i = 0; i < length; ++i) {
+			char c = value.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_') {
+				out.append(c);
+			} else if (c < 0x80) {
+				appendEscaped(c, out);
+			} else if (c < 0x800) {
+				appendEscaped(0xC0 | (c >> 6), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				appendEscaped(0xF0 | (codePoint >> 18), out);
+				appendEscaped(0x80 | ((codePoint >> 12) & 0x3F), out);
+				appendEscaped(0x80 | ((codePoint >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (codePoint & 0x3F), out);
+			} else if (Character.isSurrogate(c)) {
+				//Unpaired surrogates can't be encoded; URLEncoder substitutes a question mark.
+				appendEscaped('?', out);
+			} else {
+				appendEscaped(0xE0 | (c >> 12), out);
+				appendEscaped(0x80 | ((c >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			}
+		}
+	}
+
+	private static void appendEscaped(int b, StringBuilder out) {
+		out.append('%').append(UPPER_HEX[(b >> 4) & 0xF]).append(UPPER_HEX[b & 0xF]);
+	}
+
+	/**
+	 * Appends a digest as lower case hex without leading zeros, the way <code>BigInteger.toString(16)</code> prints it.
+	 */
+	static void appendHex(byte[] bytes, StringBuilder out) {
+		boolean leading = true;
+		for (int i = 0; i < bytes.length; ++i) {
+			int high = (bytes[i] >> 4) & 0xF;
+			int low = bytes[i] & 0xF;
+			if (!leading || high != 0) {
+				out.append(LOWER_HEX[high]);
+				leading = false;
+			}
+			if (!leading || low != 0) {
+				out.append(LOWER_HEX[low]);
+				leading = false;
+			}
+		}
+		if (leading)
+			out.append('0');
+	}
+
+	private int append(byte[] bytes, int length) {
+		ensureCapacity(length + bytes.length);
+		System.arraycopy(bytes, 0, sigInput, length, bytes.length);
+		return length + bytes.length;
+	}
+
+	/**
+	 * Appends ASCII text to the signature input, optionally lower casing it. Everything signed after the private key is
+	 * ASCII: names, verbs, numbers and percent-encoded values.
+	 */
+	private int appendAscii(CharSequence text, int length, boolean lowerCase) {
+		int count = text.length();
+		ensureCapacity(length + count);
+		for (int i = 0; i < count; ++i) {
+			char c = text.charAt(i);
+			if (lowerCase && c >= 'A' && c <= 'Z')
+				c += 'a' - 'A';
+			sigInput[length++] = (byte) c;
+		}
+		return length;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > sigInput.length) {
+			byte[] larger = new byte[Math.max(capacity, sigInput.length * 2)];
+			System.arraycopy(sigInput, 0, larger, 0, sigInput.length);
+			sigInput = larger;
+		}
+	}
+}
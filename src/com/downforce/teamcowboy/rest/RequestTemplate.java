@@ -0,0 +1,106 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.Arrays;
+
+/**
+ * The precompiled shape of a Team Cowboy API method: its name, HTTP verb, whether it must be sent over HTTPS, and every
+ * parameter it can carry (including the ones added when the request is signed) in the order they are signed in.
+ * 
+ * @since 0.2
+ */
+final class RequestTemplate {
+	static final String API_KEY = "api_key";
+	static final String METHOD = "method";
+	static final String NONCE = "nonce";
+	static final String RESPONSE_TYPE = "response_type";
+	static final String TIMESTAMP = "timestamp";
+
+	static final RequestTemplate AUTH_GET_USER_TOKEN = new RequestTemplate("Auth_GetUserToken", HttpVerb.POST, true,
+			"username", "password");
+	static final RequestTemplate EVENT_GET = new RequestTemplate("Event_Get", HttpVerb.GET, false,
+			"userToken", "teamId", "eventId", "includeRSVPInfo");
+	static final RequestTemplate EVENT_GET_ATTENDANCE_LIST = new RequestTemplate("Event_GetAttendanceList", HttpVerb.GET, false,
+			"userToken", "teamId", "eventId");
+	static final RequestTemplate EVENT_SAVE_RSVP = new RequestTemplate("Event_SaveRSVP", HttpVerb.POST, false,
+			"userToken", "teamId", "eventId", "status", "addlMale", "addlFemale", "comments", "rsvpAsUserId");
+	static final RequestTemplate MESSAGE_GET = new RequestTemplate("Message_Get", HttpVerb.GET, false,
+			"userToken", "teamId", "messageId", "loadComments");
+	static final RequestTemplate MESSAGE_DELETE = new RequestTemplate("Message_Delete", HttpVerb.POST, false,
+			"userToken", "teamId", "messageId");
+	static final RequestTemplate MESSAGE_SAVE = new RequestTemplate("Message_Save", HttpVerb.POST, false,
+			"userToken", "teamId", "messageId", "title", "body", "isPinned", "sendNotifications", "isHidden", "allowComments");
+	static final RequestTemplate MESSAGE_COMMENT_DELETE = new RequestTemplate("MessageComment_Delete", HttpVerb.POST, false,
+			"userToken", "teamId", "messageId", "commentId");
+	static final RequestTemplate MESSAGE_COMMENT_ADD = new RequestTemplate("MessageComment_Add", HttpVerb.POST, false,
+			"userToken", "teamId", "messageId", "comment");
+	static final RequestTemplate TEAM_GET = new RequestTemplate("Team_Get", HttpVerb.GET, false,
+			"userToken", "teamId");
+	static final RequestTemplate TEAM_GET_EVENTS = new RequestTemplate("Team_GetEvents", HttpVerb.GET, false,
+			"userToken", "teamId", "seasonId", "includeRSVPInfo", "filter", "startDateTime", "endDateTime", "offset", "qty");
+	static final RequestTemplate TEAM_GET_MESSAGES = new RequestTemplate("Team_GetMessages", HttpVerb.GET, false,
+			"userToken", "teamId", "offset", "qty", "sortBy", "sortDirection", "messageId");
+	static final RequestTemplate TEAM_GET_ROSTER = new RequestTemplate("Team_GetRoster", HttpVerb.GET, false,
+			"userToken", "teamId", "userId", "includeInactive", "sortBy", "sortDirection");
+	static final RequestTemplate TEAM_GET_SEASONS = new RequestTemplate("Team_GetSeasons", HttpVerb.GET, false,
+			"userToken", "teamId");
+	static final RequestTemplate TEST_GET_REQUEST = new RequestTemplate("Test_PostRequest", HttpVerb.GET, false,
+			"testParam");
+	static final RequestTemplate TEST_POST_REQUEST = new RequestTemplate("Test_PostRequest", HttpVerb.POST, false,
+			"testParam");
+	static final RequestTemplate USER_GET = new RequestTemplate("User_Get", HttpVerb.GET, false,
+			"userToken");
+	static final RequestTemplate USER_GET_NEXT_TEAM_EVENT = new RequestTemplate("User_GetNextTeamEvent", HttpVerb.GET, false,
+			"userToken", "teamId", "dashboardTeamsOnly", "includeRSVPInfo");
+	static final RequestTemplate USER_GET_TEAM_EVENTS = new RequestTemplate("User_GetTeamEvents", HttpVerb.GET, false,
+			"userToken", "startDateTime", "endDateTime", "teamId", "dashboardTeamsOnly", "includeRSVPInfo");
+	static final RequestTemplate USER_GET_TEAM_MESSAGES = new RequestTemplate("User_GetTeamMessages", HttpVerb.GET, false,
+			"userToken", "teamId", "offset", "qty", "sortBy", "sortDirection", "messageId");
+	static final RequestTemplate USER_GET_TEAMS = new RequestTemplate("User_GetTeams", HttpVerb.GET, false,
+			"userToken", "dashboardTeamsOnly");
+
+	final String method;
+	final HttpVerb httpVerb;
+	final boolean secure;
+	/** Every parameter name, sorted the same way a TreeMap of the parameters would be. */
+	final String[] names;
+	final int apiKeyIndex;
+	final int methodIndex;
+	final int nonceIndex;
+	final int responseTypeIndex;
+	final int timestampIndex;
+
+	RequestTemplate(String method, HttpVerb httpVerb, boolean secure, String... methodParams) {
+		this.method = method;
+		this.httpVerb = httpVerb;
+		this.secure = secure;
+
+		String[] all = Arrays.copyOf(methodParams, methodParams.length + 5);
+		all[methodParams.length] = API_KEY;
+		all[methodParams.length + 1] = METHOD;
+		all[methodParams.length + 2] = NONCE;
+		all[methodParams.length + 3] = RESPONSE_TYPE;
+		all[methodParams.length + 4] = TIMESTAMP;
+		Arrays.sort(all);
+		this.names = all;
+
+		this.apiKeyIndex = indexOf(API_KEY);
+		this.methodIndex = indexOf(METHOD);
+		this.nonceIndex = indexOf(NONCE);
+		this.responseTypeIndex = indexOf(RESPONSE_TYPE);
+		this.timestampIndex = indexOf(TIMESTAMP);
+	}
+
+	/**
+	 * Returns a fresh, empty set of parameters for a single call of this method.
+	 */
+	RequestParams newParams() {
+		return new RequestParams(this);
+	}
+
+	/**
+	 * Returns the position of a parameter in signing order, or a negative number if the method does not take it.
+	 */
+	int indexOf(String name) {
+		return Arrays.binarySearch(names, name);
+	}
+}
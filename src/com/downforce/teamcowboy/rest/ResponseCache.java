@@ -0,0 +1,198 @@
+package com.downforce.teamcowboy.rest;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An opt-in, bounded cache of raw API responses for read-only (GET) methods. Install it with
+ * {@link RESTClient#setResponseCache(ResponseCache)}; nothing is cached until a time-to-live is set for a method, or a
+ * default one for all of them:
+ *
+ * <pre>
+ * ResponseCache cache = new ResponseCache(1000, 16 * 1024 * 1024);
+ * cache.setTimeToLive("Team_Get", 10, TimeUnit.MINUTES);
+ * cache.setTimeToLive("Team_GetSeasons", 10, TimeUnit.MINUTES);
+ * cache.setTimeToLive("Team_GetRoster", 1, TimeUnit.MINUTES);
+ * client.setResponseCache(cache);
+ * </pre>
+ *
+ * <p>Entries are keyed by API key, method and the request parameters, leaving out the per-request timestamp, nonce
+ * and signature. Only successful responses are stored, and POST methods such as <code>Event_SaveRSVP</code> are never
+ * cached whatever their configured time-to-live. The cache is bounded both by entry count and by an estimate of the
+ * memory the responses take up, evicting the least recently used entries first.</p>
+ *
+ * @since 0.2
+ */
+public class ResponseCache {
+	/** Rough per-entry bookkeeping cost on top of the key and response characters. */
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	/** Read on every GET, so it is looked up without taking a lock. */
+	private final ConcurrentHashMap<String, Long> timeToLiveNanos = new ConcurrentHashMap<String, Long>();
+	private volatile long defaultTimeToLiveNanos;
+	private long bytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxEntries the maximum number of responses to keep
+	 * @param maxBytes the maximum estimated size of the responses to keep, in bytes
+	 */
+	public ResponseCache(int maxEntries, long maxBytes) {
+		if (maxEntries < 1 || maxBytes < 1)
+			throw new IllegalArgumentException("maxEntries and maxBytes must be positive");
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Sets how long responses for a method stay fresh. A duration of zero stops the method from being cached.
+	 *
+	 * @param method the API method name, e.g. "Team_Get"
+	 * @param duration how long a response stays fresh
+	 * @param unit the unit of the duration
+	 */
+	public void setTimeToLive(String method, long duration, TimeUnit unit) {
+		timeToLiveNanos.put(method, unit.toNanos(duration));
+	}
+
+	/**
+	 * Sets how long responses stay fresh for read-only methods without a time-to-live of their own. Defaults to zero,
+	 * meaning only methods configured with {@link #setTimeToLive(String, long, TimeUnit)} are cached.
+	 *
+	 * @param duration how long a response stays fresh
+	 * @param unit the unit of the duration
+	 */
+	public void setDefaultTimeToLive(long duration, TimeUnit unit) {
+		defaultTimeToLiveNanos = unit.toNanos(duration);
+	}
+
+	/**
+	 * Returns the time-to-live for a method in nanoseconds, or zero if it is not cached.
+	 */
+	long getTimeToLiveNanos(String method) {
+		Long ttl = timeToLiveNanos.get(method);
+		return ttl != null ? ttl : defaultTimeToLiveNanos;
+	}
+
+	/**
+	 * Returns a fresh response, or null if there is none.
+	 */
+	String get(String key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+				hits.incrementAndGet();
+				return entry.response;
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Returns a response even if it is past its time-to-live, or null if there is none. Does not count as a hit or a miss.
+	 */
+	String getStale(String key) {
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			return entry != null ? entry.response : null;
+		}
+	}
+
+	/**
+	 * Stores a response, evicting the least recently used ones as needed to stay within bounds.
+	 */
+	void put(String key, String response, long timeToLiveNanos) {
+		Entry entry = new Entry(response, System.nanoTime() + timeToLiveNanos, estimateBytes(key, response));
+		if (entry.bytes > maxBytes)
+			return;
+
+		synchronized (entries) {
+			Entry previous = entries.put(key, entry);
+			if (previous != null)
+				bytes -= previous.bytes;
+			bytes += entry.bytes;
+
+			Iterator<Entry> eldest = entries.values().iterator();
+			while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+				bytes -= eldest.next().bytes;
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes every cached response. The counters are left as they are.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			bytes = 0;
+		}
+	}
+
+	/**
+	 * The number of lookups answered with a fresh response.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * The number of lookups that had to go to the API.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of responses removed to keep the cache within its bounds.
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * The number of responses currently held, fresh or not.
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * The estimated size of the responses currently held, in bytes.
+	 */
+	public long getEstimatedBytes() {
+		synchronized (entries) {
+			return bytes;
+		}
+	}
+
+	private static long estimateBytes(String key, String response) {
+		return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + response.length());
+	}
+
+	private static class Entry {
+		final String response;
+		final long expiresAt;
+		final long bytes;
+
+		Entry(String response, long expiresAt, long bytes) {
+			this.response = response;
+			this.expiresAt = expiresAt;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,559 @@
+package com.downforce.teamcowboy.rest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Retries calls that fail transiently and hedges slow ones. Install it with {@link RESTClient#setRetryPolicy(RetryPolicy)};
+ * it then applies to every call made through that client and any {@link AsyncRESTClient} built on it.
+ *
+ * <p>A call is retried when the transport throws an {@link IOException}, or when the API answers with an HTTP 429 or
+ * 5xx error. Retries wait a random time up to an exponentially growing backoff ("full jitter"), so clients that
+ * failed together do not retry together. Only read-only (GET) methods are retried unless {@link #setRetryPost(boolean)}
+ * is turned on, since a POST such as <code>Event_SaveRSVP</code> may have taken effect even though its response was
+ * lost. Calls turned away by a {@link ConcurrencyLimiter} or failed fast by a {@link CircuitBreaker} are never
+ * retried.</p>
+ *
+ * <p>Retries are paid for from a budget that every call tops up by {@link #setRetryBudget(double, int)}'s ratio, so
+ * while the API is down the retries add at most that fraction to the load instead of multiplying it.</p>
+ *
+ * <p>With {@link #setHedging(Executor)}, a read-only call still waiting after the method's observed 95th percentile
+ * latency is sent a second time, whichever answer comes back first is used and the other attempt is cancelled. Hedges
+ * are paid for from the same budget. Every retry and hedge is a new request with its own timestamp, nonce and
+ * signature.</p>
+ *
+ * @since 0.2
+ */
+public class RetryPolicy {
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+	public static final double DEFAULT_BUDGET_RATIO = 0.2;
+	public static final int DEFAULT_BUDGET_RESERVE = 10;
+
+	/** The latency percentile after which a call is hedged. */
+	private static final double HEDGE_PERCENTILE = 0.95;
+	/** How many latencies are kept per method. */
+	private static final int LATENCY_WINDOW = 128;
+	/** How many latencies a method needs before its calls are hedged. */
+	private static final int MIN_HEDGE_SAMPLES = 20;
+
+	/**
+	 * One attempt at a call.
+	 */
+	interface Attempt<T> {
+		/**
+		 * @param sample where to record the attempt's measurements, or null if the call is not being measured
+		 */
+		Exchange<T> attempt(CallSample sample) throws IOException;
+	}
+
+	/**
+	 * One attempt at an asynchronous call.
+	 */
+	interface AsyncAttempt<T> {
+		/**
+		 * @param sample where to record the attempt's measurements, or null if the call is not being measured
+		 * @param context where to register the attempt's transport requests
+		 */
+		CompletableFuture<Exchange<T>> attempt(CallSample sample, CallContext context);
+	}
+
+	private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<String, LatencyWindow>();
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_BACKOFF_MILLIS);
+	private volatile long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF_MILLIS);
+	private volatile boolean retryPost;
+	private volatile Executor hedgeExecutor;
+
+	private final Object budgetLock = new Object();
+	private double budgetRatio = DEFAULT_BUDGET_RATIO;
+	private int budgetReserve = DEFAULT_BUDGET_RESERVE;
+	private double budget = DEFAULT_BUDGET_RESERVE;
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong budgetExhausted = new AtomicLong();
+
+	/**
+	 * Sets how many times a call may be sent in all, including the first. Hedges do not count.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("maxAttempts must be at least 1");
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Sets the backoff before the first retry, doubling for each one after up to a maximum. The actual wait is a random
+	 * time up to the backoff.
+	 */
+	public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+		if (initialBackoff < 0 || maxBackoff < initialBackoff)
+			throw new IllegalArgumentException("Backoffs must satisfy 0 <= initial <= max");
+		this.initialBackoffNanos = unit.toNanos(initialBackoff);
+		this.maxBackoffNanos = unit.toNanos(maxBackoff);
+	}
+
+	/**
+	 * Sets the retry budget: each call adds <code>ratio</code> of a retry to it, and it holds at most
+	 * <code>reserve</code> retries, which are also available from the start.
+	 */
+	public void setRetryBudget(double ratio, int reserve) {
+		if (ratio < 0 || reserve < 0)
+			throw new IllegalArgumentException("ratio and reserve must not be negative");
+		synchronized (budgetLock) {
+			this.budgetRatio = ratio;
+			this.budgetReserve = reserve;
+			this.budget = Math.min(budget, reserve);
+		}
+	}
+
+	/**
+	 * Sets whether POST methods are retried too. Only turn this on if sending the same change twice is harmless.
+	 */
+	public void setRetryPost(boolean retryPost) {
+		this.retryPost = retryPost;
+	}
+
+	/**
+	 * Turns on hedging of slow read-only calls. A blocking call's first attempt still runs on the calling thread, which
+	 * is interrupted if the hedge answers first, and the hedge is sent from the given executor; asynchronous calls send
+	 * their hedges from the executor they were made with instead.
+	 *
+	 * @param executor the executor to send the hedges of blocking calls from, or null to turn hedging off
+	 */
+	public void setHedging(Executor executor) {
+		this.hedgeExecutor = executor;
+	}
+
+	/**
+	 * The number of retries sent.
+	 */
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * The number of hedges sent.
+	 */
+	public long getHedgeCount() {
+		return hedges.get();
+	}
+
+	/**
+	 * The number of retries and hedges not sent because the budget was spent.
+	 */
+	public long getBudgetExhaustedCount() {
+		return budgetExhausted.get();
+	}
+
+	/**
+	 * The latency after which a call to a method is hedged, in nanoseconds, or -1 if there are too few samples yet.
+	 */
+	public long getHedgeDelayNanos(String method) {
+		LatencyWindow window = latencies.get(method);
+		return window != null ? window.percentile() : -1;
+	}
+
+	/**
+	 * Makes a blocking call, retrying and hedging it as the policy allows.
+	 *
+	 * @param sample where to record the measurements of the attempt whose answer is returned, or null
+	 */
+	<T> Exchange<T> execute(RequestTemplate template, CallSample sample, Deadline deadline, Attempt<T> attempt) throws IOException {
+		final boolean get = template.httpVerb == HttpVerb.GET;
+		final boolean retryable = get || retryPost;
+		final LatencyWindow window = get ? window(template.method) : null;
+		final Executor executor = hedgeExecutor;
+		deposit();
+
+		for (int attempts = 1;; ++attempts) {
+			Exchange<T> result;
+			IOException failure = null;
+			long backoff = backoff(attempts);
+			boolean mayRetry = retryable && attempts < maxAttempts && (deadline == null || backoff < deadline.remainingNanos());
+			try {
+				result = executor != null && get ? hedged(template.method, sample, attempt, window, executor) : timed(attempt, sample, window);
+			} catch (IOException ioe) {
+				if (!mayRetry || !isRetryable(ioe) || !withdraw())
+					throw ioe;
+				result = null;
+				failure = ioe;
+			}
+			if (result != null && (!mayRetry || !isRetryable(result.response) || !withdraw()))
+				return result;
+
+			retries.incrementAndGet();
+			FlightEvents.retry(template.method, attempts + 1, reason(result, failure), backoff);
+			try {
+				TimeUnit.NANOSECONDS.sleep(backoff);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to retry " + template.method);
+			}
+		}
+	}
+
+	/**
+	 * Makes an asynchronous call, retrying and hedging it as the policy allows.
+	 *
+	 * @param sample where to record the measurements of the attempt whose answer is returned, or null
+	 * @param context the call's deadline and the transport requests sent for it
+	 * @param executor the executor to send retries and hedges from
+	 */
+	<T> CompletableFuture<Exchange<T>> executeAsync(RequestTemplate template, CallSample sample, CallContext context, Executor executor, AsyncAttempt<T> attempt) {
+		boolean get = template.httpVerb == HttpVerb.GET;
+		CompletableFuture<Exchange<T>> result = new CompletableFuture<Exchange<T>>();
+		deposit();
+		attemptAsync(template.method, 1, get, get || retryPost, get ? window(template.method) : null, sample, context, executor, attempt, result);
+		return result;
+	}
+
+	private <T> void attemptAsync(final String method, final int attempts, final boolean get, final boolean retryable, final LatencyWindow window, final CallSample sample,
+			final CallContext context, final Executor executor, final AsyncAttempt<T> attempt, final CompletableFuture<Exchange<T>> result) {
+		CompletableFuture<Exchange<T>> sent = get && hedgeExecutor != null ? hedgedAsync(method, sample, context, executor, attempt, window) : timedAsync(attempt, sample, context, window);
+		sent.whenComplete((exchange, failure) -> {
+			long backoff = backoff(attempts);
+			Deadline deadline = context.deadline;
+			boolean retry = retryable && attempts < maxAttempts && (deadline == null || backoff < deadline.remainingNanos())
+					&& (failure != null ? isRetryable(unwrap(failure)) : isRetryable(exchange.response)) && withdraw();
+			if (!retry) {
+				if (failure != null)
+					result.completeExceptionally(unwrap(failure));
+				else
+					result.complete(exchange);
+				return;
+			}
+			retries.incrementAndGet();
+			FlightEvents.retry(method, attempts + 1, reason(exchange, failure != null ? unwrap(failure) : null), backoff);
+			CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS, executor)
+					.execute(() -> attemptAsync(method, attempts + 1, get, retryable, window, sample, context, executor, attempt, result));
+		});
+	}
+
+	/**
+	 * Runs an attempt on the calling thread and, if it is still running after the hedge delay, a second one from the
+	 * executor, returning the first answer and cancelling the other attempt.
+	 */
+	private <T> Exchange<T> hedged(final String method, CallSample sample, final Attempt<T> attempt, final LatencyWindow window, final Executor executor) throws IOException {
+		final long delay = window.percentile();
+		if (delay < 0)
+			return timed(attempt, sample, window);
+
+		final Race<T> race = new Race<T>(sample);
+		final CallerAttempt primary = new CallerAttempt();
+		CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+			if (race.first.isDone() || !withdraw())
+				return;
+			final CallSample hedgeSample = CallSample.forAttempt(race.sample);
+			FutureTask<Void> hedge = new FutureTask<Void>(() -> {
+				Exchange<T> exchange = null;
+				Throwable failure = null;
+				try {
+					exchange = timed(attempt, hedgeSample, window);
+				} catch (IOException | RuntimeException e) {
+					failure = e;
+				}
+				if (race.finish(hedgeSample, exchange, failure))
+					primary.cancel();
+			}, null);
+			if (!primary.hedging(hedge, race))
+				return;
+			hedges.incrementAndGet();
+			FlightEvents.hedge(method, delay);
+			hedge.run();
+		});
+
+		race.enter();
+		CallSample primarySample = CallSample.forAttempt(sample);
+		Exchange<T> exchange = null;
+		Throwable failure = null;
+		try {
+			exchange = timed(attempt, primarySample, window);
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+		} finally {
+			primary.finished();
+		}
+		race.finish(primarySample, exchange, failure);
+		try {
+			return await(race.first);
+		} finally {
+			//Cancels the hedge if this attempt answered first, or if this thread was interrupted while waiting for it.
+			Future<?> hedge = primary.hedge();
+			if (hedge != null)
+				hedge.cancel(true);
+		}
+	}
+
+	private <T> CompletableFuture<Exchange<T>> hedgedAsync(final String method, CallSample sample, final CallContext context, final Executor executor, final AsyncAttempt<T> attempt,
+			final LatencyWindow window) {
+		final long delay = window.percentile();
+		if (delay < 0)
+			return timedAsync(attempt, sample, context, window);
+
+		final Race<T> race = new Race<T>(sample);
+		final CallContext primaryContext = context.forAttempt();
+		final AtomicReference<CallContext> hedgeContext = new AtomicReference<CallContext>();
+		race.enter();
+		final CallSample primarySample = CallSample.forAttempt(sample);
+		timedAsync(attempt, primarySample, primaryContext, window).whenComplete((exchange, failure) -> {
+			if (race.finish(primarySample, exchange, failure) && hedgeContext.get() != null)
+				hedgeContext.get().cancel();
+		});
+		CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+			if (race.first.isDone() || !withdraw())
+				return;
+			race.enter();
+			final CallSample hedgeSample = CallSample.forAttempt(sample);
+			CallContext attemptContext = context.forAttempt();
+			hedgeContext.set(attemptContext);
+			//The first attempt may have answered since, without seeing the hedge to cancel.
+			if (race.first.isDone())
+				return;
+			hedges.incrementAndGet();
+			FlightEvents.hedge(method, delay);
+			timedAsync(attempt, hedgeSample, attemptContext, window).whenComplete((exchange, failure) -> {
+				if (race.finish(hedgeSample, exchange, failure))
+					primaryContext.cancel();
+			});
+		});
+		return race.first;
+	}
+
+	/**
+	 * Describes why an attempt is being retried, for the flight recorder.
+	 */
+	private static String reason(Exchange<?> result, Throwable failure) {
+		if (failure != null)
+			return APIError.fromClientFailure(failure).getErrorCode();
+		APIError error = result != null ? result.response.getError() : null;
+		return error != null ? error.getErrorCode() : "";
+	}
+
+	private static <T> Exchange<T> timed(Attempt<T> attempt, CallSample sample, LatencyWindow window) throws IOException {
+		long started = System.nanoTime();
+		Exchange<T> result = attempt.attempt(sample);
+		if (window != null && result.response.getSuccess())
+			window.record(System.nanoTime() - started);
+		return result;
+	}
+
+	private static <T> CompletableFuture<Exchange<T>> timedAsync(AsyncAttempt<T> attempt, CallSample sample, CallContext context, final LatencyWindow window) {
+		final long started = System.nanoTime();
+		CompletableFuture<Exchange<T>> sent;
+		try {
+			sent = attempt.attempt(sample, context);
+		} catch (RuntimeException re) {
+			sent = new CompletableFuture<Exchange<T>>();
+			sent.completeExceptionally(re);
+		}
+		if (window == null)
+			return sent;
+		return sent.whenComplete((exchange, failure) -> {
+			if (exchange != null && exchange.response.getSuccess())
+				window.record(System.nanoTime() - started);
+		});
+	}
+
+	private static boolean isRetryable(Throwable failure) {
+		if (failure instanceof LimitExceededException || failure instanceof CircuitOpenException)
+			return false;
+		if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException))
+			return false;
+		return failure instanceof IOException;
+	}
+
+	private static boolean isRetryable(APIResponse<?> response) {
+		if (response.getSuccess() || response.getError() == null)
+			return false;
+		int status = response.getError().getHttpResponse();
+		return status == 429 || status >= 500;
+	}
+
+	private long backoff(int attempts) {
+		long ceiling = initialBackoffNanos << Math.min(attempts - 1, 30);
+		if (ceiling <= 0 || ceiling > maxBackoffNanos)
+			ceiling = maxBackoffNanos;
+		return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+	}
+
+	private void deposit() {
+		synchronized (budgetLock) {
+			budget = Math.min(budgetReserve, budget + budgetRatio);
+		}
+	}
+
+	private boolean withdraw() {
+		synchronized (budgetLock) {
+			if (budget >= 1) {
+				budget -= 1;
+				return true;
+			}
+		}
+		budgetExhausted.incrementAndGet();
+		return false;
+	}
+
+	private LatencyWindow window(String method) {
+		LatencyWindow window = latencies.get(method);
+		return window != null ? window : latencies.computeIfAbsent(method, name -> new LatencyWindow());
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+	}
+
+	private static <T> Exchange<T> await(CompletableFuture<Exchange<T>> future) throws IOException {
+		try {
+			return await(future, Long.MAX_VALUE);
+		} catch (TimeoutException te) {
+			//Cannot happen without a deadline.
+			throw new IllegalStateException(te);
+		}
+	}
+
+	private static <T> Exchange<T> await(CompletableFuture<Exchange<T>> future, long timeoutNanos) throws IOException, TimeoutException {
+		try {
+			return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a call");
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * The attempts at a hedged call racing to answer it. The first answer from the API wins, or the last failure once
+	 * every attempt has failed, and only the winner's measurements are kept in the call's sample.
+	 */
+	private static final class Race<T> {
+		final CompletableFuture<Exchange<T>> first = new CompletableFuture<Exchange<T>>();
+		final CallSample sample;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicBoolean decided = new AtomicBoolean();
+
+		Race(CallSample sample) {
+			this.sample = sample;
+		}
+
+		/**
+		 * Enters an attempt in the race, before it is sent.
+		 */
+		void enter() {
+			outstanding.incrementAndGet();
+		}
+
+		/**
+		 * Takes the outcome of an attempt.
+		 *
+		 * @return whether the attempt decided the race, so the others should be cancelled
+		 */
+		boolean finish(CallSample attemptSample, Exchange<T> exchange, Throwable failure) {
+			if (failure != null && outstanding.decrementAndGet() != 0)
+				return false;
+			if (!decided.compareAndSet(false, true))
+				return false;
+			if (sample != null)
+				sample.merge(attemptSample);
+			if (failure != null)
+				first.completeExceptionally(unwrap(failure));
+			else
+				first.complete(exchange);
+			return true;
+		}
+	}
+
+	/**
+	 * The first attempt at a hedged blocking call, which runs on the caller's thread. It is cancelled by interrupting
+	 * that thread, and only while the attempt is running, so the interrupt cannot leak into the caller's own code.
+	 */
+	private static final class CallerAttempt {
+		private final Thread thread = Thread.currentThread();
+		private boolean running = true;
+		private boolean interrupted;
+		private Future<?> hedge;
+
+		/**
+		 * Records the hedge sent alongside the attempt and enters it in the race, unless the attempt has finished.
+		 */
+		synchronized boolean hedging(Future<?> hedge, Race<?> race) {
+			if (!running)
+				return false;
+			race.enter();
+			this.hedge = hedge;
+			return true;
+		}
+
+		synchronized Future<?> hedge() {
+			return hedge;
+		}
+
+		synchronized void cancel() {
+			if (running) {
+				interrupted = true;
+				thread.interrupt();
+			}
+		}
+
+		/**
+		 * Marks the attempt finished, clearing the interrupt if it was cancelled.
+		 */
+		synchronized void finished() {
+			running = false;
+			if (interrupted)
+				Thread.interrupted();
+		}
+	}
+
+	/**
+	 * The latencies of a method's most recent successful calls, with the hedge percentile worked out again every few
+	 * samples rather than on every call.
+	 */
+	private static final class LatencyWindow {
+		private static final int RECOMPUTE_EVERY = 16;
+
+		private final long[] samples = new long[LATENCY_WINDOW];
+		private long count;
+		private int next;
+		private volatile long percentile = -1;
+
+		synchronized void record(long latencyNanos) {
+			samples[next] = latencyNanos;
+			next = (next + 1) % samples.length;
+			++count;
+			if (count >= MIN_HEDGE_SAMPLES && (count % RECOMPUTE_EVERY == 0 || percentile < 0)) {
+				long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+				Arrays.sort(sorted);
+				percentile = sorted[(int) Math.min(sorted.length - 1, Math.floor(sorted.length * HEDGE_PERCENTILE))];
+			}
+		}
+
+		long percentile() {
+			return percentile;
+		}
+	}
+}
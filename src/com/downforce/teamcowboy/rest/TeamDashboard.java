@@ -0,0 +1,60 @@
+package com.downforce.teamcowboy.rest;
+
+import com.downforce.teamcowboy.rest.response.Event;
+import com.downforce.teamcowboy.rest.response.Message;
+import com.downforce.teamcowboy.rest.response.Team;
+import com.downforce.teamcowboy.rest.response.User;
+
+/**
+ * The events, roster and messages for one team on a {@link Dashboard}.
+ * 
+ * @since 0.2
+ */
+public class TeamDashboard {
+	private final Team team;
+	private final APIResponse<Event[]> events;
+	private final APIResponse<User> roster;
+	private final APIResponse<Message[]> messages;
+
+	TeamDashboard(Team team, APIResponse<Event[]> events, APIResponse<User> roster, APIResponse<Message[]> messages) {
+		this.team = team;
+		this.events = events;
+		this.roster = roster;
+		this.messages = messages;
+	}
+
+	/**
+	 * The team, as returned by <code>User_GetTeams</code>.
+	 */
+	public Team getTeam() {
+		return team;
+	}
+
+	/**
+	 * The team's upcoming events.
+	 */
+	public APIResponse<Event[]> getEvents() {
+		return events;
+	}
+
+	/**
+	 * The team's roster.
+	 */
+	public APIResponse<User> getRoster() {
+		return roster;
+	}
+
+	/**
+	 * The team's latest messages.
+	 */
+	public APIResponse<Message[]> getMessages() {
+		return messages;
+	}
+
+	/**
+	 * Whether every part for the team loaded successfully.
+	 */
+	public boolean isComplete() {
+		return events.getSuccess() && roster.getSuccess() && messages.getSuccess();
+	}
+}
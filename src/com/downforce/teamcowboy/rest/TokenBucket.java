@@ -0,0 +1,55 @@
+package com.downforce.teamcowboy.rest;
+
+/**
+ * Spaces calls out to a steady rate while allowing short bursts. Callers reserve a token and are told how long to
+ * wait before using it, so no thread has to park inside the bucket.
+ * 
+ * @since 0.2
+ */
+final class TokenBucket {
+	private final long intervalNanos;
+	private final long burstNanos;
+	/** The time at which the next token becomes free, once any unused burst has been spent. */
+	private long nextFree;
+	private boolean started;
+
+	/**
+	 * @param permitsPerSecond the steady rate
+	 * @param burst how many tokens can be taken at once after a quiet period
+	 */
+	TokenBucket(double permitsPerSecond, int burst) {
+		if (!(permitsPerSecond > 0) || burst < 1)
+			throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+		this.intervalNanos = Math.max(1, (long) (1000000000L / permitsPerSecond));
+		this.burstNanos = (burst - 1) * intervalNanos;
+	}
+
+	/**
+	 * Takes a token.
+	 * 
+	 * @return how long to wait before using it, in nanoseconds
+	 */
+	long reserve() {
+		return reserve(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Takes a token if one becomes free within the given time.
+	 * 
+	 * @param maxWaitNanos the longest the caller is willing to wait
+	 * @return how long to wait before using the token, in nanoseconds, or -1 if none was taken
+	 */
+	synchronized long reserve(long maxWaitNanos) {
+		long now = System.nanoTime();
+		long earliest = now - burstNanos;
+		if (!started || nextFree - earliest < 0) {
+			nextFree = earliest;
+			started = true;
+		}
+		long wait = Math.max(0, nextFree - now);
+		if (wait > maxWaitNanos)
+			return -1;
+		nextFree += intervalNanos;
+		return wait;
+	}
+}
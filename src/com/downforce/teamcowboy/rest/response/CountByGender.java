@@ -1,8 +1,8 @@
 package com.downforce.teamcowboy.rest.response;
 
 public class CountByGender {
-	public Integer m;
-	public Integer f;
+	public int m;
+	public int f;
 	
 	CountByGender() {}
 }
@@ -0,0 +1,39 @@
+package com.downforce.teamcowboy.rest.response;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads counts by gender, <code>{"m": 7, "f": 5}</code>, straight from the stream into a {@link CountByGender}.
+ * 
+ * @since 0.2
+ */
+public class CountByGenderAdapter extends TypeAdapter<CountByGender> {
+	public CountByGender read(JsonReader in) throws IOException {
+		CountByGender value = new CountByGender();
+		if (JsonInts.beginObject(in)) {
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if ("m".equals(name))
+					value.m = JsonInts.readInt(in);
+				else if ("f".equals(name))
+					value.f = JsonInts.readInt(in);
+				else
+					in.skipValue();
+			}
+			in.endObject();
+		}
+		return value;
+	}
+
+	public void write(JsonWriter out, CountByGender value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject().name("m").value(value.m).name("f").value(value.f).endObject();
+	}
+}
@@ -1,11 +1,25 @@
 package com.downforce.teamcowboy.rest.response;
 
 public class CountByType {
-	public String[] types;
-	public Number[] counts;
+	public final String[] types;
+	public final int[] counts;
+	private final TypeIndex index;
 
-	CountByType(String[] types, Number[] counts) {
+	CountByType(String[] types, int[] counts) {
 		this.types = types;
 		this.counts = counts;
+		this.index = new TypeIndex(types);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The count for a team member type, or 0 if there is none.
+	 */
+	public int getCount(String type) {
+		int position = index.indexOf(type);
+		return position < 0 ? 0 : counts[position];
+	}
+
+	public boolean hasType(String type) {
+		return index.indexOf(type) >= 0;
+	}
+}
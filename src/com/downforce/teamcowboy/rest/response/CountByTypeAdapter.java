@@ -0,0 +1,45 @@
+package com.downforce.teamcowboy.rest.response;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads an object of counts keyed by team member type, such as <code>{"player": 12, "sub": 3}</code>, straight from
+ * the stream into a {@link CountByType}.
+ * 
+ * @since 0.2
+ */
+public class CountByTypeAdapter extends TypeAdapter<CountByType> {
+	public CountByType read(JsonReader in) throws IOException {
+		String[] types = new String[4];
+		int[] counts = new int[4];
+		int count = 0;
+		if (JsonInts.beginObject(in)) {
+			while (in.hasNext()) {
+				if (count == types.length) {
+					types = Arrays.copyOf(types, count * 2);
+					counts = Arrays.copyOf(counts, count * 2);
+				}
+				types[count] = in.nextName();
+				counts[count++] = JsonInts.readInt(in);
+			}
+			in.endObject();
+		}
+		return new CountByType(Arrays.copyOf(types, count), Arrays.copyOf(counts, count));
+	}
+
+	public void write(JsonWriter out, CountByType value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (int i = 0; i < value.types.length; ++i)
+			out.name(value.types[i]).value(value.counts[i]);
+		out.endObject();
+	}
+}
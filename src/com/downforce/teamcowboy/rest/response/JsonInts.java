@@ -0,0 +1,75 @@
+package com.downforce.teamcowboy.rest.response;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes the counts and user id lists in attendance data without boxing them.
+ * 
+ * @since 0.2
+ */
+final class JsonInts {
+	static final int[] EMPTY = new int[0];
+
+	private JsonInts() {
+	}
+
+	/**
+	 * Reads a number, or a string holding one. A null reads as zero.
+	 */
+	static int readInt(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return 0;
+		}
+		return in.nextInt();
+	}
+
+	/**
+	 * Reads an array of numbers. A null reads as an empty array.
+	 */
+	static int[] readIntArray(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return EMPTY;
+		}
+		int[] values = new int[16];
+		int count = 0;
+		in.beginArray();
+		while (in.hasNext()) {
+			if (count == values.length)
+				values = Arrays.copyOf(values, count * 2);
+			values[count++] = readInt(in);
+		}
+		in.endArray();
+		return count == 0 ? EMPTY : Arrays.copyOf(values, count);
+	}
+
+	/**
+	 * Starts reading an object keyed by name. The API sends an object with no names as an empty array, so that is
+	 * skipped and false returned.
+	 */
+	static boolean beginObject(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.BEGIN_ARRAY) {
+			in.skipValue();
+			return false;
+		}
+		in.beginObject();
+		return true;
+	}
+
+	static void writeIntArray(JsonWriter out, int[] values) throws IOException {
+		if (values == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (int value : values)
+			out.value(value);
+		out.endArray();
+	}
+}
@@ -0,0 +1,47 @@
+package com.downforce.teamcowboy.rest.response;
+
+/**
+ * Finds a team member type's position in a small array of types. The positions are kept in an open-addressed table
+ * with linear probing, at most half full, so a lookup is a hash and usually a single comparison.
+ * 
+ * @since 0.2
+ */
+final class TypeIndex {
+	private final String[] types;
+	/** Each type's position plus one, or zero for an empty slot. */
+	private final int[] slots;
+	private final int mask;
+
+	TypeIndex(String[] types) {
+		this.types = types;
+		int capacity = Integer.highestOneBit(Math.max(2, types.length) * 2 - 1) << 1;
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+		for (int i = 0; i < types.length; ++i) {
+			int slot = slotOf(types[i]);
+			if (slots[slot] == 0)
+				slots[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Returns the position of a type, or -1 if it is not there.
+	 */
+	int indexOf(String type) {
+		if (type == null)
+			return -1;
+		int position = slots[slotOf(type)] - 1;
+		return position >= 0 && types[position].equals(type) ? position : -1;
+	}
+
+	/**
+	 * Returns the slot holding a type, or the empty slot it would go in.
+	 */
+	private int slotOf(String type) {
+		int hash = type.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (slots[slot] != 0 && !types[slots[slot] - 1].equals(type))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+}
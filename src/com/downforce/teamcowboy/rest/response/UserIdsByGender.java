@@ -1,8 +1,8 @@
 package com.downforce.teamcowboy.rest.response;
 
 public class UserIdsByGender {
-	public Integer[] m;
-	public Integer[] f;
+	public int[] m;
+	public int[] f;
 
 	UserIdsByGender() {}
 }
@@ -0,0 +1,45 @@
+package com.downforce.teamcowboy.rest.response;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads user id lists by gender, <code>{"m": [101, 103], "f": [102]}</code>, straight from the stream into a
+ * {@link UserIdsByGender}.
+ * 
+ * @since 0.2
+ */
+public class UserIdsByGenderAdapter extends TypeAdapter<UserIdsByGender> {
+	public UserIdsByGender read(JsonReader in) throws IOException {
+		UserIdsByGender value = new UserIdsByGender();
+		if (JsonInts.beginObject(in)) {
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if ("m".equals(name))
+					value.m = JsonInts.readIntArray(in);
+				else if ("f".equals(name))
+					value.f = JsonInts.readIntArray(in);
+				else
+					in.skipValue();
+			}
+			in.endObject();
+		}
+		return value;
+	}
+
+	public void write(JsonWriter out, UserIdsByGender value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("m");
+		JsonInts.writeIntArray(out, value.m);
+		out.name("f");
+		JsonInts.writeIntArray(out, value.f);
+		out.endObject();
+	}
+}
@@ -1,11 +1,25 @@
 package com.downforce.teamcowboy.rest.response;
 
 public class UserIdsByType {
-	public String[] types;
-	public Number[][] userIds;
+	public final String[] types;
+	public final int[][] userIds;
+	private final TypeIndex index;
 
-	UserIdsByType(String[] types, Number[][] userIds) {
+	UserIdsByType(String[] types, int[][] userIds) {
 		this.types = types;
 		this.userIds = userIds;
+		this.index = new TypeIndex(types);
+	}
+
+	/**
+	 * The ids of the users of a team member type, or an empty array if there are none.
+	 */
+	public int[] getUserIds(String type) {
+		int position = index.indexOf(type);
+		return position < 0 ? JsonInts.EMPTY : userIds[position];
+	}
+
+	public boolean hasType(String type) {
+		return index.indexOf(type) >= 0;
 	}
 }
@@ -0,0 +1,47 @@
+package com.downforce.teamcowboy.rest.response;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads an object of user id lists keyed by team member type, such as <code>{"player": [101, 102], "sub": [103]}</code>,
+ * straight from the stream into a {@link UserIdsByType}.
+ * 
+ * @since 0.2
+ */
+public class UserIdsByTypeAdapter extends TypeAdapter<UserIdsByType> {
+	public UserIdsByType read(JsonReader in) throws IOException {
+		String[] types = new String[4];
+		int[][] userIds = new int[4][];
+		int count = 0;
+		if (JsonInts.beginObject(in)) {
+			while (in.hasNext()) {
+				if (count == types.length) {
+					types = Arrays.copyOf(types, count * 2);
+					userIds = Arrays.copyOf(userIds, count * 2);
+				}
+				types[count] = in.nextName();
+				userIds[count++] = JsonInts.readIntArray(in);
+			}
+			in.endObject();
+		}
+		return new UserIdsByType(Arrays.copyOf(types, count), Arrays.copyOf(userIds, count));
+	}
+
+	public void write(JsonWriter out, UserIdsByType value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		for (int i = 0; i < value.types.length; ++i) {
+			out.name(value.types[i]);
+			JsonInts.writeIntArray(out, value.userIds[i]);
+		}
+		out.endObject();
+	}
+}
@@ -0,0 +1,95 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that the limiter bounds how many tasks run at once, and that a long queue of tasks completing as soon as they
+ * start is drained without recursing.
+ */
+public class AsyncLimiterTest {
+	@Test(timeout = 60000)
+	public void manySynchronousFailuresDoNotRecurse() throws Exception {
+		AsyncLimiter limiter = new AsyncLimiter(1);
+		CompletableFuture<String> blocker = new CompletableFuture<String>();
+		CompletableFuture<String> first = limiter.submit(() -> blocker);
+
+		//Each of these fails as soon as it is started, which used to start the next one a frame deeper.
+		List<CompletableFuture<String>> queued = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 100000; ++i) {
+			final int index = i;
+			queued.add(limiter.<String>submit(() -> {
+				if (index % 2 == 0)
+					throw new IllegalStateException("open");
+				CompletableFuture<String> failed = new CompletableFuture<String>();
+				failed.completeExceptionally(new IOException("Connection reset"));
+				return failed;
+			}));
+		}
+		blocker.complete("done");
+
+		assertEquals("done", first.get(10, TimeUnit.SECONDS));
+		for (int i = 0; i < queued.size(); ++i) {
+			CompletableFuture<String> future = queued.get(i);
+			assertTrue("not completed: " + i, future.isDone());
+			try {
+				future.get();
+			} catch (ExecutionException ee) {
+				assertTrue(ee.getCause() instanceof IllegalStateException || ee.getCause() instanceof IOException);
+				continue;
+			}
+			throw new AssertionError("succeeded: " + i);
+		}
+		assertEquals("after", limiter.submit(() -> CompletableFuture.completedFuture("after")).get(10, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = 60000)
+	public void resultCompletesBeforeTheNextTaskStarts() throws Exception {
+		AsyncLimiter limiter = new AsyncLimiter(1);
+		CompletableFuture<Integer> blocker = new CompletableFuture<Integer>();
+		limiter.submit(() -> blocker);
+
+		final AtomicInteger started = new AtomicInteger();
+		final List<Integer> startedWhenCompleted = new ArrayList<Integer>();
+		for (int i = 0; i < 100; ++i) {
+			limiter.submit(() -> CompletableFuture.completedFuture(started.incrementAndGet()))
+					.thenAccept(value -> startedWhenCompleted.add(started.get()));
+		}
+		blocker.complete(0);
+
+		assertEquals(100, startedWhenCompleted.size());
+		for (int i = 0; i < 100; ++i)
+			assertEquals(i + 1, startedWhenCompleted.get(i).intValue());
+	}
+
+	@Test(timeout = 60000)
+	public void limitIsRespected() throws Exception {
+		final AsyncLimiter limiter = new AsyncLimiter(3);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		for (int i = 0; i < 1000; ++i) {
+			final int index = i;
+			futures.add(limiter.submit(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				return CompletableFuture.supplyAsync(() -> {
+					running.decrementAndGet();
+					return index;
+				}, CompletableFuture.delayedExecutor(index % 3, TimeUnit.MILLISECONDS));
+			}));
+		}
+		for (int i = 0; i < futures.size(); ++i)
+			assertEquals(i, futures.get(i).get(30, TimeUnit.SECONDS).intValue());
+		assertTrue("running at once: " + maxRunning.get(), maxRunning.get() <= 3);
+	}
+}
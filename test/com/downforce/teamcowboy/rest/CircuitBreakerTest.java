@@ -0,0 +1,207 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Walks a circuit through its states by recording outcomes directly, checking which outcomes count against the API.
+ */
+public class CircuitBreakerTest {
+	private static final String METHOD = "Test_GetRequest";
+
+	private CircuitBreaker breaker;
+	private final List<String> transitions = new ArrayList<String>();
+
+	@Before
+	public void createBreaker() {
+		breaker = new CircuitBreaker();
+		breaker.setWindow(10, 4);
+		breaker.setFailureRateThreshold(0.5);
+		breaker.setOpenDuration(50, TimeUnit.MILLISECONDS, 2);
+		breaker.addListener((method, from, to) -> transitions.add(method + ":" + from + "->" + to));
+	}
+
+	@Test
+	public void opensOnceTheFailureRateIsReached() throws Exception {
+		record(ok(), null);
+		record(ok(), null);
+		record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+		record(error(503), null);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+		assertOpen();
+		assertEquals(1, transitions.size());
+		assertEquals(METHOD + ":CLOSED->OPEN", transitions.get(0));
+	}
+
+	@Test
+	public void doesNotOpenBeforeTheMinimumNumberOfCalls() throws Exception {
+		for (int i = 0; i < 3; ++i)
+			record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+		record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void onlyThrottlingAndServerErrorsCountAsFailures() throws Exception {
+		for (int i = 0; i < 10; ++i)
+			record(error(i % 2 == 0 ? 404 : 400), null);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+		for (int i = 0; i < 5; ++i)
+			record(error(429), null);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void oldOutcomesLeaveTheWindow() throws Exception {
+		for (int i = 0; i < 4; ++i)
+			record(null, new IOException("reset"));
+		breaker.reset();
+		for (int i = 0; i < 10; ++i)
+			record(ok(), null);
+		for (int i = 0; i < 4; ++i)
+			record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+		record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void clientSideFailuresAreNotCounted() throws Exception {
+		for (int i = 0; i < 10; ++i) {
+			record(null, new CancellationException());
+			record(null, new CompletionException(new CancellationException()));
+			record(null, new LimitExceededException("Too many calls"));
+			record(null, new DeadlineExceededException("Deadline passed"));
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void timeoutsCutShortByADeadlineAreNotCounted() throws Exception {
+		Deadline passed = new Deadline(0, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 10; ++i) {
+			breaker.record(breaker.acquire(METHOD), null, new SocketTimeoutException("Read timed out"), passed);
+			breaker.record(breaker.acquire(METHOD), null, new HttpTimeoutException("request timed out"), passed);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+
+		//With time left on the deadline, the transport's own timeout ran out.
+		Deadline live = new Deadline(1, TimeUnit.MINUTES);
+		for (int i = 0; i < 4; ++i)
+			breaker.record(breaker.acquire(METHOD), null, new SocketTimeoutException("Read timed out"), live);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void slowCallsOpenTheCircuit() throws Exception {
+		breaker.setSlowCallThreshold(1, TimeUnit.MILLISECONDS, 0.5);
+		for (int i = 0; i < 4; ++i) {
+			CircuitBreaker.Ticket ticket = breaker.acquire(METHOD);
+			Thread.sleep(5);
+			breaker.record(ticket, ok(), null, null);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void closesAfterTheTrialCallsSucceed() throws Exception {
+		open();
+		Thread.sleep(60);
+		CircuitBreaker.Ticket first = breaker.acquire(METHOD);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(METHOD));
+		CircuitBreaker.Ticket second = breaker.acquire(METHOD);
+		assertOpen();
+
+		breaker.record(first, ok(), null, null);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(METHOD));
+		breaker.record(second, ok(), null, null);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+		assertEquals(3, transitions.size());
+		assertEquals(METHOD + ":OPEN->HALF_OPEN", transitions.get(1));
+		assertEquals(METHOD + ":HALF_OPEN->CLOSED", transitions.get(2));
+	}
+
+	@Test
+	public void reopensWhenATrialCallFails() throws Exception {
+		open();
+		Thread.sleep(60);
+		breaker.record(breaker.acquire(METHOD), null, new IOException("reset"), null);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+		assertOpen();
+	}
+
+	@Test
+	public void cancelledTrialCallGivesBackItsTurn() throws Exception {
+		open();
+		Thread.sleep(60);
+		CircuitBreaker.Ticket first = breaker.acquire(METHOD);
+		CircuitBreaker.Ticket second = breaker.acquire(METHOD);
+		breaker.record(first, null, new CancellationException(), null);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(METHOD));
+		CircuitBreaker.Ticket third = breaker.acquire(METHOD);
+		breaker.record(second, ok(), null, null);
+		breaker.record(third, ok(), null, null);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void outcomesFromBeforeAStateChangeAreIgnored() throws Exception {
+		CircuitBreaker.Ticket late = breaker.acquire(METHOD);
+		open();
+		Thread.sleep(60);
+		CircuitBreaker.Ticket trial = breaker.acquire(METHOD);
+		breaker.record(late, null, new IOException("reset"), null);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(METHOD));
+		breaker.record(trial, ok(), null, null);
+		breaker.record(breaker.acquire(METHOD), ok(), null, null);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(METHOD));
+	}
+
+	@Test
+	public void methodsHaveTheirOwnCircuits() throws Exception {
+		open();
+		breaker.record(breaker.acquire("Test_PostRequest"), ok(), null, null);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState("Test_PostRequest"));
+	}
+
+	private void open() throws Exception {
+		for (int i = 0; i < 4; ++i)
+			record(null, new IOException("reset"));
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState(METHOD));
+	}
+
+	private void assertOpen() {
+		try {
+			breaker.acquire(METHOD);
+			fail("Call let through an open circuit");
+		} catch (CircuitOpenException coe) {
+			//Expected
+		}
+	}
+
+	private void record(APIResponse<?> response, Throwable failure) throws Exception {
+		breaker.record(breaker.acquire(METHOD), response, failure, null);
+	}
+
+	private static APIResponse<String> ok() {
+		return new APIResponse<String>(true, 0.001, "ok", null);
+	}
+
+	private static APIResponse<String> error(int status) {
+		return new APIResponse<String>(false, 0.001, null, new APIError("Test.Error", status, "failed"));
+	}
+}
@@ -0,0 +1,184 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the AIMD limit and the wait queue by acquiring and releasing permits directly.
+ */
+public class ConcurrencyLimiterTest {
+	private static final String KEY = "pubkey123";
+	private static final String METHOD = "Test_GetRequest";
+
+	private ConcurrencyLimiter limiter;
+
+	@Before
+	public void createLimiter() {
+		limiter = new ConcurrencyLimiter();
+		limiter.setLimits(1, 4, 8);
+		limiter.setBackoffRatio(0.5);
+		//Calls here take microseconds, so scheduling noise would otherwise read as slowness.
+		limiter.setLatencyTolerance(1e9);
+	}
+
+	@Test
+	public void queuesCallsOverTheLimit() throws Exception {
+		List<ConcurrencyLimiter.Permit> held = acquire(4);
+		CompletableFuture<ConcurrencyLimiter.Permit> waiting = limiter.acquireAsync(KEY, METHOD, Long.MAX_VALUE);
+		assertFalse(waiting.isDone());
+		assertEquals(4, limiter.getInFlightCount(METHOD));
+		assertEquals(1, limiter.getQueueLength(METHOD));
+
+		limiter.release(held.get(0), ok(), null, null);
+		assertTrue(waiting.isDone());
+		assertEquals(4, limiter.getInFlightCount(METHOD));
+		assertEquals(0, limiter.getQueueLength(METHOD));
+	}
+
+	@Test
+	public void growsWhileTheLimitIsInUse() throws Exception {
+		for (int round = 0; round < 20; ++round) {
+			for (ConcurrencyLimiter.Permit permit : acquire(limiter.getLimit(METHOD)))
+				limiter.release(permit, ok(), null, null);
+		}
+		assertEquals(8, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void doesNotGrowWhileIdle() throws Exception {
+		for (int i = 0; i < 100; ++i)
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), ok(), null, null);
+		assertEquals(4, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void cutsOnceForARoundOfOverloadedCalls() throws Exception {
+		List<ConcurrencyLimiter.Permit> round = acquire(4);
+		for (ConcurrencyLimiter.Permit permit : round)
+			limiter.release(permit, error(503), null, null);
+		assertEquals(2, limiter.getLimit(METHOD));
+
+		//A call sent after the cut counts again.
+		limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), null, new SocketTimeoutException("Read timed out"), null);
+		assertEquals(1, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void clientErrorsAreNotOverload() throws Exception {
+		for (int i = 0; i < 10; ++i)
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), error(404), null, null);
+		assertEquals(4, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void abandonedCallsAreNotCounted() throws Exception {
+		for (int i = 0; i < 10; ++i) {
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), null, new CancellationException(), null);
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), null, new DeadlineExceededException("Deadline passed"), null);
+		}
+		assertEquals(4, limiter.getLimit(METHOD));
+		assertEquals(0, limiter.getInFlightCount(METHOD));
+	}
+
+	@Test
+	public void timeoutsCutShortByADeadlineAreNotOverload() throws Exception {
+		Deadline passed = new Deadline(0, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 10; ++i)
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), null, new SocketTimeoutException("Read timed out"), passed);
+		assertEquals(4, limiter.getLimit(METHOD));
+
+		Deadline live = new Deadline(1, TimeUnit.MINUTES);
+		limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), null, new SocketTimeoutException("Read timed out"), live);
+		assertEquals(2, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void slowCallsAreOverload() throws Exception {
+		for (int i = 0; i < 10; ++i)
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), ok(), null, null);
+		//Only tighten the tolerance once the baseline is set, so a warm-up call held up by the scheduler is not slow.
+		limiter.setLatencyTolerance(5);
+		ConcurrencyLimiter.Permit slow = limiter.acquire(KEY, METHOD, Long.MAX_VALUE);
+		Thread.sleep(50);
+		limiter.release(slow, ok(), null, null);
+		assertEquals(2, limiter.getLimit(METHOD));
+	}
+
+	@Test
+	public void turnsCallsAwayWhenTheQueueIsFull() throws Exception {
+		limiter.setQueue(1, 10, TimeUnit.SECONDS);
+		acquire(4);
+		CompletableFuture<ConcurrencyLimiter.Permit> queued = limiter.acquireAsync(KEY, METHOD, Long.MAX_VALUE);
+		assertRejected(limiter.acquireAsync(KEY, METHOD, Long.MAX_VALUE));
+		assertFalse(queued.isDone());
+		assertEquals(1, limiter.getRejectedCount());
+	}
+
+	@Test
+	public void turnsCallsAwayThatWaitTooLong() throws Exception {
+		limiter.setQueue(10, 20, TimeUnit.MILLISECONDS);
+		acquire(4);
+		CompletableFuture<ConcurrencyLimiter.Permit> queued = limiter.acquireAsync(KEY, METHOD, Long.MAX_VALUE);
+		assertRejected(queued);
+		assertEquals(0, limiter.getQueueLength(METHOD));
+
+		//The caller's own deadline bounds the wait too.
+		limiter.setQueue(10, 10, TimeUnit.SECONDS);
+		long started = System.nanoTime();
+		assertRejected(limiter.acquireAsync(KEY, METHOD, TimeUnit.MILLISECONDS.toNanos(20)));
+		assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void capsTheRateOfCalls() throws Exception {
+		limiter.setRateLimit(KEY, 20, 1);
+		long started = System.nanoTime();
+		for (int i = 0; i < 4; ++i)
+			limiter.release(limiter.acquire(KEY, METHOD, Long.MAX_VALUE), ok(), null, null);
+		assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(140));
+
+		//Other keys are not capped.
+		started = System.nanoTime();
+		for (int i = 0; i < 4; ++i)
+			limiter.release(limiter.acquire("otherkey", METHOD, Long.MAX_VALUE), ok(), null, null);
+		assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(140));
+	}
+
+	private List<ConcurrencyLimiter.Permit> acquire(int count) throws IOException {
+		List<ConcurrencyLimiter.Permit> permits = new ArrayList<ConcurrencyLimiter.Permit>();
+		for (int i = 0; i < count; ++i)
+			permits.add(limiter.acquire(KEY, METHOD, Long.MAX_VALUE));
+		return permits;
+	}
+
+	private static void assertRejected(CompletableFuture<ConcurrencyLimiter.Permit> permit) throws Exception {
+		try {
+			permit.get(5, TimeUnit.SECONDS);
+			fail("Call let through");
+		} catch (ExecutionException ee) {
+			assertTrue(String.valueOf(ee.getCause()), ee.getCause() instanceof LimitExceededException);
+		}
+	}
+
+	private static APIResponse<String> ok() {
+		return new APIResponse<String>(true, 0.001, "ok", null);
+	}
+
+	private static APIResponse<String> error(int status) {
+		return new APIResponse<String>(false, 0.001, null, new APIError("Test.Error", status, "failed"));
+	}
+}
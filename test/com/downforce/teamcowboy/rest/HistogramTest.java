@@ -0,0 +1,99 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Records values either side of each bucket boundary and across the whole range, checking the values read back are
+ * never below what was recorded and never more than a sixteenth above it.
+ */
+public class HistogramTest {
+	@Test
+	public void smallValuesAreExact() {
+		for (long value = 0; value < 32; ++value)
+			assertEquals(value, bucketTop(value));
+	}
+
+	@Test
+	public void bucketsAreWithinASixteenthAcrossTheRange() {
+		long previous = 0;
+		for (int bit = 5; bit < 44; ++bit) {
+			for (long value : new long[] { (1L << bit) - 1, 1L << bit, (1L << bit) + 1, (3L << bit) / 2 }) {
+				long top = bucketTop(value);
+				assertTrue(value + " read back as " + top, top >= value && top - value <= value / 16);
+				assertTrue(value + " read back below a smaller value", top >= previous);
+				previous = top;
+			}
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; ++i) {
+			long value = random.nextLong() >>> (20 + random.nextInt(43));
+			long top = bucketTop(value);
+			assertTrue(value + " read back as " + top, top >= value && top - value <= value / 16);
+		}
+	}
+
+	@Test
+	public void percentilesFollowTheValuesRecorded() {
+		Histogram histogram = new Histogram();
+		for (long value = 1; value <= 1000; ++value)
+			histogram.record(value);
+		histogram.record(-5);
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getTotal());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		assertEquals(1, histogram.getValueAtPercentile(0));
+		assertWithinASixteenth(500, histogram.getValueAtPercentile(50));
+		assertWithinASixteenth(990, histogram.getValueAtPercentile(99));
+		//The top is exact, however coarse its bucket.
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+		assertEquals(1000, histogram.getMax());
+	}
+
+	@Test
+	public void valuesPastTheRangeLandInTheTopBucket() {
+		Histogram histogram = new Histogram();
+		histogram.record(Long.MAX_VALUE / 2);
+		histogram.record(1L << 50);
+		assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+		assertEquals((1L << 44) - 1, histogram.getValueAtPercentile(50));
+		assertEquals(Long.MAX_VALUE / 2 + (1L << 50), histogram.getTotal());
+	}
+
+	@Test
+	public void resetForgetsEverything() {
+		Histogram histogram = new Histogram();
+		histogram.record(123456);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0, histogram.getMean(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void percentileMustBeAPercentage() {
+		new Histogram().getValueAtPercentile(101);
+	}
+
+	/**
+	 * Returns the highest value in the bucket <code>value</code> is counted in, by recording it below a larger value
+	 * so the exact maximum does not hide the bucket.
+	 */
+	private static long bucketTop(long value) {
+		Histogram histogram = new Histogram();
+		histogram.record(value);
+		histogram.record(Long.MAX_VALUE);
+		return histogram.getValueAtPercentile(50);
+	}
+
+	private static void assertWithinASixteenth(long expected, long actual) {
+		assertTrue(expected + " read back as " + actual, actual >= expected && actual - expected <= expected / 16);
+	}
+}
@@ -0,0 +1,228 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Records calls through plain and streaming providers and replays the journal, checking each call gets back what was
+ * recorded for it whatever it was signed with, and what is left out of a journal.
+ */
+public class HttpJournalTest {
+	private static final String URL = "https://api.teamcowboy.com/v1/?api_key=one&method=Team_Get&nonce=1&teamId=7&timestamp=100&sig=abc";
+	private static final String RESIGNED_URL = "https://api.teamcowboy.com/v1/?teamId=7&method=Team_Get&api_key=two&timestamp=200&nonce=2&sig=def";
+
+	/**
+	 * Answers each call with the next of its responses, noting which overload it was called through.
+	 */
+	private static class ScriptedHttpProvider implements IHttpProvider {
+		final List<String> responses = new ArrayList<String>();
+		final List<String> calls = new ArrayList<String>();
+
+		ScriptedHttpProvider(String... responses) {
+			for (String response : responses)
+				this.responses.add(response);
+		}
+
+		public String makeHTTPCall(String url, String body, String httpRequestMethod) throws IOException {
+			calls.add("call");
+			return next();
+		}
+
+		public String makeHTTPCall(String url, String body, String httpRequestMethod, int timeoutMillis) throws IOException {
+			calls.add("call " + timeoutMillis);
+			return next();
+		}
+
+		String next() throws IOException {
+			if (responses.isEmpty())
+				throw new IOException("Connection reset");
+			return responses.remove(0);
+		}
+	}
+
+	private static class ScriptedStreamingHttpProvider extends ScriptedHttpProvider implements IStreamingHttpProvider {
+		ScriptedStreamingHttpProvider(String... responses) {
+			super(responses);
+		}
+
+		public InputStream openHTTPStream(String url, String body, String httpRequestMethod) throws IOException {
+			calls.add("stream");
+			return new ByteArrayInputStream(next().getBytes(StandardCharsets.UTF_8));
+		}
+
+		public InputStream openHTTPStream(String url, String body, String httpRequestMethod, int timeoutMillis) throws IOException {
+			calls.add("stream " + timeoutMillis);
+			return new ByteArrayInputStream(next().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private Path journal;
+
+	@Before
+	public void createJournal() throws IOException {
+		journal = Files.createTempFile("calls", ".journal");
+	}
+
+	@After
+	public void deleteJournal() throws IOException {
+		Files.deleteIfExists(journal);
+	}
+
+	@Test
+	public void replaysWhatWasRecordedInOrder() throws IOException {
+		ScriptedHttpProvider provider = new ScriptedHttpProvider("{\"first\":\"\u00e9\"}", "{\"second\":2}", "{\"posted\":true}");
+		RecordingHttpProvider recorder = new RecordingHttpProvider(provider, journal);
+		recorder.makeHTTPCall(URL, "", "GET");
+		recorder.makeHTTPCall(URL, "", "GET", 5000);
+		recorder.makeHTTPCall("https://api.teamcowboy.com/v1/", "method=Event_SaveRSVP&eventId=3&nonce=9&sig=x", "POST");
+		try {
+			recorder.makeHTTPCall(URL, "", "GET");
+			fail("Call succeeded");
+		} catch (IOException ioe) {
+			//Failed calls are not recorded.
+		}
+		recorder.close();
+		assertEquals("[call, call 5000, call, call]", provider.calls.toString());
+		assertEquals(3, recorder.getRecordedCount());
+
+		ReplayHttpProvider replay = new ReplayHttpProvider(journal);
+		assertEquals(3, replay.getRecordCount());
+		assertEquals(2, replay.getKeyCount());
+		assertEquals("{\"first\":\"\u00e9\"}", replay.makeHTTPCall(RESIGNED_URL, "", "GET"));
+		assertEquals("{\"second\":2}", read(replay.openHTTPStream(RESIGNED_URL, "", "GET")));
+		assertEquals("{\"first\":\"\u00e9\"}", replay.makeHTTPCall(RESIGNED_URL, "", "GET"));
+		assertEquals("{\"posted\":true}", replay.makeHTTPCall("https://api.teamcowboy.com/v1/", "eventId=3&method=Event_SaveRSVP&nonce=10&sig=y", "POST"));
+		try {
+			replay.makeHTTPCall(RESIGNED_URL, "", "POST");
+			fail("Replayed a call never recorded");
+		} catch (IOException ioe) {
+			assertTrue(ioe.getMessage().startsWith("No recorded response"));
+		}
+	}
+
+	@Test
+	public void streamedResponsesAreRecordedWhole() throws IOException {
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; ++i)
+			large.append(i).append(',');
+		ScriptedStreamingHttpProvider provider = new ScriptedStreamingHttpProvider("{\"whole\":1}", large.toString(), "{\"partly\":\"read\"}");
+		RecordingHttpProvider recorder = new RecordingHttpProvider(provider, journal);
+		assertEquals("{\"whole\":1}", read(recorder.openHTTPStream(URL, "", "GET")));
+		assertEquals(large.toString(), read(recorder.openHTTPStream(URL, "", "GET", 5000)));
+		//A client that stops reading once it has what it needs still leaves the whole response in the journal.
+		InputStream partly = recorder.openHTTPStream(URL, "", "GET");
+		assertEquals('{', partly.read());
+		partly.close();
+		recorder.close();
+		assertEquals("[stream, stream 5000, stream]", provider.calls.toString());
+
+		ReplayHttpProvider replay = new ReplayHttpProvider(journal);
+		assertEquals("{\"whole\":1}", replay.makeHTTPCall(URL, "", "GET"));
+		assertEquals(large.toString(), replay.makeHTTPCall(URL, "", "GET"));
+		assertEquals("{\"partly\":\"read\"}", replay.makeHTTPCall(URL, "", "GET"));
+	}
+
+	@Test
+	public void streamCutShortIsNotRecorded() throws IOException {
+		IStreamingHttpProvider provider = new ScriptedStreamingHttpProvider() {
+			public InputStream openHTTPStream(String url, String body, String httpRequestMethod) {
+				return new InputStream() {
+					public int read() throws IOException {
+						throw new IOException("Connection reset");
+					}
+				};
+			}
+		};
+		RecordingHttpProvider recorder = new RecordingHttpProvider(provider, journal);
+		InputStream stream = recorder.openHTTPStream(URL, "", "GET");
+		try {
+			stream.read();
+			fail("Read succeeded");
+		} catch (IOException ioe) {
+			stream.close();
+		}
+		recorder.close();
+		assertEquals(0, recorder.getRecordedCount());
+		assertEquals(0, new ReplayHttpProvider(journal).getRecordCount());
+	}
+
+	@Test
+	public void finalRecordCutShortIsIgnored() throws IOException {
+		RecordingHttpProvider recorder = new RecordingHttpProvider(new ScriptedHttpProvider("{\"kept\":1}", "{\"lost\":2}"), journal);
+		recorder.makeHTTPCall(URL, "", "GET");
+		recorder.makeHTTPCall(RESIGNED_URL, "", "POST");
+		recorder.close();
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		ReplayHttpProvider replay = new ReplayHttpProvider(journal);
+		assertEquals(1, replay.getRecordCount());
+		assertEquals("{\"kept\":1}", replay.makeHTTPCall(URL, "", "GET"));
+	}
+
+	@Test
+	public void recordedLatencyCanTimeOut() throws IOException {
+		ScriptedHttpProvider provider = new ScriptedHttpProvider() {
+			public String makeHTTPCall(String url, String body, String httpRequestMethod) throws IOException {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ie) {
+					throw new IOException(ie);
+				}
+				return "{\"slow\":true}";
+			}
+		};
+		RecordingHttpProvider recorder = new RecordingHttpProvider(provider, journal);
+		recorder.makeHTTPCall(URL, "", "GET");
+		recorder.close();
+
+		ReplayHttpProvider replay = new ReplayHttpProvider(journal);
+		replay.setRecordedLatency(true);
+		long start = System.nanoTime();
+		try {
+			replay.makeHTTPCall(URL, "", "GET", 50);
+			fail("Replayed within the timeout");
+		} catch (SocketTimeoutException ste) {
+			long elapsedMillis = (System.nanoTime() - start) / 1000000;
+			assertTrue(elapsedMillis + "ms", elapsedMillis >= 50 && elapsedMillis < 200);
+		}
+		start = System.nanoTime();
+		assertEquals("{\"slow\":true}", replay.makeHTTPCall(URL, "", "GET"));
+		assertTrue((System.nanoTime() - start) / 1000000 >= 200);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsAFileThatIsNotAJournal() throws IOException {
+		Files.write(journal, "not a journal".getBytes(StandardCharsets.UTF_8));
+		new ReplayHttpProvider(journal);
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int count;
+		while ((count = in.read(buffer)) >= 0)
+			out.write(buffer, 0, count);
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
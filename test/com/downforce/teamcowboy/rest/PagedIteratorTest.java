@@ -0,0 +1,123 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * Pages through an in-memory listing whose pages answer at once, checking the results come back in order and how the
+ * page size adapts to the time and bytes each page takes.
+ */
+public class PagedIteratorTest {
+	private static final RequestTemplate TEMPLATE = RequestTemplate.TEAM_GET_EVENTS;
+
+	/**
+	 * Serves pages of a listing of <code>total</code> results, reporting <code>bytesPerResult</code> bytes for each one
+	 * received, or no size at all if it is negative.
+	 */
+	private static final class Listing implements PagedIterator.PageFetcher<Integer> {
+		final int total;
+		final int bytesPerResult;
+		final List<Integer> qtys = new ArrayList<Integer>();
+		final List<CompletableFuture<APIResponse<Integer[]>>> held = new ArrayList<CompletableFuture<APIResponse<Integer[]>>>();
+		/** How many pages to answer before holding the rest back unanswered. */
+		int answered = Integer.MAX_VALUE;
+
+		Listing(int total, int bytesPerResult) {
+			this.total = total;
+			this.bytesPerResult = bytesPerResult;
+		}
+
+		public CompletableFuture<APIResponse<Integer[]>> fetch(int offset, int qty, CallSample sample) {
+			qtys.add(qty);
+			if (qtys.size() > answered) {
+				CompletableFuture<APIResponse<Integer[]>> request = new CompletableFuture<APIResponse<Integer[]>>();
+				held.add(request);
+				return request;
+			}
+			Integer[] results = new Integer[Math.max(0, Math.min(qty, total - offset))];
+			for (int i = 0; i < results.length; ++i)
+				results[i] = offset + i;
+			if (bytesPerResult >= 0) {
+				char[] body = new char[results.length * bytesPerResult];
+				Arrays.fill(body, 'x');
+				sample.sent("http://example", null);
+				sample.received(new String(body));
+			}
+			return CompletableFuture.completedFuture(new APIResponse<Integer[]>(true, 0.001, results, null));
+		}
+	}
+
+	@Test
+	public void returnsEveryResultInOrder() {
+		Listing listing = new Listing(1234, -1);
+		PagedIterator<Integer> iterator = new PagedIterator<Integer>(TEMPLATE, listing);
+		int expected = 0;
+		while (iterator.hasNext())
+			assertEquals(expected++, (int) iterator.next());
+		assertEquals(1234, expected);
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void pagesGrowWhileTheyComeBackQuickly() {
+		Listing listing = new Listing(100000, -1);
+		PagedIterator<Integer> iterator = new PagedIterator<Integer>(TEMPLATE, listing);
+		iterator.setPageSizes(5, 10, 400);
+		for (int i = 0; i < 5000; ++i)
+			iterator.next();
+		assertEquals(400, iterator.getPageSize());
+		iterator.close();
+	}
+
+	@Test
+	public void pagesOfLargeResultsAreCappedByTheByteBudget() {
+		Listing listing = new Listing(100000, 1000);
+		PagedIterator<Integer> iterator = new PagedIterator<Integer>(TEMPLATE, listing);
+		iterator.setPageSizes(5, 10, 400);
+		iterator.setMaxPageBytes(50 * 1000);
+		for (int i = 0; i < 5000; ++i)
+			iterator.next();
+		assertEquals(50, iterator.getPageSize());
+		for (int qty : listing.qtys)
+			assertTrue("page of " + qty, qty <= 50);
+		iterator.close();
+	}
+
+	@Test
+	public void byteBudgetDoesNotGoBelowTheMinimumPageSize() {
+		Listing listing = new Listing(1000, 100000);
+		PagedIterator<Integer> iterator = new PagedIterator<Integer>(TEMPLATE, listing);
+		iterator.setPageSizes(5, 10, 100);
+		iterator.setMaxPageBytes(1000);
+		int count = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			++count;
+		}
+		assertEquals(1000, count);
+		assertEquals(5, iterator.getPageSize());
+	}
+
+	@Test
+	public void closeCancelsThePagesInFlight() {
+		Listing listing = new Listing(1000, -1);
+		listing.answered = 1;
+		PagedIterator<Integer> iterator = new PagedIterator<Integer>(TEMPLATE, listing);
+		iterator.setMaxPagesInFlight(3);
+		assertTrue(iterator.hasNext());
+		assertEquals(3, listing.held.size());
+		iterator.close();
+		for (CompletableFuture<APIResponse<Integer[]>> request : listing.held)
+			assertTrue(request.isCancelled());
+		//The page already received can still be consumed.
+		assertEquals(0, (int) iterator.next());
+	}
+}
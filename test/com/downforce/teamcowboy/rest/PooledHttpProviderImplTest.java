@@ -0,0 +1,292 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Drives the pooled provider from many threads against a local server, checking that every call gets its response,
+ * that no more requests are in flight or connections opened than the pool allows, and that queued calls cancelled in
+ * bulk are drained without recursing. Also checks that a response whose body stalls part way through times out.
+ */
+public class PooledHttpProviderImplTest {
+	private static final String RESPONSE = "{\"success\":true,\"requestSecs\":0.001,\"body\":\"ok\"}";
+	private static final int MAX_CONNECTIONS = 8;
+	private static final int THREADS = 32;
+	private static final int CALLS_PER_THREAD = 200;
+
+	static {
+		//Without this the server's small responses wait on delayed ACKs.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private HttpServer server;
+	private ExecutorService serverThreads;
+	private String url;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+	private volatile CountDownLatch hold = new CountDownLatch(0);
+	private final CountDownLatch stalled = new CountDownLatch(1);
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		serverThreads = Executors.newFixedThreadPool(THREADS * 2);
+		server.setExecutor(serverThreads);
+		server.createContext("/", this::handle);
+		server.createContext("/v1/stall/", this::stall);
+		server.createContext("/v1/trickle/", this::trickle);
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/";
+	}
+
+	@After
+	public void stopServer() {
+		hold.countDown();
+		stalled.countDown();
+		server.stop(0);
+		serverThreads.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		int now = inFlight.incrementAndGet();
+		maxInFlight.accumulateAndGet(now, Math::max);
+		requests.incrementAndGet();
+		clientPorts.add(exchange.getRemoteAddress().getPort());
+		try {
+			exchange.getRequestBody().readAllBytes();
+			hold.await();
+			inFlight.decrementAndGet();
+			byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			inFlight.decrementAndGet();
+			exchange.sendResponseHeaders(500, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends the headers and the start of the body, then nothing more until the test ends.
+	 */
+	private void stall(HttpExchange exchange) throws IOException {
+		try {
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(200, RESPONSE.length());
+			OutputStream out = exchange.getResponseBody();
+			out.write(RESPONSE.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			stalled.await();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends a byte of the body every 50 milliseconds, never finishing.
+	 */
+	private void trickle(HttpExchange exchange) throws IOException {
+		try {
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write('{');
+			while (!stalled.await(50, TimeUnit.MILLISECONDS)) {
+				out.write(' ');
+				out.flush();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		} catch (IOException ioe) {
+			//The client gave up.
+		} finally {
+			exchange.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void stalledStreamTimesOutAndGivesBackItsConnection() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(1, 5000, 1000);
+		InputStream in = provider.openHTTPStream(url + "stall/?method=Test_GetRequest", null, "GET");
+		long started = System.nanoTime();
+		try {
+			in.readAllBytes();
+			fail("Read a body that never finished");
+		} catch (HttpTimeoutException hte) {
+			assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+		} finally {
+			in.close();
+		}
+		assertEquals(RESPONSE, provider.makeHTTPCall(url + "?method=Test_GetRequest", null, "GET"));
+	}
+
+	@Test(timeout = 60000)
+	public void stalledBodyFailsABufferedCall() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(1, 5000, 1000);
+		try {
+			provider.makeHTTPCall(url + "stall/?method=Test_GetRequest", null, "GET");
+			fail("Returned a body that never finished");
+		} catch (HttpTimeoutException hte) {
+			//Expected
+		}
+		assertEquals(RESPONSE, provider.makeHTTPCall(url + "?method=Test_GetRequest", null, "GET"));
+	}
+
+	@Test(timeout = 60000)
+	public void stalledBodyFailsAnAsyncCall() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(1, 5000, 1000);
+		try {
+			provider.makeHTTPCallAsync(url + "stall/?method=Test_GetRequest", null, "GET").get(10, TimeUnit.SECONDS);
+			fail("Returned a body that never finished");
+		} catch (ExecutionException ee) {
+			assertTrue(String.valueOf(ee.getCause()), ee.getCause() instanceof HttpTimeoutException);
+		}
+		assertEquals(RESPONSE, provider.makeHTTPCallAsync(url + "?method=Test_GetRequest", null, "GET").get(10, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = 60000)
+	public void callTimeLimitBoundsTheWholeBody() throws Exception {
+		//Data keeps arriving well within the read timeout, so only the call's own limit can stop it.
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(2, 5000, 10000);
+		long started = System.nanoTime();
+		try {
+			provider.makeHTTPCall(url + "trickle/?method=Test_GetRequest", null, "GET", 500);
+			fail("Returned a body that never finished");
+		} catch (HttpTimeoutException hte) {
+			assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+		}
+		started = System.nanoTime();
+		try {
+			provider.makeHTTPCallAsync(url + "trickle/?method=Test_GetRequest", null, "GET", 500).get(10, TimeUnit.SECONDS);
+			fail("Returned a body that never finished");
+		} catch (ExecutionException ee) {
+			assertTrue(String.valueOf(ee.getCause()), ee.getCause() instanceof HttpTimeoutException);
+			assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void slowReaderIsNotTimedOut() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(1, 5000, 1000);
+		InputStream in = provider.openHTTPStream(url + "?method=Test_GetRequest", null, "GET");
+		try {
+			Thread.sleep(2000);
+			assertEquals(RESPONSE, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void blockingCallsFromManyThreads() throws Exception {
+		final PooledHttpProviderImpl provider = new PooledHttpProviderImpl(MAX_CONNECTIONS, 5000, 10000);
+		final AtomicInteger succeeded = new AtomicInteger();
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; ++i) {
+			final boolean post = i % 2 == 0;
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+					for (int j = 0; j < CALLS_PER_THREAD; ++j) {
+						String response = post ? provider.makeHTTPCall(url, "method=Test_PostRequest&testParam=" + j, "POST")
+								: provider.makeHTTPCall(url + "?method=Test_GetRequest&testParam=" + j, null, "GET");
+						if (RESPONSE.equals(response))
+							succeeded.incrementAndGet();
+					}
+				} catch (Throwable t) {
+					synchronized (failures) {
+						failures.add(t);
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+
+		assertTrue("failures: " + failures, failures.isEmpty());
+		assertEquals(THREADS * CALLS_PER_THREAD, succeeded.get());
+		assertPoolRespected();
+	}
+
+	@Test(timeout = 60000)
+	public void asyncCallsShareTheConnectionLimit() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(MAX_CONNECTIONS, 5000, 10000);
+		int calls = THREADS * CALLS_PER_THREAD;
+		List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>(calls);
+
+		for (int i = 0; i < calls; ++i)
+			futures.add(provider.makeHTTPCallAsync(url + "?method=Test_GetRequest&testParam=" + i, null, "GET"));
+		for (CompletableFuture<String> future : futures)
+			assertEquals(RESPONSE, future.get(30, TimeUnit.SECONDS));
+
+		assertPoolRespected();
+	}
+
+	@Test(timeout = 60000)
+	public void cancellingManyQueuedCallsDoesNotRecurse() throws Exception {
+		PooledHttpProviderImpl provider = new PooledHttpProviderImpl(1, 5000, 10000);
+		hold = new CountDownLatch(1);
+		CompletableFuture<String> first = provider.makeHTTPCallAsync(url + "?method=Test_GetRequest", null, "GET");
+		while (requests.get() == 0)
+			Thread.sleep(1);
+
+		//Each of these releases its permit as soon as it is dispatched, which used to start the next one a frame deeper.
+		List<CompletableFuture<String>> queued = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 100000; ++i)
+			queued.add(provider.makeHTTPCallAsync(url + "?method=Test_GetRequest&testParam=" + i, null, "GET"));
+		for (CompletableFuture<String> future : queued)
+			future.cancel(true);
+		hold.countDown();
+
+		assertEquals(RESPONSE, first.get(10, TimeUnit.SECONDS));
+		assertEquals(RESPONSE, provider.makeHTTPCallAsync(url + "?method=Test_GetRequest", null, "GET").get(10, TimeUnit.SECONDS));
+		assertEquals(RESPONSE, provider.makeHTTPCall(url + "?method=Test_GetRequest", null, "GET"));
+		assertEquals(3, requests.get());
+	}
+
+	private void assertPoolRespected() {
+		assertTrue("in flight at once: " + maxInFlight.get(), maxInFlight.get() <= MAX_CONNECTIONS);
+		assertTrue("connections opened: " + clientPorts.size(), clientPorts.size() <= MAX_CONNECTIONS);
+	}
+}
@@ -0,0 +1,163 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.downforce.teamcowboy.rest.PriorityScheduler.Lane;
+
+/**
+ * Queues calls in both lanes behind a full scheduler and releases slots one at a time, checking the order they are
+ * handed out in and what happens to calls that time out, are cancelled or are interrupted.
+ */
+public class PrioritySchedulerTest {
+	private PriorityScheduler scheduler;
+
+	@Before
+	public void createScheduler() {
+		scheduler = new PriorityScheduler();
+		scheduler.setMaxConcurrency(4);
+	}
+
+	@Test
+	public void backgroundCallsAreHeldToTheirShare() throws Exception {
+		acquire(Lane.BACKGROUND, 2);
+		CompletableFuture<PriorityScheduler.Slot> third = scheduler.acquireAsync(Lane.BACKGROUND, Long.MAX_VALUE);
+		assertFalse(third.isDone());
+
+		//Interactive calls can take the slots background calls leave idle.
+		acquire(Lane.INTERACTIVE, 2);
+		assertEquals(2, scheduler.getInFlightCount(Lane.INTERACTIVE));
+		assertEquals(1, scheduler.getQueueLength(Lane.BACKGROUND));
+		assertFalse(scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE).isDone());
+	}
+
+	@Test
+	public void freedSlotsGoByWeightedFairQueuing() throws Exception {
+		scheduler.setMaxConcurrency(1);
+		scheduler.setLane(Lane.BACKGROUND, 1, 1.0);
+		PriorityScheduler.Slot held = acquire(Lane.INTERACTIVE, 1).get(0);
+
+		List<CompletableFuture<PriorityScheduler.Slot>> waiting = new ArrayList<CompletableFuture<PriorityScheduler.Slot>>();
+		List<String> names = new ArrayList<String>();
+		for (int i = 1; i <= 8; ++i) {
+			waiting.add(scheduler.acquireAsync(Lane.BACKGROUND, Long.MAX_VALUE));
+			names.add("B" + i);
+		}
+		for (int i = 1; i <= 4; ++i) {
+			waiting.add(scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE));
+			names.add("I" + i);
+		}
+
+		List<String> order = new ArrayList<String>();
+		for (int turn = 0; turn < waiting.size(); ++turn) {
+			scheduler.release(held);
+			held = null;
+			for (int i = 0; i < waiting.size(); ++i) {
+				CompletableFuture<PriorityScheduler.Slot> slot = waiting.get(i);
+				if (slot != null && slot.isDone()) {
+					order.add(names.get(i));
+					held = slot.get();
+					waiting.set(i, null);
+				}
+			}
+			assertTrue("No call started on turn " + turn, held != null);
+		}
+		//The background lane's turn had started first; after that, four interactive calls go per background one.
+		assertEquals("[B1, I1, I2, I3, I4, B2, B3, B4, B5, B6, B7, B8]", order.toString());
+		assertEquals(5, scheduler.getGrantedCount(Lane.INTERACTIVE));
+		assertEquals(8, scheduler.getGrantedCount(Lane.BACKGROUND));
+	}
+
+	@Test
+	public void callsThatWaitTooLongAreTurnedAway() throws Exception {
+		scheduler.setQueue(10, 20, TimeUnit.MILLISECONDS);
+		acquire(Lane.INTERACTIVE, 4);
+		assertRejected(scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE));
+		assertEquals(0, scheduler.getQueueLength(Lane.INTERACTIVE));
+		assertEquals(1, scheduler.getRejectedCount(Lane.INTERACTIVE));
+
+		//A caller's own deadline bounds the wait too.
+		scheduler.setQueue(10, 1, TimeUnit.MINUTES);
+		long started = System.nanoTime();
+		assertRejected(scheduler.acquireAsync(Lane.INTERACTIVE, TimeUnit.MILLISECONDS.toNanos(20)));
+		assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+	}
+
+	@Test
+	public void callsAreTurnedAwayWhenTheQueueIsFull() throws Exception {
+		scheduler.setQueue(1, 1, TimeUnit.MINUTES);
+		acquire(Lane.INTERACTIVE, 4);
+		CompletableFuture<PriorityScheduler.Slot> queued = scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE);
+		assertRejected(scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE));
+		assertFalse(queued.isDone());
+	}
+
+	@Test
+	public void cancelledCallLeavesTheQueueWithoutTakingASlot() throws Exception {
+		List<PriorityScheduler.Slot> held = acquire(Lane.INTERACTIVE, 4);
+		CompletableFuture<PriorityScheduler.Slot> cancelled = scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE);
+		CompletableFuture<PriorityScheduler.Slot> next = scheduler.acquireAsync(Lane.INTERACTIVE, Long.MAX_VALUE);
+		cancelled.cancel(false);
+		assertEquals(1, scheduler.getQueueLength(Lane.INTERACTIVE));
+
+		scheduler.release(held.get(0));
+		assertTrue(next.isDone());
+		assertEquals(4, scheduler.getInFlightCount(Lane.INTERACTIVE));
+	}
+
+	@Test(timeout = 10000)
+	public void interruptedCallGivesBackTheSlotItIsHandedLater() throws Exception {
+		List<PriorityScheduler.Slot> held = acquire(Lane.INTERACTIVE, 4);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread caller = new Thread(() -> {
+			try {
+				scheduler.acquire(Lane.INTERACTIVE, Long.MAX_VALUE);
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		caller.start();
+		while (scheduler.getQueueLength(Lane.INTERACTIVE) == 0)
+			Thread.sleep(1);
+		caller.interrupt();
+		caller.join();
+		assertTrue(String.valueOf(failure.get()), failure.get() instanceof InterruptedIOException);
+
+		for (PriorityScheduler.Slot slot : held)
+			scheduler.release(slot);
+		assertEquals(0, scheduler.getInFlightCount(Lane.INTERACTIVE));
+		assertEquals(0, scheduler.getQueueLength(Lane.INTERACTIVE));
+	}
+
+	private List<PriorityScheduler.Slot> acquire(Lane lane, int count) throws Exception {
+		List<PriorityScheduler.Slot> slots = new ArrayList<PriorityScheduler.Slot>();
+		for (int i = 0; i < count; ++i) {
+			CompletableFuture<PriorityScheduler.Slot> slot = scheduler.acquireAsync(lane, Long.MAX_VALUE);
+			assertTrue(slot.isDone());
+			slots.add(slot.get());
+		}
+		return slots;
+	}
+
+	private static void assertRejected(CompletableFuture<PriorityScheduler.Slot> slot) throws Exception {
+		try {
+			slot.get(5, TimeUnit.SECONDS);
+			fail("Call let through");
+		} catch (ExecutionException ee) {
+			assertTrue(String.valueOf(ee.getCause()), ee.getCause() instanceof LimitExceededException);
+		}
+	}
+}
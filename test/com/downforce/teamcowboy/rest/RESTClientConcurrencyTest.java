@@ -0,0 +1,186 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Drives one shared client from many threads with an in-memory HTTP provider that checks every request the way the
+ * API does, so the test sees only the client's own work: each request must be correctly signed, carry a nonce never
+ * used before for the key and get its own response back, and throughput must grow with the number of threads.
+ */
+public class RESTClientConcurrencyTest {
+	private static final String PUBLIC_API_KEY = "concurrencykey";
+	private static final String PRIVATE_API_KEY = "privkey456";
+
+	/**
+	 * Checks each request's signature with its own SHA-1 and hex code, rather than the client's, and echoes the test
+	 * parameter back.
+	 */
+	private static final class VerifyingHttpProvider implements IHttpProvider {
+		final boolean recordNonces;
+		final Set<String> nonces = ConcurrentHashMap.newKeySet();
+		final AtomicInteger repeatedNonces = new AtomicInteger();
+		final AtomicInteger badRequests = new AtomicInteger();
+		final AtomicLong calls = new AtomicLong();
+		private final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException nsae) {
+				throw new IllegalStateException(nsae);
+			}
+		});
+
+		VerifyingHttpProvider(boolean recordNonces) {
+			this.recordNonces = recordNonces;
+		}
+
+		public String makeHTTPCall(String url, String body, String httpRequestMethod) throws UnsupportedEncodingException {
+			calls.incrementAndGet();
+			String query = "GET".equals(httpRequestMethod) ? url.substring(url.indexOf('?') + 1) : body;
+			int sigAt = query.lastIndexOf("&sig=");
+			String paramString = query.substring(0, sigAt);
+			String method = null;
+			String timestamp = null;
+			String nonce = null;
+			String testParam = null;
+			for (String param : paramString.split("&")) {
+				int equals = param.indexOf('=');
+				String name = param.substring(0, equals);
+				String value = URLDecoder.decode(param.substring(equals + 1), "UTF-8");
+				if (name.equals("method"))
+					method = value;
+				else if (name.equals("timestamp"))
+					timestamp = value;
+				else if (name.equals("nonce"))
+					nonce = value;
+				else if (name.equals("testParam"))
+					testParam = value;
+			}
+
+			String sigInput = PRIVATE_API_KEY + "|" + httpRequestMethod + "|" + method + "|" + timestamp + "|" + nonce + "|" + paramString.toLowerCase();
+			String sig = new BigInteger(1, sha1.get().digest(sigInput.getBytes(StandardCharsets.UTF_8))).toString(16);
+			long skew = Math.abs(Long.parseLong(timestamp) - System.currentTimeMillis() / 1000);
+			if (!sig.equals(query.substring(sigAt + 5)) || skew > 60)
+				badRequests.incrementAndGet();
+			if (recordNonces && !nonces.add(nonce))
+				repeatedNonces.incrementAndGet();
+			return "{\"success\":true,\"requestSecs\":0.001,\"body\":\"" + testParam + "\"}";
+		}
+	}
+
+	/**
+	 * One of the threads making calls.
+	 */
+	private interface Caller {
+		void call(int thread, int index) throws Exception;
+	}
+
+	@Test(timeout = 120000)
+	public void requestsFromManyThreadsAreSignedWithDistinctNonces() throws Exception {
+		final VerifyingHttpProvider provider = new VerifyingHttpProvider(true);
+		//Two clients on the same key must not repeat each other's nonces either.
+		final RESTClient[] clients = { new RESTClient(PUBLIC_API_KEY, PRIVATE_API_KEY, provider), new RESTClient(PUBLIC_API_KEY, PRIVATE_API_KEY, provider) };
+		final AtomicInteger mixedUp = new AtomicInteger();
+		final int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+		final int callsPerThread = 5000;
+
+		run(threads, Long.MAX_VALUE, callsPerThread, (thread, index) -> {
+			RESTClient client = clients[thread % 2];
+			String testParam = "t" + thread + " c" + index;
+			APIResponse<String> response = index % 2 == 0 ? client.Test_GetRequest(testParam) : client.Test_PostRequest(testParam);
+			if (!testParam.equals(response.getBody()))
+				mixedUp.incrementAndGet();
+		});
+
+		assertEquals(threads * callsPerThread, provider.calls.get());
+		assertEquals(0, provider.badRequests.get());
+		assertEquals(0, provider.repeatedNonces.get());
+		assertEquals(threads * callsPerThread, provider.nonces.size());
+		assertEquals(0, mixedUp.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void clientNeedsAPublicKeyToGenerateNoncesFor() throws Exception {
+		new RESTClient(null, PRIVATE_API_KEY, new VerifyingHttpProvider(false));
+	}
+
+	@Test(timeout = 120000)
+	public void throughputScalesWithThreads() throws Exception {
+		final VerifyingHttpProvider provider = new VerifyingHttpProvider(false);
+		final RESTClient client = new RESTClient(PUBLIC_API_KEY, PRIVATE_API_KEY, provider);
+		Caller caller = (thread, index) -> client.Test_GetRequest("t" + thread + " c" + index);
+		int cores = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+		//Let the JIT compile the call path before measuring.
+		run(1, TimeUnit.SECONDS.toNanos(1), Integer.MAX_VALUE, caller);
+
+		double single = 0;
+		for (int threads = 1; threads <= cores; ++threads) {
+			double best = 0;
+			for (int attempt = 0; attempt < 3; ++attempt)
+				best = Math.max(best, run(threads, TimeUnit.MILLISECONDS.toNanos(300), Integer.MAX_VALUE, caller));
+			if (threads == 1)
+				single = best;
+			//Hyperthreads and a busy machine cost some scaling, but a lock on the call path would cost far more.
+			assertTrue(threads + " threads: " + best + " calls/s against " + single + " for one", best >= 0.4 * threads * single);
+		}
+		assertEquals(0, provider.badRequests.get());
+	}
+
+	/**
+	 * Runs callers on the given number of threads until each has made its calls or the time is up.
+	 *
+	 * @return the calls made per second
+	 */
+	private static double run(int threads, final long durationNanos, final int callsPerThread, final Caller caller) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicLong calls = new AtomicLong();
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		final long[] startedAt = new long[1];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i) {
+			final int thread = i;
+			workers[i] = new Thread(() -> {
+				try {
+					start.await();
+					long stopAt = startedAt[0] + durationNanos;
+					int index = 0;
+					while (index < callsPerThread && (durationNanos == Long.MAX_VALUE || System.nanoTime() - stopAt < 0)) {
+						caller.call(thread, index++);
+						calls.incrementAndGet();
+					}
+				} catch (Throwable t) {
+					synchronized (failures) {
+						failures.add(t);
+					}
+				}
+			});
+			workers[i].start();
+		}
+
+		startedAt[0] = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		long elapsed = System.nanoTime() - startedAt[0];
+		assertTrue("failures: " + failures, failures.isEmpty());
+		return calls.get() / (elapsed / 1e9);
+	}
+}
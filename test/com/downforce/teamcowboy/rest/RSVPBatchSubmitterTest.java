@@ -0,0 +1,83 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Submits batches through a client whose calls fail as soon as they are made, as they do while a circuit is open or
+ * once a deadline has passed.
+ */
+public class RSVPBatchSubmitterTest {
+	private static final String SAVED = "{\"success\":true,\"requestSecs\":0.001,\"body\":{\"eventId\":1,\"userId\":2,\"status\":\"yes\"}}";
+
+	/**
+	 * Holds the first call open until the test completes it, and fails every later one straight away.
+	 */
+	private static class FastFailingProvider implements IAsyncHttpProvider {
+		final CompletableFuture<String> first = new CompletableFuture<String>();
+		final AtomicInteger calls = new AtomicInteger();
+
+		public CompletableFuture<String> makeHTTPCallAsync(String url, String body, String httpRequestMethod) {
+			if (calls.getAndIncrement() == 0)
+				return first;
+			CompletableFuture<String> failed = new CompletableFuture<String>();
+			failed.completeExceptionally(new IOException("Connection refused"));
+			return failed;
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void largeBatchAgainstFastFailingClientCompletes() throws Exception {
+		FastFailingProvider provider = new FastFailingProvider();
+		AsyncRESTClient client = new AsyncRESTClient("pubkey123", "privkey456", provider, Runnable::run);
+		RSVPBatchSubmitter submitter = new RSVPBatchSubmitter(client, 1, 1e9);
+
+		List<RSVPEntry> entries = new ArrayList<RSVPEntry>();
+		for (int i = 0; i < 20000; ++i)
+			entries.add(new RSVPEntry(1, i, null, "yes", null, null, null));
+		CompletableFuture<List<RSVPResult>> batch = submitter.submitAsync("token", entries);
+		assertFalse(batch.isDone());
+		provider.first.complete(SAVED);
+
+		List<RSVPResult> results = batch.get(30, TimeUnit.SECONDS);
+		assertEquals(entries.size(), results.size());
+		assertTrue(results.get(0).getResponse().getSuccess());
+		for (int i = 1; i < results.size(); ++i) {
+			RSVPResult result = results.get(i);
+			assertEquals(entries.get(i), result.getEntry());
+			assertFalse(result.getResponse().getSuccess());
+			assertEquals(APIError.CLIENT_TRANSPORT_ERROR_CODE, result.getResponse().getError().getErrorCode());
+		}
+		assertEquals(entries.size(), provider.calls.get());
+	}
+
+	@Test(timeout = 60000)
+	public void batchPastItsDeadlineFailsEveryEntry() throws Exception {
+		FastFailingProvider provider = new FastFailingProvider();
+		AsyncRESTClient client = new AsyncRESTClient("pubkey123", "privkey456", provider, Runnable::run)
+				.withDeadline(new Deadline(0, TimeUnit.MILLISECONDS));
+		RSVPBatchSubmitter submitter = new RSVPBatchSubmitter(client, 4, 1e9);
+
+		List<RSVPEntry> entries = new ArrayList<RSVPEntry>();
+		for (int i = 0; i < 5000; ++i)
+			entries.add(new RSVPEntry(1, i, null, "yes", null, null, null));
+		List<RSVPResult> results = submitter.submitAsync("token", entries).get(30, TimeUnit.SECONDS);
+
+		assertEquals(entries.size(), results.size());
+		for (RSVPResult result : results) {
+			assertFalse(result.getResponse().getSuccess());
+			assertEquals(APIError.CLIENT_TIMEOUT_ERROR_CODE, result.getResponse().getError().getErrorCode());
+		}
+		assertEquals(0, provider.calls.get());
+	}
+}
@@ -0,0 +1,189 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link RequestSigner} produces exactly the parameter strings and signatures of the original
+ * <code>TreeMap</code>, <code>URLEncoder</code> and <code>BigInteger</code> signing code. The golden strings were
+ * produced by that code with the same keys, timestamp and nonce.
+ */
+public class RequestSignerTest {
+	private static final String PUBLIC_API_KEY = "pubkey123";
+	private static final String PRIVATE_API_KEY = "privkey456";
+	private static final String TIMESTAMP = "1700000000";
+	private static final String NONCE = "170000000042";
+
+	@Test
+	public void plainValue() throws Exception {
+		assertSigned("api_key=pubkey123&method=Test_PostRequest&nonce=170000000042&response_type=json&testParam=hello"
+				+ "&timestamp=1700000000&sig=5ecf945db09cea546eadc6e41cca5574b2bbca1e",
+				RequestTemplate.TEST_GET_REQUEST, NONCE, "testParam", "hello");
+	}
+
+	@Test
+	public void spacePlusAndPercent() throws Exception {
+		assertSigned("api_key=pubkey123&method=Test_PostRequest&nonce=170000000042&response_type=json&testParam=a%20b%2Bc%25d"
+				+ "&timestamp=1700000000&sig=706e8433f6201f25d7fe69c6b19e743c24990b89",
+				RequestTemplate.TEST_POST_REQUEST, NONCE, "testParam", "a b+c%d");
+	}
+
+	@Test
+	public void latin1Accents() throws Exception {
+		assertSigned("api_key=pubkey123&comments=Caf%C3%A9%20%C3%BCber%20na%C3%AFve&eventId=9001&method=Event_SaveRSVP"
+				+ "&nonce=170000000042&response_type=json&status=yes&teamId=42&timestamp=1700000000&userToken=0123abcdef"
+				+ "&sig=c57e2c5738595e62e44caa7030982afc9930f671",
+				RequestTemplate.EVENT_SAVE_RSVP, NONCE, "userToken", "0123abcdef", "teamId", "42", "eventId", "9001", "status", "yes",
+				"comments", "Caf\u00e9 \u00fcber na\u00efve");
+	}
+
+	@Test
+	public void cjkAndEmoji() throws Exception {
+		assertSigned("api_key=pubkey123&body=Goal%21%20%E2%9A%BD%F0%9F%98%80%20100%25%20%2B%20more&isPinned=false"
+				+ "&method=Message_Save&nonce=170000000042&response_type=json&teamId=7&timestamp=1700000000"
+				+ "&title=%E6%97%A5%E6%9C%AC%E8%AA%9E%E3%81%AE%E3%82%BF%E3%82%A4%E3%83%88%E3%83%AB&userToken=tok"
+				+ "&sig=42a49e793ff0a7d288dbb35f138f50b80bf790de",
+				RequestTemplate.MESSAGE_SAVE, NONCE, "userToken", "tok", "teamId", "7",
+				"title", "\u65e5\u672c\u8a9e\u306e\u30bf\u30a4\u30c8\u30eb", "body", "Goal! \u26bd\ud83d\ude00 100% + more", "isPinned", "false");
+	}
+
+	@Test
+	public void punctuation() throws Exception {
+		assertSigned("api_key=pubkey123&comment=%7E%21*%27%28%29%3B%3A%40%26%3D%2B%24%2C%2F%3F%23%5B%5D%20.-_&messageId=3"
+				+ "&method=MessageComment_Add&nonce=170000000042&response_type=json&teamId=7&timestamp=1700000000&userToken=tok"
+				+ "&sig=73489eb68b0cee07a0f77d10dba7b970050fc5c2",
+				RequestTemplate.MESSAGE_COMMENT_ADD, NONCE, "userToken", "tok", "teamId", "7", "messageId", "3",
+				"comment", "~!*'();:@&=+$,/?#[] .-_");
+	}
+
+	@Test
+	public void credentials() throws Exception {
+		assertSigned("api_key=pubkey123&method=Auth_GetUserToken&nonce=170000000042&password=p%40ss%20w0rd%2B%25"
+				+ "&response_type=json&timestamp=1700000000&username=user%40example.com&sig=e85a2e1bb8a3efc1518ebf134269b4355723d12e",
+				RequestTemplate.AUTH_GET_USER_TOKEN, NONCE, "username", "user@example.com", "password", "p@ss w0rd+%");
+	}
+
+	@Test
+	public void unpairedSurrogate() throws Exception {
+		assertSigned("api_key=pubkey123&method=Test_PostRequest&nonce=170000000042&response_type=json&testParam=lone%20%3F%20surrogate"
+				+ "&timestamp=1700000000&sig=7d37e9f8f8ee4e341115aaee7bfb063466abd920",
+				RequestTemplate.TEST_GET_REQUEST, NONCE, "testParam", "lone \ud83d surrogate");
+	}
+
+	@Test
+	public void signatureWithLeadingZeroDropped() throws Exception {
+		assertSigned("api_key=pubkey123&filter=future&method=Team_GetEvents&nonce=170000000042&qty=25&response_type=json"
+				+ "&startDateTime=2012-05-01%2000%3A00%3A00&teamId=12&timestamp=1700000000&userToken=tok"
+				+ "&sig=25fdf3af8907fdff2b476dfca9a0e5e8ed4c629",
+				RequestTemplate.TEAM_GET_EVENTS, NONCE, "userToken", "tok", "teamId", "12", "filter", "future",
+				"startDateTime", "2012-05-01 00:00:00", "qty", "25");
+		assertSigned("api_key=pubkey123&method=Test_PostRequest&nonce=170000008&response_type=json&testParam=zero"
+				+ "&timestamp=1700000000&sig=d501430acbea21de0bb469cbff9b9d1b5a013a",
+				RequestTemplate.TEST_GET_REQUEST, "170000008", "testParam", "zero");
+	}
+
+	@Test
+	public void signerIsReusable() throws Exception {
+		RequestSigner signer = new RequestSigner(MessageDigest.getInstance("SHA-1"));
+		RequestParams params = params(RequestTemplate.TEST_GET_REQUEST, "testParam", "hello");
+		String first = sign(signer, params, NONCE);
+		sign(signer, params(RequestTemplate.MESSAGE_SAVE, "title", "\u65e5\u672c\u8a9e", "body", repeat("long body ", 100)), NONCE);
+		assertEquals(first, sign(signer, params, NONCE));
+	}
+
+	@Test
+	public void randomValuesMatchOriginalSigning() throws Exception {
+		//Mixes the characters the encoder treats differently: unreserved, reserved, 2, 3 and 4 byte UTF-8 and lone surrogates.
+		String alphabet = "aZ09.-*_ +%&=~!'()/?\u00e9\u00ff\u0100\u07ff\u0800\u20ac\uffff\ud83d\ude00\ud83d\udc4d\ud800\udfff";
+		Random random = new Random(20240501L);
+		RequestSigner signer = new RequestSigner(MessageDigest.getInstance("SHA-1"));
+		RequestTemplate template = RequestTemplate.MESSAGE_SAVE;
+		String[] names = { "userToken", "teamId", "messageId", "title", "body", "isPinned", "sendNotifications", "isHidden", "allowComments" };
+
+		for (int i = 0; i < 20000; ++i) {
+			RequestParams params = template.newParams();
+			TreeMap<String, String> values = new TreeMap<String, String>();
+			for (String name : names) {
+				if (random.nextInt(4) == 0)
+					continue;
+				StringBuilder value = new StringBuilder();
+				int length = random.nextInt(12);
+				for (int j = 0; j < length; ++j)
+					value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+				params.put(name, value.toString());
+				values.put(name, value.toString());
+			}
+			String nonce = TIMESTAMP + random.nextInt(99);
+			assertEquals(originalSigning(template, values, nonce), sign(signer, params, nonce));
+		}
+	}
+
+	@Test
+	public void encodeMatchesUrlEncoder() throws Exception {
+		Random random = new Random(7L);
+		for (int i = 0; i < 20000; ++i) {
+			char[] chars = new char[random.nextInt(10)];
+			for (int j = 0; j < chars.length; ++j)
+				chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+			String value = new String(chars);
+			StringBuilder encoded = new StringBuilder();
+			RequestSigner.encode(value, encoded);
+			assertEquals(URLEncoder.encode(value, "UTF-8").replace("+", "%20"), encoded.toString());
+		}
+	}
+
+	private static void assertSigned(String expected, RequestTemplate template, String nonce, String... nameValues) throws NoSuchAlgorithmException {
+		assertEquals(expected, sign(new RequestSigner(MessageDigest.getInstance("SHA-1")), params(template, nameValues), nonce));
+	}
+
+	private static RequestParams params(RequestTemplate template, String... nameValues) {
+		RequestParams params = template.newParams();
+		for (int i = 0; i < nameValues.length; i += 2)
+			params.put(nameValues[i], nameValues[i + 1]);
+		return params;
+	}
+
+	private static String sign(RequestSigner signer, RequestParams params, String nonce) {
+		return signer.sign(params, PUBLIC_API_KEY, PRIVATE_API_KEY.getBytes(StandardCharsets.UTF_8), TIMESTAMP, nonce);
+	}
+
+	/**
+	 * The signing code RequestSigner replaced.
+	 */
+	private static String originalSigning(RequestTemplate template, TreeMap<String, String> values, String nonce) throws Exception {
+		TreeMap<String, String> params = new TreeMap<String, String>(values);
+		params.put("api_key", PUBLIC_API_KEY);
+		params.put("method", template.method);
+		params.put("timestamp", TIMESTAMP);
+		params.put("nonce", nonce);
+		params.put("response_type", "json");
+
+		StringBuilder buffer = new StringBuilder();
+		for (Map.Entry<String, String> param : params.entrySet()) {
+			if (buffer.length() > 0)
+				buffer.append('&');
+			buffer.append(param.getKey()).append('=').append(URLEncoder.encode(param.getValue(), "UTF-8").replace("+", "%20"));
+		}
+		String sigInput = PRIVATE_API_KEY + "|" + template.httpVerb + "|" + template.method + "|" + TIMESTAMP + "|" + nonce + "|"
+				+ buffer.toString().toLowerCase();
+		MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+		return buffer + "&sig=" + new BigInteger(1, sha1.digest(sigInput.getBytes(StandardCharsets.UTF_8))).toString(16).toLowerCase();
+	}
+
+	private static String repeat(String text, int count) {
+		StringBuilder repeated = new StringBuilder();
+		for (int i = 0; i < count; ++i)
+			repeated.append(text);
+		return repeated.toString();
+	}
+}
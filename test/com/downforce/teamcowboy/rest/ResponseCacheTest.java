@@ -0,0 +1,109 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Fills caches past their entry and byte bounds, checking what is evicted, what is still fresh and what each method's
+ * time-to-live is.
+ */
+public class ResponseCacheTest {
+	private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+	@Test
+	public void evictsTheLeastRecentlyUsedEntry() {
+		ResponseCache cache = new ResponseCache(3, Long.MAX_VALUE);
+		cache.put("a", "A", MINUTE);
+		cache.put("b", "B", MINUTE);
+		cache.put("c", "C", MINUTE);
+		assertEquals("A", cache.get("a"));
+		cache.put("d", "D", MINUTE);
+
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a"));
+		assertEquals("C", cache.get("c"));
+		assertEquals("D", cache.get("d"));
+		assertEquals(3, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void staysWithinTheByteBound() {
+		//Each entry is 96 bytes of overhead plus two per character of its key and response.
+		long entryBytes = 96 + 2 * (1 + 100);
+		ResponseCache cache = new ResponseCache(100, 3 * entryBytes);
+		for (char key = 'a'; key <= 'e'; ++key)
+			cache.put(String.valueOf(key), response(100), MINUTE);
+
+		assertEquals(3, cache.size());
+		assertEquals(3 * entryBytes, cache.getEstimatedBytes());
+		assertNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(100, cache.get("e").length());
+
+		//A larger response pushes out as many of the eldest as it needs to.
+		cache.put("f", response(249), MINUTE);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("c"));
+		assertEquals(96 + 2 * 250 + entryBytes, cache.getEstimatedBytes());
+		assertEquals(100, cache.get("e").length());
+	}
+
+	@Test
+	public void doesNotStoreAResponseLargerThanTheWholeCache() {
+		ResponseCache cache = new ResponseCache(100, 1000);
+		cache.put("a", "A", MINUTE);
+		cache.put("b", response(1000), MINUTE);
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a"));
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test
+	public void replacingAnEntryReplacesItsBytes() {
+		ResponseCache cache = new ResponseCache(100, Long.MAX_VALUE);
+		cache.put("a", response(100), MINUTE);
+		cache.put("a", response(10), MINUTE);
+		assertEquals(1, cache.size());
+		assertEquals(96 + 2 * 11, cache.getEstimatedBytes());
+	}
+
+	@Test
+	public void expiredEntriesAreOnlyServedStale() throws Exception {
+		ResponseCache cache = new ResponseCache(10, Long.MAX_VALUE);
+		cache.put("a", "A", TimeUnit.MILLISECONDS.toNanos(20));
+		assertEquals("A", cache.get("a"));
+		Thread.sleep(40);
+		assertNull(cache.get("a"));
+		assertEquals("A", cache.getStale("a"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		cache.clear();
+		assertNull(cache.getStale("a"));
+		assertEquals(0, cache.getEstimatedBytes());
+	}
+
+	@Test
+	public void methodTimeToLiveOverridesTheDefault() {
+		ResponseCache cache = new ResponseCache(10, Long.MAX_VALUE);
+		assertEquals(0, cache.getTimeToLiveNanos("Team_Get"));
+		cache.setDefaultTimeToLive(30, TimeUnit.SECONDS);
+		cache.setTimeToLive("Team_Get", 10, TimeUnit.MINUTES);
+		cache.setTimeToLive("Team_GetRoster", 0, TimeUnit.MINUTES);
+		assertEquals(TimeUnit.MINUTES.toNanos(10), cache.getTimeToLiveNanos("Team_Get"));
+		assertEquals(0, cache.getTimeToLiveNanos("Team_GetRoster"));
+		assertEquals(TimeUnit.SECONDS.toNanos(30), cache.getTimeToLiveNanos("Team_GetSeasons"));
+	}
+
+	private static String response(int length) {
+		StringBuilder response = new StringBuilder(length);
+		for (int i = 0; i < length; ++i)
+			response.append((char) ('a' + i % 26));
+		return response.toString();
+	}
+}
@@ -0,0 +1,340 @@
+package com.downforce.teamcowboy.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs attempts that fail, answer or hang on cue through the policy, checking what is retried, what the budget allows
+ * and which hedged attempt is kept and which cancelled.
+ */
+public class RetryPolicyTest {
+	private static final RequestTemplate GET = RequestTemplate.TEST_GET_REQUEST;
+	private static final RequestTemplate POST = RequestTemplate.TEST_POST_REQUEST;
+
+	private RetryPolicy policy;
+	private ExecutorService executor;
+
+	@Before
+	public void createPolicy() {
+		policy = new RetryPolicy();
+		policy.setBackoff(0, 0, TimeUnit.MILLISECONDS);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void retriesTransientFailures() throws Exception {
+		final AtomicInteger attempts = new AtomicInteger();
+		Exchange<String> result = policy.execute(GET, null, null, sample -> {
+			if (attempts.incrementAndGet() == 1)
+				throw new IOException("Connection reset");
+			return attempts.get() == 2 ? exchange(error(503)) : exchange(ok("third"));
+		});
+		assertEquals("third", result.response.getBody());
+		assertEquals(2, policy.getRetryCount());
+	}
+
+	@Test
+	public void givesUpAfterTheLastAttempt() throws Exception {
+		policy.setMaxAttempts(2);
+		final AtomicInteger attempts = new AtomicInteger();
+		Exchange<String> result = policy.execute(GET, null, null, sample -> {
+			attempts.incrementAndGet();
+			return exchange(error(503));
+		});
+		assertEquals(503, result.response.getError().getHttpResponse());
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void doesNotRetryWhatWouldFailAgain() throws Exception {
+		final AtomicInteger attempts = new AtomicInteger();
+		policy.execute(GET, null, null, sample -> {
+			attempts.incrementAndGet();
+			return exchange(error(404));
+		});
+		assertEquals(1, attempts.get());
+
+		assertNotRetried(GET, new LimitExceededException("Too many calls"));
+		assertNotRetried(GET, new CircuitOpenException("Circuit open"));
+		assertNotRetried(GET, new DeadlineExceededException("Deadline passed"));
+	}
+
+	@Test
+	public void retriesPostOnlyWhenAllowed() throws Exception {
+		assertNotRetried(POST, new IOException("Connection reset"));
+
+		policy.setRetryPost(true);
+		final AtomicInteger attempts = new AtomicInteger();
+		policy.execute(POST, null, null, sample -> attempts.incrementAndGet() == 1 ? exchange(error(500)) : exchange(ok("saved")));
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void budgetCapsRetriesWhileTheApiIsDown() throws Exception {
+		policy.setRetryBudget(0.1, 5);
+		final AtomicInteger attempts = new AtomicInteger();
+		int calls = 200;
+		for (int i = 0; i < calls; ++i) {
+			policy.execute(GET, null, null, sample -> {
+				attempts.incrementAndGet();
+				return exchange(error(503));
+			});
+		}
+		//The reserve, then a tenth of a retry per call.
+		assertTrue("retries: " + policy.getRetryCount(), policy.getRetryCount() <= 5 + calls / 10);
+		assertTrue("retries: " + policy.getRetryCount(), policy.getRetryCount() >= calls / 10);
+		assertEquals(calls + policy.getRetryCount(), attempts.get());
+		assertTrue(policy.getBudgetExhaustedCount() > 0);
+	}
+
+	@Test
+	public void doesNotRetryPastTheDeadline() throws Exception {
+		//The wait before a retry is random, but up to an hour it will all but never fit in a millisecond.
+		policy.setBackoff(1, 1, TimeUnit.HOURS);
+		final AtomicInteger attempts = new AtomicInteger();
+		policy.execute(GET, null, new Deadline(1, TimeUnit.MILLISECONDS), sample -> {
+			attempts.incrementAndGet();
+			return exchange(error(503));
+		});
+		assertEquals(1, attempts.get());
+	}
+
+	@Test(timeout = 30000)
+	public void asyncRetriesAreSentFromTheCallsExecutor() throws Exception {
+		final Thread[] retryThread = new Thread[1];
+		final ExecutorService callExecutor = Executors.newSingleThreadExecutor();
+		final Thread executorThread = callExecutor.submit(Thread::currentThread).get();
+		final AtomicInteger attempts = new AtomicInteger();
+		try {
+			CompletableFuture<Exchange<String>> result = policy.executeAsync(GET, null, new CallContext(null), callExecutor, (sample, attemptContext) -> {
+				if (attempts.incrementAndGet() == 1)
+					return CompletableFuture.completedFuture(exchange(error(503)));
+				retryThread[0] = Thread.currentThread();
+				return CompletableFuture.completedFuture(exchange(ok("retried")));
+			});
+			assertEquals("retried", result.get(5, TimeUnit.SECONDS).response.getBody());
+			assertSame(executorThread, retryThread[0]);
+		} finally {
+			callExecutor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void fastCallsAreNotHedgedAndStayOnTheCallersThread() throws Exception {
+		policy.setHedging(executor);
+		warmUp();
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger elsewhere = new AtomicInteger();
+		for (int i = 0; i < 20; ++i) {
+			policy.execute(GET, null, null, sample -> {
+				if (Thread.currentThread() != caller)
+					elsewhere.incrementAndGet();
+				return exchange(ok("fast"));
+			});
+		}
+		assertEquals(0, elsewhere.get());
+		assertEquals(0, policy.getHedgeCount());
+	}
+
+	@Test(timeout = 30000)
+	public void hedgeThatAnswersFirstInterruptsTheCallersAttempt() throws Exception {
+		policy.setHedging(executor);
+		warmUp();
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		CallSample sample = new CallSample(GET);
+		Exchange<String> result = policy.execute(GET, sample, null, attemptSample -> {
+			attemptSample.signing();
+			if (Thread.currentThread() == caller) {
+				attemptSample.sent("http://primary", null);
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (InterruptedException ie) {
+					interrupted.countDown();
+					throw new InterruptedIOException("Cancelled");
+				}
+			}
+			attemptSample.sent("http://hedge/longer", null);
+			return exchange(ok("hedge"));
+		});
+		assertEquals("hedge", result.response.getBody());
+		assertEquals(1, policy.getHedgeCount());
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		assertFalse("Interrupt leaked to the caller", Thread.interrupted());
+		//Only the winner's measurements are kept, but both requests count.
+		assertEquals("http://hedge/longer".length(), sample.getRequestBytes());
+		assertEquals(2, sample.getAttempts());
+	}
+
+	@Test(timeout = 30000)
+	public void callersAttemptThatAnswersFirstCancelsTheHedge() throws Exception {
+		policy.setHedging(executor);
+		warmUp();
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch hedgeStarted = new CountDownLatch(1);
+		final CountDownLatch hedgeInterrupted = new CountDownLatch(1);
+		Exchange<String> result = policy.execute(GET, null, null, sample -> {
+			if (Thread.currentThread() == caller) {
+				try {
+					assertTrue(hedgeStarted.await(5, TimeUnit.SECONDS));
+				} catch (InterruptedException ie) {
+					throw new InterruptedIOException();
+				}
+				return exchange(ok("primary"));
+			}
+			hedgeStarted.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException ie) {
+				hedgeInterrupted.countDown();
+			}
+			throw new InterruptedIOException("Cancelled");
+		});
+		assertEquals("primary", result.response.getBody());
+		assertTrue(hedgeInterrupted.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test(timeout = 30000)
+	public void hedgesAreNotSentWithoutBudget() throws Exception {
+		policy.setHedging(executor);
+		warmUp();
+		policy.setRetryBudget(0, 0);
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger elsewhere = new AtomicInteger();
+		policy.execute(GET, null, null, sample -> {
+			if (Thread.currentThread() != caller)
+				elsewhere.incrementAndGet();
+			sleep(100);
+			return exchange(ok("slow"));
+		});
+		assertEquals(0, elsewhere.get());
+		assertEquals(0, policy.getHedgeCount());
+		assertTrue(policy.getBudgetExhaustedCount() > 0);
+	}
+
+	@Test(timeout = 30000)
+	public void asyncHedgeCancelsOnlyTheLosingAttempt() throws Exception {
+		policy.setHedging(executor);
+		warmUp();
+		final CompletableFuture<String> primaryRequest = new CompletableFuture<String>();
+		final CompletableFuture<String> hedgeRequest = new CompletableFuture<String>();
+		final AtomicInteger attempts = new AtomicInteger();
+		CallContext context = new CallContext(null);
+		CompletableFuture<Exchange<String>> result = policy.executeAsync(GET, null, context, executor, (sample, attemptContext) -> {
+			CompletableFuture<String> request = attempts.incrementAndGet() == 1 ? primaryRequest : hedgeRequest;
+			attemptContext.register(request);
+			return request.thenApply(body -> exchange(ok(body)));
+		});
+		waitFor(() -> attempts.get() == 2);
+		hedgeRequest.complete("hedge");
+
+		assertEquals("hedge", result.get(5, TimeUnit.SECONDS).response.getBody());
+		waitFor(primaryRequest::isCancelled);
+		assertFalse(hedgeRequest.isCancelled());
+
+		//Cancelling the call still reaches every request sent for it.
+		CompletableFuture<String> late = new CompletableFuture<String>();
+		context.forAttempt().register(late);
+		context.cancel();
+		assertTrue(late.isCancelled());
+	}
+
+	@Test(timeout = 30000)
+	public void hedgedCallFailsOnlyOnceEveryAttemptHas() throws Exception {
+		policy.setHedging(executor);
+		policy.setMaxAttempts(1);
+		warmUp();
+		final Thread caller = Thread.currentThread();
+		try {
+			policy.execute(GET, null, null, sample -> {
+				if (Thread.currentThread() == caller) {
+					sleep(200);
+					throw new IOException("primary failed");
+				}
+				throw new IOException("hedge failed");
+			});
+			fail("Call succeeded");
+		} catch (IOException ioe) {
+			assertEquals("primary failed", ioe.getMessage());
+		}
+		assertEquals(1, policy.getHedgeCount());
+	}
+
+	/**
+	 * Makes enough calls taking about 20 ms to set the hedge delay.
+	 */
+	private void warmUp() throws IOException {
+		for (int i = 0; i < 20; ++i) {
+			policy.execute(GET, null, null, sample -> {
+				sleep(20);
+				return exchange(ok("warm"));
+			});
+		}
+		assertTrue(policy.getHedgeDelayNanos(GET.method) > 0);
+		assertEquals(0, policy.getHedgeCount());
+	}
+
+	private void assertNotRetried(RequestTemplate template, final IOException failure) {
+		final AtomicInteger attempts = new AtomicInteger();
+		try {
+			policy.execute(template, null, null, sample -> {
+				attempts.incrementAndGet();
+				throw failure;
+			});
+			fail("Call succeeded");
+		} catch (IOException ioe) {
+			assertSame(failure, ioe);
+		}
+		assertEquals(1, attempts.get());
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() - giveUpAt < 0);
+			Thread.sleep(1);
+		}
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException();
+		}
+	}
+
+	private static Exchange<String> exchange(APIResponse<String> response) {
+		return new Exchange<String>(response, null);
+	}
+
+	private static APIResponse<String> ok(String body) {
+		return new APIResponse<String>(true, 0.001, body, null);
+	}
+
+	private static APIResponse<String> error(int status) {
+		return new APIResponse<String>(false, 0.001, null, new APIError("Test.Error", status, "failed"));
+	}
+}
@@ -0,0 +1,92 @@
+package com.downforce.teamcowboy.rest.response;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Reads attendance counts and user id lists in the shapes the API sends them, checking the values, the lookups by type
+ * and that what is written reads back the same.
+ */
+public class AttendanceAdaptersTest {
+	private static final Gson GSON = new GsonBuilder()
+			.registerTypeAdapter(CountByType.class, new CountByTypeAdapter().nullSafe())
+			.registerTypeAdapter(UserIdsByType.class, new UserIdsByTypeAdapter().nullSafe())
+			.registerTypeAdapter(CountByGender.class, new CountByGenderAdapter().nullSafe())
+			.registerTypeAdapter(UserIdsByGender.class, new UserIdsByGenderAdapter().nullSafe())
+			.create();
+
+	@Test
+	public void readsCountsByType() {
+		CountByType counts = GSON.fromJson("{\"player\": 12, \"sub\": \"3\", \"coach\": null}", CountByType.class);
+		assertArrayEquals(new String[] { "player", "sub", "coach" }, counts.types);
+		assertArrayEquals(new int[] { 12, 3, 0 }, counts.counts);
+		assertEquals(3, counts.getCount("sub"));
+		assertTrue(counts.hasType("coach"));
+		assertEquals(0, counts.getCount("manager"));
+		assertFalse(counts.hasType("manager"));
+		assertFalse(counts.hasType(null));
+	}
+
+	@Test
+	public void looksUpEveryTypeAmongMany() {
+		StringBuilder json = new StringBuilder("{");
+		for (int i = 0; i < 50; ++i)
+			json.append(i == 0 ? "" : ",").append("\"type").append(i).append("\":").append(i * 10);
+		CountByType counts = GSON.fromJson(json.append('}').toString(), CountByType.class);
+		assertEquals(50, counts.types.length);
+		for (int i = 0; i < 50; ++i)
+			assertEquals(i * 10, counts.getCount("type" + i));
+		assertFalse(counts.hasType("type50"));
+	}
+
+	@Test
+	public void readsUserIdsByType() {
+		UserIdsByType userIds = GSON.fromJson("{\"player\": [101, \"102\"], \"sub\": [], \"coach\": null}", UserIdsByType.class);
+		assertArrayEquals(new int[] { 101, 102 }, userIds.getUserIds("player"));
+		assertEquals(0, userIds.getUserIds("sub").length);
+		assertEquals(0, userIds.getUserIds("coach").length);
+		assertEquals(0, userIds.getUserIds("manager").length);
+		assertTrue(userIds.hasType("coach"));
+	}
+
+	@Test
+	public void readsByGenderSkippingOtherKeys() {
+		CountByGender counts = GSON.fromJson("{\"m\": 7, \"x\": {\"nested\": [1]}, \"f\": \"5\"}", CountByGender.class);
+		assertEquals(7, counts.m);
+		assertEquals(5, counts.f);
+
+		UserIdsByGender userIds = GSON.fromJson("{\"m\": [101, 103], \"f\": null, \"x\": 1}", UserIdsByGender.class);
+		assertArrayEquals(new int[] { 101, 103 }, userIds.m);
+		assertEquals(0, userIds.f.length);
+	}
+
+	@Test
+	public void emptyArrayReadsAsNoTypes() {
+		assertEquals(0, GSON.fromJson("[]", CountByType.class).types.length);
+		assertEquals(0, GSON.fromJson("[]", UserIdsByType.class).types.length);
+		assertEquals(0, GSON.fromJson("[]", CountByGender.class).m);
+		assertNull(GSON.fromJson("[]", UserIdsByGender.class).m);
+		assertNull(GSON.fromJson("null", CountByType.class));
+	}
+
+	@Test
+	public void writtenValuesReadBackTheSame() {
+		CountByType counts = GSON.fromJson("{\"player\": 12, \"sub\": 3}", CountByType.class);
+		assertEquals("{\"player\":12,\"sub\":3}", GSON.toJson(counts));
+
+		UserIdsByType userIds = GSON.fromJson(GSON.toJson(GSON.fromJson("{\"player\": [101, 102], \"sub\": [103]}", UserIdsByType.class)), UserIdsByType.class);
+		assertArrayEquals(new int[] { 101, 102 }, userIds.getUserIds("player"));
+		assertArrayEquals(new int[] { 103 }, userIds.getUserIds("sub"));
+
+		assertEquals("{\"m\":7,\"f\":5}", GSON.toJson(GSON.fromJson("{\"f\": 5, \"m\": 7}", CountByGender.class)));
+		assertEquals("{\"m\":[101],\"f\":[]}", GSON.toJson(GSON.fromJson("{\"m\": [101], \"f\": []}", UserIdsByGender.class)));
+	}
+}